@@ -4,6 +4,7 @@ import com.wonkglorg.doc.api.json.JsonGroup;
 import com.wonkglorg.doc.api.json.JsonPermission;
 import com.wonkglorg.doc.api.json.JsonUser;
 import com.wonkglorg.doc.api.service.PermissionService;
+import com.wonkglorg.doc.api.service.RepoService;
 import com.wonkglorg.doc.api.service.UserService;
 import com.wonkglorg.doc.core.exception.client.ClientException;
 import com.wonkglorg.doc.core.objects.GroupId;
@@ -18,6 +19,7 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -37,10 +39,12 @@ public class ApiGroupController {
     private static final Logger log = LoggerFactory.getLogger(ApiGroupController.class);
     private final UserService userService;
     private final PermissionService permissionService;
+    private final RepoService repoService;
 
-    public ApiGroupController(UserService userService, PermissionService permissionService) {
+    public ApiGroupController(UserService userService, PermissionService permissionService, RepoService repoService) {
         this.userService = userService;
         this.permissionService = permissionService;
+        this.repoService = repoService;
     }
 
     /**
@@ -74,8 +78,13 @@ public class ApiGroupController {
      */
     @Operation(summary = "Get groups", description = "Returns a group or groups if no groupId is given.")
     @GetMapping("get")
-    public ResponseEntity<RestResponse<List<JsonGroup>>> getGroups(@Parameter(description = "The groupid to search for, if none is given, returns all groups.") @RequestParam(value = "groupId", required = false) String groupId) {
+    public ResponseEntity<RestResponse<List<JsonGroup>>> getGroups(@Parameter(description = "The groupid to search for, if none is given, returns all groups.") @RequestParam(value = "groupId", required = false) String groupId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String eTag = ETag.of(userService.version(), groupId);
+            if (ETag.matches(ifNoneMatch, eTag)) {
+                return ETag.notModified(eTag);
+            }
 
             List<JsonGroup> jsonGroups;
             if (groupId == null) {
@@ -85,7 +94,7 @@ public class ApiGroupController {
                 Group group = userService.getGroup(GroupId.of(groupId));
                 jsonGroups = List.of(new JsonGroup(group));
             }
-            return RestResponse.success(jsonGroups).toResponse();
+            return ETag.tagged(RestResponse.success(jsonGroups).toResponse(), eTag);
         } catch (ClientException e) {
             return RestResponse.<List<JsonGroup>>error(e.getMessage()).toResponse();
         } catch (Exception e) {
@@ -102,11 +111,16 @@ public class ApiGroupController {
      */
     @Operation(summary = "Get Users from Group", description = "Returns all users in a group.")
     @GetMapping("get/all/users")
-    public ResponseEntity<RestResponse<List<JsonUser>>> getAllGroupsForUser(@Parameter(description = "The groupId search for.") @RequestParam("groupId") String groupId) {
+    public ResponseEntity<RestResponse<List<JsonUser>>> getAllGroupsForUser(@Parameter(description = "The groupId search for.") @RequestParam("groupId") String groupId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String eTag = ETag.of(userService.version(), groupId);
+            if (ETag.matches(ifNoneMatch, eTag)) {
+                return ETag.notModified(eTag);
+            }
             Set<UserProfile> users = userService.getUsersFromGroup(GroupId.of(groupId));
             List<JsonUser> jsonUsers = users.stream().map(JsonUser::new).toList();
-            return RestResponse.success(jsonUsers).toResponse();
+            return ETag.tagged(RestResponse.success(jsonUsers).toResponse(), eTag);
         } catch (ClientException e) {
             return RestResponse.<List<JsonUser>>error(e.getMessage()).toResponse();
         } catch (Exception e) {
@@ -123,11 +137,16 @@ public class ApiGroupController {
      */
     @Operation(summary = "Get groups from user", description = "Returns all groups a user is in.")
     @GetMapping("get/all/groups")
-    public ResponseEntity<RestResponse<List<JsonGroup>>> getAllUsersForGroup(@Parameter(description = "The userId to return the groups for.") @RequestParam("userId") String userId) {
+    public ResponseEntity<RestResponse<List<JsonGroup>>> getAllUsersForGroup(@Parameter(description = "The userId to return the groups for.") @RequestParam("userId") String userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String eTag = ETag.of(userService.version(), userId);
+            if (ETag.matches(ifNoneMatch, eTag)) {
+                return ETag.notModified(eTag);
+            }
             Set<Group> users = userService.getGroupsFromUser(UserId.of(userId));
             List<JsonGroup> jsonGroups = users.stream().map(JsonGroup::new).toList();
-            return RestResponse.success(jsonGroups).toResponse();
+            return ETag.tagged(RestResponse.success(jsonGroups).toResponse(), eTag);
         } catch (ClientException e) {
             return RestResponse.<List<JsonGroup>>error(e.getMessage()).toResponse();
         } catch (Exception e) {
@@ -311,10 +330,15 @@ public class ApiGroupController {
     @Operation(summary = "Gets the permissions for a group", description = "Gets the permissions for a group.")
     @GetMapping("permission/get")
     public ResponseEntity<RestResponse<List<JsonPermission>>> getGroupPermissions(@Parameter(description = "The repoId to search in.") @RequestParam("repoId") String repoId,
-                                                                                  @Parameter(description = "The group id to get the permissions for.") @RequestParam("groupId") String groupId) {
+                                                                                  @Parameter(description = "The group id to get the permissions for.") @RequestParam("groupId") String groupId,
+                                                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String eTag = ETag.of(repoService.getVersion(RepoId.of(repoId)), groupId);
+            if (ETag.matches(ifNoneMatch, eTag)) {
+                return ETag.notModified(eTag);
+            }
             Set<Permission<GroupId>> permissions = permissionService.getPermissionsForGroup(RepoId.of(repoId), GroupId.of(groupId));
-            return RestResponse.success("", permissions.stream().map(JsonPermission::new).toList()).toResponse();
+            return ETag.tagged(RestResponse.success("", permissions.stream().map(JsonPermission::new).toList()).toResponse(), eTag);
         } catch (ClientException e) {
             return RestResponse.<List<JsonPermission>>error(e.getMessage()).toResponse();
         } catch (Exception e) {
@@ -2,7 +2,14 @@ package com.wonkglorg.doc.api.controller;
 
 import com.wonkglorg.doc.api.json.JsonRepo;
 import com.wonkglorg.doc.api.service.RepoService;
+import com.wonkglorg.doc.core.db.functions.ResourceFunctions;
+import com.wonkglorg.doc.core.exception.CoreSqlException;
+import com.wonkglorg.doc.core.git.CommitPipeline;
+import com.wonkglorg.doc.core.git.RemoteHealth;
+import com.wonkglorg.doc.core.objects.RepoId;
 import io.swagger.v3.oas.annotations.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,6 +17,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.Map;
 
 import static com.wonkglorg.doc.api.controller.Constants.ControllerPaths.API_REPO;
 
@@ -19,6 +27,7 @@ import static com.wonkglorg.doc.api.controller.Constants.ControllerPaths.API_REP
 @RestController
 @RequestMapping(API_REPO)
 public class ApiRepoController {
+    private static final Logger log = LoggerFactory.getLogger(ApiRepoController.class);
 
     private final RepoService repoService;
 
@@ -35,4 +44,45 @@ public class ApiRepoController {
         return RestResponse.success(JsonRepo.from(repoService.getProperties())).toResponse();
     }
 
+    @Operation(
+            summary = "Gets the startup status of all repos",
+            description = "Returns if each repo is initializing, ready or failed together with the time spent in each startup phase"
+    )
+    @GetMapping("status")
+    public ResponseEntity<RestResponse<Map<RepoId, RepoService.RepoStatus>>> getStatus() {
+        return RestResponse.success(repoService.getStatus()).toResponse();
+    }
+
+    @Operation(
+            summary = "Gets the git status of all repos",
+            description = "Returns the number of edits waiting to be committed, the commit and push lag and the commit / push counters of each repo"
+    )
+    @GetMapping("git/status")
+    public ResponseEntity<RestResponse<Map<RepoId, CommitPipeline.Stats>>> getGitStatus() {
+        return RestResponse.success(repoService.getCommitStats()).toResponse();
+    }
+
+    @Operation(
+            summary = "Gets the remote health of all repos",
+            description = "Returns if the remote of each repo is reachable, when it was last checked and the last error"
+    )
+    @GetMapping("git/remote")
+    public ResponseEntity<RestResponse<Map<RepoId, RemoteHealth.Status>>> getRemoteStatus() {
+        return RestResponse.success(repoService.getRemoteStatus()).toResponse();
+    }
+
+    @Operation(
+            summary = "Gets the search index status of all repos",
+            description = "Returns the size of each full text index and the number and average latency of the searches served by the word, trigram, prefix and scan mode"
+    )
+    @GetMapping("search/status")
+    public ResponseEntity<RestResponse<Map<RepoId, ResourceFunctions.SearchStats>>> getSearchStatus() {
+        try {
+            return RestResponse.success(repoService.getSearchStats()).toResponse();
+        } catch (CoreSqlException e) {
+            log.error("Error while retrieving search stats", e);
+            return RestResponse.<Map<RepoId, ResourceFunctions.SearchStats>>error(e.getMessage()).toResponse();
+        }
+    }
+
 }
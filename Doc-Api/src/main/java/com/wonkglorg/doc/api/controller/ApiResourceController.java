@@ -1,9 +1,15 @@
 package com.wonkglorg.doc.api.controller;
 
 import static com.wonkglorg.doc.api.controller.Constants.ControllerPaths.API_RESOURCE;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wonkglorg.doc.api.json.JsonFileTree;
+import com.wonkglorg.doc.api.json.JsonFileTreeEntry;
 import com.wonkglorg.doc.api.json.JsonResource;
 import com.wonkglorg.doc.api.json.JsonResourceEdit;
+import com.wonkglorg.doc.api.json.JsonSearchResult;
+import com.wonkglorg.doc.api.service.RepoService;
 import com.wonkglorg.doc.api.service.ResourceService;
 import com.wonkglorg.doc.core.exception.client.ClientException;
 import com.wonkglorg.doc.core.objects.RepoId;
@@ -15,19 +21,28 @@ import com.wonkglorg.doc.core.path.TargetPath;
 import static com.wonkglorg.doc.core.path.TargetPath.normalizePath;
 import com.wonkglorg.doc.core.request.ResourceRequest;
 import com.wonkglorg.doc.core.request.ResourceUpdateRequest;
+import com.wonkglorg.doc.core.request.SearchRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -35,6 +50,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -44,10 +60,28 @@ import java.util.stream.Collectors;
 @RequestMapping(API_RESOURCE)
 public class ApiResourceController{
 	private static final Logger log = LoggerFactory.getLogger(ApiResourceController.class);
+	/**
+	 * The content type of streamed responses, one json object per line
+	 */
+	private static final String NDJSON = "application/x-ndjson";
+	/**
+	 * The name of the cache holding built file trees by their entity tag
+	 */
+	static final String FILE_TREE_CACHE = "fileTrees";
 	private final ResourceService resourceService;
+	private final RepoService repoService;
+	private final ObjectMapper objectMapper;
+	/**
+	 * Built file trees by the entity tag of their request. The tag changes with the version of every requested repo, the permissions and the requesting user, so an
+	 * entry is never served after a change and outdated entries are left to expire.
+	 */
+	private final Cache fileTreeCache;
 	
-	public ApiResourceController(ResourceService resourceService) {
+	public ApiResourceController(ResourceService resourceService, RepoService repoService, ObjectMapper objectMapper, CacheManager cacheManager) {
 		this.resourceService = resourceService;
+		this.repoService = repoService;
+		this.objectMapper = objectMapper;
+		this.fileTreeCache = cacheManager.getCache(FILE_TREE_CACHE);
 	}
 	
 	/**
@@ -75,17 +109,25 @@ public class ApiResourceController{
 			if true returns the data of the resource.
 			### returnLimit
 			limits the amount of resources returned.
+			
+			The response carries an ETag that stays the same until a resource in the requested repos or any permission changes,
+			sending it back as If-None-Match returns 304 without reading the resources again.
 			""")
 	@PostMapping("/get")
-	public ResponseEntity<RestResponse<Map<String, List<JsonResource>>>> getResources(@RequestBody ResourceRequest request) {
+	public ResponseEntity<RestResponse<Map<String, List<JsonResource>>>> getResources(@RequestBody ResourceRequest request,
+																					   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 		try{
+			String eTag = ETag.of(resourceService.requestVersion(request));
+			if(ETag.matches(ifNoneMatch, eTag)){
+				return ETag.notModified(eTag);
+			}
 			var resources = resourceService.getResources(request);
 			Map<String, List<JsonResource>> jsonResources = new HashMap<>();
 			
 			for(var resource : resources){
 				jsonResources.computeIfAbsent(resource.repoId().id(), s -> new ArrayList<>()).add(JsonResource.of(resource));
 			}
-			return RestResponse.success(jsonResources).toResponse();
+			return ETag.tagged(RestResponse.success(jsonResources).toResponse(), eTag);
 			
 		} catch(ClientException e){
 			return RestResponse.<Map<String, List<JsonResource>>>error(e.getMessage()).toResponse();
@@ -120,35 +162,31 @@ public class ApiResourceController{
 			if true returns the data of the resource.
 			### returnLimit
 			limits the amount of resources returned.
+			
+			The response carries an ETag that stays the same until a resource in the requested repos or any permission changes,
+			sending it back as If-None-Match returns 304 without building the tree again. Other clients sending the same request get the tree built for the
+			first one until then.
 			""")
 	@PostMapping("/get/filetree")
-	public ResponseEntity<RestResponse<Map<String, JsonFileTree>>> getFiletree(@RequestBody ResourceRequest request) {
+	public ResponseEntity<RestResponse<Map<String, JsonFileTree>>> getFiletree(@RequestBody ResourceRequest request,
+																			   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 		try{
-			var resources = resourceService.getResources(request);
-			
-			Map<String, JsonFileTree> fileTrees = new HashMap<>();
+			//tagged before reading, a change while reading gives the client an outdated tag which only causes one more full response
+			String eTag = ETag.of(resourceService.requestVersion(request));
+			if(ETag.matches(ifNoneMatch, eTag)){
+				return ETag.notModified(eTag);
+			}
 			
-			for(var resource : resources){
-				String repo = resource.repoId().id();
-				String normalizedPath = resource.resourcePath().toString().replace("\\", "/");
-				String[] pathSegments = normalizedPath.split("/");
-				
-				//build file tree
-				JsonFileTree current = fileTrees.computeIfAbsent(repo, JsonFileTree::new);
-				for(int i = 0; i < pathSegments.length; i++){
-					String pathPart = pathSegments[i];
-					
-					if(i == pathSegments.length - 1 && pathPart.contains(".")){
-						// is a file
-						current.addResource(resource);
-					} else {
-						//its a directory
-						current = current.add(pathPart);
-					}
-				}
+			Cache.ValueWrapper cached = fileTreeCache.get(eTag);
+			if(cached != null){
+				//noinspection unchecked only file trees are put in the cache
+				return ETag.tagged(RestResponse.success((Map<String, JsonFileTree>) cached.get()).toResponse(), eTag);
 			}
 			
-			return RestResponse.success(fileTrees).toResponse();
+			Map<String, JsonFileTree> fileTrees = new HashMap<>();
+			resourceService.streamResources(request, resource -> fileTrees.computeIfAbsent(resource.repoId().id(), JsonFileTree::new).insert(resource));
+			fileTreeCache.put(eTag, fileTrees);
+			return ETag.tagged(RestResponse.success(fileTrees).toResponse(), eTag);
 			
 		} catch(ClientException e){//client exceptions are stuff only returned to the client, and isn't an actual error that needs fixing by the coder
 			return RestResponse.<Map<String, JsonFileTree>>error(e.getMessage()).toResponse();
@@ -158,6 +196,113 @@ public class ApiResourceController{
 		}
 	}
 	
+	/**
+	 * Streams resources by the specified request as newline delimited json.
+	 *
+	 * @param request the {@link ResourceRequest} to get resources
+	 * @return one {@link JsonResource} per line
+	 */
+	@Operation(summary = "Streams resources", description = """
+			## Streams resources by the specified request as newline delimited json.
+			Takes the same request as /get but writes each resource as its own line as soon as it is read instead of collecting all of them first,
+			memory use stays the same regardless of how many resources or how much data is returned.
+			
+			If an error occurs the last line is a response object containing the error.
+			""")
+	@PostMapping(value = "/get/stream", produces = NDJSON)
+	public ResponseEntity<StreamingResponseBody> streamResources(@RequestBody ResourceRequest request) {
+		return stream(request, JsonResource::of);
+	}
+	
+	/**
+	 * Streams the file tree of the specified request as newline delimited json.
+	 *
+	 * @param request the {@link ResourceRequest} to get resources
+	 * @return one {@link JsonFileTreeEntry} per line
+	 */
+	@Operation(summary = "Streams a file tree", description = """
+			## Streams the file tree of the specified request as newline delimited json.
+			Takes the same request as /get/filetree but writes one entry per resource containing its directories instead of the whole tree,
+			the tree is built by adding each resource below its directories.
+			
+			If an error occurs the last line is a response object containing the error.
+			""")
+	@PostMapping(value = "/get/filetree/stream", produces = NDJSON)
+	public ResponseEntity<StreamingResponseBody> streamFiletree(@RequestBody ResourceRequest request) {
+		return stream(request, JsonFileTreeEntry::of);
+	}
+	
+	/**
+	 * Writes every resource of a request converted to json on its own line while they are read
+	 */
+	private ResponseEntity<StreamingResponseBody> stream(ResourceRequest request, Function<Resource, Object> toJson) {
+		StreamingResponseBody body = outputStream -> {
+			try(JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)){
+				generator.setRootValueSeparator(new SerializedString("\n"));
+				try{
+					resourceService.streamResources(request, resource -> {
+						try{
+							generator.writeObject(toJson.apply(resource));
+						} catch(IOException e){
+							throw new UncheckedIOException(e);
+						}
+					});
+				} catch(UncheckedIOException e){
+					//the client went away, nothing left to write to
+					throw e.getCause();
+				} catch(ClientException e){
+					generator.writeObject(RestResponse.error(e.getMessage()));
+				} catch(Exception e){
+					log.error("Error while streaming resources", e);
+					generator.writeObject(RestResponse.error(e.getMessage()));
+				}
+				generator.writeRaw('\n');
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+	}
+	
+	/**
+	 * Searches the content of resources ranked by relevance.
+	 *
+	 * @param request the {@link SearchRequest} to search by
+	 * @return {@link RestResponse}
+	 */
+	@Operation(summary = "Searches resources", description = """
+			## Searches the content of resources ranked by relevance.
+			Only returns an excerpt around each match instead of the whole resource.
+			
+			### searchTerm
+			the term to search for, required. Terms shorter than 3 characters are not ranked.
+			### path
+			if null is given searches all resources in the repository.
+			### repoId
+			if null is given searches all repositories.
+			### userId
+			if null is given returns regardless of permissions, if a valid user is given limits the search to any file the user would have access to.
+			### limit
+			the amount of hits per page.
+			### offset
+			the amount of hits to skip, ignored if a cursor is given.
+			### cursor
+			the nextCursor of the previous page to continue from.
+			### excerptTokens
+			the maximum amount of tokens per excerpt.
+			### highlightStart / highlightEnd
+			the markers placed around each match in the excerpt.
+			""")
+	@PostMapping("/search")
+	public ResponseEntity<RestResponse<JsonSearchResult>> searchResources(@RequestBody SearchRequest request) {
+		try{
+			return RestResponse.success(JsonSearchResult.of(resourceService.searchResources(request))).toResponse();
+		} catch(ClientException e){
+			return RestResponse.<JsonSearchResult>error(e.getMessage()).toResponse();
+		} catch(Exception e){
+			log.error("Error while searching resources", e);
+			return RestResponse.<JsonSearchResult>error(e.getMessage()).toResponse();
+		}
+	}
+	
 	/**
 	 * Adds a resource to the repository.
 	 *
@@ -324,12 +469,18 @@ public class ApiResourceController{
 	 * @param repoId The repoId to remove the tag from or null to remove the tag from all repositories.
 	 * @return {@link RestResponse}
 	 */
-	@Operation(summary = "Retrieves all Tags", description = "Retrieves all tags from a specific repository.")
+	@Operation(summary = "Retrieves all Tags", description = "Retrieves all tags from a specific repository. The response carries an ETag, sending it back as If-None-Match returns 304 while the repository is unchanged.")
 	@PostMapping("/tag/get")
-	public ResponseEntity<RestResponse<Map<String, String>>> getTags(@Parameter(description = "The repoId to remove the tag from or null to remove the tag from all repositories.") @RequestParam(value = "repoId", required = false) String repoId) {
+	public ResponseEntity<RestResponse<Map<String, String>>> getTags(@Parameter(description = "The repoId to remove the tag from or null to remove the tag from all repositories.") @RequestParam(value = "repoId", required = false) String repoId,
+																	 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 		try{
-			List<Tag> tags = resourceService.getTags(repoId == null ? RepoId.ALL_REPOS : RepoId.of(repoId));
-			return RestResponse.success(tags.stream().collect(Collectors.toMap(tag -> tag.tagId().id(), Tag::tagName))).toResponse();
+			RepoId id = repoId == null ? RepoId.ALL_REPOS : RepoId.of(repoId);
+			String eTag = ETag.of(repoService.getVersion(id));
+			if(ETag.matches(ifNoneMatch, eTag)){
+				return ETag.notModified(eTag);
+			}
+			List<Tag> tags = resourceService.getTags(id);
+			return ETag.tagged(RestResponse.success(tags.stream().collect(Collectors.toMap(tag -> tag.tagId().id(), Tag::tagName))).toResponse(), eTag);
 		} catch(ClientException e){
 			return RestResponse.<Map<String, String>>error(e.getMessage()).toResponse();
 		} catch(Exception e){
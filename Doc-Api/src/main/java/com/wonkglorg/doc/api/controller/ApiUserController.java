@@ -4,12 +4,14 @@ import static com.wonkglorg.doc.api.controller.Constants.ControllerPaths.API_USE
 import com.wonkglorg.doc.api.json.JsonPermission;
 import com.wonkglorg.doc.api.json.JsonUser;
 import com.wonkglorg.doc.api.service.PermissionService;
+import com.wonkglorg.doc.api.service.RepoService;
 import com.wonkglorg.doc.api.service.UserService;
 import com.wonkglorg.doc.core.exception.client.ClientException;
 import com.wonkglorg.doc.core.objects.GroupId;
 import com.wonkglorg.doc.core.objects.RepoId;
 import com.wonkglorg.doc.core.objects.UserId;
 import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.permissions.EffectivePermissionCache;
 import com.wonkglorg.doc.core.permissions.Permission;
 import com.wonkglorg.doc.core.permissions.PermissionType;
 import com.wonkglorg.doc.core.permissions.Role;
@@ -19,9 +21,11 @@ import io.swagger.v3.oas.annotations.Parameter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -43,10 +47,12 @@ public class ApiUserController{
 	private static final Logger log = LoggerFactory.getLogger(ApiUserController.class);
 	private final UserService userService;
 	private final PermissionService permissionService;
+	private final RepoService repoService;
 	
-	public ApiUserController(@Lazy UserService userService, PermissionService permissionService) {
+	public ApiUserController(@Lazy UserService userService, PermissionService permissionService, RepoService repoService) {
 		this.userService = userService;
 		this.permissionService = permissionService;
+		this.repoService = repoService;
 	}
 	
 	/**
@@ -57,8 +63,13 @@ public class ApiUserController{
 	 */
 	@Operation(summary = "Get a user", description = "Returns a user or users if no repository is given. If a repository is given, only returns users for that repository will be returned, if no userId is given returns all users in this repository.")
 	@GetMapping("/get")
-	public ResponseEntity<RestResponse<List<JsonUser>>> getUsers(@Parameter(description = "The userId to search for, if none is given, returns all users in the repository.") @RequestParam(value = "userId", required = false) String userId) {
+	public ResponseEntity<RestResponse<List<JsonUser>>> getUsers(@Parameter(description = "The userId to search for, if none is given, returns all users in the repository.") @RequestParam(value = "userId", required = false) String userId,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 		try{
+			String eTag = ETag.of(userService.version(), userId);
+			if(ETag.matches(ifNoneMatch, eTag)){
+				return ETag.notModified(eTag);
+			}
 			
 			UserId id = UserId.of(userId);
 			List<JsonUser> jsonUsers;
@@ -69,7 +80,7 @@ public class ApiUserController{
 				jsonUsers = List.of(new JsonUser(userService.getUser(UserId.of(userId))));
 			}
 			
-			return RestResponse.success("", jsonUsers).toResponse();
+			return ETag.tagged(RestResponse.success("", jsonUsers).toResponse(), eTag);
 		} catch(ClientException e){
 			return RestResponse.<List<JsonUser>>error(e.getMessage()).toResponse();
 		} catch(Exception e){
@@ -256,10 +267,15 @@ public class ApiUserController{
 	@Operation(summary = "Gets the permissions for a user", description = "Gets the permissions for a user.")
 	@GetMapping("permission/get")
 	public ResponseEntity<RestResponse<List<JsonPermission>>> getPermissions(@Parameter(description = "The repoId to search in.") @RequestParam("repoId") String repoId,
-																			 @Parameter(description = "The users id to get the permissions for.") @RequestParam("userId") String userId) {
+																			 @Parameter(description = "The users id to get the permissions for.") @RequestParam("userId") String userId,
+																			 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 		try{
+			String eTag = ETag.of(repoService.getVersion(RepoId.of(repoId)), userId);
+			if(ETag.matches(ifNoneMatch, eTag)){
+				return ETag.notModified(eTag);
+			}
 			Set<Permission<UserId>> permissions = permissionService.getPermissionsForUser(RepoId.of(repoId), UserId.of(userId));
-			return RestResponse.success("", permissions.stream().map(JsonPermission::new).toList()).toResponse();
+			return ETag.tagged(RestResponse.success("", permissions.stream().map(JsonPermission::new).toList()).toResponse(), eTag);
 		} catch(ClientException e){
 			return RestResponse.<List<JsonPermission>>error(e.getMessage()).toResponse();
 		} catch(Exception e){
@@ -268,4 +284,15 @@ public class ApiUserController{
 		}
 	}
 	
+	/**
+	 * Gets the metrics of the effective permission cache
+	 *
+	 * @return {@link RestResponse}
+	 */
+	@Operation(summary = "Gets the permission cache metrics", description = "Returns the hits, misses, invalidations and size of the effective permission cache.")
+	@GetMapping("permission/cache")
+	public ResponseEntity<RestResponse<EffectivePermissionCache.Stats>> getPermissionCacheStats() {
+		return RestResponse.success(permissionService.getPermissionCacheStats()).toResponse();
+	}
+	
 }
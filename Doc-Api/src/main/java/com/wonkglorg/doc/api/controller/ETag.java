@@ -0,0 +1,78 @@
+package com.wonkglorg.doc.api.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Entity tags for conditional requests, a tag is derived from the versions of the data a response is built from so checking it never requires building the response
+ */
+final class ETag {
+    /**
+     * The user versions restart with the application, this keeps a tag handed out before a restart from matching the same version number after it. Repository versions
+     * start at a random value whenever a repository is opened, which covers lazily loaded repositories reopened while the application runs.
+     */
+    private static final String EPOCH = UUID.randomUUID().toString();
+
+    private ETag() {
+        //utility class
+    }
+
+    /**
+     * Builds a strong entity tag from the parts that identify a response, the same parts always give the same tag
+     *
+     * @param parts the versions and request parameters the response depends on
+     * @return the quoted entity tag
+     */
+    static String of(Object... parts) {
+        String state = EPOCH + Arrays.deepToString(parts);
+        return "\"" + UUID.nameUUIDFromBytes(state.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Checks if an If-None-Match header contains the given entity tag
+     *
+     * @param ifNoneMatch the header value, may be null
+     * @param eTag        the current entity tag
+     * @return true if the client already has the current response
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return an empty 304 response carrying the entity tag
+     */
+    static <T> ResponseEntity<RestResponse<T>> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+    }
+
+    /**
+     * Adds the entity tag to a response, error responses are left untagged so they are never answered with a 304
+     *
+     * @param response the response
+     * @param eTag     the entity tag
+     * @return the tagged response
+     */
+    static <T> ResponseEntity<RestResponse<T>> tagged(ResponseEntity<RestResponse<T>> response, String eTag) {
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            return response;
+        }
+        return ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders()).eTag(eTag).body(response.getBody());
+    }
+}
@@ -29,6 +29,21 @@ public class JsonFileTree{
 		resources.add(JsonResource.of(resource));
 	}
 	
+	// Adds a resource below the directories of its path, creating them as needed
+	public void insert(Resource resource) {
+		String[] pathSegments = resource.resourceKey().segments();
+		JsonFileTree current = this;
+		for(int i = 0; i < pathSegments.length; i++){
+			if(i == pathSegments.length - 1 && pathSegments[i].contains(".")){
+				// is a file
+				current.addResource(resource);
+			} else {
+				//its a directory
+				current = current.add(pathSegments[i]);
+			}
+		}
+	}
+	
 	public Map<String, JsonFileTree> getChildren() {
 		return children;
 	}
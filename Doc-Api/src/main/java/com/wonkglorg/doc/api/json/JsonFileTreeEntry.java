@@ -0,0 +1,38 @@
+package com.wonkglorg.doc.api.json;
+
+import com.wonkglorg.doc.core.objects.Resource;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Json representation of a single entry of a streamed file tree, clients build the tree by adding each resource below its directories
+ */
+public class JsonFileTreeEntry{
+	public String repoId;
+	/**
+	 * The directories leading to the resource from the root of the repo
+	 */
+	public List<String> directories;
+	/**
+	 * The resource if the entry is a file, null if the entry only describes directories
+	 */
+	public JsonResource resource;
+
+	private JsonFileTreeEntry(Resource resource) {
+		repoId = resource.repoId().id();
+		String[] pathSegments = resource.resourceKey().segments();
+		if(pathSegments.length > 0 && pathSegments[pathSegments.length - 1].contains(".")){
+			// is a file
+			directories = Arrays.asList(pathSegments).subList(0, pathSegments.length - 1);
+			this.resource = JsonResource.of(resource);
+		} else {
+			//its a directory
+			directories = Arrays.asList(pathSegments);
+		}
+	}
+
+	public static JsonFileTreeEntry of(Resource resource) {
+		return new JsonFileTreeEntry(resource);
+	}
+}
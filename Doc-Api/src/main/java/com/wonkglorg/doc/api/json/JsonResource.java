@@ -18,6 +18,7 @@ public class JsonResource{
 	public String createdAt;
 	public String category;
 	public Set<String> tags = new HashSet<>();
+	public Set<String> inheritedTags = new HashSet<>();
 	public String lastModifiedBy;
 	public String lastModifiedAt;
 	public PermissionType permissionType;
@@ -36,6 +37,9 @@ public class JsonResource{
 		for(var tag : resource.getResourceTags()){
 			tags.add(tag.id());
 		}
+		for(var tag : resource.getInheritedTags()){
+			inheritedTags.add(tag.id());
+		}
 	}
 	
 	public static JsonResource of(Resource resource) {
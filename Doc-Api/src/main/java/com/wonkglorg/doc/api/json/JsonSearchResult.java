@@ -0,0 +1,42 @@
+package com.wonkglorg.doc.api.json;
+
+import com.wonkglorg.doc.core.objects.SearchHit;
+import com.wonkglorg.doc.core.objects.SearchResult;
+
+import java.util.List;
+
+/**
+ * Json representation of a page of search hits
+ */
+public class JsonSearchResult{
+	public List<JsonSearchHit> hits;
+	public long totalEstimate;
+	public String nextCursor;
+	
+	private JsonSearchResult(SearchResult result) {
+		hits = result.hits().stream().map(JsonSearchHit::new).toList();
+		totalEstimate = result.totalEstimate();
+		nextCursor = result.nextCursor();
+	}
+	
+	public static JsonSearchResult of(SearchResult result) {
+		return new JsonSearchResult(result);
+	}
+	
+	/**
+	 * Json representation of a single search hit
+	 */
+	public static class JsonSearchHit{
+		public String repoId;
+		public String path;
+		public double score;
+		public String excerpt;
+		
+		private JsonSearchHit(SearchHit hit) {
+			repoId = hit.repoId().id();
+			path = hit.resourcePath().toString();
+			score = hit.score();
+			excerpt = hit.excerpt();
+		}
+	}
+}
@@ -4,6 +4,7 @@ import com.wonkglorg.doc.core.RepoProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,9 +18,81 @@ public class RepoProperties{
 	 * List of repositories that are being managed by the application
 	 */
 	private final List<RepoProperty> repositories = new ArrayList<>();
+	/**
+	 * The maximum number of repositories queried concurrently when a request targets all repositories
+	 */
+	private int queryParallelism = 8;
+	/**
+	 * The maximum number of repositories initialized concurrently on startup
+	 */
+	private int initParallelism = 4;
+	/**
+	 * If startup should wait for all repositories to be initialized, otherwise each repository serves requests as soon as it is ready
+	 */
+	private boolean awaitInitialization = false;
+	/**
+	 * If repositories are only opened on their first access instead of on startup
+	 */
+	private boolean lazyLoading = false;
+	/**
+	 * How long a lazily loaded repository may go without access before its caches and database connections are released, zero keeps them loaded
+	 */
+	private Duration idleTimeout = Duration.ofMinutes(30);
+	/**
+	 * How long a lazily loaded repository that failed to load waits before it is loaded again, doubles with every further failure, zero retries on every access
+	 */
+	private Duration failedRetryDelay = Duration.ofSeconds(30);
 	
 	public List<RepoProperty> getRepositories() {
 		return repositories;
 	}
+	
+	public int getQueryParallelism() {
+		return queryParallelism;
+	}
+	
+	public void setQueryParallelism(int queryParallelism) {
+		this.queryParallelism = queryParallelism;
+	}
+	
+	public int getInitParallelism() {
+		return initParallelism;
+	}
+	
+	public void setInitParallelism(int initParallelism) {
+		this.initParallelism = initParallelism;
+	}
+	
+	public boolean isAwaitInitialization() {
+		return awaitInitialization;
+	}
+	
+	public void setAwaitInitialization(boolean awaitInitialization) {
+		this.awaitInitialization = awaitInitialization;
+	}
+	
+	public boolean isLazyLoading() {
+		return lazyLoading;
+	}
+	
+	public void setLazyLoading(boolean lazyLoading) {
+		this.lazyLoading = lazyLoading;
+	}
+	
+	public Duration getIdleTimeout() {
+		return idleTimeout;
+	}
+	
+	public void setIdleTimeout(Duration idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+	
+	public Duration getFailedRetryDelay() {
+		return failedRetryDelay;
+	}
+	
+	public void setFailedRetryDelay(Duration failedRetryDelay) {
+		this.failedRetryDelay = failedRetryDelay;
+	}
 
 }
@@ -1,5 +1,6 @@
 package com.wonkglorg.doc.api.service;
 
+import com.wonkglorg.doc.core.db.functions.PermissionFunctions;
 import com.wonkglorg.doc.core.exception.CoreException;
 import com.wonkglorg.doc.core.exception.client.ClientException;
 import com.wonkglorg.doc.core.exception.client.InvalidGroupException;
@@ -11,14 +12,17 @@ import com.wonkglorg.doc.core.objects.RepoId;
 import com.wonkglorg.doc.core.objects.Resource;
 import com.wonkglorg.doc.core.objects.UserId;
 import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.permissions.EffectivePermissionCache;
 import com.wonkglorg.doc.core.permissions.Permission;
+import com.wonkglorg.doc.core.permissions.PermissionEvents;
+import com.wonkglorg.doc.core.permissions.PermissionIndex;
 import com.wonkglorg.doc.core.permissions.PermissionType;
 import com.wonkglorg.doc.core.user.Group;
+import jakarta.annotation.PreDestroy;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.Path;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,10 +36,34 @@ public class PermissionService implements PermissionCalls {
 
     private final UserService userService;
     private final RepoService repoService;
+    /**
+     * The effective permissions of each user per repo, invalidated through {@link PermissionEvents}
+     */
+    private final EffectivePermissionCache permissionCache = new EffectivePermissionCache();
 
     public PermissionService(@Lazy UserService userService, RepoService repoService) {
         this.userService = userService;
         this.repoService = repoService;
+        PermissionEvents.register(permissionCache);
+    }
+
+    @PreDestroy
+    public void close() {
+        PermissionEvents.unregister(permissionCache);
+    }
+
+    /**
+     * @return the hit / miss metrics of the effective permission cache
+     */
+    public EffectivePermissionCache.Stats getPermissionCacheStats() {
+        return permissionCache.stats();
+    }
+
+    /**
+     * @return a value that changes whenever the permissions of any user could have changed
+     */
+    public long permissionGeneration() {
+        return permissionCache.generation();
     }
 
     /**
@@ -49,130 +77,166 @@ public class PermissionService implements PermissionCalls {
      * @throws InvalidUserException if the user is invalid
      */
     public List<Resource> filterResources(RepoId repoId, UserId userId, List<Resource> resources) throws ClientException, CoreException {
-        repoService.validateRepoId(repoId);
-        userService.validateUser(userId);
-        Set<Group> groupsFromUser = userService.getGroupsFromUser(userId);
-
-        Set<Permission<UserId>> permissions = getPermissionsForUser(repoId, userId);
-        Set<Permission<GroupId>> groupPermissions = new HashSet<>();
-        for (Group group : groupsFromUser) {
-            groupPermissions.addAll(getPermissionsForGroup(repoId, group.getId()));
-        }
-
-        Map<Path, PermissionType> permissionTypeMap = Permission.filterPathsWithPermissions(permissions,
-                groupPermissions,
-                resources.stream().map(Resource::resourcePath).collect(Collectors.toList()));
-
+        PermissionIndex index = permissionIndex(repoId, userId);
         for (Resource resource : resources) {
-            PermissionType permission = permissionTypeMap.get(resource.resourcePath());
-            resource.setPermissionType(permission);
+            resource.setPermissionType(index.permissionFor(resource.resourceKey()));
         }
 
         return resources;
     }
 
-    @Override
-    public boolean addPermissionToGroup(RepoId repoId, Permission<GroupId> permission) throws ClientException {
+    /**
+     * Resolves the permission a user has for each of the given paths
+     *
+     * @param repoId the repo id
+     * @param userId the user id
+     * @param paths  the paths to resolve
+     * @return the permission for each path
+     * @throws InvalidRepoException if the repo is invalid
+     * @throws InvalidUserException if the user is invalid
+     */
+    public Map<Path, PermissionType> filterPaths(RepoId repoId, UserId userId, List<Path> paths) throws ClientException, CoreException {
+        return permissionIndex(repoId, userId).permissionsFor(paths);
+    }
+
+    /**
+     * Gets the compiled permissions of a user in a repo from the cache, building them if needed
+     *
+     * @param repoId the repo id
+     * @param userId the user id
+     * @return the permissions of the user
+     * @throws InvalidRepoException if the repo is invalid
+     * @throws InvalidUserException if the user is invalid
+     */
+    public PermissionIndex permissionIndex(RepoId repoId, UserId userId) throws ClientException, CoreException {
         repoService.validateRepoId(repoId);
-        if (!userService.groupExists(permission.id())) {
-            throw new InvalidGroupException("Group with id '%s' does not exist".formatted(permission.id()));
-        }
+        userService.validateUser(userId);
+        return permissionCache.get(repoId, userId, () -> {
+            Set<GroupId> groupIds = userService.getGroupsFromUser(userId).stream().map(Group::getId).collect(Collectors.toSet());
+            try (RepoService.Lease lease = repoService.lease(repoId)) {
+                return new EffectivePermissionCache.Entry(groupIds, lease.repo().getDatabase().permissionFunctions().buildPermissionIndex(userId, groupIds));
+            }
+        });
+    }
 
-        if (repoService.getRepo(repoId).getDatabase().permissionFunctions().groupHasPermission(permission.id(), permission.getPath())) {
-            throw new ClientException("Group with id '%s' already has permission for path '%s'".formatted(permission.id(),
-                    permission.getPath().toString()));
+    @Override
+    public boolean addPermissionToGroup(RepoId repoId, Permission<GroupId> permission) throws ClientException {
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            PermissionFunctions permissions = lease.repo().getDatabase().permissionFunctions();
+            if (!userService.groupExists(permission.id())) {
+                throw new InvalidGroupException("Group with id '%s' does not exist".formatted(permission.id()));
+            }
+
+            if (permissions.groupHasPermission(permission.id(), permission.getPath())) {
+                throw new ClientException("Group with id '%s' already has permission for path '%s'".formatted(permission.id(),
+                        permission.getPath().toString()));
+            }
+
+            return permissions.addPermissionToGroup(repoId, permission);
         }
-
-        return repoService.getRepo(repoId).getDatabase().permissionFunctions().addPermissionToGroup(repoId, permission);
     }
 
     @Override
     public boolean removePermissionFromGroup(RepoId repoId, GroupId groupId, TargetPath path) throws CoreException, ClientException {
-        repoService.validateRepoId(repoId);
-        if (!userService.groupExists(groupId)) {
-            throw new InvalidGroupException("Group with id '%s' does not exist".formatted(groupId));
-        }
-        if (!repoService.getRepo(repoId).getDatabase().permissionFunctions().groupHasPermission(groupId, path)) {
-            throw new ClientException("Group with id '%s' does not have permission for path '%s'".formatted(groupId, path));
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            PermissionFunctions permissions = lease.repo().getDatabase().permissionFunctions();
+            if (!userService.groupExists(groupId)) {
+                throw new InvalidGroupException("Group with id '%s' does not exist".formatted(groupId));
+            }
+            if (!permissions.groupHasPermission(groupId, path)) {
+                throw new ClientException("Group with id '%s' does not have permission for path '%s'".formatted(groupId, path));
+            }
+
+            return permissions.removePermissionFromGroup(repoId, groupId, path);
         }
-
-        return repoService.getRepo(repoId).getDatabase().permissionFunctions().removePermissionFromGroup(repoId, groupId, path);
     }
 
     @Override
     public boolean updatePermissionForGroup(RepoId repoId, Permission<GroupId> permission) throws ClientException {
-        repoService.validateRepoId(repoId);
-        if (!userService.groupExists(permission.id())) {
-            throw new InvalidGroupException("Group with id '%s' does not exist".formatted(permission.id()));
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            PermissionFunctions permissions = lease.repo().getDatabase().permissionFunctions();
+            if (!userService.groupExists(permission.id())) {
+                throw new InvalidGroupException("Group with id '%s' does not exist".formatted(permission.id()));
+            }
+
+            if (!permissions.groupHasPermission(permission.id(), permission.getPath())) {
+                throw new ClientException("Group with id '%s' does not have permission for path '%s'".formatted(permission.id(),
+                        permission.getPath().toString()));
+            }
+
+            if (permissions.groupHasPermission(permission.id(),
+                    permission.getPath(),
+                    permission.getPermission())) {
+                throw new ClientException("Group with id '%s' already has the permission '%s' for path '%s'".formatted(permission.id(),
+                        permission.getPermission(),
+                        permission.getPath().toString()));
+            }
+
+            return permissions.updatePermissionForGroup(repoId, permission);
         }
-
-        if (!repoService.getRepo(repoId).getDatabase().permissionFunctions().groupHasPermission(permission.id(), permission.getPath())) {
-            throw new ClientException("Group with id '%s' does not have permission for path '%s'".formatted(permission.id(),
-                    permission.getPath().toString()));
-        }
-
-        if (repoService.getRepo(repoId).getDatabase().permissionFunctions().groupHasPermission(permission.id(),
-                permission.getPath(),
-                permission.getPermission())) {
-            throw new ClientException("Group with id '%s' already has the permission '%s' for path '%s'".formatted(permission.id(),
-                    permission.getPermission(),
-                    permission.getPath().toString()));
-        }
-
-        return repoService.getRepo(repoId).getDatabase().permissionFunctions().updatePermissionForGroup(repoId, permission);
     }
 
     @Override
     public boolean addPermissionToUser(RepoId repoId, Permission<UserId> permission) throws ClientException {
-        repoService.validateRepoId(repoId);
-        userService.validateUser(permission.id());
-        if (repoService.getRepo(repoId).getDatabase().permissionFunctions().userHasPermission(permission.id(), permission.getPath())) {
-            throw new ClientException("Permission '%s' already exists for '%s' in '%s'".formatted(permission.getPath(), permission.id(), repoId));
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            PermissionFunctions permissions = lease.repo().getDatabase().permissionFunctions();
+            userService.validateUser(permission.id());
+            if (permissions.userHasPermission(permission.id(), permission.getPath())) {
+                throw new ClientException("Permission '%s' already exists for '%s' in '%s'".formatted(permission.getPath(), permission.id(), repoId));
+            }
+            return permissions.addPermissionToUser(repoId, permission);
         }
-        return repoService.getRepo(repoId).getDatabase().permissionFunctions().addPermissionToUser(repoId, permission);
     }
 
     @Override
     public boolean removePermissionFromUser(RepoId repoId, UserId userId, TargetPath path) throws ClientException {
-        repoService.validateRepoId(repoId);
-        userService.validateUser(userId);
-        if (!repoService.getRepo(repoId).getDatabase().permissionFunctions().userHasPermission(userId, path)) {
-            throw new ClientException("User '%s' does not have permission for path '%s'".formatted(userId, path));
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            PermissionFunctions permissions = lease.repo().getDatabase().permissionFunctions();
+            userService.validateUser(userId);
+            if (!permissions.userHasPermission(userId, path)) {
+                throw new ClientException("User '%s' does not have permission for path '%s'".formatted(userId, path));
+            }
+            return permissions.removePermissionFromUser(repoId, userId, path);
         }
-        return repoService.getRepo(repoId).getDatabase().permissionFunctions().removePermissionFromUser(repoId, userId, path);
     }
 
     @Override
     public boolean updatePermissionForUser(RepoId repoId, Permission<UserId> permission) throws ClientException {
-        repoService.validateRepoId(repoId);
-        userService.validateUser(permission.id());
-
-        if (!repoService.getRepo(repoId).getDatabase().permissionFunctions().userHasPermission(permission.id(), permission.getPath())) {
-            throw new ClientException("User '%s' does not have permission for path '%s'".formatted(permission.id(), permission.getPath()));
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            PermissionFunctions permissions = lease.repo().getDatabase().permissionFunctions();
+            userService.validateUser(permission.id());
+
+            if (!permissions.userHasPermission(permission.id(), permission.getPath())) {
+                throw new ClientException("User '%s' does not have permission for path '%s'".formatted(permission.id(), permission.getPath()));
+            }
+
+            if (permissions.userHasPermission(permission.id(),
+                    permission.getPath(),
+                    permission.getPermission())) {
+                throw new ClientException("User '%s' already has the permission '%s' for path '%s'".formatted(permission.id(),
+                        permission.getPermission(),
+                        permission.getPath().toString()));
+            }
+            return permissions.updatePermissionForUser(repoId, permission);
         }
-
-        if (repoService.getRepo(repoId).getDatabase().permissionFunctions().userHasPermission(permission.id(),
-                permission.getPath(),
-                permission.getPermission())) {
-            throw new ClientException("User '%s' already has the permission '%s' for path '%s'".formatted(permission.id(),
-                    permission.getPermission(),
-                    permission.getPath().toString()));
-        }
-        return repoService.getRepo(repoId).getDatabase().permissionFunctions().updatePermissionForUser(repoId, permission);
     }
 
     @Override
     public Set<Permission<UserId>> getPermissionsForUser(RepoId repoId, UserId userId) throws CoreException, ClientException {
-        repoService.validateRepoId(repoId);
-        userService.validateUser(userId);
-        return repoService.getRepo(repoId).getDatabase().permissionFunctions().getPermissionsForUser(repoId, userId);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            PermissionFunctions permissions = lease.repo().getDatabase().permissionFunctions();
+            userService.validateUser(userId);
+            return permissions.getPermissionsForUser(repoId, userId);
+        }
     }
 
     @Override
     public Set<Permission<GroupId>> getPermissionsForGroup(RepoId repoId, GroupId groupId) throws CoreException, ClientException {
-        repoService.validateRepoId(repoId);
-        userService.validateGroup(groupId);
-        return repoService.getRepo(repoId).getDatabase().permissionFunctions().getPermissionsForGroup(repoId, groupId);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            PermissionFunctions permissions = lease.repo().getDatabase().permissionFunctions();
+            userService.validateGroup(groupId);
+            return permissions.getPermissionsForGroup(repoId, groupId);
+        }
     }
 
 }
@@ -4,22 +4,35 @@ import com.wonkglorg.doc.api.properties.ProfileProperties;
 import com.wonkglorg.doc.api.properties.RepoProperties;
 import com.wonkglorg.doc.core.FileRepository;
 import com.wonkglorg.doc.core.RepoProperty;
-import com.wonkglorg.doc.core.exception.CoreException;
+import com.wonkglorg.doc.core.db.functions.ResourceFunctions;
+import com.wonkglorg.doc.core.exception.CoreSqlException;
 import com.wonkglorg.doc.core.exception.client.InvalidRepoException;
-import com.wonkglorg.doc.core.exception.client.InvalidUserException;
-import com.wonkglorg.doc.core.exception.client.ReadOnlyRepoException;
+import com.wonkglorg.doc.core.git.CommitPipeline;
+import com.wonkglorg.doc.core.git.RemoteHealth;
 import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.permissions.PermissionEvents;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.eclipse.jgit.api.errors.GitAPIException;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages all repositories
@@ -29,10 +42,38 @@ import java.util.Map;
 public class RepoService{
 	
 	private static final Logger log = LogManager.getLogger(RepoService.class);
+	/**
+	 * The longest a repository that keeps failing to load waits for its next attempt
+	 */
+	private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(10);
 	/**
 	 * A Map of all loaded repositories
 	 */
-	private final Map<RepoId, FileRepository> repositories = new HashMap<>();
+	private final Map<RepoId, FileRepository> repositories = new ConcurrentHashMap<>();
+	/**
+	 * The initialization state of every configured repository
+	 */
+	private final Map<RepoId, RepoStatus> status = new ConcurrentHashMap<>();
+	/**
+	 * When each loaded repository was last accessed in nanos, only used in lazy mode
+	 */
+	private final Map<RepoId, Long> lastAccess = new ConcurrentHashMap<>();
+	/**
+	 * Guards loading and unloading of each repository in lazy mode
+	 */
+	private final Map<RepoId, Object> loadLocks = new ConcurrentHashMap<>();
+	/**
+	 * The number of open leases on each loaded repository, only used in lazy mode
+	 */
+	private final Map<RepoId, AtomicInteger> leases = new ConcurrentHashMap<>();
+	/**
+	 * The failed loads of each repository and when its next load may be attempted, only used in lazy mode
+	 */
+	private final Map<RepoId, FailedLoad> failedLoads = new ConcurrentHashMap<>();
+	/**
+	 * Unloads idle repositories in lazy mode
+	 */
+	private ScheduledExecutorService evictionExecutor;
 	
 	private final RepoProperties properties;
 	private final ProfileProperties profileProperties;
@@ -42,35 +83,291 @@ public class RepoService{
 		this.profileProperties = profileProperties;
 	}
 	
-	public Map<RepoId, FileRepository> getRepositories() {
-		return repositories;
-	}
-	
+	/**
+	 * Initializes all repositories concurrently, up to {@link RepoProperties#getInitParallelism()} at a time. Each repository serves requests as soon as its own initialization
+	 * finished, in memory repositories and {@link RepoProperties#isAwaitInitialization()} wait for all of them before the application starts.
+	 */
 	@PostConstruct
-	public void initialize() throws GitAPIException, ReadOnlyRepoException {
+	public void initialize() {
 		log.info("Initializing RepoService");
 		repositories.clear();
+		status.clear();
+		if(properties.isLazyLoading()){
+			for(RepoProperty repoProperty : properties.getRepositories()){
+				status.put(repoProperty.getId(), new RepoStatus(RepoState.UNLOADED, Map.of(), 0, null));
+			}
+			startEviction();
+			log.info("Lazy loading enabled, {} repositories are loaded on first access", status.size());
+			return;
+		}
+		
+		for(RepoProperty repoProperty : properties.getRepositories()){
+			status.put(repoProperty.getId(), new RepoStatus(RepoState.INITIALIZING, Map.of(), 0, null));
+		}
+		
+		long start = System.nanoTime();
+		//in memory repositories share one database which locks the whole table on concurrent schema changes
+		int parallelism = profileProperties.isMemoryDatabase() ? 1 : Math.max(1, properties.getInitParallelism());
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("repo-init-", 0).factory());
+		List<CompletableFuture<Void>> initializations = new ArrayList<>();
 		for(RepoProperty repoProperty : properties.getRepositories()){
-			log.info("Adding Repo '{}'", repoProperty.getId());
-			FileRepository repository = new FileRepository(repoProperty, profileProperties.isMemoryDatabase());
-			repositories.put(repoProperty.getId(), repository);
-			try{
-				repository.initialize();
-			} catch(GitAPIException | CoreException | InvalidUserException | ReadOnlyRepoException | IOException e){
-				log.error("Failed to initialize repository '{}'", repoProperty.getId(), e);
+			initializations.add(CompletableFuture.runAsync(() -> initializeRepo(repoProperty), executor));
+		}
+		//already queued initializations still run, the threads end once all are done
+		executor.shutdown();
+		
+		CompletableFuture<Void> all = CompletableFuture.allOf(initializations.toArray(CompletableFuture[]::new)).whenComplete((result, e) -> {
+			log.info("Initialized {} of {} repositories in {}ms",
+					repositories.size(),
+					status.size(),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		});
+		if(profileProperties.isMemoryDatabase() || properties.isAwaitInitialization()){
+			all.join();
+		}
+	}
+	
+	/**
+	 * Opens and initializes a single repository and makes it available once done
+	 *
+	 * @param repoProperty the repository to initialize
+	 */
+	private void initializeRepo(RepoProperty repoProperty) {
+		log.info("Adding Repo '{}'", repoProperty.getId());
+		long start = System.nanoTime();
+		FileRepository repository = null;
+		try{
+			repository = new FileRepository(repoProperty, profileProperties.isMemoryDatabase());
+			repository.initialize();
+		} catch(Exception e){
+			log.error("Failed to initialize repository '{}'", repoProperty.getId(), e);
+			Map<String, Duration> timings = repository == null ? Map.of() : repository.getStartupTimings();
+			status.put(repoProperty.getId(), RepoStatus.of(RepoState.FAILED, timings, System.nanoTime() - start, e.getMessage()));
+			//the git repo and database opened before the failure keep their threads and connections until closed, each retry would leak another set
+			if(repository != null){
+				try{
+					repository.close();
+				} catch(Exception closeException){
+					log.error("Failed to close repository '{}' after its initialization failed", repoProperty.getId(), closeException);
+				}
+			}
+			return;
+		}
+		
+		repositories.put(repoProperty.getId(), repository);
+		RepoStatus repoStatus = RepoStatus.of(RepoState.READY, repository.getStartupTimings(), System.nanoTime() - start, null);
+		status.put(repoProperty.getId(), repoStatus);
+		log.info("Repo '{}' is ready after {}ms {}", repoProperty.getId(), repoStatus.totalMillis(), repoStatus.phaseMillis());
+	}
+	
+	/**
+	 * Leases a repository, in lazy mode the repository is loaded if it is not yet and can not be unloaded until the lease is closed
+	 *
+	 * @param repoId the id of the repository
+	 * @param load if an unloaded repository should be loaded
+	 * @return the lease or null if the repository does not exist or could not be loaded
+	 */
+	private Lease acquire(RepoId repoId, boolean load) {
+		if(repoId == null){
+			return null;
+		}
+		if(!properties.isLazyLoading()){
+			FileRepository repository = repositories.get(repoId);
+			return repository == null ? null : new Lease(repoId, repository, null);
+		}
+		if(!status.containsKey(repoId)){
+			return null;
+		}
+		//taken under the load lock so the repository can not be unloaded between looking it up and counting the lease
+		synchronized(loadLock(repoId)){
+			FileRepository repository = repositories.get(repoId);
+			if(repository == null && load){
+				repository = load(repoId);
+			}
+			if(repository == null){
+				return null;
+			}
+			AtomicInteger count = leases.computeIfAbsent(repoId, id -> new AtomicInteger());
+			count.incrementAndGet();
+			lastAccess.put(repoId, System.nanoTime());
+			return new Lease(repoId, repository, count);
+		}
+	}
+	
+	/**
+	 * Loads a repository on first access, a repository that failed to load is not retried before its backoff ran out
+	 *
+	 * @param repoId the id of the repository
+	 * @return the loaded repository or null if it failed to load
+	 */
+	private FileRepository load(RepoId repoId) {
+		synchronized(loadLock(repoId)){
+			FileRepository repository = repositories.get(repoId);
+			if(repository != null){
+				return repository;
+			}
+			FailedLoad failedLoad = failedLoads.get(repoId);
+			if(failedLoad != null && System.nanoTime() - failedLoad.retryAt() < 0){
+				return null;
+			}
+			for(RepoProperty repoProperty : properties.getRepositories()){
+				if(repoProperty.getId().equals(repoId)){
+					status.put(repoId, new RepoStatus(RepoState.INITIALIZING, Map.of(), 0, null));
+					initializeRepo(repoProperty);
+				}
+			}
+			repository = repositories.get(repoId);
+			if(repository != null){
+				failedLoads.remove(repoId);
+				return repository;
+			}
+			int failures = failedLoad == null ? 1 : failedLoad.failures() + 1;
+			long delay = retryDelay(failures).toNanos();
+			failedLoads.put(repoId, new FailedLoad(failures, System.nanoTime() + delay));
+			log.warn("Repo '{}' failed to load {} times in a row, retrying in {}ms at the earliest", repoId, failures, TimeUnit.NANOSECONDS.toMillis(delay));
+			return null;
+		}
+	}
+	
+	/**
+	 * @param failures the number of failed loads in a row
+	 * @return how long to wait before the next load, doubles with every failure up to {@link #MAX_RETRY_DELAY}
+	 */
+	private Duration retryDelay(int failures) {
+		Duration delay = properties.getFailedRetryDelay();
+		if(delay == null || !delay.isPositive()){
+			return Duration.ZERO;
+		}
+		for(int i = 1; i < failures && delay.compareTo(MAX_RETRY_DELAY) < 0; i++){
+			delay = delay.multipliedBy(2);
+		}
+		return delay.compareTo(MAX_RETRY_DELAY) < 0 ? delay : MAX_RETRY_DELAY;
+	}
+	
+	private Object loadLock(RepoId repoId) {
+		return loadLocks.computeIfAbsent(repoId, id -> new Object());
+	}
+	
+	/**
+	 * Schedules the unloading of idle repositories, in memory repositories are never unloaded as their data only exists while they are loaded
+	 */
+	private void startEviction() {
+		Duration idleTimeout = properties.getIdleTimeout();
+		if(profileProperties.isMemoryDatabase() || idleTimeout == null || !idleTimeout.isPositive()){
+			return;
+		}
+		long checkMillis = Math.max(1000, Math.min(idleTimeout.toMillis() / 2, TimeUnit.MINUTES.toMillis(1)));
+		evictionExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("repo-eviction").daemon().factory());
+		evictionExecutor.scheduleWithFixedDelay(this::unloadIdle, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Unloads every repository not accessed within {@link RepoProperties#getIdleTimeout()} and not leased by anyone, this releases its caches and database connections
+	 */
+	void unloadIdle() {
+		long idleNanos = properties.getIdleTimeout().toNanos();
+		for(RepoId repoId : List.copyOf(repositories.keySet())){
+			synchronized(loadLock(repoId)){
+				AtomicInteger count = leases.get(repoId);
+				if(count != null && count.get() > 0){
+					continue;
+				}
+				Long accessed = lastAccess.get(repoId);
+				if(accessed != null && System.nanoTime() - accessed < idleNanos){
+					continue;
+				}
+				FileRepository repository = repositories.remove(repoId);
+				if(repository == null){
+					continue;
+				}
+				lastAccess.remove(repoId);
+				leases.remove(repoId);
+				RepoStatus previous = status.get(repoId);
+				status.put(repoId, new RepoStatus(RepoState.UNLOADED, previous == null ? Map.of() : previous.phaseMillis(), 0, null));
+				PermissionEvents.repoUnloaded(repoId);
+				try{
+					repository.close();
+				} catch(Exception e){
+					log.error("Failed to close idle repository '{}'", repoId, e);
+				}
+				log.info("Unloaded idle repo '{}'", repoId);
+			}
+		}
+	}
+	
+	/**
+	 * Closes every loaded repository, each commits the edits still waiting in its commit window and tries a last push before its database is closed
+	 */
+	@PreDestroy
+	public void close() {
+		if(evictionExecutor != null){
+			evictionExecutor.shutdownNow();
+		}
+		for(RepoId repoId : List.copyOf(repositories.keySet())){
+			synchronized(loadLock(repoId)){
+				FileRepository repository = repositories.remove(repoId);
+				if(repository == null){
+					continue;
+				}
+				try{
+					repository.close();
+				} catch(Exception e){
+					log.error("Failed to close repository '{}'", repoId, e);
+				}
 			}
 		}
 	}
 	
 	/**
-	 * Gets a repository by its id
+	 * @return the initialization state and startup timings of every configured repository
+	 */
+	public Map<RepoId, RepoStatus> getStatus() {
+		return Collections.unmodifiableMap(status);
+	}
+	
+	/**
+	 * Leases a repository by its id, the repository stays loaded until the lease is closed
 	 *
 	 * @param repoId the id of the repository
-	 * @return the repository
+	 * @return the lease of the repository
+	 * @throws InvalidRepoException if the repository does not exist or could not be loaded
+	 */
+	public Lease lease(RepoId repoId) throws InvalidRepoException {
+		Lease lease = acquire(repoId, true);
+		if(lease == null){
+			throw invalidRepo(repoId);
+		}
+		return lease;
+	}
+	
+	/**
+	 * Leases every repository, in lazy mode every configured repository is loaded first. Repositories that could not be loaded are left out.
+	 *
+	 * @return the leases of all repositories in configuration order
+	 */
+	public Leases leaseAll() {
+		List<Lease> all = new ArrayList<>();
+		for(RepoProperty repoProperty : properties.getRepositories()){
+			Lease lease = acquire(repoProperty.getId(), true);
+			if(lease != null){
+				all.add(lease);
+			}
+		}
+		return new Leases(all);
+	}
+	
+	/**
+	 * Leases every repository that is currently loaded without loading the others
 	 */
-	public FileRepository getRepo(RepoId repoId) throws InvalidRepoException {
-		validateRepoId(repoId);
-		return repositories.get(repoId);
+	private Leases leaseLoaded() {
+		List<Lease> loaded = new ArrayList<>();
+		for(RepoId repoId : List.copyOf(repositories.keySet())){
+			Lease lease = acquire(repoId, false);
+			if(lease != null){
+				loaded.add(lease);
+			}
+		}
+		return new Leases(loaded);
 	}
 	
 	/**
@@ -82,6 +379,52 @@ public class RepoService{
 		return properties.getRepositories();
 	}
 	
+	/**
+	 * Gets the state of the background commits and pushes of every repository
+	 *
+	 * @return the commit stats by repo id, in memory repos are not included
+	 */
+	public Map<RepoId, CommitPipeline.Stats> getCommitStats() {
+		Map<RepoId, CommitPipeline.Stats> stats = new LinkedHashMap<>();
+		try(Leases loaded = leaseLoaded()){
+			for(Lease lease : loaded){
+				lease.repo().getCommitStats().ifPresent(s -> stats.put(lease.repoId(), s));
+			}
+		}
+		return stats;
+	}
+	
+	/**
+	 * Gets the size of the search indexes and the latency of each search mode of every repository
+	 *
+	 * @return the search stats by repo id
+	 * @throws CoreSqlException if the index sizes of a repo could not be read
+	 */
+	public Map<RepoId, ResourceFunctions.SearchStats> getSearchStats() throws CoreSqlException {
+		Map<RepoId, ResourceFunctions.SearchStats> stats = new LinkedHashMap<>();
+		try(Leases loaded = leaseLoaded()){
+			for(Lease lease : loaded){
+				stats.put(lease.repoId(), lease.repo().getDatabase().resourceFunctions().searchStats());
+			}
+		}
+		return stats;
+	}
+	
+	/**
+	 * Gets the health of the remote of every repository
+	 *
+	 * @return the remote status by repo id, repos without a remote are not included
+	 */
+	public Map<RepoId, RemoteHealth.Status> getRemoteStatus() {
+		Map<RepoId, RemoteHealth.Status> status = new LinkedHashMap<>();
+		try(Leases loaded = leaseLoaded()){
+			for(Lease lease : loaded){
+				lease.repo().getGitRepo().getRemoteStatus().ifPresent(s -> status.put(lease.repoId(), s));
+			}
+		}
+		return status;
+	}
+	
 	/**
 	 * Checks if a repository is valid
 	 *
@@ -92,6 +435,14 @@ public class RepoService{
 		if(repoId == null){
 			return false;
 		}
+		if(properties.isLazyLoading()){
+			Lease lease = acquire(repoId, true);
+			if(lease == null){
+				return false;
+			}
+			lease.close();
+			return true;
+		}
 		return repositories.containsKey(repoId);
 	}
 	
@@ -111,9 +462,7 @@ public class RepoService{
 		}
 		
 		RepoId id = RepoId.of(repoId);
-		if(!repositories.containsKey(id)){
-			throw new InvalidRepoException("Repo '%s' does not exist".formatted(repoId));
-		}
+		validateRepoId(id);
 		
 		return id;
 	}
@@ -129,8 +478,137 @@ public class RepoService{
 	}
 	
 	public void validateRepoId(RepoId repoId) throws InvalidRepoException {
-		if(!isValidRepo(repoId)){
-			throw new InvalidRepoException("Repo '%s' does not exist".formatted(repoId));
+		lease(repoId).close();
+	}
+	
+	/**
+	 * Describes the version of a repo or of every repo if all repos are given, the result changes whenever a resource, tag or permission of any included repo changes
+	 *
+	 * @param repoId the repo id or {@link RepoId#ALL_REPOS}
+	 * @return the version of the repos
+	 * @throws InvalidRepoException if the repo does not exist
+	 */
+	public String getVersion(RepoId repoId) throws InvalidRepoException {
+		if(!repoId.isAllRepos()){
+			try(Lease lease = lease(repoId)){
+				return repoId + "=" + lease.repo().getDatabase().version();
+			}
+		}
+		StringBuilder version = new StringBuilder();
+		try(Leases all = leaseAll()){
+			for(Lease lease : all){
+				version.append(lease.repoId()).append('=').append(lease.repo().getDatabase().version()).append(',');
+			}
+		}
+		return version.toString();
+	}
+	
+	private InvalidRepoException invalidRepo(RepoId repoId) {
+		RepoStatus repoStatus = repoId == null ? null : status.get(repoId);
+		if(repoStatus != null && repoStatus.state() == RepoState.INITIALIZING){
+			return new InvalidRepoException("Repo '%s' is still initializing".formatted(repoId));
+		}
+		if(repoStatus != null && repoStatus.state() == RepoState.FAILED){
+			return new InvalidRepoException("Repo '%s' failed to initialize".formatted(repoId));
+		}
+		return new InvalidRepoException("Repo '%s' does not exist".formatted(repoId));
+	}
+	
+	/**
+	 * Keeps a repository loaded while it is used, lazily loaded repositories are only unloaded once all their leases are closed. Closing a lease more than once has no
+	 * effect.
+	 */
+	public static final class Lease implements AutoCloseable{
+		private final RepoId repoId;
+		private final FileRepository repository;
+		/**
+		 * The lease count of the repository, null if repositories are never unloaded
+		 */
+		private final AtomicInteger count;
+		private final AtomicBoolean closed = new AtomicBoolean();
+		
+		private Lease(RepoId repoId, FileRepository repository, AtomicInteger count) {
+			this.repoId = repoId;
+			this.repository = repository;
+			this.count = count;
+		}
+		
+		public RepoId repoId() {
+			return repoId;
+		}
+		
+		public FileRepository repo() {
+			return repository;
+		}
+		
+		@Override
+		public void close() {
+			if(count != null && closed.compareAndSet(false, true)){
+				count.decrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * The leases of several repositories, closing it closes all of them
+	 */
+	public static final class Leases implements AutoCloseable, Iterable<Lease>{
+		private final List<Lease> leases;
+		
+		private Leases(List<Lease> leases) {
+			this.leases = leases;
+		}
+		
+		/**
+		 * @return the leased repositories in lease order
+		 */
+		public List<FileRepository> repositories() {
+			return leases.stream().map(Lease::repo).toList();
+		}
+		
+		@Override
+		public Iterator<Lease> iterator() {
+			return leases.iterator();
+		}
+		
+		@Override
+		public void close() {
+			leases.forEach(Lease::close);
+		}
+	}
+	
+	/**
+	 * The failed loads of a repository in a row
+	 *
+	 * @param failures the number of failed loads
+	 * @param retryAt the nano time from which the next load may be attempted
+	 */
+	private record FailedLoad(int failures, long retryAt){
+	}
+	
+	public enum RepoState{
+		/**
+		 * Lazy mode only, the repository is loaded on its next access
+		 */
+		UNLOADED,
+		INITIALIZING,
+		READY,
+		FAILED
+	}
+	
+	/**
+	 * The initialization state of a repository
+	 *
+	 * @param state the state of the repository
+	 * @param phaseMillis the time spent in each startup phase in milliseconds
+	 * @param totalMillis the total time the initialization took in milliseconds
+	 * @param error the reason the initialization failed, null otherwise
+	 */
+	public record RepoStatus(RepoState state, Map<String, Long> phaseMillis, long totalMillis, String error){
+		private static RepoStatus of(RepoState state, Map<String, Duration> timings, long totalNanos, String error) {
+			Map<String, Long> phaseMillis = new LinkedHashMap<>();
+			timings.forEach((phase, duration) -> phaseMillis.put(phase, duration.toMillis()));
+			return new RepoStatus(state, phaseMillis, TimeUnit.NANOSECONDS.toMillis(totalNanos), error);
 		}
 	}
 }
@@ -1,5 +1,7 @@
 package com.wonkglorg.doc.api.service;
 
+import com.wonkglorg.doc.api.properties.RepoProperties;
+import com.wonkglorg.doc.core.RepoProperty;
 import com.wonkglorg.doc.core.FileRepository;
 import com.wonkglorg.doc.core.db.DbHelper;
 import com.wonkglorg.doc.core.exception.CoreException;
@@ -8,8 +10,12 @@ import com.wonkglorg.doc.core.exception.client.*;
 import com.wonkglorg.doc.core.interfaces.ResourceCalls;
 import com.wonkglorg.doc.core.objects.*;
 import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.permissions.PermissionIndex;
+import com.wonkglorg.doc.core.permissions.PermissionType;
 import com.wonkglorg.doc.core.request.ResourceRequest;
 import com.wonkglorg.doc.core.request.ResourceUpdateRequest;
+import com.wonkglorg.doc.core.request.SearchRequest;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Lazy;
@@ -21,7 +27,20 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static com.wonkglorg.doc.core.path.TargetPath.normalizePath;
 
@@ -36,39 +55,193 @@ public class ResourceService implements ResourceCalls {
     private final RepoService repoService;
     private final UserService userService;
     private final PermissionService permissionService;
+    /**
+     * Runs the per repo queries of requests targeting all repos
+     */
+    private final ExecutorService queryExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    /**
+     * Bounds how many repos are queried concurrently
+     */
+    private final Semaphore queryPermits;
 
-    public ResourceService(@Lazy RepoService repoService, @Lazy UserService userService, @Lazy PermissionService permissionService) {
+    public ResourceService(@Lazy RepoService repoService, @Lazy UserService userService, @Lazy PermissionService permissionService, RepoProperties repoProperties) {
         this.repoService = repoService;
         this.userService = userService;
         this.permissionService = permissionService;
+        this.queryPermits = new Semaphore(Math.max(1, repoProperties.getQueryParallelism()));
     }
 
     /**
-     * Gets a repository by its id
+     * Gets the resources matching a request, if all repos are requested every repo is queried concurrently and the results are merged in repo order
      *
      * @param request the request
-     * @return the repository
+     * @return the resources
      */
     public List<Resource> getResources(ResourceRequest request) throws CoreException, ClientException {
-        if (request.repoId().isAllRepos()) { //gets resources from all repos
-            List<Resource> allResources = new ArrayList<>();
-            for (var repo : repoService.getRepositories().values()) {
-                request.repoId(repo.getRepoProperty().getId());
-                try {
-                    List<Resource> resourcesFromRepo = getResourcesFromRepo(repo.getRepoProperty().getId(), request);
+        if (!request.repoId().isAllRepos()) {
+            return getResourcesFromRepo(request.repoId(), request);
+        }
 
-                    if (resourcesFromRepo != null && !resourcesFromRepo.isEmpty()) {
-                        allResources.addAll(resourcesFromRepo);
-                    }
+        //the repos stay leased until every query finished, cancelled queries can still be running when the merge is done
+        try (RepoService.Leases leases = repoService.leaseAll()) {
+            return getResourcesFromRepos(leases.repositories(), request);
+        }
+    }
+
+    /**
+     * Queries every given repo concurrently and merges the results in repo order
+     */
+    private List<Resource> getResourcesFromRepos(List<FileRepository> repos, ResourceRequest request) throws CoreException, ClientException {
+        int limit = request.getReturnLimit();
+        AtomicInteger collected = new AtomicInteger();
+        CompletionService<RepoResources> completionService = new ExecutorCompletionService<>(queryExecutor);
+        List<Future<RepoResources>> futures = new ArrayList<>(repos.size());
+        for (int i = 0; i < repos.size(); i++) {
+            int index = i;
+            RepoId repoId = repos.get(i).getRepoProperty().getId();
+            //every repo gets its own copy so the shared request is never modified
+            ResourceRequest repoRequest = request.copy();
+            repoRequest.repoId(repoId);
+            futures.add(completionService.submit(() -> new RepoResources(index, queryRepo(repoId, repoRequest, collected, limit))));
+        }
 
-                } catch (InvalidUserException e) {
-                    //ignore for cases where a user is not in a specify repo
+        List<List<Resource>> results = new ArrayList<>(Collections.nCopies(repos.size(), List.of()));
+        try {
+            for (int done = 0; done < futures.size(); done++) {
+                RepoResources result = completionService.take().get();
+                results.set(result.index(), result.resources());
+                if (collected.addAndGet(result.resources().size()) >= limit) {
+                    //enough results, the remaining repos are not needed anymore
+                    futures.forEach(future -> future.cancel(true));
+                    break;
                 }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CoreException("Interrupted while querying repositories", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            switch (e.getCause()) {
+                case ClientException clientException -> throw clientException;
+                case CoreException coreException -> throw coreException;
+                default -> throw new CoreException("Failed to query repositories", e.getCause());
+            }
+        }
+
+        List<Resource> allResources = new ArrayList<>();
+        for (List<Resource> resources : results) {
+            allResources.addAll(resources);
+        }
+        return allResources.size() > limit ? new ArrayList<>(allResources.subList(0, limit)) : allResources;
+    }
 
+    /**
+     * Queries a single repo as part of a request against all repos, at most {@link #queryPermits} repos are queried at the same time
+     *
+     * @param repoId    the repo to query
+     * @param request   the request for this repo
+     * @param collected the number of resources already collected from other repos
+     * @param limit     the total number of resources requested
+     * @return the resources of the repo or an empty list if the limit was already reached
+     */
+    private List<Resource> queryRepo(RepoId repoId, ResourceRequest request, AtomicInteger collected, int limit) throws ClientException, CoreException, InterruptedException {
+        queryPermits.acquire();
+        try {
+            if (collected.get() >= limit) {
+                return List.of();
             }
-            return allResources;
+            List<Resource> resources = getResourcesFromRepo(repoId, request);
+            return resources == null ? List.of() : resources;
+        } catch (InvalidUserException e) {
+            //ignore for cases where a user is not in a specify repo
+            return List.of();
+        } finally {
+            queryPermits.release();
+        }
+    }
+
+    /**
+     * The resources of a single repo together with the position of the repo in the query
+     */
+    private record RepoResources(int index, List<Resource> resources) {
+    }
+
+    @PreDestroy
+    public void close() {
+        queryExecutor.shutdownNow();
+    }
+
+    /**
+     * Passes the resources matching a request to a consumer as they are read instead of collecting them, repos are read one after another when all repos are requested
+     *
+     * @param request  the request
+     * @param consumer receives each resource
+     */
+    public void streamResources(ResourceRequest request, Consumer<Resource> consumer) throws CoreException, ClientException {
+        if (!request.repoId().isAllRepos()) {
+            streamResourcesFromRepo(request.repoId(), request, consumer);
+            return;
+        }
+
+        int remaining = request.getReturnLimit();
+        for (RepoProperty repoProperty : repoService.getProperties()) {
+            if (remaining <= 0) {
+                return;
+            }
+            if (!repoService.isValidRepo(repoProperty.getId())) {
+                continue;
+            }
+            ResourceRequest repoRequest = request.copy();
+            repoRequest.repoId(repoProperty.getId());
+            repoRequest.setReturnLimit(remaining);
+            int[] streamed = new int[1];
+            try {
+                streamResourcesFromRepo(repoRequest.repoId(), repoRequest, resource -> {
+                    streamed[0]++;
+                    consumer.accept(resource);
+                });
+            } catch (InvalidUserException e) {
+                //ignore for cases where a user is not in a specify repo
+            }
+            remaining -= streamed[0];
+        }
+    }
+
+    /**
+     * Describes everything the result of a request depends on, the result stays the same as long as the request, the resources of the requested repos and the
+     * permissions stay the same, so it can be used to tell a client its copy is still current without reading anything
+     *
+     * @param request the request
+     * @return the version of the request result
+     * @throws InvalidRepoException if the requested repo does not exist
+     */
+    public String requestVersion(ResourceRequest request) throws ClientException {
+        StringBuilder state = new StringBuilder();
+        state.append(request.getSearchTerm()).append('|').append(request.getPath()).append('|').append(request.getUserId()).append('|');
+        state.append(new TreeSet<>(request.getWhitelistTags())).append('|').append(new TreeSet<>(request.getBlacklistTags())).append('|');
+        state.append(request.isWithData()).append('|').append(request.getReturnLimit()).append('|').append(permissionService.permissionGeneration());
+        state.append('|').append(repoService.getVersion(request.repoId()));
+        return state.toString();
+    }
+
+    /**
+     * Streams the resources of a single repository with the permissions of the requesting user applied if given
+     */
+    private void streamResourcesFromRepo(RepoId repoId, ResourceRequest request, Consumer<Resource> consumer) throws ClientException, CoreException {
+        //leased for as long as the consumer writes, a slow client would otherwise let the repo be unloaded mid stream
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            FileRepository repo = lease.repo();
+            if (request.userId().isAllUsers()) {
+                repo.getDatabase().resourceFunctions().streamResources(request, consumer);
+                return;
+            }
+            PermissionIndex index = permissionService.permissionIndex(repoId, request.userId());
+            repo.getDatabase().resourceFunctions().streamResources(request, resource -> {
+                resource.setPermissionType(index.permissionFor(resource.resourceKey()));
+                consumer.accept(resource);
+            });
         }
-        return getResourcesFromRepo(request.repoId(), request);
     }
 
     /**
@@ -82,14 +255,128 @@ public class ResourceService implements ResourceCalls {
      * @throws CoreException
      */
     private List<Resource> getResourcesFromRepo(RepoId repoId, ResourceRequest request) throws ClientException, CoreException {
-        List<Resource> resources = repoService.getRepo(repoId).getDatabase().resourceFunctions().getResources(request);
+        List<Resource> resources;
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            resources = lease.repo().getDatabase().resourceFunctions().getResources(request);
+        }
         //filter resources by user permissions
         if (!request.userId().isAllUsers()) {
-            resources = permissionService.filterResources(request.repoId(), request.userId(), resources);
+            resources = permissionService.filterResources(repoId, request.userId(), resources);
         }
         return resources;
     }
 
+    /**
+     * Searches the content of resources ranked by relevance, if all repos are requested the hits of every repo are merged into a single ranking
+     *
+     * @param request the search request
+     * @return the requested page of hits
+     */
+    public SearchResult searchResources(SearchRequest request) throws CoreException, ClientException {
+        if (request.getSearchTerm() == null || request.getSearchTerm().isBlank()) {
+            throw new ClientException("A search term is required");
+        }
+
+        SearchCursor cursor;
+        try {
+            cursor = SearchCursor.decode(request.getCursor());
+        } catch (IllegalArgumentException e) {
+            throw new ClientException("Invalid search cursor '%s'".formatted(request.getCursor()));
+        }
+
+        if (!request.repoId().isAllRepos()) {
+            repoService.validateRepoId(request.repoId());
+            //a single repo without permissions to check can be paged by the database directly
+            if (request.userId().isAllUsers()) {
+                try (RepoService.Lease lease = repoService.lease(request.repoId())) {
+                    return lease.repo().getDatabase().resourceFunctions().searchResources(request);
+                }
+            }
+        } else if (!request.userId().isAllUsers()) {
+            userService.validateUser(request.userId());
+        }
+
+        int limit = Math.max(1, request.getLimit());
+        int skip = cursor == null ? Math.max(0, request.getOffset()) : 0;
+
+        List<SearchHit> hits = new ArrayList<>();
+        long totalEstimate = 0;
+        boolean exhausted = true;
+        try (RepoService.Leases leases = repoService.leaseAll()) {
+            for (FileRepository repo : leases.repositories()) {
+                RepoId repoId = repo.getRepoProperty().getId();
+                if (!request.repoId().isAllRepos() && !request.repoId().equals(repoId)) {
+                    continue;
+                }
+
+                SearchRequest repoRequest = copySearchRequest(request, repoId);
+                repoRequest.setLimit(skip + limit);
+                repoRequest.setOffset(0);
+
+                int collected = 0;
+                boolean first = true;
+                while (collected < skip + limit) {
+                    SearchResult result = repo.getDatabase().resourceFunctions().searchResources(repoRequest);
+                    if (first) {
+                        totalEstimate += result.totalEstimate();
+                        first = false;
+                    }
+                    List<SearchHit> permitted = filterHits(repoId, request.userId(), result.hits());
+                    hits.addAll(permitted);
+                    collected += permitted.size();
+                    if (result.nextCursor() == null) {
+                        break;
+                    }
+                    if (collected >= skip + limit) {
+                        exhausted = false;
+                        break;
+                    }
+                    repoRequest.setCursor(result.nextCursor());
+                }
+            }
+        }
+
+        hits.sort(Comparator.comparingDouble(SearchHit::score).thenComparing(hit -> hit.repoId().id()).thenComparing(hit -> hit.resourcePath().toString()));
+
+        List<SearchHit> page = hits.subList(Math.min(skip, hits.size()), Math.min(skip + limit, hits.size()));
+        boolean hasMore = !exhausted || hits.size() > skip + limit;
+        String nextCursor = hasMore && !page.isEmpty() ? SearchCursor.after(page.getLast()).encode() : null;
+        return new SearchResult(new ArrayList<>(page), totalEstimate, nextCursor);
+    }
+
+    /**
+     * Removes all hits the user has no access to
+     *
+     * @param repoId the repo the hits are from
+     * @param userId the user to filter for
+     * @param hits   the hits to filter
+     * @return the hits the user is allowed to see
+     */
+    private List<SearchHit> filterHits(RepoId repoId, UserId userId, List<SearchHit> hits) throws ClientException, CoreException {
+        if (userId.isAllUsers() || hits.isEmpty()) {
+            return hits;
+        }
+        Map<Path, PermissionType> permissions = permissionService.filterPaths(repoId, userId, hits.stream().map(SearchHit::resourcePath).toList());
+        return hits.stream().filter(hit -> {
+            PermissionType type = permissions.get(hit.resourcePath());
+            return type != null && type != PermissionType.DENY;
+        }).toList();
+    }
+
+    private SearchRequest copySearchRequest(SearchRequest request, RepoId repoId) {
+        SearchRequest copy = new SearchRequest(request.getSearchTerm(),
+                request.targetPath(),
+                repoId,
+                request.userId(),
+                request.getLimit(),
+                request.getOffset(),
+                request.getCursor());
+        copy.setExcerptTokens(request.getExcerptTokens());
+        copy.setHighlightStart(request.getHighlightStart());
+        copy.setHighlightEnd(request.getHighlightEnd());
+        return copy;
+    }
+
     /**
      * Checks if a tag exists
      *
@@ -98,8 +385,8 @@ public class ResourceService implements ResourceCalls {
      * @return true if the tag exists
      */
     public boolean tagExists(RepoId repoId, TagId tagId) {
-        try {
-            return repoService.getRepo(repoId).getDatabase().resourceFunctions().tagExists(repoId, tagId);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            return lease.repo().getDatabase().resourceFunctions().tagExists(repoId, tagId);
         } catch (InvalidRepoException e) {
             return false;
         }
@@ -136,12 +423,16 @@ public class ResourceService implements ResourceCalls {
     public List<Tag> getTags(RepoId repoId) throws InvalidRepoException {
         List<Tag> tags = new ArrayList<>();
         if (repoId.isAllRepos()) {
-            for (var repo : repoService.getRepositories().values()) {
-                tags.addAll(repo.getDatabase().resourceFunctions().getTags(repoId));
+            try (RepoService.Leases leases = repoService.leaseAll()) {
+                for (FileRepository repo : leases.repositories()) {
+                    tags.addAll(repo.getDatabase().resourceFunctions().getTags(repoId));
+                }
             }
             return tags;
         }
-        return repoService.getRepo(repoId).getDatabase().resourceFunctions().getTags(repoId);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            return lease.repo().getDatabase().resourceFunctions().getTags(repoId);
+        }
     }
 
     /**
@@ -159,10 +450,12 @@ public class ResourceService implements ResourceCalls {
         if (resourceExists(id, path)) {
             throw new ClientException("The resource '%s' already exists in repository '%s'".formatted(normalizePath(path.toString()), id));
         }
-        FileRepository repo = repoService.getRepo(id);
-        repo.checkTags(resource.getResourceTags());
-        repo.getDatabase().resourceFunctions().insertResource(resource);
-        repo.addResourceAndCommit(resource);
+        try (RepoService.Lease lease = repoService.lease(id)) {
+            FileRepository repo = lease.repo();
+            repo.checkTags(resource.getResourceTags());
+            repo.getDatabase().resourceFunctions().insertResource(resource);
+            repo.addResourceAndCommit(resource);
+        }
     }
 
     /**
@@ -188,17 +481,19 @@ public class ResourceService implements ResourceCalls {
             throw new ClientException("Resource '%s' in '%s' is currently being edited".formatted(normalizePath(path.toString()), repoId));
         }
 
-        FileRepository repo = repoService.getRepo(repoId);
-        repo.getDatabase().resourceFunctions().removeResource(repoId, path);
-        if (Files.exists(repo.getRepoProperty().getPath().resolve(path))) {
-            try {
-                Files.delete((repo.getRepoProperty().getPath().resolve(path)));
-                return false;
-            } catch (IOException e) {
-                throw new CoreException("Failed to delete resource '%s'".formatted(normalizePath(path.toString())), e);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            FileRepository repo = lease.repo();
+            repo.getDatabase().resourceFunctions().removeResource(repoId, path);
+            if (Files.exists(repo.getRepoProperty().getPath().resolve(path))) {
+                try {
+                    Files.delete((repo.getRepoProperty().getPath().resolve(path)));
+                    return false;
+                } catch (IOException e) {
+                    throw new CoreException("Failed to delete resource '%s'".formatted(normalizePath(path.toString())), e);
+                }
             }
+            return true;
         }
-        return true;
     }
 
     /**
@@ -216,64 +511,66 @@ public class ResourceService implements ResourceCalls {
         repoService.validateRepoId(repoFrom);
         repoService.validateRepoId(repoTo);
 
-        FileRepository fileRepoFrom = repoService.getRepo(repoFrom);
-        FileRepository fileRepoTo = repoService.getRepo(repoTo);
-
-        if (fileRepoFrom.getRepoProperty().isReadOnly()) {
-            throw new ReadOnlyRepoException("Repo '%s' is read only and cannot be edited!".formatted(repoFrom));
-        }
-
-        if (fileRepoTo.getRepoProperty().isReadOnly()) {
-            throw new ReadOnlyRepoException("Repo '%s' is read only and cannot be edited!".formatted(repoTo));
-        }
+        try (RepoService.Lease leaseFrom = repoService.lease(repoFrom); RepoService.Lease leaseTo = repoService.lease(repoTo)) {
+            FileRepository fileRepoFrom = leaseFrom.repo();
+            FileRepository fileRepoTo = leaseTo.repo();
 
-        //validate users in both repos
-        userService.validateUser(userId);
-
-        pathFrom = normalizePath(pathFrom);
-        pathTo = normalizePath(pathTo);
-
-        if (!resourceExists(repoFrom, pathFrom)) {
-            throw new ResourceException("Can't move a non existing resource '%s' in '%S'".formatted(pathFrom, repoFrom));
-        }
+            if (fileRepoFrom.getRepoProperty().isReadOnly()) {
+                throw new ReadOnlyRepoException("Repo '%s' is read only and cannot be edited!".formatted(repoFrom));
+            }
 
-        if (isBeingEdited(repoFrom, pathFrom)) {
-            throw new CoreSqlException("Resource '%s' in '%s' is currently being edited and cannot be updated!".formatted(pathFrom, repoFrom));
-        }
+            if (fileRepoTo.getRepoProperty().isReadOnly()) {
+                throw new ReadOnlyRepoException("Repo '%s' is read only and cannot be edited!".formatted(repoTo));
+            }
 
-        if (resourceExists(repoTo, pathTo)) {
-            throw new ResourceException("Resource '%s' already exists in target '%s'".formatted(pathTo, repoTo));
-        }
+            //validate users in both repos
+            userService.validateUser(userId);
 
-        log.info("Moving resource '%s' from '%s' to '%s' repo '%s'".formatted(pathFrom, repoFrom, pathTo, repoTo));
+            pathFrom = normalizePath(pathFrom);
+            pathTo = normalizePath(pathTo);
 
-        ResourceRequest request = new ResourceRequest();
-        request.setPath(pathFrom.toString());
-        request.setWithData(true);
-        request.repoId(repoFrom);
+            if (!resourceExists(repoFrom, pathFrom)) {
+                throw new ResourceException("Can't move a non existing resource '%s' in '%S'".formatted(pathFrom, repoFrom));
+            }
 
-        Resource oldResource = fileRepoFrom.getDatabase().resourceFunctions().getResources(request).stream().findFirst().orElseThrow();
-        Resource resourceToInsert = new Resource(pathTo,
-                oldResource.createdAt(),
-                oldResource.createdBy(),
-                LocalDateTime.now(),
-                userId.id(),
-                repoTo,
-                oldResource.getResourceTags(),
-                oldResource.category(),
-                oldResource.data());
+            if (isBeingEdited(repoFrom, pathFrom)) {
+                throw new CoreSqlException("Resource '%s' in '%s' is currently being edited and cannot be updated!".formatted(pathFrom, repoFrom));
+            }
 
-        fileRepoTo.getDatabase().resourceFunctions().insertResource(resourceToInsert);
-        fileRepoTo.addResourceAndCommit(resourceToInsert);
-        fileRepoFrom.getDatabase().resourceFunctions().removeResource(repoFrom, normalizePath(pathFrom));
-        fileRepoFrom.removeResourceAndCommit(userId, pathFrom);
+            if (resourceExists(repoTo, pathTo)) {
+                throw new ResourceException("Resource '%s' already exists in target '%s'".formatted(pathTo, repoTo));
+            }
 
-        ResourceRequest returnRequest = new ResourceRequest();
-        returnRequest.setPath(pathTo.toString());
-        returnRequest.setWithData(true);
-        returnRequest.repoId(repoTo);
-        log.info("Resource '%s' in '%s' moved to '%s' in '%s'".formatted(pathFrom, repoFrom, pathTo, repoTo));
-        return fileRepoTo.getDatabase().resourceFunctions().getResources(returnRequest).stream().findFirst().orElseThrow();
+            log.info("Moving resource '%s' from '%s' to '%s' repo '%s'".formatted(pathFrom, repoFrom, pathTo, repoTo));
+
+            ResourceRequest request = new ResourceRequest();
+            request.setPath(pathFrom.toString());
+            request.setWithData(true);
+            request.repoId(repoFrom);
+
+            Resource oldResource = fileRepoFrom.getDatabase().resourceFunctions().getResources(request).stream().findFirst().orElseThrow();
+            Resource resourceToInsert = new Resource(pathTo,
+                    oldResource.createdAt(),
+                    oldResource.createdBy(),
+                    LocalDateTime.now(),
+                    userId.id(),
+                    repoTo,
+                    oldResource.getResourceTags(),
+                    oldResource.category(),
+                    oldResource.data());
+
+            fileRepoTo.getDatabase().resourceFunctions().insertResource(resourceToInsert);
+            fileRepoTo.addResourceAndCommit(resourceToInsert);
+            fileRepoFrom.getDatabase().resourceFunctions().removeResource(repoFrom, normalizePath(pathFrom));
+            fileRepoFrom.removeResourceAndCommit(userId, pathFrom);
+
+            ResourceRequest returnRequest = new ResourceRequest();
+            returnRequest.setPath(pathTo.toString());
+            returnRequest.setWithData(true);
+            returnRequest.repoId(repoTo);
+            log.info("Resource '%s' in '%s' moved to '%s' in '%s'".formatted(pathFrom, repoFrom, pathTo, repoTo));
+            return fileRepoTo.getDatabase().resourceFunctions().getResources(returnRequest).stream().findFirst().orElseThrow();
+        }
     }
 
     /**
@@ -289,7 +586,6 @@ public class ResourceService implements ResourceCalls {
         Path path = request.path();
         DbHelper.validatePath(path);
         DbHelper.validateFileType(path);
-        FileRepository repo = repoService.getRepo(id);
         if (!resourceExists(id, path)) {
             throw new InvalidResourceException("Resource '%s' does not exist in repository '%s'".formatted(path, id));
         }
@@ -299,13 +595,16 @@ public class ResourceService implements ResourceCalls {
                     id));
         }
 
-        repo.checkTags(request.tagsToSet());
-        repo.checkTags(request.tagsToAdd());
-        repo.checkTags(request.tagsToRemove());
+        try (RepoService.Lease lease = repoService.lease(id)) {
+            FileRepository repo = lease.repo();
+            repo.checkTags(request.tagsToSet());
+            repo.checkTags(request.tagsToAdd());
+            repo.checkTags(request.tagsToRemove());
 
-        Resource resource = repo.getDatabase().resourceFunctions().updateResource(request);
-        repo.addResourceAndCommit(resource);
-        return resource;
+            Resource resource = repo.getDatabase().resourceFunctions().updateResource(request);
+            repo.addResourceAndCommit(resource);
+            return resource;
+        }
     }
 
     @Override
@@ -314,7 +613,9 @@ public class ResourceService implements ResourceCalls {
             throw new InvalidRepoException("Repo '%s' does not exist".formatted(repoId));
         }
 
-        return repoService.getRepo(repoId).getDatabase().resourceFunctions().resourceExists(repoId, path);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            return lease.repo().getDatabase().resourceFunctions().resourceExists(repoId, path);
+        }
     }
 
     @Override
@@ -332,7 +633,9 @@ public class ResourceService implements ResourceCalls {
             throw new CoreSqlException("Resource '%s' in '%s' is currently being edited and cannot be moved!".formatted(oldPath, repoId));
         }
 
-        return repoService.getRepo(repoId).getDatabase().resourceFunctions().moveResource(repoId, oldPath, newPath);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            return lease.repo().getDatabase().resourceFunctions().moveResource(repoId, oldPath, newPath);
+        }
 
     }
 
@@ -340,7 +643,9 @@ public class ResourceService implements ResourceCalls {
     public UserId getEditingUser(RepoId repoId, Path path) throws InvalidResourceException, InvalidRepoException {
         repoService.validateRepoId(repoId);
         validateResource(repoId, path);
-        return repoService.getRepo(repoId).getDatabase().resourceFunctions().getEditingUser(repoId, path);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            return lease.repo().getDatabase().resourceFunctions().getEditingUser(repoId, path);
+        }
     }
 
     /**
@@ -369,7 +674,9 @@ public class ResourceService implements ResourceCalls {
             throw new InvalidUserException("User '%s' does not exist in repository '%s'".formatted(userId, id));
         }
 
-        return repoService.getRepo(id).getDatabase().resourceFunctions().isUserEditing(id, userId);
+        try (RepoService.Lease lease = repoService.lease(id)) {
+            return lease.repo().getDatabase().resourceFunctions().isUserEditing(id, userId);
+        }
     }
 
     @Override
@@ -380,7 +687,9 @@ public class ResourceService implements ResourceCalls {
         if (isBeingEdited(repoId, path)) {
             throw new ClientException("Resource '%s' in '%s' is already being edited by '%s'".formatted(path, repoId, userId));
         }
-        repoService.getRepo(repoId).getDatabase().resourceFunctions().setCurrentlyEdited(repoId, userId, path);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            lease.repo().getDatabase().resourceFunctions().setCurrentlyEdited(repoId, userId, path);
+        }
     }
 
     /**
@@ -406,7 +715,9 @@ public class ResourceService implements ResourceCalls {
         if (!isUserEditing(repoId, userId)) {
             throw new InvalidUserException("User '%s' is not currently editing anything".formatted(userId));
         }
-        repoService.getRepo(repoId).getDatabase().resourceFunctions().removeCurrentlyEdited(repoId, userId);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            lease.repo().getDatabase().resourceFunctions().removeCurrentlyEdited(repoId, userId);
+        }
     }
 
     @Override
@@ -417,7 +728,9 @@ public class ResourceService implements ResourceCalls {
         if (!isBeingEdited(id, path)) {
             throw new InvalidResourceException("Resource '%s' in '%s' is not currently being edited".formatted(path, id));
         }
-        repoService.getRepo(id).getDatabase().resourceFunctions().removeCurrentlyEdited(id, path);
+        try (RepoService.Lease lease = repoService.lease(id)) {
+            lease.repo().getDatabase().resourceFunctions().removeCurrentlyEdited(id, path);
+        }
     }
 
     @Override
@@ -441,15 +754,17 @@ public class ResourceService implements ResourceCalls {
         if (tagExists(repoId, tag.tagId())) {
             throw new ClientException("Tag '%s' already exists in repository '%s'".formatted(tag.tagId(), repoId));
         }
-        FileRepository repo = repoService.getRepo(repoId);
-        repo.getDatabase().resourceFunctions().createTag(repoId, tag);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            lease.repo().getDatabase().resourceFunctions().createTag(repoId, tag);
+        }
     }
 
     @Override
     public void removeTag(RepoId repoId, TagId tagId) throws CoreSqlException, InvalidRepoException, InvalidTagException {
         repoService.validateRepoId(repoId);
         validateTagId(repoId, tagId);
-        FileRepository repo = repoService.getRepo(repoId);
-        repo.getDatabase().resourceFunctions().removeTag(repoId, tagId);
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            lease.repo().getDatabase().resourceFunctions().removeTag(repoId, tagId);
+        }
     }
 }
@@ -56,13 +56,22 @@ public class UserService implements UserCalls, GroupCalls{
 		validateUser(userId);
 		
 		//removes all related permissions from any repo referencing this user
-		for(var repo : repoService.getRepositories().values()){
-			repo.getDatabase().permissionFunctions().cleanUpUser(userId);
+		try(RepoService.Leases leases = repoService.leaseAll()){
+			for(var repo : leases.repositories()){
+				repo.getDatabase().permissionFunctions().cleanUpUser(userId);
+			}
 		}
 		
 		return getUserDB().removeUser(userId);
 	}
 	
+	/**
+	 * @return the version of the users and groups, changes whenever a user, group, membership or role changes
+	 */
+	public long version() {
+		return getUserDB().version();
+	}
+	
 	@Override
 	public List<UserProfile> getUsers() {
 		return getUserDB().getUsers();
@@ -124,8 +133,10 @@ public class UserService implements UserCalls, GroupCalls{
 	public boolean removeGroup(GroupId groupId) throws InvalidGroupException {
 		validateGroup(groupId);
 		
-		for(var repo : repoService.getRepositories().values()){
-			repo.getDatabase().permissionFunctions().cleanUpGroup(groupId);
+		try(RepoService.Leases leases = repoService.leaseAll()){
+			for(var repo : leases.repositories()){
+				repo.getDatabase().permissionFunctions().cleanUpGroup(groupId);
+			}
 		}
 		
 		return getUserDB().removeGroup(groupId);
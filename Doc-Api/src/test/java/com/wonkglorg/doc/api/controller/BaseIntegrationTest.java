@@ -46,8 +46,10 @@ public class BaseIntegrationTest{
 		if(!deleteOnExit){
 			return;
 		}
-		for(RepoId repoId : repoService.getRepositories().keySet()){
-			repositories.put(repoId, repoService.getRepositories().get(repoId));
+		try(RepoService.Leases leases = repoService.leaseAll()){
+			for(RepoService.Lease lease : leases){
+				repositories.put(lease.repoId(), lease.repo());
+			}
 		}
 	}
 }
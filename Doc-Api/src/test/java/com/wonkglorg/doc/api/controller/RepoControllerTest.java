@@ -1,5 +1,6 @@
 package com.wonkglorg.doc.api.controller;
 
+import com.wonkglorg.doc.api.service.RepoService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,4 +33,19 @@ class RepoControllerTest extends BaseIntegrationTest{
         RestResponse restResponse = request.getForObject("/api/repo/get", RestResponse.class);
         Assertions.assertNotNull(restResponse);
     }
+    
+    @Test
+    void allReposReadyAfterStartup() {
+        Assertions.assertFalse(repoService.getStatus().isEmpty());
+        for (var status : repoService.getStatus().values()) {
+            Assertions.assertEquals(RepoService.RepoState.READY, status.state());
+            Assertions.assertFalse(status.phaseMillis().isEmpty());
+        }
+        try (RepoService.Leases leases = repoService.leaseAll()) {
+            Assertions.assertEquals(repoService.getStatus().size(), leases.repositories().size());
+        }
+        
+        RestResponse restResponse = request.getForObject("/api/repo/status", RestResponse.class);
+        Assertions.assertNotNull(restResponse);
+    }
 }
@@ -14,7 +14,7 @@ class ResourceControllerTagTest extends BaseIntegrationTest{
 	
 	@Test
 	void testInsertResource() {
-		RepoId repoId = repoService.getRepositories().keySet().iterator().next();
+		RepoId repoId = repoService.getProperties().getFirst().getId();
 		
 		//can't fail otherwise removetag did not work
 		addTag(repoId.id(), "tag1", "Tag Name", true);
@@ -1,5 +1,8 @@
 package com.wonkglorg.doc.api.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wonkglorg.doc.api.service.ResourceService;
 import com.wonkglorg.doc.core.objects.RepoId;
 import com.wonkglorg.doc.core.objects.UserId;
 import com.wonkglorg.doc.core.request.ResourceRequest;
@@ -7,19 +10,36 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.web.SecurityFilterChain;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 class ResourceControllerTest extends BaseIntegrationTest{
 	private static final Logger log = LoggerFactory.getLogger(ResourceControllerTest.class);
 	public String token;
+	@Autowired
+	private ResourceService resourceService;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private CacheManager cacheManager;
 	
 	public ResourceControllerTest() {
 		super(false);
@@ -28,7 +48,7 @@ class ResourceControllerTest extends BaseIntegrationTest{
 	@Test
 	void testGetResources() {
 		
-		RepoId repoId = repoService.getRepositories().keySet().iterator().next();
+		RepoId repoId = repoService.getProperties().getFirst().getId();
 		
 		ResourceRequest validRequestWithWrongRepo = new ResourceRequest();
 		validRequestWithWrongRepo.setRepoId("test");
@@ -44,13 +64,99 @@ class ResourceControllerTest extends BaseIntegrationTest{
 		Assertions.assertEquals(null, request.postForObject("/api/resource/get", validRequest, RestResponse.class).error());
 	}
 	
+	@Test
+	void testGetResourcesFromAllRepos() throws Exception {
+		ResourceRequest allRepos = new ResourceRequest(null, null, RepoId.ALL_REPOS, null, null, null, false, 1);
+		Assertions.assertNull(request.postForObject("/api/resource/get", allRepos, RestResponse.class).error());
+		Assertions.assertTrue(resourceService.getResources(allRepos).size() <= 1);
+		//the request itself is not modified by querying each repo
+		Assertions.assertEquals(RepoId.ALL_REPOS, allRepos.repoId());
+	}
+	
+	@Test
+	void streamResources() throws Exception {
+		RepoId first = repoService.getProperties().getFirst().getId();
+		request.postForObject("/api/resource/add?repoId=%s&path=stream/a.md&createdBy=test".formatted(first), "Streamed A", RestResponse.class);
+		request.postForObject("/api/resource/add?repoId=%s&path=stream/nested/b.md&createdBy=test".formatted(first), "Streamed B", RestResponse.class);
+		
+		ResourceRequest streamRequest = new ResourceRequest(null, null, first, null, null, null, true, 10);
+		streamRequest.setPath("stream/**");
+		List<JsonNode> resources = streamLines("/api/resource/get/stream", streamRequest);
+		Assertions.assertEquals(Set.of("stream\\a.md", "stream\\nested\\b.md"),
+				resources.stream().map(node -> node.get("path").asText()).collect(Collectors.toSet()));
+		Assertions.assertTrue(resources.stream().anyMatch(node -> node.get("data").asText().equals("Streamed A")));
+		
+		List<JsonNode> entries = streamLines("/api/resource/get/filetree/stream", streamRequest);
+		Assertions.assertEquals(Set.of("[\"stream\"]", "[\"stream\",\"nested\"]"),
+				entries.stream().map(node -> node.get("directories").toString()).collect(Collectors.toSet()));
+		
+		//errors are written as the last line
+		ResourceRequest wrongRepo = new ResourceRequest();
+		wrongRepo.setRepoId("test");
+		List<JsonNode> error = streamLines("/api/resource/get/stream", wrongRepo);
+		Assertions.assertEquals("Repo 'test' does not exist", error.getLast().get("error").asText());
+	}
+	
+	@Test
+	void filetreeNotModified() {
+		RepoId first = repoService.getProperties().getFirst().getId();
+		request.postForObject("/api/resource/add?repoId=%s&path=etag/a.md&createdBy=test".formatted(first), "ETag A", RestResponse.class);
+		ResourceRequest treeRequest = new ResourceRequest(null, null, first, null, null, null, false, 10);
+		treeRequest.setPath("etag/**");
+		
+		ResponseEntity<String> full = filetree(treeRequest, null);
+		Assertions.assertEquals(HttpStatus.OK, full.getStatusCode());
+		String eTag = full.getHeaders().getETag();
+		Assertions.assertNotNull(eTag);
+		
+		ResponseEntity<String> unchanged = filetree(treeRequest, eTag);
+		Assertions.assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+		Assertions.assertNull(unchanged.getBody());
+		
+		//a client without the tag gets the tree built for the first request
+		Assertions.assertNotNull(cacheManager.getCache(ApiResourceController.FILE_TREE_CACHE).get(eTag));
+		ResponseEntity<String> cached = filetree(treeRequest, null);
+		Assertions.assertEquals(full.getBody(), cached.getBody());
+		Assertions.assertEquals(eTag, cached.getHeaders().getETag());
+		
+		//a different request is not answered by the same tag
+		treeRequest.setWithData(true);
+		Assertions.assertEquals(HttpStatus.OK, filetree(treeRequest, eTag).getStatusCode());
+		treeRequest.setWithData(false);
+		
+		request.postForObject("/api/resource/add?repoId=%s&path=etag/b.md&createdBy=test".formatted(first), "ETag B", RestResponse.class);
+		ResponseEntity<String> changed = filetree(treeRequest, eTag);
+		Assertions.assertEquals(HttpStatus.OK, changed.getStatusCode());
+		Assertions.assertNotEquals(eTag, changed.getHeaders().getETag());
+		Assertions.assertTrue(changed.getBody().contains("b.md"));
+	}
+	
+	private ResponseEntity<String> filetree(ResourceRequest treeRequest, String eTag) {
+		HttpHeaders headers = new HttpHeaders();
+		if(eTag != null){
+			headers.setIfNoneMatch(eTag);
+		}
+		return request.exchange("/api/resource/get/filetree", HttpMethod.POST, new HttpEntity<>(treeRequest, headers), String.class);
+	}
+	
+	private List<JsonNode> streamLines(String url, ResourceRequest resourceRequest) throws Exception {
+		String body = request.postForObject(url, resourceRequest, String.class);
+		List<JsonNode> lines = new ArrayList<>();
+		for(String line : body.split("\n")){
+			if(!line.isBlank()){
+				lines.add(objectMapper.readTree(line));
+			}
+		}
+		return lines;
+	}
+	
 	private void delete(String repoId, Path path) {
 		request.postForObject("/api/resource/remove?repoId=" + repoId + "&path=" + path.toString(), null, RestResponse.class);
 	}
 	
 	@Test
 	void addResources() {
-		RepoId first = repoService.getRepositories().keySet().stream().findFirst().get();
+		RepoId first = repoService.getProperties().getFirst().getId();
 		
 		//should fail duo to missing required parameters
 		Assertions.assertEquals("Repo 'test' does not exist",
@@ -80,7 +186,7 @@ class ResourceControllerTest extends BaseIntegrationTest{
 	@Test
 	void removeResources() {
 		
-		RepoId first = repoService.getRepositories().keySet().stream().findFirst().get();
+		RepoId first = repoService.getProperties().getFirst().getId();
 		//should fail duo to missing required parameters
 		Assertions.assertEquals("Repo 'test' does not exist",
 				request.postForObject("/api/resource/remove?repoId=test&path=test", null, RestResponse.class).error());
@@ -1,13 +1,47 @@
 package com.wonkglorg.doc.api.controller;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
-class UserControllerTest {
+class UserControllerTest extends BaseIntegrationTest {
 
-    @Autowired
-    private TestRestTemplate restTemplate;
+    public UserControllerTest() {
+        super(false);
+    }
 
+    @Test
+    void usersNotModified() {
+        ResponseEntity<String> full = get("/api/user/get", null);
+        Assertions.assertEquals(HttpStatus.OK, full.getStatusCode());
+        String eTag = full.getHeaders().getETag();
+        Assertions.assertNotNull(eTag);
+
+        ResponseEntity<String> unchanged = get("/api/user/get", eTag);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+        Assertions.assertNull(unchanged.getBody());
+
+        request.postForObject("/api/user/add?userId=etagUser&password=secret", null, RestResponse.class);
+        ResponseEntity<String> changed = get("/api/user/get", eTag);
+        Assertions.assertEquals(HttpStatus.OK, changed.getStatusCode());
+        Assertions.assertTrue(changed.getBody().contains("etagUser"));
+
+        //groups share the version of the users
+        String groupTag = get("/api/group/get", null).getHeaders().getETag();
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, get("/api/group/get", groupTag).getStatusCode());
+        request.postForObject("/api/group/add?groupId=etagGroup&groupName=ETag", null, RestResponse.class);
+        Assertions.assertEquals(HttpStatus.OK, get("/api/group/get", groupTag).getStatusCode());
+    }
+
+    private ResponseEntity<String> get(String url, String eTag) {
+        HttpHeaders headers = new HttpHeaders();
+        if (eTag != null) {
+            headers.setIfNoneMatch(eTag);
+        }
+        return request.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
 }
@@ -0,0 +1,108 @@
+package com.wonkglorg.doc.api.service;
+
+import com.wonkglorg.doc.api.properties.ProfileProperties;
+import com.wonkglorg.doc.api.properties.RepoProperties;
+import com.wonkglorg.doc.core.FileRepository;
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.exception.client.InvalidRepoException;
+import com.wonkglorg.doc.core.objects.RepoId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+class RepoServiceLazyTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadsOnFirstAccessAndUnloadsWhenIdle() throws InvalidRepoException {
+        RepoId repoId = RepoId.of("lazyRepo");
+        RepoService repoService = lazyRepoService(repoId, Path.of("test-temp", "git", "lazyRepo"));
+        Assertions.assertEquals(RepoService.RepoState.UNLOADED, repoService.getStatus().get(repoId).state());
+
+        FileRepository repository;
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            repository = lease.repo();
+        }
+        Assertions.assertNotNull(repository);
+        Assertions.assertEquals(RepoService.RepoState.READY, repoService.getStatus().get(repoId).state());
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            Assertions.assertSame(repository, lease.repo());
+        }
+
+        String version = repoService.getVersion(repoId);
+
+        repoService.unloadIdle();
+        Assertions.assertEquals(RepoService.RepoState.UNLOADED, repoService.getStatus().get(repoId).state());
+
+        //the next access opens the repository again, without repeating the versions handed out before
+        try (RepoService.Lease lease = repoService.lease(repoId)) {
+            Assertions.assertNotSame(repository, lease.repo());
+        }
+        Assertions.assertNotEquals(version, repoService.getVersion(repoId));
+        Assertions.assertThrows(InvalidRepoException.class, () -> repoService.lease(RepoId.of("unknownRepo")));
+        repoService.close();
+    }
+
+    @Test
+    void leasedRepoIsNotUnloaded() throws InvalidRepoException {
+        RepoId repoId = RepoId.of("leasedRepo");
+        RepoService repoService = lazyRepoService(repoId, Path.of("test-temp", "git", "leasedRepo"));
+
+        RepoService.Lease lease = repoService.lease(repoId);
+        repoService.unloadIdle();
+        Assertions.assertEquals(RepoService.RepoState.READY, repoService.getStatus().get(repoId).state());
+
+        //closing twice only releases the lease once
+        RepoService.Lease other = repoService.lease(repoId);
+        other.close();
+        other.close();
+        repoService.unloadIdle();
+        Assertions.assertEquals(RepoService.RepoState.READY, repoService.getStatus().get(repoId).state());
+
+        lease.close();
+        repoService.unloadIdle();
+        Assertions.assertEquals(RepoService.RepoState.UNLOADED, repoService.getStatus().get(repoId).state());
+        repoService.close();
+    }
+
+    @Test
+    void failedRepoIsNotReloadedOnEveryAccess() {
+        RepoId repoId = RepoId.of("failingRepo");
+        //a missing read only repository is not created, in memory repositories never touch their path so the files are used
+        RepoService repoService = lazyRepoService(repoId, directory.resolve("failingRepo"), "dev");
+        repoService.getProperties().getFirst().setReadOnly(true);
+
+        Assertions.assertThrows(InvalidRepoException.class, () -> repoService.lease(repoId));
+        RepoService.RepoStatus failed = repoService.getStatus().get(repoId);
+        Assertions.assertEquals(RepoService.RepoState.FAILED, failed.state());
+
+        //within the backoff the repository is not initialized again
+        Assertions.assertThrows(InvalidRepoException.class, () -> repoService.lease(repoId));
+        Assertions.assertFalse(repoService.isValidRepo(repoId));
+        Assertions.assertSame(failed, repoService.getStatus().get(repoId));
+        repoService.close();
+    }
+
+    private static RepoService lazyRepoService(RepoId repoId, Path path, String... profiles) {
+        RepoProperty repoProperty = new RepoProperty();
+        repoProperty.setId(repoId);
+        repoProperty.setPath(path);
+
+        RepoProperties properties = new RepoProperties();
+        properties.getRepositories().add(repoProperty);
+        properties.setLazyLoading(true);
+        properties.setIdleTimeout(Duration.ofNanos(1));
+
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles(profiles);
+        RepoService repoService = new RepoService(properties, new ProfileProperties(environment));
+        repoService.initialize();
+        return repoService;
+    }
+}
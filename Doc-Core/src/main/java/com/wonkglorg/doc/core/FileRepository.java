@@ -7,6 +7,7 @@ import com.wonkglorg.doc.core.exception.CoreSqlException;
 import com.wonkglorg.doc.core.exception.client.InvalidTagException;
 import com.wonkglorg.doc.core.exception.client.InvalidUserException;
 import com.wonkglorg.doc.core.exception.client.ReadOnlyRepoException;
+import com.wonkglorg.doc.core.git.CommitPipeline;
 import com.wonkglorg.doc.core.git.GitRepo;
 import com.wonkglorg.doc.core.git.UserBranch;
 import com.wonkglorg.doc.core.objects.Resource;
@@ -14,14 +15,19 @@ import com.wonkglorg.doc.core.objects.TagId;
 import com.wonkglorg.doc.core.objects.UserId;
 import com.wonkglorg.doc.core.path.TargetPath;
 import com.wonkglorg.doc.core.request.ResourceRequest;
+import com.wonkglorg.doc.core.sync.SyncEngine;
+import com.wonkglorg.doc.core.sync.SyncPlan;
+import com.wonkglorg.doc.core.sync.SyncReport;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.SQLException;
 import java.time.Duration;
 import java.time.Instant;
@@ -67,19 +73,39 @@ public class FileRepository implements AutoCloseable {
      * The interval to check for changes in the repo
      */
     private final Duration checkInterval = Duration.ofMinutes(10);
+    /**
+     * The engine syncing the files of the repo with its database
+     */
+    private SyncEngine syncEngine;
+    /**
+     * Commits and pushes edits in the background, null for in memory repos
+     */
+    private CommitPipeline commitPipeline;
+    /**
+     * The time spent in each phase of opening and initializing the repo in the order they ran
+     */
+    private final Map<String, Duration> startupTimings = Collections.synchronizedMap(new LinkedHashMap<>());
 
     public FileRepository(RepoProperty repoProperty, boolean inMemory) throws GitAPIException, ReadOnlyRepoException {
         this.repoProperty = repoProperty;
         this.inMemory = inMemory;
+        long start = System.nanoTime();
         gitRepo = new GitRepo(repoProperty, inMemory);
+        start = recordStartup("open git", start);
 
         try {
-            if (userDB == null) {
-                userDB = new UserDatabase(inMemory ? null : Path.of("users.db"));
+            //repos may be created concurrently, the shared user database must only be created once
+            synchronized (FileRepository.class) {
+                if (userDB == null) {
+                    //the user database is shared by all repos and uses the storage settings of the first one created
+                    userDB = new UserDatabase(inMemory ? null : Path.of("users.db"), repoProperty.getStorage());
+                }
             }
         } catch (SQLException | IOException e) {
+            gitRepo.close();
             throw new RuntimeException(e);
         }
+        recordStartup("open user database", start);
     }
 
     public RepositoryDatabase getDatabase() {
@@ -98,8 +124,10 @@ public class FileRepository implements AutoCloseable {
     public void initialize() throws GitAPIException, CoreException, InvalidUserException, ReadOnlyRepoException, IOException {
         log.info("Looking for repo in: '{}'", repoProperty.getPath());
 
+        long start = System.nanoTime();
         dataDB = new RepositoryDatabase(repoProperty, repoProperty.getPath().resolve(repoProperty.getDbName()), this, inMemory);
         dataDB.initialize();
+        recordStartup("open database", start);
 
         if (!inMemory) {
             Optional<Path> file = gitRepo.getSingleFile(s -> s.equalsIgnoreCase(repoProperty.getDbName()), UNTRACKED, MODIFIED, ADDED);
@@ -107,23 +135,19 @@ public class FileRepository implements AutoCloseable {
                 log.info("No Database in '{}'. Creating new Database.", repoProperty.getDbName());
             }
 
-            Set<Path> foundFiles = gitRepo.getFiles(s -> s.toLowerCase().endsWith(".md"), UNTRACKED, MODIFIED, ADDED);
-
-            Files.walk(repoProperty.getPath())
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().endsWith(".md"))
-                    .forEach(foundFiles::add);
-
-            Set<Path> filesToCheck = foundFiles.stream().map(this::relativizePathToRepo).collect(Collectors.toSet());
-
-            checkFileChanges(filesToCheck);
+            syncEngine = new SyncEngine(dataDB, gitRepo.getRepoPath());
+            commitPipeline = new CommitPipeline(gitRepo, repoProperty.getCommitWindow(), repoProperty.getPushBackoffMax());
+            SyncReport report = sync();
+            for (var phase : report.getPhaseTimings().entrySet()) {
+                startupTimings.merge("sync " + phase.getKey(), phase.getValue(), Duration::plus);
+            }
 
             log.info("Scheduling check for changes in '{}'", repoProperty.getId());
             executorService.scheduleAtFixedRate(() -> {
                 try {
                     log.info("Update task for repo '{}'", repoProperty.getId());
-                    checkFileChanges(gitRepo.getFiles(s -> s.toLowerCase().endsWith(".md"), UNTRACKED, MODIFIED, ADDED));
-                } catch (GitAPIException | CoreException | InvalidUserException | ReadOnlyRepoException e) {
+                    sync();
+                } catch (GitAPIException | CoreException | InvalidUserException | ReadOnlyRepoException | IOException e) {
                     log.error("Error while checking for changes", e);
                 }
             }, 10, checkInterval.toMinutes(), TimeUnit.MINUTES);
@@ -132,59 +156,99 @@ public class FileRepository implements AutoCloseable {
     }
 
     /**
-     * Checks for changes in the files and updates the database
+     * Finds all markdown files in the repo, this includes tracked files as well as files git does not know about yet
+     *
+     * @return the found files relative to the repo
+     */
+    private Set<Path> findFiles() throws GitAPIException, IOException {
+        Set<Path> foundFiles = gitRepo.getFiles(s -> s.toLowerCase().endsWith(".md"), UNTRACKED, MODIFIED, ADDED);
+
+        try (var files = Files.walk(repoProperty.getPath())) {
+            files.filter(Files::isRegularFile).filter(path -> path.toString().endsWith(".md")).forEach(foundFiles::add);
+        }
+
+        return foundFiles.stream().map(this::relativizePathToRepo).collect(Collectors.toSet());
+    }
+
+    /**
+     * Pulls the changes of the remote and syncs the files of the repo with the database. The files are collected after the pull so files it added or removed are seen by
+     * the same check instead of the next one.
+     *
+     * @return the report of the sync
+     */
+    private SyncReport sync() throws GitAPIException, IOException, CoreException, InvalidUserException, ReadOnlyRepoException {
+        SyncReport report = new SyncReport(repoProperty.getId());
+        long start = System.nanoTime();
+        synchronized (gitRepo) {
+            gitRepo.pull();
+        }
+        start = report.record("pull", start);
+        Set<Path> files = findFiles();
+        report.record("find files", start);
+        return checkFileChanges(files, report);
+    }
+
+    /**
+     * Checks for changes in the files and updates the database, only files whose fingerprint changed since the last check are read and re-indexed
      *
      * @param foundFiles the files to check
+     * @param report     the report to record the phases of the sync in
      * @throws CoreException         if there is an error with the core
      * @throws InvalidUserException  if the user is invalid
      * @throws ReadOnlyRepoException if the repo is read only
+     * @return the report of the sync
      */
-    private void checkFileChanges(Set<Path> foundFiles) throws CoreException, InvalidUserException, ReadOnlyRepoException {
+    private SyncReport checkFileChanges(Set<Path> foundFiles, SyncReport report) throws CoreException, InvalidUserException, ReadOnlyRepoException {
         log.info("Checking for changes in {} files", foundFiles.size());
+        long start = System.nanoTime();
 
         ResourceRequest request = new ResourceRequest();
         request.targetPath(new TargetPath(null));
         request.repoId(repoProperty.getId());
         request.userId(null);
 
-        List<Resource> resources = dataDB.resourceFunctions().getResources(request);
-
-        Map<Path, Resource> resourceMap = resources.stream().collect(HashMap::new, (m, r) -> m.put(r.resourcePath(), r), Map::putAll);
-
-        List<Path> newResources = foundFiles.stream().filter(f -> resources.stream().noneMatch(r -> r.resourcePath().equals(f))).toList();
-
-        List<Path> deletedResources = resources.stream()
-                .map(Resource::resourcePath)
-                .filter(path -> foundFiles.stream().noneMatch(path::equals))
-                .toList();
-
-        List<Path> matchingResources = resources.stream().map(Resource::resourcePath).filter(foundFiles::contains).toList();
-
-        //pull any changes from the remote
-        gitRepo.pull();
-
-        int existingFilesChanged = updateMatchingResources(matchingResources, resourceMap);
-        addNewFiles(newResources);
-        deleteOldResources(deletedResources);
-        log.info("--------Report for repo '{}--------", repoProperty.getId());
-        if (newResources.isEmpty() && deletedResources.isEmpty() && existingFilesChanged == 0) {
+        Map<Path, Resource> resourceMap = new HashMap<>();
+        for (Resource resource : dataDB.resourceFunctions().getResources(request)) {
+            resourceMap.put(resource.resourcePath(), resource);
+        }
+        report.record("load resources", start);
+
+        SyncPlan plan = syncEngine.plan(foundFiles, resourceMap.keySet(), report);
+
+        start = System.nanoTime();
+        Set<Path> toResolve = new HashSet<>(plan.added());
+        toResolve.addAll(plan.changed());
+        toResolve.addAll(plan.unverified());
+        Map<Path, RevCommit> lastCommits = gitRepo.getLastCommitsForPaths(toResolve);
+        start = report.record("commit lookup", start);
+        report.setChanged(updateMatchingResources(plan, resourceMap, lastCommits));
+        int uncommitted = stageUncommittedFiles(plan, lastCommits);
+        start = report.record("update", start);
+        addNewFiles(plan.added(), plan.contents(), lastCommits);
+        start = report.record("insert", start);
+        deleteOldResources(plan.deleted());
+        report.record("delete", start);
+
+        syncEngine.commit(plan);
+
+        if (!report.hasChanges() && uncommitted == 0) {
             log.info("No changes detected in repo '{}'", repoProperty.getId());
-            log.info("--------End of report--------");
-            return;
-        } else {
-            log.info("New resources: {}", newResources.size());
-            log.info("Deleted resources: {}", deletedResources.size());
-            log.info("Updated resources: {}", existingFilesChanged);
-            log.info("--------End of report--------");
+            report.log(log);
+            return report;
         }
 
-
-        addDataDb();
-        gitRepo.commit("Startup: Updated resources info: New: %s, Deleted: %s, Updated: %s".formatted(newResources.size(),
-                deletedResources.size(),
-                existingFilesChanged));
-
-        gitRepo.push();
+        start = System.nanoTime();
+        synchronized (gitRepo) {
+            addDataDb();
+            gitRepo.commit("Startup: Updated resources info: New: %s, Deleted: %s, Updated: %s, Uncommitted: %s".formatted(report.getAdded(),
+                    report.getDeleted(),
+                    report.getChanged(),
+                    uncommitted));
+        }
+        commitPipeline.requestPush();
+        report.record("git", start);
+        report.log(log);
+        return report;
     }
 
     public Path relativizePathToRepo(Path path) {
@@ -241,7 +305,7 @@ public class FileRepository implements AutoCloseable {
     }
 
     /**
-     * Adds a file to the database
+     * Writes a resource to the working tree and queues it to be committed, returns once the file is durable on disk while the commit and push happen in the background
      *
      * @param resource the resource to add
      */
@@ -262,9 +326,10 @@ public class FileRepository implements AutoCloseable {
             if (resource.data() != null) {
                 Files.write(file, resource.data().getBytes());
             }
-            gitRepo.add(resource.resourcePath());
-            gitRepo.commit("Added resource %s".formatted(resource.resourcePath()));
-            gitRepo.push();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            commitPipeline.enqueue(resource.resourcePath(), "Added resource %s".formatted(resource.resourcePath()));
             /*
             branch.addFile(file);
             branch.commit("Added resource %s".formatted(resource.resourcePath()));
@@ -285,12 +350,15 @@ public class FileRepository implements AutoCloseable {
         if (gitRepo.isMemory()) {
             return;
         }
+        //the commit pipeline commits on the same repo in the background
         try {
-            UserBranch branch = gitRepo.createBranch(userId);
-            Files.deleteIfExists(getGitRepo().getRepoPath().resolve(resourcePath));
-            branch.updateFileDeleted(resourcePath);
-            branch.commit("Deleted resource %s".formatted(resourcePath));
-            branch.closeBranch();
+            synchronized (gitRepo) {
+                UserBranch branch = gitRepo.createBranch(userId);
+                Files.deleteIfExists(getGitRepo().getRepoPath().resolve(resourcePath));
+                branch.updateFileDeleted(resourcePath);
+                branch.commit("Deleted resource %s".formatted(resourcePath));
+                branch.closeBranch();
+            }
         } catch (GitAPIException e) {
             throw new RuntimeException(e);
         }
@@ -299,9 +367,11 @@ public class FileRepository implements AutoCloseable {
     /**
      * Adds new files to the database
      *
-     * @param newFiles the files to add
+     * @param newFiles    the files to add
+     * @param contents    the already read content of the files
+     * @param lastCommits the last commit of each file
      */
-    private void addNewFiles(List<Path> newFiles) throws CoreSqlException, ReadOnlyRepoException {
+    private void addNewFiles(List<Path> newFiles, Map<Path, String> contents, Map<Path, RevCommit> lastCommits) throws CoreSqlException, ReadOnlyRepoException {
 
         if (gitRepo.isMemory()) {
             return;
@@ -313,9 +383,9 @@ public class FileRepository implements AutoCloseable {
                 continue;
             }
 
-            RevCommit lastCommitDetailsForFile = gitRepo.getLastCommitDetailsForFile(file.toString());
+            RevCommit lastCommitDetailsForFile = lastCommits.get(file);
             Resource newResource;
-            String content = readData(gitRepo, file);
+            String content = contents.get(file);
             if (lastCommitDetailsForFile == null) {
                 log.error("File '{}' was not added by git", file);
                 newResource = new Resource(file, "system", repoProperty.getId(), null, new HashSet<>(), content);
@@ -329,52 +399,60 @@ public class FileRepository implements AutoCloseable {
                         content);
             }
             resources.add(newResource);
-            gitRepo.add(file);
+            //the commit pipeline and user commits change the same index in the background
+            synchronized (gitRepo) {
+                gitRepo.add(file);
+            }
         }
 
         dataDB.resourceFunctions().batchInsert(resources);
     }
 
     /**
-     * Updates the resources in the database
+     * Updates the resources in the database whose content changed, files without a known fingerprint are only updated if their last commit is newer than the indexed resource
      *
-     * @param matchingResources the resources to update
-     * @return true if the resources have changed
+     * @param plan              the sync plan
+     * @param existingResources the currently indexed resources
+     * @param lastCommits       the last commit of each file
+     * @return the amount of updated resources
      */
-    private int updateMatchingResources(List<Path> matchingResources, Map<Path, Resource> existingResources)
-            throws CoreSqlException, ReadOnlyRepoException {
+    private int updateMatchingResources(SyncPlan plan, Map<Path, Resource> existingResources, Map<Path, RevCommit> lastCommits) throws CoreSqlException, ReadOnlyRepoException {
 
         if (gitRepo.isMemory()) {
             return 0;
         }
         List<Resource> resources = new ArrayList<>();
-        for (Path file : matchingResources) {
-            RevCommit fileCommit = gitRepo.getLastCommitDetailsForFile(file.toString());
-            if (fileCommit == null) {
-                continue;
-            }
-
-            String authorName = fileCommit.getAuthorIdent().getName();
-            Instant instant = Instant.ofEpochSecond(fileCommit.getCommitTime());
-            LocalDateTime commitTime = LocalDateTime.ofInstant(instant, fileCommit.getAuthorIdent().getTimeZone().toZoneId());
+        Set<Path> changed = new HashSet<>(plan.changed());
+        List<Path> candidates = new ArrayList<>(plan.changed());
+        candidates.addAll(plan.unverified());
+        for (Path file : candidates) {
             Resource existingResource = existingResources.get(file);
+            RevCommit fileCommit = lastCommits.get(file);
+            LocalDateTime commitTime = null;
+            if (fileCommit != null) {
+                Instant instant = Instant.ofEpochSecond(fileCommit.getCommitTime());
+                commitTime = LocalDateTime.ofInstant(instant, fileCommit.getAuthorIdent().getTimeZone().toZoneId());
+            }
 
-            //If the file has not been modified since the last commit, skip it
-            if (existingResource.modifiedAt().isEqual(commitTime)) {
+            //If the file has not been modified since the last commit and its content is not known to have changed, skip it
+            if (!changed.contains(file) && (commitTime == null || existingResource.modifiedAt().isEqual(commitTime))) {
                 continue;
             }
 
+            boolean newerCommit = commitTime != null && !existingResource.modifiedAt().isEqual(commitTime);
             Resource newResource = new Resource(file,
                     existingResource.createdAt(),
                     existingResource.createdBy(),
-                    commitTime,
-                    authorName,
+                    newerCommit ? commitTime : LocalDateTime.now(),
+                    newerCommit ? fileCommit.getAuthorIdent().getName() : "system",
                     repoProperty.getId(),
                     existingResource.getResourceTags(),
                     existingResource.category(),
-                    readData(gitRepo, file));
+                    plan.contents().get(file));
             resources.add(newResource);
-            gitRepo.add(file);
+            synchronized (gitRepo) {
+                gitRepo.add(file);
+            }
         }
 
         dataDB.resourceFunctions().batchUpdate(resources);
@@ -382,20 +460,27 @@ public class FileRepository implements AutoCloseable {
     }
 
     /**
-     * Reads the data from a file
+     * Stages the indexed files that were never committed. Edits are committed after the commit window of the {@link CommitPipeline}, a file written shortly before the
+     * application stopped has neither a fingerprint nor a commit on the next start and would otherwise never be added to git.
      *
-     * @param gitRepo the repo to read from
-     * @param file    the file to read
-     * @return the data in the file
+     * @param plan        the sync plan
+     * @param lastCommits the last commit of each file
+     * @return the amount of staged files
      */
-    private String readData(GitRepo gitRepo, Path file) {
-        Path repoContextFile = gitRepo.getRepoPath().resolve(file);
-        try {
-            return Files.readString(repoContextFile);
-        } catch (IOException e) {
-            log.error("Error while reading file data from '{}'", repoContextFile, e);
-            return "";
+    private int stageUncommittedFiles(SyncPlan plan, Map<Path, RevCommit> lastCommits) {
+        if (gitRepo.isMemory()) {
+            return 0;
         }
+        int staged = 0;
+        synchronized (gitRepo) {
+            for (Path file : plan.unverified()) {
+                if (!lastCommits.containsKey(file)) {
+                    gitRepo.add(file);
+                    staged++;
+                }
+            }
+        }
+        return staged;
     }
 
     /**
@@ -411,11 +496,35 @@ public class FileRepository implements AutoCloseable {
         }
         for (Path file : deletedResources) {
             log.info("Deleting resource '{}'", file);
-            gitRepo.remove(file);
+            synchronized (gitRepo) {
+                gitRepo.remove(file);
+            }
         }
         dataDB.resourceFunctions().batchDelete(deletedResources);
     }
 
+    /**
+     * Records the time spent in a startup phase
+     *
+     * @param phase      the name of the phase
+     * @param startNanos the {@link System#nanoTime()} the phase started at
+     * @return the current {@link System#nanoTime()} so it can be used as the start of the next phase
+     */
+    private long recordStartup(String phase, long startNanos) {
+        long now = System.nanoTime();
+        startupTimings.merge(phase, Duration.ofNanos(now - startNanos), Duration::plus);
+        return now;
+    }
+
+    /**
+     * @return the time spent in each phase of opening and initializing the repo in the order they ran
+     */
+    public Map<String, Duration> getStartupTimings() {
+        synchronized (startupTimings) {
+            return new LinkedHashMap<>(startupTimings);
+        }
+    }
+
     public RepoProperty getRepoProperty() {
         return repoProperty;
     }
@@ -424,14 +533,33 @@ public class FileRepository implements AutoCloseable {
         return userDB;
     }
 
+    /**
+     * @return the state of the background commits and pushes, empty for in memory repos
+     */
+    public Optional<CommitPipeline.Stats> getCommitStats() {
+        return Optional.ofNullable(commitPipeline).map(CommitPipeline::stats);
+    }
+
     @Override
     public void close() throws Exception {
 
         if (gitRepo.isMemory()) {
             return;
         }
-        gitRepo.getGit().close();
-        dataDB.close();
+        //a sync that is already running finishes before the database and git repo it works on are closed
+        executorService.shutdown();
+        if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+            log.warn("Sync of '{}' did not finish in time, interrupting it", repoProperty.getId());
+            executorService.shutdownNow();
+        }
+        //a repo whose initialization failed is closed as well, its pipeline and database may not exist yet
+        if (commitPipeline != null) {
+            commitPipeline.close();
+        }
+        gitRepo.close();
+        if (dataDB != null) {
+            dataDB.close();
+        }
 
     }
 }
@@ -1,8 +1,10 @@
 package com.wonkglorg.doc.core;
 
+import com.wonkglorg.doc.core.db.dbs.StorageProfile;
 import com.wonkglorg.doc.core.objects.RepoId;
 
 import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * Represents the properties of a single repository that is being managed by the application
@@ -34,6 +36,41 @@ public class RepoProperty {
      */
     private Path dbStorage = path;
 
+    /**
+     * The storage settings of the repos database
+     */
+    private StorageProfile storage = new StorageProfile();
+
+    /**
+     * How long edits are collected before they are committed together
+     */
+    private Duration commitWindow = Duration.ofSeconds(5);
+
+    /**
+     * The longest time to wait between retries of a failed push
+     */
+    private Duration pushBackoffMax = Duration.ofMinutes(5);
+
+    /**
+     * How often the reachability of the remote is checked in the background, zero disables the background check
+     */
+    private Duration remoteProbeInterval = Duration.ofMinutes(1);
+
+    /**
+     * The number of consecutive failed remote operations after which the remote is treated as unreachable
+     */
+    private int remoteFailureThreshold = 3;
+
+    /**
+     * How long remote operations are skipped once the remote is treated as unreachable
+     */
+    private Duration remoteOpenDuration = Duration.ofSeconds(30);
+
+    /**
+     * If a stemmed word index of the title, headings and body of each resource is kept next to the trigram index, multi word searches are then ranked by it
+     */
+    private boolean wordIndex = false;
+
     private String github;
     private String token;
 
@@ -78,6 +115,62 @@ public class RepoProperty {
     }
 
 
+    public StorageProfile getStorage() {
+        return storage;
+    }
+
+    public void setStorage(StorageProfile storage) {
+        this.storage = storage;
+    }
+
+    public Duration getCommitWindow() {
+        return commitWindow;
+    }
+
+    public void setCommitWindow(Duration commitWindow) {
+        this.commitWindow = commitWindow;
+    }
+
+    public Duration getPushBackoffMax() {
+        return pushBackoffMax;
+    }
+
+    public void setPushBackoffMax(Duration pushBackoffMax) {
+        this.pushBackoffMax = pushBackoffMax;
+    }
+
+    public Duration getRemoteProbeInterval() {
+        return remoteProbeInterval;
+    }
+
+    public void setRemoteProbeInterval(Duration remoteProbeInterval) {
+        this.remoteProbeInterval = remoteProbeInterval;
+    }
+
+    public int getRemoteFailureThreshold() {
+        return remoteFailureThreshold;
+    }
+
+    public void setRemoteFailureThreshold(int remoteFailureThreshold) {
+        this.remoteFailureThreshold = remoteFailureThreshold;
+    }
+
+    public Duration getRemoteOpenDuration() {
+        return remoteOpenDuration;
+    }
+
+    public void setRemoteOpenDuration(Duration remoteOpenDuration) {
+        this.remoteOpenDuration = remoteOpenDuration;
+    }
+
+    public boolean isWordIndex() {
+        return wordIndex;
+    }
+
+    public void setWordIndex(boolean wordIndex) {
+        this.wordIndex = wordIndex;
+    }
+
     public String getGithub() {
         return github;
     }
@@ -3,9 +3,11 @@ package com.wonkglorg.doc.core.db;
 import com.wonkglorg.doc.core.FileRepository;
 import com.wonkglorg.doc.core.RepoProperty;
 import com.wonkglorg.doc.core.db.dbs.Database;
+import com.wonkglorg.doc.core.db.functions.BlobStore;
 import static com.wonkglorg.doc.core.db.dbs.DatabaseType.MEMORY_SQLITE;
 import static com.wonkglorg.doc.core.db.dbs.DatabaseType.SQLITE;
 import com.wonkglorg.doc.core.db.functions.DatabaseFunctions;
+import com.wonkglorg.doc.core.db.functions.FileManifestFunctions;
 import com.wonkglorg.doc.core.db.functions.PermissionFunctions;
 import com.wonkglorg.doc.core.db.functions.ResourceFunctions;
 import com.wonkglorg.doc.core.exception.CoreSqlException;
@@ -18,6 +20,11 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents the database object for a defined repository
@@ -34,6 +41,10 @@ public class RepositoryDatabase extends Database<HikariDataSource>{
 	 * Resource functions related to this database
 	 */
 	private final ResourceFunctions resourceFunctions;
+	/**
+	 * File manifest functions related to this database
+	 */
+	private final FileManifestFunctions fileManifestFunctions;
 	/**
 	 * The file repository this database is part of
 	 */
@@ -42,11 +53,23 @@ public class RepositoryDatabase extends Database<HikariDataSource>{
 	 * The properties of the repository
 	 */
 	private final RepoProperty repoProperties;
+	/**
+	 * Serializes and group commits the writes of this database
+	 */
+	private final WriteQueue writeQueue;
+	/**
+	 * Incremented on every change to the resources, tags or permissions of this repository. It starts at a random value so a database opened again, for example when a
+	 * lazily loaded repository is reloaded, does not repeat the versions of the one before it.
+	 */
+	private final AtomicLong version = new AtomicLong(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE / 2));
 
 	private final Path openInPath;
 	
 	public RepositoryDatabase(RepoProperty repoProperties, Path openInPath, FileRepository fileRepository, boolean inMemory) throws IOException {
-		super(inMemory ? MEMORY_SQLITE : SQLITE, inMemory ? getMemoryDataSource() : getDataSource(openInPath));
+		super(inMemory ? MEMORY_SQLITE : SQLITE,
+				inMemory ? getMemoryDataSource() : getDataSource(openInPath, repoProperties),
+				inMemory ? null : repoProperties.getStorage().createReader(SQLITE.driver() + openInPath, repoProperties.getId().id()),
+				repoProperties.getStorage().getStatementCacheSize());
 		if(inMemory){
 			this.openInPath = Path.of("");
 			log.info("Using in memory database for repo '{}'", repoProperties.getId());
@@ -59,24 +82,26 @@ public class RepositoryDatabase extends Database<HikariDataSource>{
 		this.repoProperties = repoProperties;
 		this.resourceFunctions = new ResourceFunctions(this);
 		this.permissionFunctions = new PermissionFunctions(this);
+		this.fileManifestFunctions = new FileManifestFunctions(this);
+		this.writeQueue = new WriteQueue(repoProperties.getId().id(),
+				this::getConnection,
+				repoProperties.getStorage().getWriteBatchSize(),
+				Duration.ofMillis(repoProperties.getStorage().getWriteBatchDelay()));
 	}
 	
 	/**
-	 * Retrieves the data source for the current sql connection
+	 * Retrieves the data source all writes of the repo go through, configured by the {@link RepoProperty#getStorage()} profile
 	 *
 	 * @param openInPath the path to open the data source in
+	 * @param repoProperties the properties of the repo
 	 * @return the created data source
 	 */
-	private static HikariDataSource getDataSource(Path openInPath) throws IOException {
-		HikariConfig hikariConfig = new HikariConfig();
-		hikariConfig.setLeakDetectionThreshold(1000);
+	private static HikariDataSource getDataSource(Path openInPath, RepoProperty repoProperties) throws IOException {
 		Path parent = openInPath.getParent();
 		if(parent != null){
 			Files.createDirectories(parent);
 		}
-		hikariConfig.setJdbcUrl(SQLITE.driver() + openInPath);
-		hikariConfig.setDriverClassName(SQLITE.classLoader());
-		return new HikariDataSource(hikariConfig);
+		return repoProperties.getStorage().createWriter(SQLITE.driver() + openInPath, repoProperties.getId().id());
 	}
 	
 	private static HikariDataSource getMemoryDataSource() {
@@ -127,13 +152,69 @@ public class RepositoryDatabase extends Database<HikariDataSource>{
 		return permissionFunctions;
 	}
 	
+	public FileManifestFunctions fileManifestFunctions() {
+		return fileManifestFunctions;
+	}
+	
+	public WriteQueue writeQueue() {
+		return writeQueue;
+	}
+	
+	/**
+	 * The version of this repository, it only ever increases and changes whenever a resource, tag or permission of it changes. Clients can compare it to tell if anything they
+	 * were given is outdated.
+	 *
+	 * @return the current version
+	 */
+	public long version() {
+		return version.get();
+	}
+	
+	/**
+	 * Marks a change to this repository, called after the change is visible in the caches
+	 */
+	public void incrementVersion() {
+		version.incrementAndGet();
+	}
+	
+	/**
+	 * Gets a connection with the sql functions the content of this database needs, see {@link BlobStore}
+	 */
+	@Override
+	public Connection getConnection() {
+		return withFunctions(super.getConnection());
+	}
+	
+	@Override
+	public Connection getReadConnection() {
+		return withFunctions(super.getReadConnection());
+	}
+	
+	private static Connection withFunctions(Connection connection) {
+		try{
+			BlobStore.register(connection);
+			return connection;
+		} catch(SQLException e){
+			try{
+				connection.close();
+			} catch(SQLException ex){
+				e.addSuppressed(ex);
+			}
+			throw new RuntimeException(e);
+		}
+	}
+	
 	public FileRepository getFileRepository() {
 		return fileRepository;
 	}
 	
 	@Override
 	public void close() throws Exception {
+		writeQueue.close();
 		getDataSource().close();
+		if(getReadDataSource() != null){
+			getReadDataSource().close();
+		}
 	}
 
 	public Path getOpenInPath() {
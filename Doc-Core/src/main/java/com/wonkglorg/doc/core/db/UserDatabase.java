@@ -1,6 +1,7 @@
 package com.wonkglorg.doc.core.db;
 
 import com.wonkglorg.doc.core.db.dbs.Database;
+import com.wonkglorg.doc.core.db.dbs.StorageProfile;
 import static com.wonkglorg.doc.core.db.dbs.DatabaseType.MEMORY_SQLITE;
 import static com.wonkglorg.doc.core.db.dbs.DatabaseType.SQLITE;
 import com.wonkglorg.doc.core.exception.CoreException;
@@ -12,6 +13,7 @@ import com.wonkglorg.doc.core.interfaces.UserCalls;
 import com.wonkglorg.doc.core.objects.DateHelper;
 import com.wonkglorg.doc.core.objects.GroupId;
 import com.wonkglorg.doc.core.objects.UserId;
+import com.wonkglorg.doc.core.permissions.PermissionEvents;
 import com.wonkglorg.doc.core.permissions.Role;
 import com.wonkglorg.doc.core.user.Group;
 import com.wonkglorg.doc.core.user.UserProfile;
@@ -30,6 +32,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Database containing the users information
@@ -56,6 +59,11 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 	 */
 	private final Map<GroupId, Group> groupCache = new java.util.concurrent.ConcurrentHashMap<>();
 	
+	/**
+	 * Incremented on every change to the users, groups or their memberships
+	 */
+	private final AtomicLong version = new AtomicLong();
+	
 	/**
 	 * If the path is null, the database will be created in memory
 	 *
@@ -63,7 +71,21 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 	 * @throws SQLException
 	 */
 	public UserDatabase(Path path) throws SQLException, IOException {
-		super(path == null ? MEMORY_SQLITE : SQLITE, path == null ? getMemoryDataSource() : getDataSource(path));
+		this(path, new StorageProfile());
+	}
+	
+	/**
+	 * If the path is null, the database will be created in memory and only the statement cache of the storage profile is used
+	 *
+	 * @param path the path to the database
+	 * @param storage the storage settings of the database
+	 * @throws SQLException
+	 */
+	public UserDatabase(Path path, StorageProfile storage) throws SQLException, IOException {
+		super(path == null ? MEMORY_SQLITE : SQLITE,
+				path == null ? getMemoryDataSource() : getDataSource(path, storage),
+				path == null ? null : storage.createReader(SQLITE.driver() + path, "users"),
+				storage.getStatementCacheSize());
 		
 		if(path != null){
 			log.info("Initializing Memory Based User Database");
@@ -188,21 +210,18 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 	}
 	
 	/**
-	 * Retrieves the data source for the current sql connection
+	 * Retrieves the data source all writes go through
 	 *
 	 * @param openInPath the path to open the data source in
+	 * @param storage the storage settings of the database
 	 * @return the created data source
 	 */
-	private static HikariDataSource getDataSource(Path openInPath) throws IOException {
-		HikariConfig hikariConfig = new HikariConfig();
-		hikariConfig.setLeakDetectionThreshold(1000);
+	private static HikariDataSource getDataSource(Path openInPath, StorageProfile storage) throws IOException {
 		Path parent = openInPath.getParent();
 		if(parent != null){
 			Files.createDirectories(parent);
 		}
-		hikariConfig.setJdbcUrl(SQLITE.driver() + openInPath.toString());
-		hikariConfig.setDriverClassName(SQLITE.classLoader());
-		return new HikariDataSource(hikariConfig);
+		return storage.createWriter(SQLITE.driver() + openInPath, "users");
 	}
 	
 	private static HikariDataSource getMemoryDataSource() {
@@ -237,6 +256,7 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 			statement.setString(4, DateHelper.fromDateTime(group.getCreationDate()));
 			statement.executeUpdate();
 			groupCache.put(group.getId(), group);
+			version.incrementAndGet();
 			log.info("Group '{}' created", group.getId());
 			return true;
 		} catch(Exception e){
@@ -257,6 +277,19 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 			boolean wasRemoved = statement.executeUpdate() > 0;
 			if(wasRemoved){
 				groupCache.remove(groupId);
+				Set<UserId> members = groupUsers.remove(groupId);
+				if(members != null){
+					for(UserId userId : members){
+						if(userGroups.containsKey(userId)){
+							userGroups.get(userId).remove(groupId);
+						}
+						if(userCache.containsKey(userId)){
+							userCache.get(userId).getGroups().remove(groupId);
+						}
+						PermissionEvents.groupMembershipChanged(groupId, userId);
+					}
+				}
+				version.incrementAndGet();
 			}
 			log.info("Group '{}' removed!", groupId);
 			return wasRemoved;
@@ -289,6 +322,7 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 			statement.executeUpdate();
 			Group group = groupCache.get(groupId);
 			group.setName(newName);
+			version.incrementAndGet();
 			log.info("Group '{}' renamed to '{}'", groupId, newName);
 			return group;
 		} catch(Exception e){
@@ -302,7 +336,11 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 	@Override
 	public boolean addUserToGroup(GroupId groupId, UserId userId) throws CoreException {
 		Connection connection = getConnection();
-		return addUserToGroup(connection, groupId, userId);
+		try{
+			return addUserToGroup(connection, groupId, userId);
+		} finally{
+			closeConnection(connection);
+		}
 	}
 	
 	private boolean addUserToGroup(Connection connection, GroupId groupId, UserId userId) throws CoreException {
@@ -320,6 +358,8 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 			if(userCache.containsKey(userId)){
 				userCache.get(userId).getGroups().add(groupId);
 			}
+			version.incrementAndGet();
+			PermissionEvents.groupMembershipChanged(groupId, userId);
 			log.info("User '{}' added to group '{}'", userId, groupId);
 			return true;
 		} catch(Exception e){
@@ -351,6 +391,8 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 			if(userCache.containsKey(userId)){
 				userCache.get(userId).getGroups().remove(groupId);
 			}
+			version.incrementAndGet();
+			PermissionEvents.groupMembershipChanged(groupId, userId);
 			log.info("User '{}' removed from group '{}'", userId, groupId);
 			
 			return true;
@@ -394,6 +436,7 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 				statement.setString(3, "system");
 				statement.executeUpdate();
 				userCache.put(user.getId(), user);
+				version.incrementAndGet();
 				log.info("User '{}' added", user.getId());
 			}
 			
@@ -426,7 +469,10 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 		try(var statement = connection.prepareStatement("DELETE FROM Users WHERE user_id = ?")){
 			statement.setString(1, userId.id());
 			userCache.remove(userId);
-			return statement.executeUpdate() > 0;
+			boolean wasRemoved = statement.executeUpdate() > 0;
+			version.incrementAndGet();
+			PermissionEvents.userRemoved(userId);
+			return wasRemoved;
 		} catch(Exception e){
 			String errorResponse = "Failed to delete user '%s'".formatted(userId);
 			log.error(errorResponse, e);
@@ -566,6 +612,7 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 			statement.setString(2, role.name());
 			statement.executeUpdate();
 			userCache.get(userId).getRoles().add(role);
+			version.incrementAndGet();
 			log.info("Role '{}' added to user '{}'", role, userId);
 		} catch(SQLException e){
 			log.error("Failed to add role to user", e);
@@ -584,6 +631,7 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 			statement.executeUpdate();
 			
 			userCache.get(userId).getRoles().remove(role);
+			version.incrementAndGet();
 			log.info("Role '{}' removed from user '{}'", role, userId);
 		} catch(SQLException e){
 			log.error("Failed to remove role from user", e);
@@ -592,6 +640,15 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 		}
 	}
 	
+	/**
+	 * The version of the users and groups, it only ever increases and changes whenever a user, group, membership or role changes
+	 *
+	 * @return the current version
+	 */
+	public long version() {
+		return version.get();
+	}
+	
 	/**
 	 * Helper method to close connections
 	 *
@@ -608,5 +665,8 @@ public class UserDatabase extends Database<HikariDataSource> implements UserCall
 	@Override
 	public void close() throws Exception {
 		getDataSource().close();
+		if(getReadDataSource() != null){
+			getReadDataSource().close();
+		}
 	}
 }
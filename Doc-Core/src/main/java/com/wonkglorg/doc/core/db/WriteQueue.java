@@ -0,0 +1,218 @@
+package com.wonkglorg.doc.core.db;
+
+import com.wonkglorg.doc.core.exception.CoreSqlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Serializes all writes of a database through a single thread. Queued operations are group committed, every operation that arrives within {@link #maxDelay} of the first one (up to
+ * {@link #maxBatchSize} operations) runs in the same transaction. Each operation runs in its own savepoint so a failing operation only rolls back its own changes, the future of every
+ * caller is completed once the transaction is committed.
+ */
+public class WriteQueue implements AutoCloseable{
+	private static final Logger log = LoggerFactory.getLogger(WriteQueue.class);
+	/**
+	 * Marks the end of the queue, operations queued after it are rejected
+	 */
+	private static final Task<?> SHUTDOWN = new Task<>(connection -> null, new CompletableFuture<>());
+
+	private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+	private final Supplier<Connection> connections;
+	private final int maxBatchSize;
+	private final Duration maxDelay;
+	private final Thread writer;
+	private boolean closed = false;
+
+	/**
+	 * @param name the name of the writer thread
+	 * @param connections supplies the connection a batch is written with
+	 * @param maxBatchSize the maximum number of operations committed together
+	 * @param maxDelay how long to wait for further operations after the first one arrived
+	 */
+	public WriteQueue(String name, Supplier<Connection> connections, int maxBatchSize, Duration maxDelay) {
+		this.connections = connections;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxDelay = maxDelay;
+		this.writer = Thread.ofPlatform().name("write-queue-" + name).daemon().start(this::run);
+	}
+
+	/**
+	 * Queues an operation
+	 *
+	 * @param operation the operation to run, it must not commit, rollback or change the auto commit mode of the connection and must not wait on other writes
+	 * @param <T> the result of the operation
+	 * @return a future completed once the operation is committed
+	 */
+	public <T> CompletableFuture<T> submit(WriteOperation<T> operation) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		synchronized(queue){
+			if(closed){
+				future.completeExceptionally(new IllegalStateException("Write queue is closed"));
+				return future;
+			}
+			queue.add(new Task<>(operation, future));
+		}
+		return future;
+	}
+
+	/**
+	 * Queues an operation and waits for it to be committed
+	 *
+	 * @param operation the operation to run, it must not commit, rollback or change the auto commit mode of the connection
+	 * @param <T> the result of the operation
+	 * @return the result of the operation
+	 * @throws CoreSqlException if the operation or the commit failed
+	 */
+	public <T> T execute(WriteOperation<T> operation) throws CoreSqlException {
+		try{
+			return submit(operation).get();
+		} catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new CoreSqlException("Interrupted while waiting for write", e);
+		} catch(ExecutionException e){
+			if(e.getCause() instanceof CoreSqlException coreSqlException){
+				throw coreSqlException;
+			}
+			throw new CoreSqlException("Failed to write", e.getCause());
+		}
+	}
+
+	private void run() {
+		List<Task<?>> batch = new ArrayList<>(maxBatchSize);
+		boolean running = true;
+		while(running){
+			try{
+				Task<?> first = queue.take();
+				if(first == SHUTDOWN){
+					break;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + maxDelay.toNanos();
+				while(batch.size() < maxBatchSize){
+					Task<?> next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+					if(next == null){
+						break;
+					}
+					if(next == SHUTDOWN){
+						running = false;
+						break;
+					}
+					batch.add(next);
+				}
+				writeBatch(batch);
+			} catch(InterruptedException e){
+				running = false;
+			} finally{
+				for(Task<?> task : batch){
+					task.future().completeExceptionally(new CoreSqlException("Write was not committed"));
+				}
+				batch.clear();
+			}
+		}
+
+		Task<?> remaining;
+		while((remaining = queue.poll()) != null){
+			remaining.future().completeExceptionally(new IllegalStateException("Write queue is closed"));
+		}
+	}
+
+	/**
+	 * Runs all operations of the batch in one transaction and completes their futures after the commit
+	 */
+	private void writeBatch(List<Task<?>> batch) {
+		List<Object> results = new ArrayList<>(batch.size());
+		List<Exception> failures = new ArrayList<>(batch.size());
+		try(Connection connection = connections.get()){
+			connection.setAutoCommit(false);
+			try(Statement statement = connection.createStatement()){
+				for(Task<?> task : batch){
+					statement.execute("SAVEPOINT write_operation");
+					try{
+						results.add(task.operation().execute(connection));
+						failures.add(null);
+						statement.execute("RELEASE write_operation");
+					} catch(Exception e){
+						statement.execute("ROLLBACK TO write_operation");
+						statement.execute("RELEASE write_operation");
+						results.add(null);
+						failures.add(e);
+					}
+				}
+				connection.commit();
+			} catch(SQLException e){
+				connection.rollback();
+				throw e;
+			} finally{
+				connection.setAutoCommit(true);
+			}
+		} catch(Exception e){
+			log.error("Failed to commit {} queued writes", batch.size(), e);
+			for(Task<?> task : batch){
+				task.future().completeExceptionally(new CoreSqlException("Failed to commit write", e));
+			}
+			batch.clear();
+			return;
+		}
+
+		for(int i = 0; i < batch.size(); i++){
+			batch.get(i).complete(results.get(i), failures.get(i));
+		}
+		batch.clear();
+	}
+
+	/**
+	 * @return the number of operations waiting to be written
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Writes all operations queued so far and stops the writer thread
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		synchronized(queue){
+			if(closed){
+				return;
+			}
+			closed = true;
+			queue.add(SHUTDOWN);
+		}
+		writer.join();
+	}
+
+	/**
+	 * A write executed on the writer thread
+	 *
+	 * @param <T> the result of the operation
+	 */
+	@FunctionalInterface
+	public interface WriteOperation<T>{
+		T execute(Connection connection) throws Exception;
+	}
+
+	private record Task<T>(WriteOperation<T> operation, CompletableFuture<T> future){
+		@SuppressWarnings("unchecked")
+		void complete(Object result, Exception failure) {
+			if(failure != null){
+				future.completeExceptionally(failure);
+			} else {
+				future.complete((T) result);
+			}
+		}
+	}
+}
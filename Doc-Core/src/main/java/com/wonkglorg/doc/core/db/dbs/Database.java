@@ -21,14 +21,43 @@ public abstract class Database<T extends DataSource> implements AutoCloseable{
 	 * The datasource for the database connection
 	 */
 	protected final T dataSource;
+	/**
+	 * The datasource for read only connections, null if reads use {@link #dataSource}
+	 */
+	protected final T readDataSource;
+	/**
+	 * The prepared statements kept open on the connections of this database
+	 */
+	protected final StatementCache statementCache;
 	
 	/**
 	 * @param databaseType The type of database
 	 * @param dataSource The datasource for the database connection
 	 */
 	protected Database(DatabaseType databaseType, T dataSource) {
+		this(databaseType, dataSource, null);
+	}
+	
+	/**
+	 * @param databaseType The type of database
+	 * @param dataSource The datasource for the database connection
+	 * @param readDataSource The datasource for read only connections, null if reads should use the dataSource
+	 */
+	protected Database(DatabaseType databaseType, T dataSource, T readDataSource) {
+		this(databaseType, dataSource, readDataSource, StatementCache.DEFAULT_SIZE);
+	}
+	
+	/**
+	 * @param databaseType The type of database
+	 * @param dataSource The datasource for the database connection
+	 * @param readDataSource The datasource for read only connections, null if reads should use the dataSource
+	 * @param statementCacheSize The number of prepared statements cached per connection, 0 disables the cache
+	 */
+	protected Database(DatabaseType databaseType, T dataSource, T readDataSource, int statementCacheSize) {
 		this.databaseType = databaseType;
 		this.dataSource = dataSource;
+		this.readDataSource = readDataSource;
+		this.statementCache = new StatementCache(statementCacheSize);
 	}
 	
 	/**
@@ -64,9 +93,33 @@ public abstract class Database<T extends DataSource> implements AutoCloseable{
 		return dataSource;
 	}
 	
+	public T getReadDataSource() {
+		return readDataSource;
+	}
+	
+	public StatementCache getStatementCache() {
+		return statementCache;
+	}
+	
 	public Connection getConnection() {
 		try{
-			return dataSource.getConnection();
+			return statementCache.wrap(dataSource.getConnection());
+		} catch(Exception e){
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Gets a connection that is only used for reading, falls back to {@link #getConnection()} if the database has no separate read connections
+	 *
+	 * @return the connection
+	 */
+	public Connection getReadConnection() {
+		if(readDataSource == null){
+			return getConnection();
+		}
+		try{
+			return statementCache.wrap(readDataSource.getConnection());
 		} catch(Exception e){
 			throw new RuntimeException(e);
 		}
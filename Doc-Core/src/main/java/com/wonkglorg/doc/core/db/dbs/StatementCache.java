@@ -0,0 +1,270 @@
+package com.wonkglorg.doc.core.db.dbs;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the prepared statements of each connection open between uses, so sqlite parses a query once per connection instead of once per call. Neither sqlite-jdbc nor
+ * HikariCP cache statements, hikari even closes every statement of a connection when it is returned to the pool.
+ * <p>
+ * {@link #wrap(Connection)} returns a view of a pooled connection. Its {@link Connection#prepareStatement(String)} hands out the cached statement of the underlying sqlite
+ * connection, and closing that statement only clears it and returns it to the cache, so callers keep using try with resources as before. If the same sql is prepared
+ * again while its statement is still in use, for example by a nested query, the second statement is prepared uncached. Each view is only equal to itself, all other
+ * methods are passed to the pooled connection unchanged.
+ * <p>
+ * Reusing the statements of a write saves around a fifth of the time of an insert and more than a third of an update, see the benchmark in {@code StatementCacheTest}.
+ */
+public final class StatementCache{
+	/**
+	 * The default number of statements cached per connection
+	 */
+	public static final int DEFAULT_SIZE = 64;
+	/**
+	 * The number of statements cached per connection, the least recently used statement is closed once it is exceeded
+	 */
+	private final int size;
+	/**
+	 * The cached statements by the underlying connection they were prepared on
+	 */
+	private final Map<Connection, Statements> statements = new HashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param size the number of statements cached per connection, 0 disables the cache
+	 */
+	public StatementCache(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Wraps a connection so its prepared statements are cached
+	 *
+	 * @param pooled the connection as returned by the data source
+	 * @return the wrapped connection or the connection itself if the cache is disabled
+	 * @throws SQLException if the underlying connection could not be retrieved
+	 */
+	public Connection wrap(Connection pooled) throws SQLException {
+		if(size <= 0){
+			return pooled;
+		}
+		Connection physical = pooled.unwrap(Connection.class);
+		Statements cached;
+		synchronized(statements){
+			cached = statements.get(physical);
+			if(cached == null){
+				//a new connection usually means the pool closed an old one, their statements are gone with it
+				statements.keySet().removeIf(StatementCache::isClosed);
+				cached = new Statements(physical);
+				statements.put(physical, cached);
+			}
+		}
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new CachingConnection(pooled, cached));
+	}
+
+	/**
+	 * @return how often a cached statement was reused
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return how often a statement had to be prepared
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	private static boolean isClosed(Connection connection) {
+		try{
+			return connection.isClosed();
+		} catch(SQLException e){
+			return true;
+		}
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try{
+			return method.invoke(target, args);
+		} catch(InvocationTargetException e){
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * The view of a pooled connection handed to callers
+	 *
+	 * @param pooled the pooled connection
+	 * @param statements the statements of its underlying connection
+	 */
+	private record CachingConnection(Connection pooled, Statements statements) implements InvocationHandler{
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch(method.getName()){
+				case "prepareStatement" -> {
+					if(args.length == 1){
+						return statements.prepare(pooled, (String) args[0]);
+					}
+				}
+				case "close" -> {
+					//hikari only rolls back transactions it saw statements run in, the cached ones bypass it
+					if(!pooled.isClosed() && !pooled.getAutoCommit()){
+						pooled.rollback();
+					}
+				}
+				//passed on the pooled connection would compare itself with the proxy and never be equal
+				case "equals" -> {
+					return proxy == args[0];
+				}
+				case "hashCode" -> {
+					return System.identityHashCode(proxy);
+				}
+				default -> {
+				}
+			}
+			return StatementCache.invoke(pooled, method, args);
+		}
+	}
+
+	/**
+	 * The statements of one connection, only accessed by the thread currently holding the connection
+	 */
+	private final class Statements extends LinkedHashMap<String, Cached>{
+		private final Connection physical;
+
+		private Statements(Connection physical) {
+			super(16, 0.75f, true);
+			this.physical = physical;
+		}
+
+		private PreparedStatement prepare(Connection pooled, String sql) throws SQLException {
+			Cached cached = get(sql);
+			if(cached != null && cached.inUse){
+				return pooled.prepareStatement(sql);
+			}
+			if(cached == null || cached.statement.isClosed()){
+				misses.increment();
+				cached = new Cached(physical.prepareStatement(sql));
+				put(sql, cached);
+			} else {
+				hits.increment();
+			}
+			return cached.checkout();
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+			if(size() <= size || eldest.getValue().inUse){
+				return false;
+			}
+			eldest.getValue().close();
+			return true;
+		}
+	}
+
+	/**
+	 * A cached statement and the result set of its last execution
+	 */
+	private static final class Cached{
+		private final PreparedStatement statement;
+		private boolean inUse;
+		private ResultSet resultSet;
+
+		private Cached(PreparedStatement statement) {
+			this.statement = statement;
+		}
+
+		private PreparedStatement checkout() {
+			inUse = true;
+			return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[]{PreparedStatement.class},
+					new Handle(this));
+		}
+
+		/**
+		 * Resets the statement for the next caller, an open result set would keep its read transaction open
+		 */
+		private void release() throws SQLException {
+			try{
+				if(resultSet != null && !resultSet.isClosed()){
+					resultSet.close();
+				}
+				resultSet = null;
+				statement.clearParameters();
+				statement.clearBatch();
+			} catch(SQLException e){
+				close();
+				throw e;
+			} finally{
+				inUse = false;
+			}
+		}
+
+		private void close() {
+			try{
+				statement.close();
+			} catch(SQLException ignored){
+				//the statement is dropped either way
+			}
+		}
+	}
+
+	/**
+	 * The statement handed to one caller, it can not be used anymore after it was closed even if the statement is handed to the next caller
+	 */
+	private static final class Handle implements InvocationHandler{
+		private final Cached cached;
+		private boolean closed;
+
+		private Handle(Cached cached) {
+			this.cached = cached;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch(method.getName()){
+				case "close" -> {
+					if(!closed){
+						closed = true;
+						cached.release();
+					}
+					return null;
+				}
+				case "isClosed" -> {
+					return closed;
+				}
+				case "equals" -> {
+					return proxy == args[0];
+				}
+				case "hashCode" -> {
+					return System.identityHashCode(proxy);
+				}
+				default -> {
+					if(closed){
+						throw new SQLException("Statement is closed");
+					}
+				}
+			}
+			Object result = StatementCache.invoke(cached.statement, method, args);
+			if(result instanceof ResultSet resultSet){
+				cached.resultSet = resultSet;
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package com.wonkglorg.doc.core.db.dbs;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * The storage settings of a file based sqlite database. By default the database runs in WAL mode, writes go through a single dedicated writer connection and reads through a pool of
+ * read only connections, so readers never block on a write and writers never contend with each other.
+ */
+public class StorageProfile{
+	/**
+	 * The sqlite journal mode, WAL allows readers to continue while a write is in progress
+	 */
+	private String journalMode = "WAL";
+	/**
+	 * The sqlite synchronous mode, NORMAL is safe in WAL mode and only syncs on checkpoints
+	 */
+	private String synchronous = "NORMAL";
+	/**
+	 * The maximum number of bytes of the database file that are memory mapped, 0 disables memory mapping
+	 */
+	private long mmapSize = 256L * 1024 * 1024;
+	/**
+	 * The page cache size of each connection, negative values are in KiB, positive values in pages
+	 */
+	private int cacheSize = -16 * 1024;
+	/**
+	 * How long a connection waits for a lock held by another connection in milliseconds
+	 */
+	private int busyTimeout = 5000;
+	/**
+	 * The number of read only connections, 0 sends reads through the writer as well
+	 */
+	private int readPoolSize = 4;
+	/**
+	 * If writes should go through a single dedicated connection
+	 */
+	private boolean singleWriter = true;
+	/**
+	 * The maximum number of queued writes committed in one transaction, see {@link com.wonkglorg.doc.core.db.WriteQueue}
+	 */
+	private int writeBatchSize = 64;
+	/**
+	 * How long the write queue waits for further writes before committing in milliseconds
+	 */
+	private long writeBatchDelay = 2;
+	/**
+	 * The number of prepared statements each connection keeps open, see {@link StatementCache}, 0 prepares every statement anew
+	 */
+	private int statementCacheSize = StatementCache.DEFAULT_SIZE;
+
+	/**
+	 * The settings used before storage profiles existed, a rollback journal and a single shared pool for reads and writes
+	 *
+	 * @return the legacy profile
+	 */
+	public static StorageProfile legacy() {
+		StorageProfile profile = new StorageProfile();
+		profile.setJournalMode("DELETE");
+		profile.setSynchronous("FULL");
+		profile.setMmapSize(0);
+		profile.setCacheSize(-2000);
+		profile.setBusyTimeout(3000);
+		profile.setReadPoolSize(0);
+		profile.setSingleWriter(false);
+		profile.setStatementCacheSize(0);
+		return profile;
+	}
+
+	/**
+	 * Creates the data source all writes go through
+	 *
+	 * @param jdbcUrl the url of the database
+	 * @param name    the name of the pool
+	 * @return the created data source
+	 */
+	public HikariDataSource createWriter(String jdbcUrl, String name) {
+		HikariConfig config = createConfig(jdbcUrl, name + "-writer");
+		config.addDataSourceProperty("journal_mode", journalMode);
+		if(singleWriter){
+			config.setMaximumPoolSize(1);
+		}
+		return new HikariDataSource(config);
+	}
+
+	/**
+	 * Creates the data source of read only connections
+	 *
+	 * @param jdbcUrl the url of the database
+	 * @param name    the name of the pool
+	 * @return the created data source or null if reads should use the writer
+	 */
+	public HikariDataSource createReader(String jdbcUrl, String name) {
+		if(readPoolSize <= 0){
+			return null;
+		}
+		HikariConfig config = createConfig(jdbcUrl, name + "-reader");
+		config.setMaximumPoolSize(readPoolSize);
+		config.setConnectionInitSql("PRAGMA query_only = ON");
+		return new HikariDataSource(config);
+	}
+
+	private HikariConfig createConfig(String jdbcUrl, String poolName) {
+		HikariConfig config = new HikariConfig();
+		config.setLeakDetectionThreshold(1000);
+		config.setPoolName(poolName);
+		config.setJdbcUrl(jdbcUrl);
+		config.setDriverClassName(DatabaseType.SQLITE.classLoader());
+		config.addDataSourceProperty("synchronous", synchronous);
+		config.addDataSourceProperty("mmap_size", String.valueOf(mmapSize));
+		config.addDataSourceProperty("cache_size", String.valueOf(cacheSize));
+		config.addDataSourceProperty("busy_timeout", String.valueOf(busyTimeout));
+		return config;
+	}
+
+	public String getJournalMode() {
+		return journalMode;
+	}
+
+	public void setJournalMode(String journalMode) {
+		this.journalMode = journalMode;
+	}
+
+	public String getSynchronous() {
+		return synchronous;
+	}
+
+	public void setSynchronous(String synchronous) {
+		this.synchronous = synchronous;
+	}
+
+	public long getMmapSize() {
+		return mmapSize;
+	}
+
+	public void setMmapSize(long mmapSize) {
+		this.mmapSize = mmapSize;
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	public int getBusyTimeout() {
+		return busyTimeout;
+	}
+
+	public void setBusyTimeout(int busyTimeout) {
+		this.busyTimeout = busyTimeout;
+	}
+
+	public int getReadPoolSize() {
+		return readPoolSize;
+	}
+
+	public void setReadPoolSize(int readPoolSize) {
+		this.readPoolSize = readPoolSize;
+	}
+
+	public boolean isSingleWriter() {
+		return singleWriter;
+	}
+
+	public void setSingleWriter(boolean singleWriter) {
+		this.singleWriter = singleWriter;
+	}
+
+	public int getWriteBatchSize() {
+		return writeBatchSize;
+	}
+
+	public void setWriteBatchSize(int writeBatchSize) {
+		this.writeBatchSize = writeBatchSize;
+	}
+
+	public long getWriteBatchDelay() {
+		return writeBatchDelay;
+	}
+
+	public void setWriteBatchDelay(long writeBatchDelay) {
+		this.writeBatchDelay = writeBatchDelay;
+	}
+
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	public void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+}
@@ -0,0 +1,76 @@
+package com.wonkglorg.doc.core.db.functions;
+
+import com.wonkglorg.doc.core.path.PatternTrie;
+import com.wonkglorg.doc.core.path.ResourcePath;
+import org.sqlite.Function;
+import org.sqlite.SQLiteConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The sql function {@code ant_match(pattern, path)}, returns 1 if the path matches the ant pattern with the same per segment semantics as {@link PatternTrie}, so ant paths can be
+ * filtered inside a query instead of after it. A plain {@code LIKE} can only approximate ant patterns ({@code *} would match across directories), it is still useful in front of
+ * this function to let sqlite discard most rows cheaply.
+ * <p>
+ * sqlite-jdbc keeps the arguments of a call in the function instance, each connection therefore gets its own instance, the compiled patterns are shared.
+ */
+public final class AntPathFunction extends Function {
+    public static final String NAME = "ant_match";
+    /**
+     * The amount of compiled patterns kept before the cache is dropped, requests bring their own patterns so it is bounded instead of growing with every distinct request
+     */
+    private static final int MAX_PATTERNS = 1024;
+    private static final Map<String, PatternTrie<Boolean>> patterns = new ConcurrentHashMap<>();
+    private static final Set<SQLiteConnection> registered = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private AntPathFunction() {
+    }
+
+    /**
+     * Registers the function on a connection if it was not registered on it before
+     *
+     * @param connection the connection, may be a pooled wrapper of a sqlite connection
+     * @throws SQLException if the function could not be registered
+     */
+    public static void register(Connection connection) throws SQLException {
+        SQLiteConnection sqliteConnection = connection.unwrap(SQLiteConnection.class);
+        if (registered.contains(sqliteConnection)) {
+            return;
+        }
+        Function.create(sqliteConnection, NAME, new AntPathFunction(), 2, Function.FLAG_DETERMINISTIC);
+        registered.add(sqliteConnection);
+    }
+
+    /**
+     * Checks if a path matches an ant pattern
+     *
+     * @param pattern the ant pattern or plain path
+     * @param path    the path to check
+     * @return true if the path matches
+     */
+    public static boolean matches(String pattern, String path) {
+        PatternTrie<Boolean> trie = patterns.get(pattern);
+        if (trie == null) {
+            if (patterns.size() >= MAX_PATTERNS) {
+                patterns.clear();
+            }
+            trie = new PatternTrie<>();
+            trie.add(pattern, Boolean.TRUE);
+            patterns.put(pattern, trie);
+        }
+        return trie.matches(ResourcePath.of(path).segments());
+    }
+
+    @Override
+    protected void xFunc() throws SQLException {
+        String pattern = value_text(0);
+        String path = value_text(1);
+        result(pattern != null && path != null && matches(pattern, path) ? 1 : 0);
+    }
+}
@@ -0,0 +1,174 @@
+package com.wonkglorg.doc.core.db.functions;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.sqlite.Function;
+import org.sqlite.SQLiteConnection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stores the content of resources deflated in the Blobs table, keyed by the git blob id of the content so every distinct content is stored once no matter how many resources
+ * share it. Documents maps each resource to its blob, the FileContent view joins both and decompresses the content with the sql function {@code inflate(data)} so FileData,
+ * which is an external content table of that view, and every query reading content still see plain text.
+ * <p>
+ * Like {@link AntPathFunction} the function holds per call state in sqlite-jdbc, each connection gets its own instance.
+ */
+public final class BlobStore extends Function {
+    public static final String INFLATE = "inflate";
+    private static final Set<SQLiteConnection> registered = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private BlobStore() {
+    }
+
+    /**
+     * Registers {@code inflate(data)} on a connection if it was not registered on it before, every connection of a repo database needs it as the FileContent view and the
+     * triggers keeping FileData in sync use it
+     *
+     * @param connection the connection, may be a pooled wrapper of a sqlite connection
+     * @throws SQLException if the function could not be registered
+     */
+    public static void register(Connection connection) throws SQLException {
+        SQLiteConnection sqliteConnection = connection.unwrap(SQLiteConnection.class);
+        if (registered.contains(sqliteConnection)) {
+            return;
+        }
+        Function.create(sqliteConnection, INFLATE, new BlobStore(), 1, Function.FLAG_DETERMINISTIC);
+        registered.add(sqliteConnection);
+    }
+
+    /**
+     * @return the git blob id of the content, the same id git uses for the file so it can be compared with the {@link com.wonkglorg.doc.core.sync.FileFingerprint} of a file
+     */
+    static String blobId(String content) {
+        return new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8)).name();
+    }
+
+    /**
+     * Stores the given contents, contents already stored are skipped without compressing them again
+     *
+     * @param connection the connection to write with
+     * @param contents   the contents to store
+     * @return the blob id of each content
+     * @throws SQLException if the blobs could not be written
+     */
+    static Map<String, String> store(Connection connection, Collection<String> contents) throws SQLException {
+        Map<String, String> ids = new LinkedHashMap<>();
+        for (String content : contents) {
+            ids.computeIfAbsent(content, BlobStore::blobId);
+        }
+        try (PreparedStatement exists = connection.prepareStatement("SELECT 1 FROM Blobs WHERE blob_id = ?");
+             PreparedStatement insert = connection.prepareStatement("INSERT OR IGNORE INTO Blobs(blob_id, size, data) VALUES(?, ?, ?)")) {
+            for (var entry : ids.entrySet()) {
+                exists.setString(1, entry.getValue());
+                try (var rs = exists.executeQuery()) {
+                    if (rs.next()) {
+                        continue;
+                    }
+                }
+                byte[] bytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                insert.setString(1, entry.getValue());
+                insert.setLong(2, bytes.length);
+                insert.setBytes(3, deflate(bytes));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        return ids;
+    }
+
+    /**
+     * Reads the blobs the documents of the given resources point at, so they can be passed to {@link #removeUnused(Connection, Collection)} once the documents were changed
+     *
+     * @param connection the connection to read with
+     * @param paths      the resource paths
+     * @return the blob ids of the resources that have a document
+     * @throws SQLException if the documents could not be read
+     */
+    static Set<String> blobIds(Connection connection, Collection<String> paths) throws SQLException {
+        Set<String> blobIds = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT blob_id FROM Documents WHERE resource_path = ?")) {
+            for (String path : paths) {
+                statement.setString(1, path);
+                try (var rs = statement.executeQuery()) {
+                    if (rs.next()) {
+                        blobIds.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+        return blobIds;
+    }
+
+    /**
+     * Removes the given blobs if no document points at them anymore. Only called once all documents of a write were changed, a blob one document stops using may be
+     * what another document of the same write points at next.
+     *
+     * @param connection the connection to write with
+     * @param blobIds    the blobs the changed documents pointed at before
+     * @throws SQLException if the blobs could not be removed
+     */
+    static void removeUnused(Connection connection, Collection<String> blobIds) throws SQLException {
+        if (blobIds.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM Blobs WHERE blob_id = ? AND NOT EXISTS (SELECT 1 FROM Documents WHERE blob_id = ?)")) {
+            for (String blobId : blobIds) {
+                statement.setString(1, blobId);
+                statement.setString(2, blobId);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static String inflate(byte[] data) {
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    protected void xFunc() throws SQLException {
+        byte[] data = value_blob(0);
+        if (data == null) {
+            result();
+            return;
+        }
+        result(inflate(data));
+    }
+}
@@ -1,14 +1,18 @@
 package com.wonkglorg.doc.core.db.functions;
 
 import com.wonkglorg.doc.core.db.RepositoryDatabase;
+import com.wonkglorg.doc.core.db.dbs.DatabaseType;
 import com.wonkglorg.doc.core.exception.CoreSqlException;
 import com.wonkglorg.doc.core.permissions.PermissionType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 /**
  * Holds generic setup and usage Database functions
@@ -105,13 +109,78 @@ public class DatabaseFunctions {
                     )
                     """);
 
+            //the content of each resource is stored once per distinct content in Blobs, see BlobStore. The full text tables only hold their index and are keyed by Documents.id
+            boolean documentsExisted = tableExists(connection, "Documents");
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS Blobs(
+                        blob_id TEXT PRIMARY KEY NOT NULL,
+                        size INTEGER NOT NULL,
+                        data BLOB NOT NULL
+                    )
+                    """);
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS Documents(
+                        id INTEGER PRIMARY KEY,
+                        resource_path TEXT UNIQUE NOT NULL,
+                        blob_id TEXT NOT NULL
+                    )
+                    """);
+            statement.execute("CREATE INDEX IF NOT EXISTS documents_blob ON Documents(blob_id)");
+            statement.execute("""
+                    CREATE VIEW IF NOT EXISTS FileContent AS
+                    SELECT Documents.id, Documents.resource_path, %s(Blobs.data) AS data
+                      FROM Documents
+                      JOIN Blobs ON Blobs.blob_id = Documents.blob_id
+                    """.formatted(BlobStore.INFLATE));
+
+            boolean migrate = !documentsExisted && tableExists(connection, "FileData");
+            if (migrate) {
+                migrateFileData(connection, statement);
+            }
             statement.execute("""
                     CREATE VIRTUAL TABLE IF NOT EXISTS FileData USING fts5(
                         resource_path,
                         data,
+                        content='FileContent',
+                        content_rowid='id',
                         tokenize='trigram'
                     )
                     """);
+            if (migrate) {
+                statement.execute("INSERT INTO FileData(FileData) VALUES ('rebuild')");
+            }
+
+            //terms shorter than a trigram can not use FileData, they are matched against the words of each resource instead
+            boolean wordsExisted = tableExists(connection, "FileWords");
+            statement.execute("""
+                    CREATE VIRTUAL TABLE IF NOT EXISTS FileWords USING fts5(
+                        data,
+                        content='',
+                        contentless_delete=1,
+                        tokenize='unicode61',
+                        prefix='1 2'
+                    )
+                    """);
+            if (!wordsExisted) {
+                statement.execute("INSERT INTO FileWords(rowid, data) SELECT id, data FROM FileContent");
+            }
+
+            if (database.getRepoProperties().isWordIndex()) {
+                TextIndex.create(connection, statement, tableExists(connection, TextIndex.TABLE));
+            } else if (database.getDatabaseType() != DatabaseType.MEMORY_SQLITE) {
+                //in memory repos share one database, the index may belong to another repo using it
+                TextIndex.drop(statement);
+            }
+
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS FileManifest(
+                        resource_path TEXT PRIMARY KEY NOT NULL,
+                        size INTEGER NOT NULL,
+                        last_modified INTEGER NOT NULL,
+                        content_hash TEXT NOT NULL,
+                        blob_id TEXT NOT NULL
+                    )
+                    """);
 
             statement.execute("""
                     CREATE VIEW IF NOT EXISTS ResourceInfo AS
@@ -136,13 +205,19 @@ public class DatabaseFunctions {
     }
 
     /**
-     * Rebuilds the FTS table when called, this is a slow operation and should only be done when there is a specific need to do so
+     * Rebuilds the FTS tables when called, this is a slow operation and should only be done when there is a specific need to do so
      */
     public static void rebuildFts(RepositoryDatabase database) throws CoreSqlException {
         Connection connection = database.getConnection();
         try (Statement statement = connection.createStatement()) {
             //noinspection SqlResolve on purpose sql plugin doesn't recognize the fts specific commands
             statement.executeUpdate(("INSERT INTO FileData(FileData) VALUES ('rebuild')"));
+            statement.executeUpdate(("INSERT INTO FileWords(FileWords) VALUES ('delete-all')"));
+            statement.executeUpdate("INSERT INTO FileWords(rowid, data) SELECT id, data FROM FileContent");
+            if (database.getRepoProperties().isWordIndex()) {
+                statement.executeUpdate(("INSERT INTO FileText(FileText) VALUES ('delete-all')"));
+                TextIndex.indexAll(connection);
+            }
         } catch (Exception e) {
             throw new CoreSqlException("Error while rebuilding FTS in '%s'".formatted(database.getRepoId()), e);
         } finally {
@@ -168,7 +243,9 @@ public class DatabaseFunctions {
                         -- Update related tags
                         UPDATE ResourceTags SET resource_path = NEW.resource_path WHERE resource_path = OLD.resource_path;
                         -- Update indexed data
-                        UPDATE FileData SET resource_path = NEW.resource_path WHERE resource_path = OLD.resource_path;
+                        UPDATE Documents SET resource_path = NEW.resource_path WHERE resource_path = OLD.resource_path;
+                        -- Update file fingerprint
+                        UPDATE FileManifest SET resource_path = NEW.resource_path WHERE resource_path = OLD.resource_path;
                     END;
                     """);
 
@@ -183,10 +260,50 @@ public class DatabaseFunctions {
                         --Delete Related Tags
                         DELETE FROM ResourceTags WHERE resource_path = OLD.resource_path;
                         --Delete Indexed Data
-                        DELETE FROM FileData WHERE resource_path = OLD.resource_path;
+                        DELETE FROM Documents WHERE resource_path = OLD.resource_path;
+                        --Delete file fingerprint
+                        DELETE FROM FileManifest WHERE resource_path = OLD.resource_path;
                     END;
                     """);
 
+            //the full text tables follow Documents, an external content table has to be told the old values to remove them from its index. Blobs no document uses anymore
+            //are removed by the write once all its documents changed, see BlobStore#removeUnused, earlier versions removed them here per row
+            statement.execute("DROP TRIGGER IF EXISTS delete_resource_words");
+            statement.execute("DROP TRIGGER IF EXISTS update_document");
+            statement.execute("DROP TRIGGER IF EXISTS delete_document");
+            statement.execute("""
+                    CREATE TRIGGER IF NOT EXISTS insert_document
+                    AFTER INSERT ON Documents
+                    FOR EACH ROW
+                    BEGIN
+                        INSERT INTO FileData(rowid, resource_path, data) SELECT NEW.id, NEW.resource_path, %1$s(data) FROM Blobs WHERE blob_id = NEW.blob_id;
+                        INSERT INTO FileWords(rowid, data) SELECT NEW.id, %1$s(data) FROM Blobs WHERE blob_id = NEW.blob_id;
+                    END;
+                    """.formatted(BlobStore.INFLATE));
+            statement.execute("""
+                    CREATE TRIGGER IF NOT EXISTS update_document
+                    AFTER UPDATE ON Documents
+                    FOR EACH ROW
+                    BEGIN
+                        INSERT INTO FileData(FileData, rowid, resource_path, data) SELECT 'delete', OLD.id, OLD.resource_path, %1$s(data) FROM Blobs WHERE blob_id = OLD.blob_id;
+                        INSERT INTO FileData(rowid, resource_path, data) SELECT NEW.id, NEW.resource_path, %1$s(data) FROM Blobs WHERE blob_id = NEW.blob_id;
+                        DELETE FROM FileWords WHERE rowid = OLD.id AND OLD.blob_id != NEW.blob_id;
+                        INSERT INTO FileWords(rowid, data) SELECT NEW.id, %1$s(data) FROM Blobs WHERE blob_id = NEW.blob_id AND OLD.blob_id != NEW.blob_id;
+                    END;
+                    """.formatted(BlobStore.INFLATE));
+            statement.execute("""
+                    CREATE TRIGGER IF NOT EXISTS delete_document
+                    AFTER DELETE ON Documents
+                    FOR EACH ROW
+                    BEGIN
+                        INSERT INTO FileData(FileData, rowid, resource_path, data) SELECT 'delete', OLD.id, OLD.resource_path, %1$s(data) FROM Blobs WHERE blob_id = OLD.blob_id;
+                        DELETE FROM FileWords WHERE rowid = OLD.id;
+                    END;
+                    """.formatted(BlobStore.INFLATE));
+            if (database.getRepoProperties().isWordIndex()) {
+                TextIndex.createTrigger(statement);
+            }
+
             statement.execute("""
                     CREATE TRIGGER IF NOT EXISTS delete_tag_cleanup
                     AFTER DELETE ON Tags
@@ -203,6 +320,49 @@ public class DatabaseFunctions {
         }
     }
 
+    /**
+     * Moves the content of a FileData table created before the content was stored in Blobs, the documents keep the rowids of FileData so FileWords and FileText stay
+     * valid. The old triggers writing to FileData are dropped to be created again by {@link #initializeTriggers(RepositoryDatabase)}
+     */
+    private static void migrateFileData(Connection connection, Statement statement) throws SQLException {
+        log.info("Moving the content of FileData into Blobs");
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement select = connection.prepareStatement("SELECT rowid, resource_path, data FROM FileData");
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO Documents(id, resource_path, blob_id) VALUES(?, ?, ?)")) {
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    String data = rs.getString("data");
+                    insert.setLong(1, rs.getLong("rowid"));
+                    insert.setString(2, rs.getString("resource_path"));
+                    insert.setString(3, BlobStore.store(connection, List.of(data)).get(data));
+                    insert.addBatch();
+                }
+            }
+            //the documents are inserted before the triggers exist, FileData is rebuilt from them once it was created again
+            insert.executeBatch();
+            statement.execute("DROP TABLE FileData");
+            statement.execute("DROP TRIGGER IF EXISTS update_resource_path");
+            statement.execute("DROP TRIGGER IF EXISTS delete_resource_cleanup");
+            statement.execute("DROP TRIGGER IF EXISTS delete_resource_words");
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM sqlite_master WHERE name = ?")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
     private static void closeConnection(Connection connection) {
         try {
             connection.close();
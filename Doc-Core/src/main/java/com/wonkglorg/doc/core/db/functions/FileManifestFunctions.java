@@ -0,0 +1,113 @@
+package com.wonkglorg.doc.core.db.functions;
+
+import com.wonkglorg.doc.core.db.RepositoryDatabase;
+import com.wonkglorg.doc.core.exception.CoreSqlException;
+import com.wonkglorg.doc.core.sync.FileFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * All file manifest related database functions, the manifest stores the fingerprint of every indexed file for the {@link com.wonkglorg.doc.core.sync.SyncEngine}
+ */
+public class FileManifestFunctions {
+    private static final Logger log = LoggerFactory.getLogger(FileManifestFunctions.class);
+    private final RepositoryDatabase database;
+
+    public FileManifestFunctions(RepositoryDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Loads the entire manifest
+     *
+     * @return the fingerprint of every file in the manifest by its path
+     * @throws CoreSqlException if the manifest could not be loaded
+     */
+    public Map<Path, FileFingerprint> loadManifest() throws CoreSqlException {
+        Connection connection = database.getReadConnection();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT resource_path, size, last_modified, content_hash, blob_id FROM FileManifest");
+             ResultSet resultSet = statement.executeQuery()) {
+            Map<Path, FileFingerprint> manifest = new HashMap<>();
+            while (resultSet.next()) {
+                Path path = Path.of(resultSet.getString("resource_path"));
+                manifest.put(path,
+                        new FileFingerprint(path,
+                                resultSet.getLong("size"),
+                                resultSet.getLong("last_modified"),
+                                resultSet.getString("content_hash"),
+                                resultSet.getString("blob_id")));
+            }
+            return manifest;
+        } catch (Exception e) {
+            log.error("Failed to load file manifest", e);
+            throw new CoreSqlException("Failed to load file manifest", e);
+        } finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Updates the manifest in a single transaction
+     *
+     * @param fingerprints the fingerprints to insert or replace
+     * @param removed      the paths to remove from the manifest
+     * @throws CoreSqlException if the manifest could not be updated
+     */
+    public void updateManifest(Collection<FileFingerprint> fingerprints, Collection<Path> removed) throws CoreSqlException {
+        if (fingerprints.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        Connection connection = database.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT OR REPLACE INTO FileManifest(resource_path, size, last_modified, content_hash, blob_id) VALUES(?, ?, ?, ?, ?)")) {
+                for (FileFingerprint fingerprint : fingerprints) {
+                    statement.setString(1, fingerprint.resourcePath().toString());
+                    statement.setLong(2, fingerprint.size());
+                    statement.setLong(3, fingerprint.lastModified());
+                    statement.setString(4, fingerprint.contentHash());
+                    statement.setString(5, fingerprint.blobId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM FileManifest WHERE resource_path = ?")) {
+                for (Path path : removed) {
+                    statement.setString(1, path.toString());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            connection.commit();
+        } catch (Exception e) {
+            try {
+                connection.rollback();
+            } catch (SQLException ex) {
+                log.error("Rollback failed", ex);
+            }
+            log.error("Failed to update file manifest", e);
+            throw new CoreSqlException("Failed to update file manifest", e);
+        } finally {
+            closeConnection(connection);
+        }
+    }
+
+    private void closeConnection(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.error("Error while closing connection", e);
+        }
+    }
+}
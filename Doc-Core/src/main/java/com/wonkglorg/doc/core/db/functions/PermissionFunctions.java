@@ -9,7 +9,10 @@ import com.wonkglorg.doc.core.objects.GroupId;
 import com.wonkglorg.doc.core.objects.RepoId;
 import com.wonkglorg.doc.core.objects.UserId;
 import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.permissions.EffectivePermissionCache;
 import com.wonkglorg.doc.core.permissions.Permission;
+import com.wonkglorg.doc.core.permissions.PermissionEvents;
+import com.wonkglorg.doc.core.permissions.PermissionIndex;
 import com.wonkglorg.doc.core.permissions.PermissionType;
 import com.wonkglorg.doc.core.user.Group;
 import com.wonkglorg.doc.core.user.UserProfile;
@@ -19,8 +22,10 @@ import org.slf4j.LoggerFactory;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -40,7 +45,7 @@ public class PermissionFunctions implements IDBFunctions, PermissionCalls {
     @Override
     public void initialize() {
         log.info("Initializing cache for user functions in repo '{}'", database.getRepoProperties().getId());
-        Connection connection = database.getConnection();
+        Connection connection = database.getReadConnection();
         try {
             UserDatabase userDB = FileRepository.getUserDB();
             for (UserProfile userProfile : userDB.getUsers()) {
@@ -136,6 +141,8 @@ public class PermissionFunctions implements IDBFunctions, PermissionCalls {
             statement.setString(3, permission.getPermission().name());
             statement.executeUpdate();
             groupPermissions.computeIfAbsent(permission.id(), k -> new HashMap<>()).put(permission.getPath().toString(), permission);
+            database.incrementVersion();
+            PermissionEvents.groupPermissionsChanged(repoId, permission.id());
             log.info("Permission '{}' added to group '{}' in repo '{}'", permission.getPath(), permission.getId(), repoId.id());
             return true;
         } catch (Exception e) {
@@ -155,6 +162,8 @@ public class PermissionFunctions implements IDBFunctions, PermissionCalls {
             statement.setString(2, path.toString());
             statement.executeUpdate();
             groupPermissions.computeIfAbsent(groupId, k -> new HashMap<>()).remove(path.toString());
+            database.incrementVersion();
+            PermissionEvents.groupPermissionsChanged(repoId, groupId);
             log.info("Permission '{}' removed from group '{}' in repo '{}'", path, groupId, repoId.id());
             return true;
         } catch (Exception e) {
@@ -175,6 +184,8 @@ public class PermissionFunctions implements IDBFunctions, PermissionCalls {
             statement.setString(3, permission.getPath().toString());
             statement.executeUpdate();
             groupPermissions.computeIfAbsent(permission.id(), k -> new HashMap<>()).put(permission.getPath().toString(), permission);
+            database.incrementVersion();
+            PermissionEvents.groupPermissionsChanged(repoId, permission.id());
             log.info("Permission '{}' updated in group '{}' in repo '{}'", permission.getPath(), permission.getId(), repoId.id());
             return true;
         } catch (Exception e) {
@@ -195,6 +206,8 @@ public class PermissionFunctions implements IDBFunctions, PermissionCalls {
             statement.executeUpdate();
 
             userPermissions.computeIfAbsent(permission.id(), k -> new HashMap<>()).put(permission.getPath().toString(), permission);
+            database.incrementVersion();
+            PermissionEvents.userPermissionsChanged(repoId, permission.id());
             return true;
         } catch (Exception e) {
             log.error("Failed to add permission to user", e);
@@ -214,6 +227,8 @@ public class PermissionFunctions implements IDBFunctions, PermissionCalls {
             statement.executeUpdate();
 
             userPermissions.computeIfAbsent(userId, k -> new HashMap<>()).remove(path.toString());
+            database.incrementVersion();
+            PermissionEvents.userPermissionsChanged(repoId, userId);
             log.info("Permission '{}' removed from user '{}' in repo '{}'", path, userId, repoId.id());
             return true;
         } catch (Exception e) {
@@ -236,6 +251,8 @@ public class PermissionFunctions implements IDBFunctions, PermissionCalls {
             statement.executeUpdate();
 
             userPermissions.computeIfAbsent(permission.id(), k -> new HashMap<>()).put(permission.getPath().toString(), permission);
+            database.incrementVersion();
+            PermissionEvents.userPermissionsChanged(repoId, permission.id());
             log.info("Permission '{}' updated in user '{}' in repo '{}'", permission.getPath(), permission.getId(), repoId.id());
             return true;
         } catch (Exception e) {
@@ -274,6 +291,25 @@ public class PermissionFunctions implements IDBFunctions, PermissionCalls {
         return new HashSet<>(permissionMap.values());
     }
 
+    /**
+     * Compiles the permissions of a user and the groups they are in into a {@link PermissionIndex}, the result is not cached, see {@link EffectivePermissionCache}
+     *
+     * @param userId   the user to build the index for
+     * @param groupIds the groups the user is currently in
+     * @return the permission index
+     */
+    public PermissionIndex buildPermissionIndex(UserId userId, Set<GroupId> groupIds) {
+        Map<String, Permission<UserId>> permissions = userPermissions.get(userId);
+        List<Permission<GroupId>> permissionsFromGroups = new ArrayList<>();
+        for (GroupId groupId : groupIds) {
+            Map<String, Permission<GroupId>> permissionMap = groupPermissions.get(groupId);
+            if (permissionMap != null) {
+                permissionsFromGroups.addAll(permissionMap.values());
+            }
+        }
+        return PermissionIndex.of(permissions == null ? List.of() : new ArrayList<>(permissions.values()), permissionsFromGroups);
+    }
+
     /**
      * Checks if a group has a permission set for the specified path
      *
@@ -346,6 +382,8 @@ public class PermissionFunctions implements IDBFunctions, PermissionCalls {
             statement.setString(1, groupId.id());
             statement.executeUpdate();
             groupPermissions.remove(groupId);
+            database.incrementVersion();
+            PermissionEvents.groupPermissionsChanged(database.getRepoProperties().getId(), groupId);
         } catch (Exception e) {
             log.error("Failed to clean up group", e);
         } finally {
@@ -364,6 +402,8 @@ public class PermissionFunctions implements IDBFunctions, PermissionCalls {
             statement.setString(1, userId.id());
             statement.executeUpdate();
             userPermissions.remove(userId);
+            database.incrementVersion();
+            PermissionEvents.userPermissionsChanged(database.getRepoProperties().getId(), userId);
         } catch (Exception e) {
             log.error("Failed to clean up user", e);
         } finally {
@@ -8,12 +8,16 @@ import com.wonkglorg.doc.core.exception.client.ClientException;
 import com.wonkglorg.doc.core.exception.client.ReadOnlyRepoException;
 import com.wonkglorg.doc.core.interfaces.ResourceCalls;
 import com.wonkglorg.doc.core.objects.*;
+import com.wonkglorg.doc.core.path.PathTree;
+import com.wonkglorg.doc.core.path.PatternTrie;
+import com.wonkglorg.doc.core.path.ResourcePath;
 import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.permissions.PermissionType;
 import com.wonkglorg.doc.core.request.ResourceRequest;
 import com.wonkglorg.doc.core.request.ResourceUpdateRequest;
+import com.wonkglorg.doc.core.request.SearchRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.util.AntPathMatcher;
 
 import java.nio.file.Path;
 import java.sql.Connection;
@@ -22,7 +26,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.BiPredicate;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import static com.wonkglorg.doc.core.path.TargetPath.normalizePath;
 
@@ -31,22 +37,54 @@ import static com.wonkglorg.doc.core.path.TargetPath.normalizePath;
  */
 public class ResourceFunctions implements IDBFunctions, ResourceCalls {
 
+    private static final Logger log = LoggerFactory.getLogger(ResourceFunctions.class);
     /**
-     * The path matcher for this database
+     * Terms of at least this length are served by the trigram index of FileData, shorter ones by the word index FileWords
      */
-    private static final AntPathMatcher pathMatcher = new AntPathMatcher();
-    private static final Logger log = LoggerFactory.getLogger(ResourceFunctions.class);
+    private static final int TRIGRAM_LENGTH = 3;
+    /**
+     * The number of rows {@link #scanContent(ResourceRequest, BiPredicate)} reads per query, the read connection is returned to the pool between pages
+     */
+    private static final int SCAN_PAGE_SIZE = 100;
+    /**
+     * Points a resource at its content, a resource already pointing at the same content is left alone so its full text index is not rewritten
+     */
+    private static final String UPSERT_DOCUMENT = """
+            INSERT INTO Documents(resource_path, blob_id) VALUES(?, ?)
+                ON CONFLICT(resource_path) DO UPDATE SET blob_id = excluded.blob_id WHERE blob_id != excluded.blob_id
+            """;
     private final RepositoryDatabase database;
 
+    /**
+     * The searches served by each {@link SearchMode} and the time they took, see {@link #searchStats()}
+     */
+    private final Map<SearchMode, LongAdder> searchQueries = counters();
+    private final Map<SearchMode, LongAdder> searchNanos = counters();
+
     /**
      * The cache of resources for this database
      */
-    private final Map<Path, Resource> resourceCache = new java.util.concurrent.ConcurrentHashMap<>();
+    private final Map<ResourcePath, ResourceMetadata> resourceCache = new java.util.concurrent.ConcurrentHashMap<>();
 
     /**
-     * The cache of tags for this database
+     * The cached resources by their directory structure so ant path requests only visit the matching subtrees, always updated together with {@link #resourceCache}
      */
-    private final Map<TargetPath, TagId> tagPathCache = new HashMap<>();
+    private final PathTree<ResourceMetadata> resourceTree = new PathTree<>();
+
+    /**
+     * The tags of the cached resources by tag so tag filters never have to look at every resource, always updated together with {@link #resourceCache}
+     */
+    private final TagIndex tagIndex = new TagIndex();
+
+    /**
+     * The tags applied to ant paths by their normalized pattern
+     */
+    private final Map<String, Set<TagId>> pathTagCache = new HashMap<>();
+
+    /**
+     * {@link #pathTagCache} compiled into a trie to resolve the tags a resource inherits, guards both
+     */
+    private final PatternTrie<TagId> pathTagTrie = new PatternTrie<>();
 
     /**
      * The cache of tags for this database
@@ -64,11 +102,13 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
 
     @Override
     public void initialize() {
-        Connection connection = database.getConnection();
+        Connection connection = database.getReadConnection();
         try {
+            //path tags are needed first to resolve the inherited tags of each resource
+            loadPathTags(connection);
             List<Resource> resources = getAllResources(connection);
             for (Resource resource : resources) {
-                resourceCache.put(resource.resourcePath(), resource);
+                cacheResource(resource.metadata());
             }
 
             var allTags = loadAllTags(connection);
@@ -151,6 +191,23 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
         }
     }
 
+    /**
+     * Loads all tags applied to ant paths
+     *
+     * @param connection the connection to the database
+     * @throws CoreSqlException if an error occurs while fetching the path tags
+     */
+    private void loadPathTags(Connection connection) throws CoreSqlException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT target_path, tag_id FROM PathTags")) {
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                addPathTag(resultSet.getString("target_path"), TagId.of(resultSet.getString("tag_id")));
+            }
+        } catch (Exception e) {
+            throw new CoreSqlException("Failed to get all path tags", e);
+        }
+    }
+
     /**
      * Helper method to create a resource from a result set
      *
@@ -171,72 +228,432 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
      * @param request the resource request
      */
     public Map<Path, String> findByContent(ResourceRequest request) throws CoreException {
-        String sqlScript;
-
-        if (request.getSearchTerm() == null) {
-            sqlScript = """
-                    SELECT FileData.resource_path,
-                           CASE
-                               WHEN ? IS NOT NULL THEN data
-                               WHEN ? IS NOT NULL THEN data --just temp to match the same parameters
-                               END AS fileContent
-                      FROM FileData
-                     WHERE FileData.resource_path LIKE ?
-                     LIMIT ?;
-                    """;
-        } else {
-            if (request.getSearchTerm().length() > 3) {
-                sqlScript = """
-                        SELECT FileData.resource_path,
-                               CASE
-                                   WHEN ? IS NOT NULL THEN data
-                                   END AS fileContent
-                          FROM FileData
-                         WHERE data MATCH ?
-                           AND FileData.resource_path LIKE ?
-                         LIMIT ?;
-                        """;
+        Map<Path, String> resources = new HashMap<>();
+        scanContent(request, (path, data) -> {
+            resources.put(Path.of(path), data);
+            return true;
+        });
+        return resources;
+    }
+
+    /**
+     * Reads the resources matching a request by their content page by page
+     * <p>
+     * Every filter of the request is planned into a single query so sqlite applies the limit to the final result: the search term goes to the fts index (see
+     * {@link #isWordTerm(String)} for terms too short for trigrams), the path to a
+     * {@code LIKE} prefilter followed by {@link AntPathFunction}, and the tags to {@code EXISTS} / {@code NOT EXISTS} clauses on the primary keys of {@code ResourceTags}
+     * (own tags) and {@code PathTags} (inherited tags).
+     * <p>
+     * The rows are ordered by path and read {@link #SCAN_PAGE_SIZE} at a time, each page continuing after the last path of the previous one. A page is read completely
+     * before it is handed to the consumer, so a consumer writing to a slow client does not hold a read connection or an open cursor while doing so.
+     *
+     * @param request  the request
+     * @param consumer receives the path and content of each matching resource (the content is null if the request is not {@link ResourceRequest#isWithData()}), returns false
+     *                 to stop reading
+     * @throws CoreException if the query failed
+     */
+    private void scanContent(ResourceRequest request, BiPredicate<String, String> consumer) throws CoreException {
+        List<String> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+        //the content is only decompressed for the rows that are returned
+        sql.append("SELECT Documents.resource_path, ")
+                .append(request.isWithData() ? "(SELECT " + BlobStore.INFLATE + "(data) FROM Blobs WHERE Blobs.blob_id = Documents.blob_id)" : "NULL")
+                .append(" AS fileContent\n");
+        sql.append("  FROM Documents\n");
+        sql.append("  JOIN Resources ON Resources.resource_path = Documents.resource_path\n");
+        sql.append(" WHERE 1 = 1\n");
+
+        String searchTerm = request.getSearchTerm();
+        if (searchTerm != null) {
+            if (isWordTerm(searchTerm)) {
+                sql.append("   AND Documents.id IN (SELECT rowid FROM FileWords WHERE FileWords MATCH ?)\n");
+                parameters.add(wordPrefixQuery(searchTerm));
             } else {
-                sqlScript = """
-                        SELECT FileData.resource_path,
-                               CASE
-                                   WHEN ? IS NOT NULL THEN data
-                                   END AS fileContent
-                          FROM FileData
-                         WHERE data LIKE '%' || ? || '%'
-                           AND FileData.resource_path LIKE ?
-                         LIMIT ?;
-                        """;
+                //a like with at least 3 characters is served by the trigram index as well
+                sql.append(searchTerm.length() > TRIGRAM_LENGTH
+                        ? "   AND Documents.id IN (SELECT rowid FROM FileData WHERE data MATCH ?)\n"
+                        : "   AND Documents.id IN (SELECT rowid FROM FileData WHERE data LIKE '%' || ? || '%')\n");
+                parameters.add(searchTerm);
             }
         }
 
-        Connection connection = database.getConnection();
-        try (PreparedStatement statement = connection.prepareStatement(sqlScript)) {
-            Map<Path, String> resources = new HashMap<>();
-            statement.setString(1, request.isWithData() ? "anything" : null);
-            statement.setString(2, request.getSearchTerm());
-            statement.setString(3, DbHelper.convertAntPathToSQLLike(request.getPath()));
-            statement.setInt(4, request.getReturnLimit());
-            ResultSet resultSet = statement.executeQuery();
+        if (request.targetPath().isPresent()) {
+            sql.append("   AND Resources.resource_path LIKE ?\n");
+            sql.append("   AND ").append(AntPathFunction.NAME).append("(?, Resources.resource_path)\n");
+            parameters.add(DbHelper.convertAntPathToSQLLike(request.getPath()));
+            parameters.add(request.getPath());
+        }
 
-            while (resultSet.next()) {
-                resources.put(Path.of(resultSet.getString("resource_path")), resultSet.getString("fileContent"));
+        Set<TagId> whitelist = request.whiteListTags();
+        if (whitelist != null && !whitelist.isEmpty()) {
+            sql.append("   AND (").append(hasTagClause(whitelist, parameters)).append(")\n");
+        }
+        Set<TagId> blacklist = request.blacklistTags();
+        if (blacklist != null && !blacklist.isEmpty()) {
+            sql.append("   AND NOT (").append(hasTagClause(blacklist, parameters)).append(")\n");
+        }
+        String firstPage = sql + " ORDER BY Resources.resource_path LIMIT ?";
+        String nextPage = sql + "   AND Resources.resource_path > ?\n ORDER BY Resources.resource_path LIMIT ?";
+
+        int remaining = request.getReturnLimit();
+        String after = null;
+        while (remaining > 0) {
+            int pageSize = Math.min(remaining, SCAN_PAGE_SIZE);
+            List<ContentRow> page = new ArrayList<>(pageSize);
+            Connection connection = database.getReadConnection();
+            try {
+                AntPathFunction.register(connection);
+                try (PreparedStatement statement = connection.prepareStatement(after == null ? firstPage : nextPage)) {
+                    int index = 1;
+                    for (String parameter : parameters) {
+                        statement.setString(index++, parameter);
+                    }
+                    if (after != null) {
+                        statement.setString(index++, after);
+                    }
+                    statement.setInt(index, pageSize);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            page.add(new ContentRow(resultSet.getString("resource_path"), resultSet.getString("fileContent")));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                log.error("Failed to find resource by content", e);
+                throw new CoreSqlException("An unexpected error occured while searching resources!", e);
+            } finally {
+                closeConnection(connection);
             }
 
-            if (resources.isEmpty()) {
-                return new HashMap<>();
+            //the consumer decides when to stop reading
+            for (ContentRow row : page) {
+                if (!consumer.test(row.path(), row.content())) {
+                    return;
+                }
+            }
+            if (page.size() < pageSize) {
+                return;
             }
+            remaining -= page.size();
+            after = page.getLast().path();
+        }
+    }
 
-            return resources;
+    /**
+     * Builds the condition that a resource has any of the given tags, either on itself or inherited from a tagged ant path matching it
+     *
+     * @param tags       the tags
+     * @param parameters receives the parameters of the condition in order
+     * @return the condition
+     */
+    private static String hasTagClause(Set<TagId> tags, List<String> parameters) {
+        String placeholders = String.join(", ", Collections.nCopies(tags.size(), "?"));
+        for (TagId tag : tags) {
+            parameters.add(tag.id());
+        }
+        for (TagId tag : tags) {
+            parameters.add(tag.id());
+        }
+        return """
+                EXISTS (SELECT 1 FROM ResourceTags
+                         WHERE ResourceTags.tag_id IN (%1$s)
+                           AND ResourceTags.resource_path = Resources.resource_path)
+                OR EXISTS (SELECT 1 FROM PathTags
+                            WHERE PathTags.tag_id IN (%1$s)
+                              AND %2$s(PathTags.target_path, Resources.resource_path))""".formatted(placeholders, AntPathFunction.NAME);
+    }
+
+    /**
+     * Checks if a term is too short for the trigram index and is matched against FileWords instead. Such a term matches resources containing a word starting with it rather
+     * than containing it anywhere, a term of one or two characters matches almost every resource anywhere while the start of a word is what a user typing it is looking for.
+     *
+     * @param term the search term
+     * @return true if the term is matched against the word index
+     */
+    private static boolean isWordTerm(String term) {
+        //a term without letters or digits has no words to look up and stays a scan
+        return term.length() < TRIGRAM_LENGTH && term.codePoints().anyMatch(Character::isLetterOrDigit);
+    }
+
+    /**
+     * @return the FileWords query matching every word starting with the term
+     */
+    private static String wordPrefixQuery(String term) {
+        return "\"" + term.replace("\"", "\"\"") + "\"*";
+    }
+
+    /**
+     * Stores the content of resources and points their documents at it, the triggers on Documents keep FileData and FileWords in sync
+     *
+     * @param connection    the connection to write with
+     * @param contentByPath the new content by resource path
+     * @return the amount of documents written
+     */
+    private int writeDocuments(Connection connection, Map<String, String> contentByPath) throws SQLException {
+        if (contentByPath.isEmpty()) {
+            return 0;
+        }
+        Set<String> previousBlobIds = BlobStore.blobIds(connection, contentByPath.keySet());
+        Map<String, String> blobIds = BlobStore.store(connection, contentByPath.values());
+        int affectedRows;
+        try (PreparedStatement statement = connection.prepareStatement(UPSERT_DOCUMENT)) {
+            for (var entry : contentByPath.entrySet()) {
+                statement.setString(1, entry.getKey());
+                statement.setString(2, blobIds.get(entry.getValue()));
+                statement.addBatch();
+            }
+            affectedRows = Arrays.stream(statement.executeBatch()).sum();
+        }
+        BlobStore.removeUnused(connection, previousBlobIds);
+        if (database.getRepoProperties().isWordIndex()) {
+            TextIndex.reindex(connection, contentByPath.keySet());
+        }
+        return affectedRows;
+    }
+
+    /**
+     * @return the content of the resources that have any by their path
+     */
+    private static Map<String, String> contents(List<Resource> resources) {
+        Map<String, String> contents = new LinkedHashMap<>();
+        for (Resource resource : resources) {
+            if (resource.data() != null) {
+                contents.put(resource.resourcePath().toString(), resource.data());
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Searches the content of all resources ranked by relevance, only returns a short excerpt around the match instead of the whole document
+     * <p>
+     * The index a term is searched in is picked by {@link #searchMode(String)}. Ranked modes are ordered by bm25 (the default rank function of fts5), the others by path.
+     * Paging is done by the cursor of the request if present, otherwise by its offset.
+     *
+     * @param request the search request
+     * @return the ranked hits of the requested page
+     * @throws CoreException if the search failed
+     */
+    public SearchResult searchResources(SearchRequest request) throws CoreException {
+        String term = request.getSearchTerm();
+        if (term == null || term.isBlank()) {
+            return new SearchResult(new ArrayList<>(), 0, null);
+        }
+
+        long start = System.nanoTime();
+        SearchMode mode = searchMode(term);
+        String matchTerm = switch (mode) {
+            case WORD -> TextIndex.matchQuery(term);
+            case TRIGRAM -> "\"" + term.replace("\"", "\"\"") + "\"";
+            case PREFIX -> wordPrefixQuery(term);
+            case SCAN -> term;
+        };
+        //a word query rarely appears as written, the excerpt is taken around its first word instead
+        String excerptTerm = mode == SearchMode.WORD ? TextIndex.words(term).getFirst() : term;
+        SearchCursor cursor = SearchCursor.decode(request.getCursor());
+        int limit = Math.max(1, request.getLimit());
+
+        String sqlScript = switch (mode) {
+            case TRIGRAM -> """
+                    SELECT resource_path,
+                           rank AS score,
+                           snippet(FileData, 1, ?, ?, '...', ?) AS excerpt
+                      FROM FileData
+                     WHERE data MATCH ?
+                       AND resource_path LIKE ?
+                       AND (? IS NULL OR rank > ? OR (rank = ? AND resource_path > ?))
+                     ORDER BY rank, resource_path
+                     LIMIT ? OFFSET ?;
+                    """;
+            //FileText is contentless, the matches are joined with FileContent for their path and excerpt
+            case WORD -> """
+                    SELECT FileContent.resource_path,
+                           Matches.score,
+                           ? || substr(FileContent.data, max(1, instr(lower(FileContent.data), lower(?)) - ? * 4), length(?) + ? * 8) || ? AS excerpt
+                      FROM (SELECT rowid, %s AS score FROM FileText WHERE FileText MATCH ?) AS Matches
+                      JOIN FileContent ON FileContent.id = Matches.rowid
+                     WHERE FileContent.resource_path LIKE ?
+                       AND (? IS NULL OR Matches.score > ? OR (Matches.score = ? AND FileContent.resource_path > ?))
+                     ORDER BY Matches.score, FileContent.resource_path
+                     LIMIT ? OFFSET ?;
+                    """.formatted(TextIndex.RANK);
+            case PREFIX, SCAN -> """
+                    SELECT resource_path,
+                           0.0 AS score,
+                           ? || substr(data, max(1, instr(lower(data), lower(?)) - ? * 4), length(?) + ? * 8) || ? AS excerpt
+                      FROM FileContent
+                     WHERE %s
+                       AND resource_path LIKE ?
+                       AND (? IS NULL OR 0.0 > ? OR (0.0 = ? AND resource_path > ?))
+                     ORDER BY resource_path
+                     LIMIT ? OFFSET ?;
+                    """.formatted(shortTermClause(mode));
+        };
+
+        Connection connection = database.getReadConnection();
+        try (PreparedStatement statement = connection.prepareStatement(sqlScript)) {
+            int index = 1;
+            if (mode == SearchMode.TRIGRAM) {
+                statement.setString(index++, request.getHighlightStart());
+                statement.setString(index++, request.getHighlightEnd());
+                statement.setInt(index++, Math.clamp(request.getExcerptTokens(), 1, 64));
+            } else {
+                statement.setString(index++, "...");
+                statement.setString(index++, excerptTerm);
+                statement.setInt(index++, Math.clamp(request.getExcerptTokens(), 1, 64));
+                statement.setString(index++, excerptTerm);
+                statement.setInt(index++, Math.clamp(request.getExcerptTokens(), 1, 64));
+                statement.setString(index++, "...");
+            }
+            statement.setString(index++, matchTerm);
+            statement.setString(index++, DbHelper.convertAntPathToSQLLike(request.getPath()));
+
+            //hits are ordered by score, repo and path so ties with the cursor only continue in this repo if it comes after the cursors repo
+            if (cursor == null) {
+                statement.setNull(index++, java.sql.Types.DOUBLE);
+                statement.setNull(index++, java.sql.Types.DOUBLE);
+                statement.setNull(index++, java.sql.Types.DOUBLE);
+                statement.setNull(index++, java.sql.Types.VARCHAR);
+            } else {
+                int repoOrder = database.getRepoId().id().compareTo(cursor.repoId().id());
+                statement.setDouble(index++, cursor.score());
+                statement.setDouble(index++, cursor.score());
+                statement.setDouble(index++, cursor.score());
+                if (repoOrder < 0) {
+                    statement.setNull(index++, java.sql.Types.VARCHAR);
+                } else {
+                    statement.setString(index++, repoOrder == 0 ? cursor.resourcePath() : "");
+                }
+            }
+            statement.setInt(index++, limit + 1);
+            statement.setInt(index, cursor == null ? Math.max(0, request.getOffset()) : 0);
+
+            List<SearchHit> hits = new ArrayList<>();
+            boolean hasMore = false;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    if (hits.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    hits.add(new SearchHit(database.getRepoId(),
+                            Path.of(resultSet.getString("resource_path")),
+                            resultSet.getDouble("score"),
+                            resultSet.getString("excerpt")));
+                }
+            }
 
+            String nextCursor = hasMore ? SearchCursor.after(hits.getLast()).encode() : null;
+            SearchResult result = new SearchResult(hits, countMatches(connection, mode, matchTerm, request.getPath()), nextCursor);
+            searchQueries.get(mode).increment();
+            searchNanos.get(mode).add(System.nanoTime() - start);
+            return result;
         } catch (Exception e) {
-            log.error("Failed to find resource by content", e);
+            log.error("Failed to search resources", e);
             throw new CoreSqlException("An unexpected error occured while searching resources!", e);
         } finally {
             closeConnection(connection);
         }
     }
 
+    /**
+     * Picks the index a search term is matched against:
+     * <ul>
+     *     <li>{@link SearchMode#WORD} for natural language of at least two words if the repo keeps a word index, see {@link TextIndex#isWordQuery(String)}</li>
+     *     <li>{@link SearchMode#TRIGRAM} for everything else of at least 3 characters, which covers substrings and code</li>
+     *     <li>{@link SearchMode#PREFIX} or {@link SearchMode#SCAN} for terms too short for trigrams, see {@link #isWordTerm(String)}</li>
+     * </ul>
+     *
+     * @param term the search term
+     * @return the mode to search in
+     */
+    public SearchMode searchMode(String term) {
+        if (database.getRepoProperties().isWordIndex() && TextIndex.isWordQuery(term)) {
+            return SearchMode.WORD;
+        }
+        if (term.length() >= TRIGRAM_LENGTH) {
+            return SearchMode.TRIGRAM;
+        }
+        return isWordTerm(term) ? SearchMode.PREFIX : SearchMode.SCAN;
+    }
+
+    /**
+     * Counts all resources matching a search term
+     *
+     * @param connection the connection to use
+     * @param mode       the mode the term is searched in
+     * @param term       the term to match
+     * @param path       the path to limit the count to
+     * @return the amount of matching resources
+     */
+    private long countMatches(Connection connection, SearchMode mode, String term, String path) throws SQLException {
+        String sqlScript = switch (mode) {
+            case TRIGRAM -> """
+                    SELECT count(*) FROM FileData WHERE data MATCH ? AND resource_path LIKE ?;
+                    """;
+            case WORD -> """
+                    SELECT count(*) FROM FileText JOIN Documents ON Documents.id = FileText.rowid WHERE FileText MATCH ? AND Documents.resource_path LIKE ?;
+                    """;
+            case PREFIX, SCAN -> """
+                    SELECT count(*) FROM FileContent WHERE %s AND resource_path LIKE ?;
+                    """.formatted(shortTermClause(mode));
+        };
+        try (PreparedStatement statement = connection.prepareStatement(sqlScript)) {
+            statement.setString(1, term);
+            statement.setString(2, DbHelper.convertAntPathToSQLLike(path));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * The condition on FileContent for a term too short for the trigram index, either the word index or a scan for terms without any words
+     */
+    private static String shortTermClause(SearchMode mode) {
+        return mode == SearchMode.PREFIX ? "id IN (SELECT rowid FROM FileWords WHERE FileWords MATCH ?)" : "data LIKE '%' || ? || '%'";
+    }
+
+    /**
+     * Reports the size of each search index and the latency of the searches served by each mode since the repo was loaded
+     *
+     * @return the current search stats
+     * @throws CoreSqlException if the index sizes could not be read
+     */
+    public SearchStats searchStats() throws CoreSqlException {
+        List<String> indexes = new ArrayList<>(List.of("FileData", "FileWords"));
+        if (database.getRepoProperties().isWordIndex()) {
+            indexes.add(TextIndex.TABLE);
+        }
+        Map<String, Long> indexBytes = new LinkedHashMap<>();
+        Connection connection = database.getReadConnection();
+        try {
+            //the inverted index of an fts5 table is stored as blobs in its _data shadow table, the content is in Blobs and reported next to it
+            for (String table : indexes) {
+                try (PreparedStatement statement = connection.prepareStatement("SELECT coalesce(sum(length(block)), 0) FROM " + table + "_data");
+                     ResultSet rs = statement.executeQuery()) {
+                    indexBytes.put(table, rs.next() ? rs.getLong(1) : 0);
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT coalesce(sum(length(data)), 0) FROM Blobs");
+                 ResultSet rs = statement.executeQuery()) {
+                indexBytes.put("Blobs", rs.next() ? rs.getLong(1) : 0);
+            }
+        } catch (SQLException e) {
+            throw new CoreSqlException("Failed to read the search index sizes of '%s'".formatted(database.getRepoId()), e);
+        } finally {
+            closeConnection(connection);
+        }
+
+        Map<SearchMode, SearchStats.Mode> modes = new EnumMap<>(SearchMode.class);
+        for (SearchMode mode : SearchMode.values()) {
+            long queries = searchQueries.get(mode).sum();
+            double averageMillis = queries == 0 ? 0 : searchNanos.get(mode).sum() / 1_000_000.0 / queries;
+            modes.put(mode, new SearchStats.Mode(queries, averageMillis));
+        }
+        return new SearchStats(indexBytes, modes);
+    }
+
     /**
      * Fetches a resource from the database
      *
@@ -272,10 +689,8 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
             throw new ReadOnlyRepoException("Repository is read only and cannot be edited!");
         }
 
-        try (PreparedStatement statement = connection.prepareStatement("UPDATE FileData SET data = ? WHERE resource_path = ?")) {
-            statement.setString(1, data);
-            statement.setString(2, normalizePath(resourcePath.toString()));
-            statement.executeUpdate();
+        try {
+            writeDocuments(connection, Map.of(normalizePath(resourcePath.toString()), data));
         } catch (Exception e) {
             String errorResponse = "Failed to update resource data at path %s".formatted(resourcePath);
             log.error(errorResponse, e);
@@ -406,16 +821,18 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
                 affectedRows += Arrays.stream(statement.executeBatch()).sum();
             }
 
-            try (var statement = connection.prepareStatement("INSERT INTO FileData(resource_path, data )VALUES(?, ?)")) {
+            affectedRows += writeDocuments(connection, contents(resources));
+
+            //the tags are written as well so tag filters in queries see the same tags as the cache
+            try (var statement = connection.prepareStatement("INSERT OR IGNORE INTO ResourceTags(resource_path, tag_id) VALUES(?, ?)")) {
                 for (var resource : resources) {
-                    if (resource.data() == null) {
-                        continue;
+                    for (TagId tag : resource.getResourceTags()) {
+                        statement.setString(1, resource.resourcePath().toString());
+                        statement.setString(2, tag.id());
+                        statement.addBatch();
                     }
-                    statement.setString(1, resource.resourcePath().toString());
-                    statement.setString(2, resource.data());
-                    statement.addBatch();
                 }
-                affectedRows += Arrays.stream(statement.executeBatch()).sum();
+                statement.executeBatch();
                 connection.commit();
             }
         } catch (Exception e) {
@@ -456,27 +873,7 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
                 affectedRows += Arrays.stream(statement.executeBatch()).sum();
             }
 
-            //deleting and reinserting the filedata
-            try (var deleteStatement = connection.prepareStatement("DELETE FROM FileData WHERE resource_path = ?"); var insertStatement = connection.prepareStatement("INSERT INTO FileData(resource_path, data) VALUES(?, ?)")) {
-
-                for (var resource : resources) {
-                    if (resource.data() == null) {
-                        continue;
-                    }
-
-                    // Delete existing entry
-                    deleteStatement.setString(1, resource.resourcePath().toString());
-                    deleteStatement.addBatch();
-
-                    // Reinsert new data
-                    insertStatement.setString(1, resource.resourcePath().toString());
-                    insertStatement.setString(2, resource.data());
-                    insertStatement.addBatch();
-                }
-
-                deleteStatement.executeBatch(); // Ensure deletions are executed first
-                affectedRows += Arrays.stream(insertStatement.executeBatch()).sum();
-            }
+            affectedRows += writeDocuments(connection, contents(resources));
 
             connection.commit();
         } catch (Exception e) {
@@ -504,14 +901,15 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
         try {
             int affectedRows = 0;
             connection.setAutoCommit(false);
+            Set<String> blobIds = BlobStore.blobIds(connection, resourcePaths.stream().map(Path::toString).toList());
 
-            // Delete from the FTS table (FileData) first
-            try (var deleteFileDataStmt = connection.prepareStatement("DELETE FROM FileData WHERE resource_path = ?")) {
+            // Delete the content first, the triggers on Documents remove it from the FTS tables
+            try (var deleteDocumentStmt = connection.prepareStatement("DELETE FROM Documents WHERE resource_path = ?")) {
                 for (var resourcePath : resourcePaths) {
-                    deleteFileDataStmt.setString(1, resourcePath.toString());
-                    deleteFileDataStmt.addBatch();
+                    deleteDocumentStmt.setString(1, resourcePath.toString());
+                    deleteDocumentStmt.addBatch();
                 }
-                affectedRows += Arrays.stream(deleteFileDataStmt.executeBatch()).sum();
+                affectedRows += Arrays.stream(deleteDocumentStmt.executeBatch()).sum();
             }
 
             // Delete from the Resources table
@@ -522,6 +920,7 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
                 }
                 affectedRows += Arrays.stream(deleteResourcesStmt.executeBatch()).sum();
             }
+            BlobStore.removeUnused(connection, blobIds);
 
             connection.commit();
         } catch (Exception e) {
@@ -538,133 +937,203 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
 
     @Override
     public List<Resource> getResources(ResourceRequest request) throws CoreException {
-        Map<Path, Resource> resources = new HashMap<>(resourceCache);
+        List<Resource> resources = new ArrayList<>();
+        streamResources(request, resources::add);
+        return resources;
+    }
 
-        if (request.getSearchTerm() != null || request.isWithData()) {
-            Map<Path, String> content = findByContent(request);
+    /**
+     * Passes the resources matching a request to a consumer one at a time instead of collecting them. Requests for content are read from the database page by page so only
+     * the content of a single page is held at a time, regardless of how many resources match, and no read connection is held while the consumer runs.
+     *
+     * @param request  the request
+     * @param consumer receives each matching resource
+     * @throws CoreException if the resources could not be read
+     */
+    public void streamResources(ResourceRequest request, Consumer<Resource> consumer) throws CoreException {
+        int limit = request.getReturnLimit();
+        if (limit <= 0) {
+            return;
+        }
 
-            resources = new HashMap<>();
-            for (var entry : resourceCache.entrySet()) {
-                if (content.containsKey(entry.getKey())) {
-                    resources.put(entry.getKey(), entry.getValue().copy().setData(content.get(entry.getKey())));
+        if (request.getSearchTerm() != null || request.isWithData()) {
+            //every filter and the limit are applied by the query itself
+            scanContent(request, (path, data) -> {
+                ResourceMetadata metadata = resourceCache.get(ResourcePath.of(path));
+                if (metadata != null) {
+                    consumer.accept(new Resource(metadata, PermissionType.EDIT, data));
                 }
-            }
+                return true;
+            });
+            return;
         }
 
-        // Apply path filtering only if necessary
+        //tag filters are resolved on the index first so only resources passing them are looked at
+        boolean filterTags = (request.whiteListTags() != null && !request.whiteListTags().isEmpty()) || (request.blacklistTags() != null && !request.blacklistTags().isEmpty());
+        TagIndex.Selection selection = filterTags ? tagIndex.select(request.whiteListTags(), request.blacklistTags()) : null;
+
+        Collection<ResourceMetadata> candidates;
         if (request.targetPath().isPresent()) {
-            resources = resources.entrySet().stream().filter(entry -> pathMatcher.match(request.getPath(), entry.getKey().toString())).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            //only descends into the directories the path can match instead of testing every cached resource
+            Map<ResourcePath, ResourceMetadata> matching = new HashMap<>();
+            resourceTree.collect(request.getPath(), metadata -> {
+                if (selection == null || selection.contains(metadata.resourceKey())) {
+                    matching.put(metadata.resourceKey(), metadata);
+                }
+            });
+            candidates = matching.values();
+        } else if (selection != null) {
+            List<ResourceMetadata> selected = new ArrayList<>(selection.size());
+            selection.forEach(path -> {
+                ResourceMetadata metadata = resourceCache.get(path);
+                if (metadata != null) {
+                    selected.add(metadata);
+                }
+            });
+            candidates = selected;
+        } else {
+            candidates = resourceCache.values();
         }
 
-        resources = resources.entrySet().stream().filter(entry -> request.whiteListTags() == null || request.whiteListTags().isEmpty() || entry.getValue().hasAnyTagId(request.whiteListTags())).filter(entry -> request.blacklistTags() == null || request.blacklistTags().isEmpty() || !entry.getValue().hasAnyTagId(request.blacklistTags())).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-        List<Resource> collect = resources.values().stream().limit(request.getReturnLimit()).map(Resource::copy).collect(Collectors.toList());
-
-
-
-        for (Resource resource : collect) {
-            Set<TagId> additionalTagsToAdd = tagsForPath(TargetPath.of(resource.resourcePath()), tagPathCache);
+        //each result is a view of the shared metadata, nothing but the view itself is allocated
+        int passed = 0;
+        for (ResourceMetadata metadata : candidates) {
+            if (passed++ >= limit) {
+                break;
+            }
+            consumer.accept(new Resource(metadata, PermissionType.EDIT, null));
         }
+    }
 
+    /**
+     * Adds a resource to {@link #resourceCache}, {@link #resourceTree} and {@link #tagIndex} after resolving its inherited tags
+     *
+     * @param metadata the resource to cache
+     * @return the cached resource
+     */
+    private ResourceMetadata cacheResource(ResourceMetadata metadata) {
+        ResourceMetadata resolved = metadata.withInheritedTags(inheritedTags(metadata.resourceKey()));
+        resourceCache.put(resolved.resourceKey(), resolved);
+        resourceTree.put(resolved.resourceKey(), resolved);
+        tagIndex.setTags(resolved.resourceKey(), resolved.allTags());
+        database.incrementVersion();
+        return resolved;
+    }
 
-        return collect;
+    /**
+     * Removes a resource from {@link #resourceCache}, {@link #resourceTree} and {@link #tagIndex}
+     *
+     * @param path the path of the resource
+     * @return the removed resource or null if it was not cached
+     */
+    private ResourceMetadata uncacheResource(ResourcePath path) {
+        resourceTree.remove(path);
+        tagIndex.remove(path);
+        database.incrementVersion();
+        return resourceCache.remove(path);
     }
 
 
     /**
-     * Resolves all tags applied to directories based on the path
+     * Resolves the tags a path inherits from the tagged ant paths matching it
      *
-     * @param path         the path to resolve
-     * @param tagPathCache the tag path cache
-     * @return a set of tags
+     * @param path the path to resolve
+     * @return the inherited tags
      */
-    public static Set<TagId> tagsForPath(TargetPath path, Map<TargetPath, TagId> tagPathCache) {
+    private Set<TagId> inheritedTags(ResourcePath path) {
         Set<TagId> tags = new HashSet<>();
-        for (Map.Entry<TargetPath, TagId> entry : tagPathCache.entrySet()) {
-            if (pathMatcher.match(entry.getKey().toString(), path.toString())) {
-                tags.add(entry.getValue());
-            }
+        synchronized (pathTagTrie) {
+            pathTagTrie.collect(path.segments(), tags::add);
         }
         return tags;
     }
 
-    @Override
-    public void insertResource(Resource resource) throws ClientException, CoreException {
-        if (database.getRepoProperties().isReadOnly()) {
-            throw new ReadOnlyRepoException("Repository is read only and cannot be edited!");
-        }
-        Connection connection = database.getConnection();
-        try {
-            connection.setAutoCommit(false);
-
-            String sqlResourceInsert = """
-                    
-                        INSERT INTO Resources(resource_path, created_at, created_by, last_modified_at, last_modified_by,category)
-                    VALUES(?, ?, ?, ?, ?, ?)
-                    
-                    """;
-            try (PreparedStatement statement = connection.prepareStatement(sqlResourceInsert)) {
-                statement.setString(1, resource.resourcePath().toString());
-                statement.setString(2, DateHelper.fromDateTime(resource.createdAt()));
-                statement.setString(3, resource.createdBy());
-                statement.setString(4, DateHelper.fromDateTime(resource.modifiedAt()));
-                statement.setString(5, resource.modifiedBy());
-                statement.setString(6, resource.category());
-                statement.executeUpdate();
+    /**
+     * Adds a tag to an ant path in {@link #pathTagCache} and {@link #pathTagTrie}
+     *
+     * @param pattern the normalized pattern
+     * @param tagId   the tag to add
+     */
+    private void addPathTag(String pattern, TagId tagId) {
+        synchronized (pathTagTrie) {
+            if (pathTagCache.computeIfAbsent(pattern, p -> new HashSet<>()).add(tagId)) {
+                pathTagTrie.add(pattern, tagId);
             }
+        }
+    }
 
-            if (resource.data() == null) { //no data to insert so we skip the next part
-                resourceCache.put(resource.resourcePath(), resource);
+    /**
+     * Removes a tag from an ant path in {@link #pathTagCache} and {@link #pathTagTrie}
+     *
+     * @param pattern the normalized pattern
+     * @param tagId   the tag to remove
+     */
+    private void removePathTag(String pattern, TagId tagId) {
+        synchronized (pathTagTrie) {
+            Set<TagId> tags = pathTagCache.get(pattern);
+            if (tags == null || !tags.remove(tagId)) {
                 return;
             }
-
-            String sqlDataInsert = """
-                    INSERT INTO
-                    FileData(resource_path, data)
-                    VALUES(?,?)
-                    """;
-            try (PreparedStatement statement = connection.prepareStatement(sqlDataInsert)) {
-                statement.setString(1, resource.resourcePath().toString());
-                statement.setString(2, resource.data());
-                statement.executeUpdate();
+            if (tags.isEmpty()) {
+                pathTagCache.remove(pattern);
             }
+            pathTagTrie.remove(pattern, tagId);
+        }
+    }
 
-            Set<TagId> resourceTags = resource.getResourceTags();
-            if (resourceTags != null && resourceTags.isEmpty()) {
-
-                String sqlTagInsert = """
-                        INSERT INTO ResourceTags(resource_path, tag_id)
-                        VALUES(?,?)
+    @Override
+    public void insertResource(Resource resource) throws ClientException, CoreException {
+        if (database.getRepoProperties().isReadOnly()) {
+            throw new ReadOnlyRepoException("Repository is read only and cannot be edited!");
+        }
+        try {
+            database.writeQueue().execute(connection -> {
+                String sqlResourceInsert = """
+                        
+                            INSERT INTO Resources(resource_path, created_at, created_by, last_modified_at, last_modified_by,category)
+                        VALUES(?, ?, ?, ?, ?, ?)
+                        
                         """;
-                try (PreparedStatement statement = connection.prepareStatement(sqlTagInsert)) {
-                    for (TagId tagId : resourceTags) {
-                        statement.setString(1, resource.resourcePath().toString());
-                        statement.setString(2, tagId.id());
-                        statement.addBatch();
-                    }
-                    statement.executeBatch();
+                try (PreparedStatement statement = connection.prepareStatement(sqlResourceInsert)) {
+                    statement.setString(1, resource.resourcePath().toString());
+                    statement.setString(2, DateHelper.fromDateTime(resource.createdAt()));
+                    statement.setString(3, resource.createdBy());
+                    statement.setString(4, DateHelper.fromDateTime(resource.modifiedAt()));
+                    statement.setString(5, resource.modifiedBy());
+                    statement.setString(6, resource.category());
+                    statement.executeUpdate();
                 }
 
-            }
+                if (resource.data() == null) { //no data to insert so we skip the next part
+                    return null;
+                }
 
-            connection.commit();
+                writeDocuments(connection, Map.of(resource.resourcePath().toString(), resource.data()));
+
+                Set<TagId> resourceTags = resource.getResourceTags();
+                if (resourceTags != null && resourceTags.isEmpty()) {
+
+                    String sqlTagInsert = """
+                            INSERT INTO ResourceTags(resource_path, tag_id)
+                            VALUES(?,?)
+                            """;
+                    try (PreparedStatement statement = connection.prepareStatement(sqlTagInsert)) {
+                        for (TagId tagId : resourceTags) {
+                            statement.setString(1, resource.resourcePath().toString());
+                            statement.setString(2, tagId.id());
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
 
-            resourceCache.put(resource.resourcePath(), resource);
+                }
+                return null;
+            });
 
-        } catch (Exception e) {
-            try {
-                connection.rollback();
-            } catch (SQLException ex) {
-                log.error("Failed to rollback transaction", ex);
-            }
+            cacheResource(resource.metadata());
+        } catch (CoreSqlException e) {
             log.error("Failed to insert resource", e);
             throw new CoreSqlException("Failed to insert resource", e);
-        } finally {
-            try {
-                connection.setAutoCommit(true);
-            } catch (SQLException e) {
-                throw new CoreSqlException("Failed to set auto commit to true", e);
-            }
-            closeConnection(connection);
         }
     }
 
@@ -674,26 +1143,32 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
             throw new ReadOnlyRepoException("Repository is read only and cannot be edited!");
         }
         log.info("Removing resource at path '{}' for '{}'", path, repoId);
-        Connection connection = database.getConnection();
-        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM Resources WHERE resource_path = ?")) {
-            statement.setString(1, normalizePath(path.toString()));
-            statement.executeUpdate();
-            resourceCache.remove(path);
+        try {
+            database.writeQueue().execute(connection -> {
+                String resourcePath = normalizePath(path.toString());
+                Set<String> blobIds = BlobStore.blobIds(connection, List.of(resourcePath));
+                try (PreparedStatement statement = connection.prepareStatement("DELETE FROM Resources WHERE resource_path = ?")) {
+                    statement.setString(1, resourcePath);
+                    int deleted = statement.executeUpdate();
+                    BlobStore.removeUnused(connection, blobIds);
+                    return deleted;
+                }
+            });
+            uncacheResource(ResourcePath.of(path));
             log.info("Resource at path '{}' for '{}' removed", path, repoId);
             return true;
-        } catch (Exception e) {
+        } catch (CoreSqlException e) {
             throw new CoreSqlException("Failed to delete resource", e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
     @Override
     public Resource updateResource(ResourceUpdateRequest request) throws CoreSqlException, ReadOnlyRepoException {
         log.info("Updating resource '{}' for '{}'", request.path(), database.getRepoId());
-        Connection connection = database.getConnection();
-        try {
-            connection.setAutoCommit(false);
+        if (request.getData() != null && database.getRepoProperties().isReadOnly()) {
+            throw new ReadOnlyRepoException("Repository is read only and cannot be edited!");
+        }
+        Resource resource = database.writeQueue().execute(connection -> {
             if (request.getData() != null) {
                 updateResourceData(connection, request.path(), request.getData());
             }
@@ -725,40 +1200,24 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
                 statement.setString(3, request.path().toString());
 
                 statement.executeUpdate();
+            }
 
-                connection.commit();
+            //gets the updated resource
+            return getResource(connection, request.path());
+        });
 
-                //gets the updated resource
-                Resource resource = getResource(connection, request.path());
-                if (resource == null) {
-                    throw new CoreSqlException("Failed to update resource '%s'".formatted(request.path()));
-                }
-
-                resourceCache.put(request.path(), resource);
-                log.info("Resource '{}' updated for '{}'", request.path(), database.getRepoId());
-                return resource;
-            }
-        } catch (SQLException e) {
-            try {
-                connection.rollback();
-            } catch (SQLException ex) {
-                log.error("Failed to rollback transaction", ex);
-            }
-            log.error("Failed to update resource '{}'", request.path(), e);
-            throw new CoreSqlException("Failed to update resource '%s'".formatted(request.path()), e);
-        } finally {
-            try {
-                connection.setAutoCommit(true);
-                connection.close();
-            } catch (SQLException e) {
-                log.error("Failed to close connection", e);
-            }
+        if (resource == null) {
+            throw new CoreSqlException("Failed to update resource '%s'".formatted(request.path()));
         }
+
+        ResourceMetadata cached = cacheResource(resource.metadata());
+        log.info("Resource '{}' updated for '{}'", request.path(), database.getRepoId());
+        return new Resource(cached, resource.getPermissionType(), resource.data());
     }
 
     @Override
     public boolean resourceExists(RepoId repoId, Path path) {
-        return resourceCache.containsKey(path);
+        return resourceCache.containsKey(ResourcePath.of(path));
     }
 
     @Override
@@ -772,9 +1231,8 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
             statement.setString(1, newPath.toString());
             statement.setString(2, oldPath.toString());
             statement.executeUpdate();
-            Resource resource = resourceCache.remove(oldPath);
-            resource.setResourcePath(newPath);
-            resourceCache.put(newPath, resource);
+            ResourceMetadata metadata = uncacheResource(ResourcePath.of(oldPath));
+            cacheResource(metadata.withResourcePath(newPath));
             log.info("Resource path updated from '{}' to '{}'", oldPath, newPath);
             return true;
         } catch (Exception e) {
@@ -792,10 +1250,10 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
      */
     public void batchDelete(List<Path> resources) throws CoreSqlException, ReadOnlyRepoException {
         log.info("Batch deleting resources for repo '{}'", database.getRepoId());
-        if (database.getRepoProperties().isReadOnly()) {
+        if (!database.getRepoProperties().isReadOnly()) {
             batchDeleteResources(resources);
         }
-        resources.forEach(resourceCache::remove);
+        resources.forEach(path -> uncacheResource(ResourcePath.of(path)));
         log.info("Batch deleted resources for repo '{}'", database.getRepoId());
     }
 
@@ -806,10 +1264,10 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
      */
     public void batchUpdate(List<Resource> resources) throws CoreSqlException, ReadOnlyRepoException {
         log.info("Batch updating resources for repo '{}'", database.getRepoId());
-        if (database.getRepoProperties().isReadOnly()) {
+        if (!database.getRepoProperties().isReadOnly()) {
             batchUpdateResources(resources);
         }
-        resources.forEach(resource -> resourceCache.put(resource.resourcePath(), resource));
+        resources.forEach(resource -> cacheResource(resource.metadata()));
     }
 
     /**
@@ -822,7 +1280,7 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
         if (!database.getRepoProperties().isReadOnly()) {
             batchInsertResources(resources);
         }
-        resources.forEach(resource -> resourceCache.put(resource.resourcePath(), resource));
+        resources.forEach(resource -> cacheResource(resource.metadata()));
     }
 
     @Override
@@ -839,6 +1297,7 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
             statement.setString(2, tag.tagName());
             statement.executeUpdate();
             tagCache.put(tag.tagId(), tag);
+            database.incrementVersion();
             log.info("Tag '{}' added to '{}'", tag.tagId(), repoId);
         } catch (Exception e) {
             throw new CoreSqlException("Failed to add tag '%s' to '%s'".formatted(tag.tagId(), database.getRepoId()), e);
@@ -850,18 +1309,36 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
     @Override
     public void removeTag(RepoId repoId, TagId tagId) throws CoreSqlException {
         log.info("Removing tag {} for repo {}", tagId, repoId);
-        Connection connection = database.getConnection();
-        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM Tags WHERE tag_id = ?")) {
-            statement.setString(1, tagId.id());
-            statement.executeUpdate();
+        try {
+            //the rows referencing the tag go first, the tag itself is only deleted once nothing points to it
+            database.writeQueue().execute(connection -> {
+                for (String sql : List.of("DELETE FROM PathTags WHERE tag_id = ?", "DELETE FROM ResourceTags WHERE tag_id = ?", "DELETE FROM Tags WHERE tag_id = ?")) {
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        statement.setString(1, tagId.id());
+                        statement.executeUpdate();
+                    }
+                }
+                return null;
+            });
             tagCache.remove(tagId);
-            //remove tags from resource cache
-            resourceCache.values().forEach(r -> r.getResourceTags().remove(tagId));
+            database.incrementVersion();
+            synchronized (pathTagTrie) {
+                for (String pattern : new ArrayList<>(pathTagCache.keySet())) {
+                    removePathTag(pattern, tagId);
+                }
+            }
+            //remove tags from resource cache, the inherited tags are resolved again without the removed path tags
+            for (ResourceMetadata metadata : new ArrayList<>(resourceCache.values())) {
+                if (metadata.hasAnyTagId(Set.of(tagId))) {
+                    Set<TagId> tags = new HashSet<>(metadata.resourceTags());
+                    tags.remove(tagId);
+                    cacheResource(metadata.withTags(tags));
+                }
+            }
+            tagIndex.removeTag(tagId);
             log.info("Tag {} removed for repo {}", tagId, repoId);
-        } catch (Exception e) {
+        } catch (CoreSqlException e) {
             throw new CoreSqlException("Failed to remove tag '%s'".formatted(tagId.id()), e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
@@ -901,25 +1378,39 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
 
         if (path.isAntPath()) {
 
-            try (PreparedStatement statement = database.getConnection().prepareStatement("INSERT INTO PathTags(path, tag_id) VALUES(?, ?)")) {
-                statement.setString(1, path.toString());
-                statement.setString(2, tagId.id());
-                statement.executeUpdate();
-                tagPathCache.put(path, tagId);
-            } catch (Exception e) {
+            try {
+                database.writeQueue().execute(connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement("INSERT INTO PathTags(target_path, tag_id) VALUES(?, ?)")) {
+                        statement.setString(1, path.toString());
+                        statement.setString(2, tagId.id());
+                        return statement.executeUpdate();
+                    }
+                });
+                addPathTag(path.toString(), tagId);
+                //only the resources below the pattern inherit the tag
+                List<ResourceMetadata> affected = new ArrayList<>();
+                resourceTree.collect(path.toString(), affected::add);
+                affected.forEach(this::cacheResource);
+            } catch (CoreSqlException e) {
                 throw new CoreSqlException("Failed to add tag to path", e);
             }
 
         } else {
-            try (PreparedStatement statement = database.getConnection().prepareStatement("INSERT INTO ResourceTags(resource_path, tag_id) VALUES(?, ?)")) {
-                statement.setString(1, path.toString());
-                statement.setString(2, tagId.id());
-                statement.executeUpdate();
-                Resource resource = resourceCache.get(path.getPath());
-                if (resource != null) {
-                    resource.getResourceTags().add(tagId);
+            try {
+                database.writeQueue().execute(connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement("INSERT INTO ResourceTags(resource_path, tag_id) VALUES(?, ?)")) {
+                        statement.setString(1, path.toString());
+                        statement.setString(2, tagId.id());
+                        return statement.executeUpdate();
+                    }
+                });
+                ResourceMetadata metadata = resourceCache.get(path.getResourcePath());
+                if (metadata != null) {
+                    Set<TagId> tags = new HashSet<>(metadata.resourceTags());
+                    tags.add(tagId);
+                    cacheResource(metadata.withTags(tags));
                 }
-            } catch (SQLException e) {
+            } catch (CoreSqlException e) {
                 throw new CoreSqlException("Failed to add tag to path", e);
             }
         }
@@ -936,26 +1427,39 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
         }
 
         if (path.isAntPath()) {
-            try (var statement = database.getConnection().prepareStatement("DELETE FROM PathTags WHERE path = ? AND tag_id = ?")) {
-                statement.setString(1, path.toString());
-                statement.setString(2, tagId.id());
-                statement.executeUpdate();
-            } catch (SQLException e) {
+            try {
+                database.writeQueue().execute(connection -> {
+                    try (var statement = connection.prepareStatement("DELETE FROM PathTags WHERE target_path = ? AND tag_id = ?")) {
+                        statement.setString(1, path.toString());
+                        statement.setString(2, tagId.id());
+                        return statement.executeUpdate();
+                    }
+                });
+            } catch (CoreSqlException e) {
                 throw new CoreSqlException("Failed to remove tag from path", e);
-
             }
-            tagPathCache.remove(path);
+            removePathTag(path.toString(), tagId);
+            //other patterns may still apply the same tag so the affected resources are resolved again
+            List<ResourceMetadata> affected = new ArrayList<>();
+            resourceTree.collect(path.toString(), affected::add);
+            affected.forEach(this::cacheResource);
         } else {
-            try (var statement = database.getConnection().prepareStatement("DELETE FROM ResourceTags WHERE resource_path = ? AND tag_id = ?")) {
-                statement.setString(1, path.toString());
-                statement.setString(2, tagId.id());
-                statement.executeUpdate();
-            } catch (SQLException e) {
+            try {
+                database.writeQueue().execute(connection -> {
+                    try (var statement = connection.prepareStatement("DELETE FROM ResourceTags WHERE resource_path = ? AND tag_id = ?")) {
+                        statement.setString(1, path.toString());
+                        statement.setString(2, tagId.id());
+                        return statement.executeUpdate();
+                    }
+                });
+            } catch (CoreSqlException e) {
                 throw new CoreSqlException("Failed to remove tag from path", e);
             }
-            Resource resource = resourceCache.get(path.getPath());
-            if (resource != null) {
-                resource.getResourceTags().remove(tagId);
+            ResourceMetadata metadata = resourceCache.get(path.getResourcePath());
+            if (metadata != null) {
+                Set<TagId> tags = new HashSet<>(metadata.resourceTags());
+                tags.remove(tagId);
+                cacheResource(metadata.withTags(tags));
             }
         }
     }
@@ -966,10 +1470,13 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
             throw new ClientException("Path cannot be null");
         }
         if (path.isAntPath()) {
-            return tagPathCache.get(path).equals(tagId);
+            synchronized (pathTagTrie) {
+                Set<TagId> tags = pathTagCache.get(path.toString());
+                return tags != null && tags.contains(tagId);
+            }
         } else {
-            Resource resource = resourceCache.get(path.getPath());
-            return resource != null && resource.getResourceTags().contains(tagId);
+            ResourceMetadata metadata = resourceCache.get(path.getResourcePath());
+            return metadata != null && metadata.resourceTags().contains(tagId);
         }
     }
 
@@ -990,5 +1497,57 @@ public class ResourceFunctions implements IDBFunctions, ResourceCalls {
             log.error("Error while closing connection", e);
         }
     }
+
+    private static Map<SearchMode, LongAdder> counters() {
+        Map<SearchMode, LongAdder> counters = new EnumMap<>(SearchMode.class);
+        for (SearchMode mode : SearchMode.values()) {
+            counters.put(mode, new LongAdder());
+        }
+        return counters;
+    }
+
+    /**
+     * The index a search term is matched against, see {@link #searchMode(String)}
+     */
+    public enum SearchMode {
+        /**
+         * Ranked by the stemmed words of the title, headings and body in FileText
+         */
+        WORD,
+        /**
+         * Ranked by the trigrams of FileData
+         */
+        TRIGRAM,
+        /**
+         * Unranked word prefixes in FileWords
+         */
+        PREFIX,
+        /**
+         * Unranked like scan over FileContent
+         */
+        SCAN
+    }
+
+    /**
+     * A row read by {@link #scanContent(ResourceRequest, BiPredicate)}, kept until its page is handed to the consumer
+     */
+    private record ContentRow(String path, String content) {
+    }
+
+    /**
+     * A snapshot of the search indexes of a repo
+     *
+     * @param indexBytes the size of the inverted index of each fts table and of the compressed content in Blobs in bytes
+     * @param modes      the searches served by each mode
+     */
+    public record SearchStats(Map<String, Long> indexBytes, Map<SearchMode, Mode> modes) {
+
+        /**
+         * @param queries       the amount of searches served
+         * @param averageMillis the average time a search took including its match count
+         */
+        public record Mode(long queries, double averageMillis) {
+        }
+    }
 }
 
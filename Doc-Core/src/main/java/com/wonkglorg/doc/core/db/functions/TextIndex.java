@@ -0,0 +1,200 @@
+package com.wonkglorg.doc.core.db.functions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The optional word index FileText, enabled by {@link com.wonkglorg.doc.core.RepoProperty#isWordIndex()}. FileData is indexed by trigrams which finds any substring but
+ * ranks natural language poorly, FileText splits each markdown document into its title, headings and body and indexes their stemmed words so a query for "configure
+ * repositories" also finds "configuring a repository" and a match in the title ranks above one in the body.
+ * <p>
+ * Like FileWords the table is contentless and keyed by the Documents id, the content itself is only stored once in Blobs.
+ */
+final class TextIndex {
+    static final String TABLE = "FileText";
+    /**
+     * The bm25 weights of the title, headings and body column
+     */
+    static final String RANK = "bm25(FileText, 10.0, 5.0, 1.0)";
+    static final String UNINDEX = "DELETE FROM FileText WHERE rowid IN (SELECT id FROM Documents WHERE resource_path = ?)";
+
+    private TextIndex() {
+        //utility class
+    }
+
+    /**
+     * Creates the table and fills it from FileContent if it did not exist yet
+     */
+    static void create(Connection connection, Statement statement, boolean existed) throws SQLException {
+        statement.execute("""
+                CREATE VIRTUAL TABLE IF NOT EXISTS FileText USING fts5(
+                    title,
+                    headings,
+                    body,
+                    content='',
+                    contentless_delete=1,
+                    tokenize='porter unicode61'
+                )
+                """);
+        if (!existed) {
+            indexAll(connection);
+        }
+    }
+
+    /**
+     * Drops the table and its trigger, a repo that disabled the index does not keep a stale copy of it around
+     */
+    static void drop(Statement statement) throws SQLException {
+        statement.execute("DROP TRIGGER IF EXISTS delete_resource_text");
+        statement.execute("DROP TRIGGER IF EXISTS delete_document_text");
+        statement.execute("DROP TABLE IF EXISTS FileText");
+    }
+
+    /**
+     * Creates the trigger removing the words of deleted resources, see {@link DatabaseFunctions#initializeTriggers}
+     */
+    static void createTrigger(Statement statement) throws SQLException {
+        statement.execute("DROP TRIGGER IF EXISTS delete_resource_text");
+        statement.execute("""
+                CREATE TRIGGER IF NOT EXISTS delete_document_text
+                AFTER DELETE ON Documents
+                FOR EACH ROW
+                BEGIN
+                    DELETE FROM FileText WHERE rowid = OLD.id;
+                END;
+                """);
+    }
+
+    /**
+     * Indexes every document
+     */
+    static void indexAll(Connection connection) throws SQLException {
+        index(connection, "1 = 1", Collections.singletonList(null));
+    }
+
+    /**
+     * Replaces the index of the given resources with their current content
+     *
+     * @param connection the connection to use
+     * @param paths      the paths of the resources
+     */
+    static void reindex(Connection connection, Collection<String> paths) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(UNINDEX)) {
+            for (String path : paths) {
+                statement.setString(1, path);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        index(connection, "resource_path = ?", paths);
+    }
+
+    /**
+     * Indexes the documents matching a condition, the split into sections is done here as sqlite has no way to do it
+     *
+     * @param connection the connection to use
+     * @param condition  the where clause on FileContent
+     * @param parameters the condition is run once for each parameter, a null parameter runs it without binding one
+     */
+    private static void index(Connection connection, String condition, Collection<?> parameters) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT id, data FROM FileContent WHERE " + condition);
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO FileText(rowid, title, headings, body) VALUES(?, ?, ?, ?)")) {
+            for (Object parameter : parameters) {
+                if (parameter != null) {
+                    select.setObject(1, parameter);
+                }
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        Sections sections = Sections.of(rs.getString("data"));
+                        insert.setLong(1, rs.getLong("id"));
+                        insert.setString(2, sections.title());
+                        insert.setString(3, sections.headings());
+                        insert.setString(4, sections.body());
+                        insert.addBatch();
+                    }
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Checks if a search term is a natural language query, meaning at least two words and nothing but letters, digits and the punctuation found inside words. Anything
+     * else, like {@code foo.bar()} or {@code user_id}, is code and is searched as a substring by the trigram index.
+     *
+     * @param term the search term
+     * @return true if the term should be searched in FileText
+     */
+    static boolean isWordQuery(String term) {
+        String trimmed = term.trim();
+        if (trimmed.split("\\s+").length < 2) {
+            return false;
+        }
+        return trimmed.codePoints().allMatch(c -> Character.isLetterOrDigit(c) || Character.isWhitespace(c) || c == '-' || c == '\'');
+    }
+
+    /**
+     * @return the FileText query matching documents containing every word of the term
+     */
+    static String matchQuery(String term) {
+        return words(term).stream().map(word -> "\"" + word.replace("\"", "\"\"") + "\"").collect(Collectors.joining(" "));
+    }
+
+    /**
+     * @return the words of a term in the order they are written
+     */
+    static List<String> words(String term) {
+        List<String> words = new ArrayList<>();
+        for (String word : term.trim().split("\\s+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * The sections of a markdown document
+     *
+     * @param title    the first top level heading, empty if the document has none
+     * @param headings all other headings separated by new lines
+     * @param body     everything that is not a heading
+     */
+    record Sections(String title, String headings, String body) {
+
+        static Sections of(String markdown) {
+            if (markdown == null) {
+                return new Sections("", "", "");
+            }
+            String title = null;
+            StringBuilder headings = new StringBuilder();
+            StringBuilder body = new StringBuilder();
+            for (String line : markdown.split("\\R")) {
+                String trimmed = line.strip();
+                if (!trimmed.startsWith("#")) {
+                    body.append(line).append('\n');
+                    continue;
+                }
+                int level = 0;
+                while (level < trimmed.length() && trimmed.charAt(level) == '#') {
+                    level++;
+                }
+                String text = trimmed.substring(level).strip();
+                if (level == 1 && title == null) {
+                    title = text;
+                } else {
+                    headings.append(text).append('\n');
+                }
+            }
+            return new Sections(title == null ? "" : title, headings.toString(), body.toString());
+        }
+    }
+}
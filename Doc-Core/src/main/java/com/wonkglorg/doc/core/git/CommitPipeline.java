@@ -0,0 +1,235 @@
+package com.wonkglorg.doc.core.git;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commits and pushes the edits of a repo in the background. Every file queued within {@link #commitWindow} of the first one is committed together, pushes are retried with an
+ * exponential backoff until they succeed.
+ */
+public class CommitPipeline implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CommitPipeline.class);
+    private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(1);
+
+    private final GitRepo gitRepo;
+    private final Duration commitWindow;
+    private final Duration maxBackoff;
+    private final ScheduledThreadPoolExecutor executor;
+    /**
+     * The files waiting to be committed and the message of their latest edit
+     */
+    private final Map<Path, String> pending = new LinkedHashMap<>();
+    /**
+     * When the oldest pending edit was queued in nanos, 0 if nothing is pending
+     */
+    private long oldestPending = 0;
+    /**
+     * When the oldest commit that was not pushed yet was created in nanos, 0 if everything is pushed
+     */
+    private long oldestUnpushed = 0;
+    private ScheduledFuture<?> scheduledCommit;
+    private ScheduledFuture<?> scheduledPush;
+    private Duration backoff = INITIAL_BACKOFF;
+    private long commits = 0;
+    private long failedCommits = 0;
+    private long pushes = 0;
+    private long failedPushes = 0;
+
+    /**
+     * @param gitRepo      the repo to commit to
+     * @param commitWindow how long to collect edits before committing them
+     * @param maxBackoff   the longest time to wait between push retries
+     */
+    public CommitPipeline(GitRepo gitRepo, Duration commitWindow, Duration maxBackoff) {
+        this.gitRepo = gitRepo;
+        this.commitWindow = commitWindow;
+        this.maxBackoff = maxBackoff;
+        this.executor = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform().name("commit-pipeline-" + gitRepo.getProperties().getId()).daemon().factory());
+        //close commits the pending edits itself, so waiting commits and push retries are dropped on shutdown
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Queues a file that was already written to the working tree to be committed
+     *
+     * @param file    the file relative to the repo
+     * @param message the commit message of this edit
+     */
+    public synchronized void enqueue(Path file, String message) {
+        if (pending.isEmpty()) {
+            oldestPending = System.nanoTime();
+        }
+        pending.remove(file);
+        pending.put(file, message);
+        if (scheduledCommit == null) {
+            scheduledCommit = executor.schedule(this::commitPending, commitWindow.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Requests a push of everything committed so far without waiting for it
+     */
+    public synchronized void requestPush() {
+        if (oldestUnpushed == 0) {
+            oldestUnpushed = System.nanoTime();
+        }
+        schedulePush(0);
+    }
+
+    private void commitPending() {
+        Map<Path, String> files;
+        long queuedAt;
+        synchronized (this) {
+            scheduledCommit = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            files = new LinkedHashMap<>(pending);
+            queuedAt = oldestPending;
+            pending.clear();
+            oldestPending = 0;
+        }
+
+        boolean committed;
+        synchronized (gitRepo) {
+            for (Path file : files.keySet()) {
+                gitRepo.add(file);
+            }
+            committed = gitRepo.tryCommit(commitMessage(files));
+        }
+        if (!committed) {
+            synchronized (this) {
+                failedCommits++;
+                //the files go back to the queue, edits queued in the meantime are newer and keep their message
+                Map<Path, String> queued = new LinkedHashMap<>(pending);
+                pending.clear();
+                pending.putAll(files);
+                pending.putAll(queued);
+                oldestPending = queuedAt;
+                if (scheduledCommit == null && !executor.isShutdown()) {
+                    scheduledCommit = executor.schedule(this::commitPending, commitWindow.toMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+            log.warn("Commit of {} edited file(s) in repo '{}' failed, keeping them queued", files.size(), gitRepo.getProperties().getId());
+            return;
+        }
+        log.info("Committed {} edited file(s) in repo '{}'", files.size(), gitRepo.getProperties().getId());
+
+        synchronized (this) {
+            commits++;
+            if (oldestUnpushed == 0) {
+                oldestUnpushed = System.nanoTime();
+            }
+            schedulePush(0);
+        }
+    }
+
+    private void push() {
+        synchronized (this) {
+            scheduledPush = null;
+        }
+
+        boolean pushed;
+        synchronized (gitRepo) {
+            pushed = gitRepo.tryPush();
+        }
+
+        synchronized (this) {
+            if (pushed) {
+                pushes++;
+                oldestUnpushed = 0;
+                backoff = INITIAL_BACKOFF;
+                return;
+            }
+            failedPushes++;
+            log.warn("Push of repo '{}' failed, retrying in {}", gitRepo.getProperties().getId(), backoff);
+            schedulePush(backoff.toMillis());
+            backoff = backoff.multipliedBy(2).compareTo(maxBackoff) > 0 ? maxBackoff : backoff.multipliedBy(2);
+        }
+    }
+
+    private void schedulePush(long delayMillis) {
+        if (scheduledPush != null || executor.isShutdown()) {
+            return;
+        }
+        scheduledPush = executor.schedule(this::push, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static String commitMessage(Map<Path, String> files) {
+        if (files.size() == 1) {
+            return files.values().iterator().next();
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add("Updated %d resources".formatted(files.size()));
+        lines.add("");
+        lines.addAll(files.values());
+        return String.join("\n", lines);
+    }
+
+    /**
+     * @return the current state of the pipeline
+     */
+    public synchronized Stats stats() {
+        long now = System.nanoTime();
+        return new Stats(pending.size(),
+                oldestPending == 0 ? Duration.ZERO : Duration.ofNanos(now - oldestPending),
+                oldestUnpushed == 0 ? Duration.ZERO : Duration.ofNanos(now - oldestUnpushed),
+                commits,
+                failedCommits,
+                pushes,
+                failedPushes);
+    }
+
+    /**
+     * Commits all pending edits, tries a last push and stops the pipeline
+     */
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        commitPending();
+        boolean unpushed;
+        synchronized (this) {
+            unpushed = oldestUnpushed != 0;
+        }
+        if (!unpushed) {
+            return;
+        }
+        boolean pushed;
+        synchronized (gitRepo) {
+            pushed = gitRepo.tryPush();
+        }
+        synchronized (this) {
+            if (pushed) {
+                pushes++;
+                oldestUnpushed = 0;
+            } else {
+                failedPushes++;
+            }
+        }
+    }
+
+    /**
+     * A snapshot of the pipeline metrics
+     *
+     * @param queueDepth    the number of edited files waiting to be committed
+     * @param commitLag     how long the oldest pending edit has been waiting
+     * @param pushLag       how long the oldest commit has been waiting to be pushed
+     * @param commits       the number of commits created
+     * @param failedCommits the number of failed commit attempts, their files stay queued
+     * @param pushes        the number of successful pushes
+     * @param failedPushes  the number of failed push attempts
+     */
+    public record Stats(int queueDepth, Duration commitLag, Duration pushLag, long commits, long failedCommits, long pushes, long failedPushes) {
+    }
+}
@@ -6,16 +6,26 @@ import com.wonkglorg.doc.core.objects.UserId;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
 import org.eclipse.jgit.api.errors.ServiceUnavailableException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.FetchConnection;
 import org.eclipse.jgit.transport.Transport;
 import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +62,10 @@ public class GitRepo {
     private final Map<UserId, UserBranch> currentUserBranches = new HashMap<>();
 
     private static final Logger log = LoggerFactory.getLogger(GitRepo.class);
+    /**
+     * How long the background probe waits for the remote to answer
+     */
+    private static final int PROBE_TIMEOUT_SECONDS = 10;
     /**
      * The Plumbing view of the backing git repo
      * (<a href="https://git-scm.com/book/en/v2/Appendix-B:-Embedding-Git-in-your-Applications-JGit">Docs</a>)
@@ -80,6 +94,18 @@ public class GitRepo {
      * The properties of the repository this is a part of
      */
     private final RepoProperty properties;
+    /**
+     * The HEAD the {@link #lastCommitCache} was resolved for
+     */
+    private ObjectId lastCommitCacheHead;
+    /**
+     * The last commit of each already resolved git path for {@link #lastCommitCacheHead}, null if the path has no commit
+     */
+    private final Map<String, RevCommit> lastCommitCache = new HashMap<>();
+    /**
+     * The health of the origin remote, null if the repo has no remote
+     */
+    private RemoteHealth remoteHealth;
 
     /**
      * Creates a new GitRepo object
@@ -139,6 +165,14 @@ public class GitRepo {
 
         //needs to at least contain 1 commit otherwise jgit complains
         ensureInitialCommit();
+
+        if (hasRemote("origin")) {
+            remoteHealth = new RemoteHealth(properties.getId().id(),
+                    this::probeRemote,
+                    properties.getRemoteProbeInterval(),
+                    properties.getRemoteFailureThreshold(),
+                    properties.getRemoteOpenDuration());
+        }
     }
 
 
@@ -178,7 +212,7 @@ public class GitRepo {
         }
         try {
             git.add().addFilepattern(file.toString()).call();
-        } catch (GitAPIException e) {
+        } catch (GitAPIException | JGitInternalException e) {
             log.error("Error while adding file: " + file, e);
         }
     }
@@ -205,13 +239,25 @@ public class GitRepo {
      * @param message the message to commit with
      */
     public void commit(String message) {
+        tryCommit(message);
+    }
+
+    /**
+     * Commits the current changes to the git repo
+     *
+     * @param message the message to commit with
+     * @return false if the commit failed and the changes are still uncommitted
+     */
+    public boolean tryCommit(String message) {
         if (isMemory) {
-            return;
+            return true;
         }
         try {
             git.commit().setMessage(message).call();
-        } catch (GitAPIException e) {
+            return true;
+        } catch (GitAPIException | JGitInternalException e) {
             log.error("Error while committing", e);
+            return false;
         }
     }
 
@@ -267,19 +313,29 @@ public class GitRepo {
     }
 
     /**
-     * Pulls the latest changes from the remote if it exists otherwise does nothing
+     * Pulls the latest changes from the remote if it exists and is reachable otherwise does nothing
      */
     public void pull() {
         if (isMemory) {
             return;
         }
-        if (!remoteExists("origin")) {
+        if (remoteHealth == null) {
             log.warn("No remote found, skipping pull");
             return;
         }
+        if (!remoteHealth.allowRequest()) {
+            log.warn("Remote is unreachable, skipping pull");
+            return;
+        }
         try {
             git.pull().call();
+            remoteHealth.recordSuccess();
+        } catch (TransportException e) {
+            remoteHealth.recordFailure(e);
+            log.error("Error while pulling from remote", e);
         } catch (GitAPIException e) {
+            //the remote was reached, the pull itself failed
+            remoteHealth.recordSuccess();
             log.error("Error while pulling from remote", e);
         }
     }
@@ -288,53 +344,115 @@ public class GitRepo {
      * Pushes the current branch to the remote if it exists otherwise does nothing
      */
     public void push() {
-        if (isMemory) return;
-        if (!remoteExists("origin")) {
+        tryPush();
+    }
+
+    /**
+     * Pushes the current branch to the remote if it exists
+     *
+     * @return false if the push failed and should be retried, true if it succeeded or there is nothing to push to
+     */
+    public boolean tryPush() {
+        if (isMemory) return true;
+        if (remoteHealth == null) {
             log.warn("No remote found, skipping push");
-            return;
+            return true;
         }
 
-        try {
-            String token = properties.getToken(); // get it from RepoProperty
-            if (token == null || token.isBlank()) {
-                log.error("No GitHub token found, cannot push");
-                return;
-            }
+        String token = properties.getToken(); // get it from RepoProperty
+        if (token == null || token.isBlank()) {
+            log.error("No GitHub token found, cannot push");
+            return true;
+        }
+        if (!remoteHealth.allowRequest()) {
+            log.warn("Remote is unreachable, postponing push");
+            return false;
+        }
 
+        try {
             git.push()
                     .setCredentialsProvider(new UsernamePasswordCredentialsProvider(token, "")) // token as username, blank password
                     .call();
+            remoteHealth.recordSuccess();
+            return true;
+        } catch (TransportException e) {
+            remoteHealth.recordFailure(e);
+            log.error("Error while pushing to remote", e);
+            return false;
         } catch (GitAPIException e) {
+            remoteHealth.recordSuccess();
             log.error("Error while pushing to remote", e);
+            return false;
         }
     }
 
 
     /**
-     * Checks if a remote exists and is reachable
+     * Checks if a remote is configured without connecting to it
      *
      * @param remoteName the name of the remote
-     * @return true if the remote exists and is reachable, false otherwise
+     * @return true if the remote is configured with at least one uri
      */
-    private boolean remoteExists(String remoteName) {
+    private boolean hasRemote(String remoteName) {
         try {
-            List<RemoteConfig> remotes = git.remoteList().call();
-            for (RemoteConfig remote : remotes) {
+            for (RemoteConfig remote : git.remoteList().call()) {
                 if (remote.getName().equals(remoteName) && !remote.getURIs().isEmpty()) {
-                    // Try to connect to the remote
-                    URIish uri = remote.getURIs().get(0);
-                    try (Transport transport = Transport.open(git.getRepository(), uri)) {
-                        transport.close();
-                        return true; // Connection successful
-                    }
+                    return true;
                 }
             }
-        } catch (Exception e) {
-            log.error("Error checking remote existence", e);
+        } catch (GitAPIException e) {
+            log.error("Error reading remotes", e);
         }
         return false;
     }
 
+    /**
+     * Connects to the origin remote and lists its refs, used by {@link #remoteHealth} to probe the remote in the background
+     *
+     * @throws Exception if the remote could not be reached
+     */
+    private void probeRemote() throws Exception {
+        URIish uri = null;
+        for (RemoteConfig remote : git.remoteList().call()) {
+            if (remote.getName().equals("origin") && !remote.getURIs().isEmpty()) {
+                uri = remote.getURIs().get(0);
+            }
+        }
+        if (uri == null) {
+            throw new IOException("No origin remote configured");
+        }
+        try (Transport transport = Transport.open(git.getRepository(), uri)) {
+            transport.setTimeout(PROBE_TIMEOUT_SECONDS);
+            String token = properties.getToken();
+            if (token != null && !token.isBlank()) {
+                transport.setCredentialsProvider(new UsernamePasswordCredentialsProvider(token, ""));
+            }
+            //opening the transport alone does not connect, the ref advertisement does
+            try (FetchConnection connection = transport.openFetch()) {
+                connection.getRefs();
+            }
+        }
+    }
+
+    /**
+     * @return the health of the origin remote, empty if the repo has no remote
+     */
+    public Optional<RemoteHealth.Status> getRemoteStatus() {
+        return Optional.ofNullable(remoteHealth).map(RemoteHealth::status);
+    }
+
+    /**
+     * Stops probing the remote and closes the repository
+     */
+    public void close() {
+        if (remoteHealth != null) {
+            remoteHealth.close();
+        }
+        if (git != null) {
+            git.close();
+        }
+    }
+
     /**
      * Creates a new branch for a user
      *
@@ -484,6 +602,122 @@ public class GitRepo {
         return null; // No commit found
     }
 
+    /**
+     * Resolves the last commit touching each of the given files by walking the history only once. The resolved commits are cached for the current HEAD so repeated lookups without new commits
+     * do not walk the history again.
+     *
+     * @param filePaths the paths to the files relative to the repo
+     * @return the last commit for each file, files without any commit are not contained
+     */
+    public synchronized Map<Path, RevCommit> getLastCommitsForPaths(Collection<Path> filePaths) {
+        Map<Path, RevCommit> result = new HashMap<>();
+        if (isMemory || filePaths.isEmpty()) {
+            return result;
+        }
+
+        try {
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if (head == null) {
+                return result;
+            }
+
+            if (!head.equals(lastCommitCacheHead)) {
+                lastCommitCache.clear();
+                lastCommitCacheHead = head;
+            }
+
+            Set<String> missing = new HashSet<>();
+            for (Path path : filePaths) {
+                String gitPath = toGitPath(path);
+                if (!lastCommitCache.containsKey(gitPath)) {
+                    missing.add(gitPath);
+                }
+            }
+
+            if (!missing.isEmpty()) {
+                Map<String, RevCommit> found = walkLastCommits(head, missing);
+                for (String path : missing) {
+                    //also caches files without a commit so they are not searched for again
+                    lastCommitCache.put(path, found.get(path));
+                }
+            }
+
+            for (Path path : filePaths) {
+                RevCommit commit = lastCommitCache.get(toGitPath(path));
+                if (commit != null) {
+                    result.put(path, commit);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error while resolving last commits for {} files", filePaths.size(), e);
+        }
+        return result;
+    }
+
+    /**
+     * Walks the history from the given commit once and attributes each path to the newest commit that changed it compared to all of its parents
+     *
+     * @param start the commit to start from
+     * @param paths the git paths to resolve
+     * @return the last commit for each resolved path
+     */
+    private Map<String, RevCommit> walkLastCommits(ObjectId start, Set<String> paths) throws IOException {
+        Map<String, RevCommit> found = new HashMap<>();
+        Set<String> remaining = new HashSet<>(paths);
+        try (RevWalk walk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            walk.sort(RevSort.COMMIT_TIME_DESC);
+            walk.markStart(walk.parseCommit(start));
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(remaining), TreeFilter.ANY_DIFF));
+            int filterSize = remaining.size();
+
+            for (RevCommit commit : walk) {
+                RevCommit[] parents = commit.getParents();
+                treeWalk.reset();
+                treeWalk.addTree(commit.getTree());
+                for (RevCommit parent : parents) {
+                    treeWalk.addTree(walk.parseCommit(parent).getTree());
+                }
+                if (parents.length == 0) {
+                    //root commit, everything still present in it was introduced here
+                    treeWalk.setFilter(PathFilterGroup.createFromStrings(remaining));
+                }
+
+                while (treeWalk.next()) {
+                    String path = treeWalk.getPathString();
+                    if (!remaining.contains(path) || treeWalk.getRawMode(0) == 0) {
+                        continue;
+                    }
+                    boolean sameAsParent = false;
+                    for (int i = 1; i <= parents.length; i++) {
+                        if (treeWalk.idEqual(0, i)) {
+                            sameAsParent = true;
+                            break;
+                        }
+                    }
+                    if (!sameAsParent) {
+                        found.put(path, commit);
+                        remaining.remove(path);
+                    }
+                }
+
+                if (remaining.isEmpty()) {
+                    break;
+                }
+                //narrow the filter once enough paths are resolved to keep the tree comparisons cheap
+                if (parents.length == 0 || remaining.size() <= filterSize / 2) {
+                    treeWalk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(remaining), TreeFilter.ANY_DIFF));
+                    filterSize = remaining.size();
+                }
+            }
+        }
+        return found;
+    }
+
+    private static String toGitPath(Path path) {
+        return path.toString().replace('\\', '/');
+    }
+
     /**
      * Retrieves files from git repo
      *
@@ -0,0 +1,167 @@
+package com.wonkglorg.doc.core.git;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks if the remote of a repo is reachable so pulls and pushes never have to connect to it just to find out. The state is refreshed by a background probe and by the outcome of
+ * every pull and push, after {@link #failureThreshold} consecutive failures the circuit opens and remote operations are skipped until {@link #openDuration} passed, then a single trial
+ * is let through.
+ */
+public class RemoteHealth implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RemoteHealth.class);
+
+    public enum State {
+        /**
+         * Remote operations are allowed, the remote is reachable or was not checked yet
+         */
+        CLOSED,
+        /**
+         * The remote is unreachable, remote operations are skipped
+         */
+        OPEN,
+        /**
+         * A single trial operation is in progress after the circuit was open, if it does not report its outcome within {@link #openDuration} another trial is let through
+         */
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final Probe probe;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    /**
+     * When the circuit lets the next trial through, while OPEN or HALF_OPEN
+     */
+    private Instant openUntil = Instant.MIN;
+    private Instant lastChecked;
+    private Instant lastSuccess;
+    private String lastError;
+
+    /**
+     * @param name             the name of the remote used in logs
+     * @param probe            checks if the remote is reachable
+     * @param probeInterval    how often the remote is probed in the background, zero or negative disables probing
+     * @param failureThreshold the number of consecutive failures that open the circuit
+     * @param openDuration     how long the circuit stays open before a trial is let through
+     */
+    public RemoteHealth(String name, Probe probe, Duration probeInterval, int failureThreshold, Duration openDuration) {
+        this.name = name;
+        this.probe = probe;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+        this.executor = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform().name("remote-health-" + name).daemon().factory());
+        if (probeInterval.isPositive()) {
+            executor.scheduleWithFixedDelay(this::probe, 0, probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Checks if a remote operation should be attempted, never blocks
+     *
+     * @return true if the operation should be attempted, its outcome must then be reported with {@link #recordSuccess()} or {@link #recordFailure(Exception)}
+     */
+    public synchronized boolean allowRequest() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN, HALF_OPEN -> {
+                Instant now = Instant.now();
+                if (now.isBefore(openUntil)) {
+                    yield false;
+                }
+                if (state == State.HALF_OPEN) {
+                    log.warn("Trial of remote '{}' did not report its outcome within {}, letting another one through", name, openDuration);
+                }
+                //a trial that never reports, for example because it timed out, must not keep the circuit half open forever
+                state = State.HALF_OPEN;
+                openUntil = now.plus(openDuration);
+                yield true;
+            }
+        };
+    }
+
+    /**
+     * Reports that the remote was reached
+     */
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Remote '{}' is reachable again", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        lastChecked = Instant.now();
+        lastSuccess = lastChecked;
+        lastError = null;
+    }
+
+    /**
+     * Reports that the remote could not be reached
+     *
+     * @param e the cause
+     */
+    public synchronized void recordFailure(Exception e) {
+        consecutiveFailures++;
+        lastChecked = Instant.now();
+        lastError = e.getMessage();
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("Remote '{}' is unreachable, skipping remote operations for {}: {}", name, openDuration, lastError);
+            }
+            state = State.OPEN;
+            openUntil = lastChecked.plus(openDuration);
+        }
+    }
+
+    /**
+     * Runs the probe once and records its outcome, probes are allowed while the circuit is open as they are the only thing connecting to the remote then
+     */
+    public void probe() {
+        try {
+            probe.probe();
+            recordSuccess();
+        } catch (Exception e) {
+            recordFailure(e);
+        }
+    }
+
+    /**
+     * @return the current state
+     */
+    public synchronized Status status() {
+        return new Status(state, consecutiveFailures, lastChecked, lastSuccess, lastError);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Connects to the remote
+     */
+    @FunctionalInterface
+    public interface Probe {
+        void probe() throws Exception;
+    }
+
+    /**
+     * A snapshot of the health of a remote
+     *
+     * @param state               the state of the circuit
+     * @param consecutiveFailures the number of failures since the last success
+     * @param lastChecked         when the remote was last contacted, null if never
+     * @param lastSuccess         when the remote was last reached, null if never
+     * @param lastError           the message of the last failure, null if the last check succeeded
+     */
+    public record Status(State state, int consecutiveFailures, Instant lastChecked, Instant lastSuccess, String lastError) {
+    }
+}
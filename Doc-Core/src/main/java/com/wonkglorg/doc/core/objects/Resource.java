@@ -1,5 +1,6 @@
 package com.wonkglorg.doc.core.objects;
 
+import com.wonkglorg.doc.core.path.ResourcePath;
 import com.wonkglorg.doc.core.path.TargetPath;
 import com.wonkglorg.doc.core.permissions.PermissionType;
 
@@ -13,23 +14,23 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * Represents a resource in the database
+ * Represents a resource in the database as returned for a single request. The shared data of the resource is held by an immutable {@link ResourceMetadata} so creating a resource for
+ * a request only allocates this view, the permission type and data are specific to the request.
  */
 public final class Resource{
-	private Path resourcePath;
-	private final LocalDateTime createdAt;
-	private final String createdBy;
-	private final LocalDateTime modifiedAt;
-	private final String modifiedBy;
-	private final RepoId repoId;
-	private final Set<TagId> resourceTags = new HashSet<>();
-	private final String category;
+	private ResourceMetadata metadata;
 	/**
 	 * The permissions for this resource based on the user it was returned for, if the request is not returned for a user treats the resource as editable by default
 	 */
 	private PermissionType permissionType = PermissionType.EDIT;
 	private String data;
 	
+	public Resource(ResourceMetadata metadata, PermissionType permissionType, String data) {
+		this.metadata = Objects.requireNonNull(metadata, "A Resources, metadata cannot be null");
+		this.permissionType = permissionType;
+		this.data = data;
+	}
+	
 	public Resource(Path resourcePath,
 					LocalDateTime createdAt,
 					String createdBy,
@@ -40,17 +41,16 @@ public final class Resource{
 					PermissionType permissionType,
 					String category,
 					String data) {
-		Objects.requireNonNull(resourcePath, "A Resources, path cannot be null");
-		this.resourcePath = resourcePath;
-		this.createdAt = createdAt;
-		this.createdBy = createdBy;
-		this.modifiedAt = modifiedAt;
-		this.modifiedBy = modifiedBy;
-		this.repoId = repoId;
-		this.resourceTags.addAll(resourceTags);
-		this.permissionType = permissionType;
-		this.category = category;
-		this.data = data;
+		this(new ResourceMetadata(Objects.requireNonNull(resourcePath, "A Resources, path cannot be null"),
+				ResourcePath.of(resourcePath),
+				createdAt,
+				createdBy,
+				modifiedAt,
+				modifiedBy,
+				repoId,
+				resourceTags,
+				Set.of(),
+				category), permissionType, data);
 	}
 	
 	public Resource(Path resourcePath,
@@ -85,54 +85,85 @@ public final class Resource{
 		Stream<Resource> resourceStream = resources.stream();
 		
 		if(whiteListTags != null){
-			resourceStream = resourceStream.filter(entry -> entry.getResourceTags().stream().anyMatch(whiteListTags::contains));
+			resourceStream = resourceStream.filter(entry -> entry.hasAnyTagId(whiteListTags));
 		}
 		
 		if(blackListTags != null){
-			resourceStream = resourceStream.filter(entry -> entry.getResourceTags().stream().noneMatch(blackListTags::contains));
+			resourceStream = resourceStream.filter(entry -> !entry.hasAnyTagId(blackListTags));
 		}
 		
 		return resourceStream.collect(Collectors.toList());
 	}
 	
 	public String getModifiedAt() {
-		return DateHelper.fromDateTime(modifiedAt);
+		return DateHelper.fromDateTime(metadata.modifiedAt());
 	}
 	
 	public String getCreatedAt() {
-		return DateHelper.fromDateTime(createdAt);
+		return DateHelper.fromDateTime(metadata.createdAt());
+	}
+	
+	/**
+	 * @return the shared data of this resource
+	 */
+	public ResourceMetadata metadata() {
+		return metadata;
 	}
 	
 	public Path resourcePath() {
-		return resourcePath;
+		return metadata.resourcePath();
+	}
+	
+	/**
+	 * @return the canonical form of the resource path, used as the key of the resource in caches and permission lookups
+	 */
+	public ResourcePath resourceKey() {
+		return metadata.resourceKey();
 	}
 	
 	public LocalDateTime createdAt() {
-		return createdAt;
+		return metadata.createdAt();
 	}
 	
 	public String createdBy() {
-		return createdBy;
+		return metadata.createdBy();
 	}
 	
 	public LocalDateTime modifiedAt() {
-		return modifiedAt;
+		return metadata.modifiedAt();
 	}
 	
 	public String modifiedBy() {
-		return modifiedBy;
+		return metadata.modifiedBy();
 	}
 	
 	public RepoId repoId() {
-		return repoId;
+		return metadata.repoId();
 	}
 	
+	/**
+	 * @return the tags of the resource itself, the set can not be modified
+	 */
 	public Set<TagId> getResourceTags() {
-		return resourceTags;
+		return metadata.resourceTags();
+	}
+	
+	/**
+	 * @return the tags the resource inherits, the set can not be modified
+	 */
+	public Set<TagId> getInheritedTags() {
+		return metadata.inheritedTags();
+	}
+	
+	/**
+	 * @return the tags of the resource itself and the tags it inherits
+	 */
+	public Set<TagId> getAllTags() {
+		return metadata.allTags();
 	}
 	
 	public String category() {
-		return category;
+		return metadata.category();
 	}
 	
 	public String data() {
@@ -147,17 +178,13 @@ public final class Resource{
 		this.permissionType = permissionType;
 	}
 	
+	/**
+	 * Creates a new view of the same resource, the shared data is not copied
+	 *
+	 * @return the copy
+	 */
 	public Resource copy() {
-		return new Resource(resourcePath,
-				createdAt,
-				createdBy,
-				modifiedAt,
-				modifiedBy,
-				repoId,
-				new HashSet<>(resourceTags),
-				permissionType,
-				category,
-				data);
+		return new Resource(metadata, permissionType, data);
 	}
 	
 	@Override
@@ -169,16 +196,7 @@ public final class Resource{
 			return false;
 		}
 		var that = (Resource) obj;
-		return Objects.equals(this.resourcePath, that.resourcePath) &&
-			   Objects.equals(this.createdAt, that.createdAt) &&
-			   Objects.equals(this.createdBy, that.createdBy) &&
-			   Objects.equals(this.modifiedAt, that.modifiedAt) &&
-			   Objects.equals(this.modifiedBy, that.modifiedBy) &&
-			   Objects.equals(this.repoId, that.repoId) &&
-			   Objects.equals(this.resourceTags, that.resourceTags) &&
-			   this.permissionType == that.permissionType &&
-			   Objects.equals(this.category, that.category) &&
-			   Objects.equals(this.data, that.data);
+		return Objects.equals(this.metadata, that.metadata) && this.permissionType == that.permissionType && Objects.equals(this.data, that.data);
 	}
 	
 	public Resource setData(String data) {
@@ -187,25 +205,27 @@ public final class Resource{
 	}
 	
 	public Resource setTags(List<TagId> resourceTags) {
-		this.resourceTags.clear();
-		this.resourceTags.addAll(resourceTags);
-		return this;
+		return setTags(new HashSet<>(resourceTags));
 	}
 	
 	public Resource setTags(Set<TagId> resourceTags) {
-		this.resourceTags.clear();
-		this.resourceTags.addAll(resourceTags);
+		this.metadata = metadata.withTags(resourceTags);
+		return this;
+	}
+	
+	public Resource setInheritedTags(Set<TagId> inheritedTags) {
+		this.metadata = metadata.withInheritedTags(inheritedTags);
 		return this;
 	}
 	
 	public Resource setResourcePath(Path resourcePath) {
-		this.resourcePath = resourcePath;
+		this.metadata = metadata.withResourcePath(resourcePath);
 		return this;
 	}
 	
 	public boolean hasAnyTag(Set<Tag> tags) {
 		for(Tag tag : tags){
-			if(resourceTags.contains(tag.tagId())){
+			if(metadata.resourceTags().contains(tag.tagId()) || metadata.inheritedTags().contains(tag.tagId())){
 				return true;
 			}
 		}
@@ -213,48 +233,43 @@ public final class Resource{
 	}
 	
 	public boolean hasAnyTagId(Set<TagId> tagIds) {
-		for(var tag : tagIds){
-			if(resourceTags.contains(tag)){
-				return true;
-			}
-		}
-		return false;
+		return metadata.hasAnyTagId(tagIds);
 	}
 	
 	@Override
 	public int hashCode() {
-		return Objects.hash(resourcePath, createdAt, createdBy, modifiedAt, modifiedBy, repoId, resourceTags, permissionType, category, data);
+		return Objects.hash(metadata, permissionType, data);
 	}
 	
 	@Override
 	public String toString() {
 		return "Resource[" +
 			   "resourcePath=" +
-			   resourcePath +
+			   metadata.resourcePath() +
 			   ", " +
 			   "createdAt=" +
-			   createdAt +
+			   metadata.createdAt() +
 			   ", " +
 			   "createdBy=" +
-			   createdBy +
+			   metadata.createdBy() +
 			   ", " +
 			   "modifiedAt=" +
-			   modifiedAt +
+			   metadata.modifiedAt() +
 			   ", " +
 			   "modifiedBy=" +
-			   modifiedBy +
+			   metadata.modifiedBy() +
 			   ", " +
 			   "repoId=" +
-			   repoId +
+			   metadata.repoId() +
 			   ", " +
 			   "resourceTags=" +
-			   resourceTags +
+			   metadata.resourceTags() +
 			   ", " +
 			   "permissionType=" +
 			   permissionType +
 			   ", " +
 			   "category=" +
-			   category +
+			   metadata.category() +
 			   ", " +
 			   "data=" +
 			   data +
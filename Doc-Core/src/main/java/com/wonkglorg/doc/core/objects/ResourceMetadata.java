@@ -0,0 +1,77 @@
+package com.wonkglorg.doc.core.objects;
+
+import com.wonkglorg.doc.core.path.ResourcePath;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The immutable data of a resource shared by the cache and every {@link Resource} returned for it, changes create a new instance instead of modifying this one
+ *
+ * @param resourcePath  the path of the resource
+ * @param resourceKey   the canonical form of the path
+ * @param createdAt     when the resource was created
+ * @param createdBy     who created the resource
+ * @param modifiedAt    when the resource was last modified
+ * @param modifiedBy    who last modified the resource
+ * @param repoId        the repo the resource is in
+ * @param resourceTags  the tags applied to the resource itself
+ * @param inheritedTags the tags the resource inherits from tagged ant paths matching it
+ * @param category      the category of the resource
+ */
+public record ResourceMetadata(Path resourcePath,
+							   ResourcePath resourceKey,
+							   LocalDateTime createdAt,
+							   String createdBy,
+							   LocalDateTime modifiedAt,
+							   String modifiedBy,
+							   RepoId repoId,
+							   Set<TagId> resourceTags,
+							   Set<TagId> inheritedTags,
+							   String category){
+
+	public ResourceMetadata {
+		Objects.requireNonNull(resourcePath, "A Resources, path cannot be null");
+		resourceTags = resourceTags == null ? Set.of() : Set.copyOf(resourceTags);
+		inheritedTags = inheritedTags == null ? Set.of() : Set.copyOf(inheritedTags);
+	}
+
+	/**
+	 * @return the tags of the resource itself and the tags it inherits
+	 */
+	public Set<TagId> allTags() {
+		if(inheritedTags.isEmpty()){
+			return resourceTags;
+		}
+		Set<TagId> tags = new HashSet<>(resourceTags);
+		tags.addAll(inheritedTags);
+		return tags;
+	}
+
+	public boolean hasAnyTagId(Set<TagId> tagIds) {
+		for(var tag : tagIds){
+			if(resourceTags.contains(tag) || inheritedTags.contains(tag)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public ResourceMetadata withResourcePath(Path resourcePath) {
+		return new ResourceMetadata(resourcePath, ResourcePath.of(resourcePath), createdAt, createdBy, modifiedAt, modifiedBy, repoId, resourceTags, inheritedTags, category);
+	}
+
+	public ResourceMetadata withTags(Set<TagId> resourceTags) {
+		return new ResourceMetadata(resourcePath, resourceKey, createdAt, createdBy, modifiedAt, modifiedBy, repoId, resourceTags, inheritedTags, category);
+	}
+
+	public ResourceMetadata withInheritedTags(Set<TagId> inheritedTags) {
+		if(this.inheritedTags.equals(inheritedTags)){
+			return this;
+		}
+		return new ResourceMetadata(resourcePath, resourceKey, createdAt, createdBy, modifiedAt, modifiedBy, repoId, resourceTags, inheritedTags, category);
+	}
+}
@@ -0,0 +1,53 @@
+package com.wonkglorg.doc.core.objects;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position of the last hit of a search page, hits are ordered by score, repo and path so this is enough to continue from without an offset
+ *
+ * @param score        the score of the last hit
+ * @param repoId       the repo of the last hit
+ * @param resourcePath the path of the last hit
+ */
+public record SearchCursor(double score, RepoId repoId, String resourcePath){
+	
+	/**
+	 * Creates a cursor pointing after the given hit
+	 *
+	 * @param hit the last hit of a page
+	 * @return the cursor
+	 */
+	public static SearchCursor after(SearchHit hit) {
+		return new SearchCursor(hit.score(), hit.repoId(), hit.resourcePath().toString());
+	}
+	
+	/**
+	 * Encodes the cursor into an opaque url safe string, the score is stored as its raw bits so it compares exactly once decoded
+	 *
+	 * @return the encoded cursor
+	 */
+	public String encode() {
+		String raw = Long.toHexString(Double.doubleToLongBits(score)) + "\n" + repoId.id() + "\n" + resourcePath;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Decodes a cursor previously created by {@link #encode()}
+	 *
+	 * @param cursor the encoded cursor
+	 * @return the cursor or null if none was given
+	 * @throws IllegalArgumentException if the cursor is malformed
+	 */
+	public static SearchCursor decode(String cursor) {
+		if(cursor == null || cursor.isBlank()){
+			return null;
+		}
+		String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		String[] parts = raw.split("\n", 3);
+		if(parts.length != 3){
+			throw new IllegalArgumentException("Malformed search cursor");
+		}
+		return new SearchCursor(Double.longBitsToDouble(Long.parseUnsignedLong(parts[0], 16)), RepoId.of(parts[1]), parts[2]);
+	}
+}
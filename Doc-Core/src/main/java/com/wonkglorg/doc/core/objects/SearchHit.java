@@ -0,0 +1,13 @@
+package com.wonkglorg.doc.core.objects;
+
+import java.nio.file.Path;
+
+/**
+ * A single ranked hit of a full text search
+ *
+ * @param repoId       the repo the hit was found in
+ * @param resourcePath the path of the resource
+ * @param score        the bm25 score of the hit, lower is more relevant
+ * @param excerpt      a short excerpt of the content surrounding the match
+ */
+public record SearchHit(RepoId repoId, Path resourcePath, double score, String excerpt){}
@@ -0,0 +1,12 @@
+package com.wonkglorg.doc.core.objects;
+
+import java.util.List;
+
+/**
+ * A page of ranked search hits
+ *
+ * @param hits          the hits of this page ordered by relevance
+ * @param totalEstimate the estimated amount of matching resources, this does not account for permissions so it is an upper bound when a user is given
+ * @param nextCursor    the cursor to continue from for the next page or null if there are no more hits
+ */
+public record SearchResult(List<SearchHit> hits, long totalEstimate, String nextCursor){}
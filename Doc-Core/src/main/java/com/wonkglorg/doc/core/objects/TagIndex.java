@@ -0,0 +1,271 @@
+package com.wonkglorg.doc.core.objects;
+
+import com.wonkglorg.doc.core.path.ResourcePath;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * An inverted index from each tag to the resources carrying it. Every indexed resource gets a dense ordinal, ordinals of removed resources are reused, and each tag keeps a compressed
+ * bitmap of the ordinals tagged with it. Whitelist and blacklist filters are resolved with bitmap unions and differences without looking at any {@link Resource}.
+ * <p>
+ * Reads may run concurrently, writes are exclusive.
+ */
+public class TagIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<ResourcePath, Integer> ordinals = new HashMap<>();
+    /**
+     * The path of each ordinal, null for free ordinals
+     */
+    private final List<ResourcePath> paths = new ArrayList<>();
+    private final RoaringBitmap free = new RoaringBitmap();
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final Map<TagId, RoaringBitmap> tags = new HashMap<>();
+
+    /**
+     * Replaces the tags of a resource, indexing the resource if it was not indexed yet
+     *
+     * @param path   the path of the resource
+     * @param tagIds the tags the resource has
+     */
+    public void setTags(ResourcePath path, Collection<TagId> tagIds) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinalOf(path);
+            Iterator<Map.Entry<TagId, RoaringBitmap>> iterator = tags.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<TagId, RoaringBitmap> entry = iterator.next();
+                if (!tagIds.contains(entry.getKey()) && entry.getValue().checkedRemove(ordinal) && entry.getValue().isEmpty()) {
+                    iterator.remove();
+                }
+            }
+            for (TagId tagId : tagIds) {
+                tags.computeIfAbsent(tagId, t -> new RoaringBitmap()).add(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds tags to a resource, indexing the resource if it was not indexed yet
+     *
+     * @param path   the path of the resource
+     * @param tagIds the tags to add
+     */
+    public void addTags(ResourcePath path, Collection<TagId> tagIds) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinalOf(path);
+            for (TagId tagId : tagIds) {
+                tags.computeIfAbsent(tagId, t -> new RoaringBitmap()).add(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes tags from a resource
+     *
+     * @param path   the path of the resource
+     * @param tagIds the tags to remove
+     */
+    public void removeTags(ResourcePath path, Collection<TagId> tagIds) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(path);
+            if (ordinal == null) {
+                return;
+            }
+            for (TagId tagId : tagIds) {
+                RoaringBitmap bitmap = tags.get(tagId);
+                if (bitmap != null && bitmap.checkedRemove(ordinal) && bitmap.isEmpty()) {
+                    tags.remove(tagId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a resource from the index and frees its ordinal
+     *
+     * @param path the path of the resource
+     */
+    public void remove(ResourcePath path) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(path);
+            if (ordinal == null) {
+                return;
+            }
+            tags.values().removeIf(bitmap -> bitmap.checkedRemove(ordinal) && bitmap.isEmpty());
+            paths.set(ordinal, null);
+            all.remove(ordinal);
+            free.add(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a tag from every resource
+     *
+     * @param tagId the tag to remove
+     */
+    public void removeTag(TagId tagId) {
+        lock.writeLock().lock();
+        try {
+            tags.remove(tagId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every resource and tag
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            paths.clear();
+            free.clear();
+            all.clear();
+            tags.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Selects the resources having any of the whitelisted tags and none of the blacklisted ones
+     *
+     * @param whitelist the tags of which a resource needs at least one, null or empty to allow every resource
+     * @param blacklist the tags a resource must not have, null or empty to exclude none
+     * @return the selected resources
+     */
+    public Selection select(Set<TagId> whitelist, Set<TagId> blacklist) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap selected;
+            if (whitelist == null || whitelist.isEmpty()) {
+                selected = all.clone();
+            } else {
+                selected = new RoaringBitmap();
+                for (TagId tagId : whitelist) {
+                    RoaringBitmap bitmap = tags.get(tagId);
+                    if (bitmap != null) {
+                        selected.or(bitmap);
+                    }
+                }
+            }
+            if (blacklist != null) {
+                for (TagId tagId : blacklist) {
+                    RoaringBitmap bitmap = tags.get(tagId);
+                    if (bitmap != null) {
+                        selected.andNot(bitmap);
+                    }
+                }
+            }
+            return new Selection(selected);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the amount of indexed resources
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int ordinalOf(ResourcePath path) {
+        Integer existing = ordinals.get(path);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal;
+        if (free.isEmpty()) {
+            ordinal = paths.size();
+            paths.add(path);
+        } else {
+            ordinal = free.first();
+            free.remove(ordinal);
+            paths.set(ordinal, path);
+        }
+        ordinals.put(path, ordinal);
+        all.add(ordinal);
+        return ordinal;
+    }
+
+    /**
+     * The resources matched by {@link #select(Set, Set)}
+     */
+    public class Selection {
+        private final RoaringBitmap ordinals;
+
+        private Selection(RoaringBitmap ordinals) {
+            this.ordinals = ordinals;
+        }
+
+        /**
+         * @param path the path of a resource
+         * @return true if the resource was selected
+         */
+        public boolean contains(ResourcePath path) {
+            lock.readLock().lock();
+            try {
+                Integer ordinal = TagIndex.this.ordinals.get(path);
+                return ordinal != null && ordinals.contains(ordinal);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Passes the path of every selected resource that is still indexed
+         *
+         * @param consumer the consumer receiving each path
+         */
+        public void forEach(Consumer<ResourcePath> consumer) {
+            List<ResourcePath> selected = new ArrayList<>(ordinals.getCardinality());
+            lock.readLock().lock();
+            try {
+                ordinals.forEach((int ordinal) -> {
+                    ResourcePath path = ordinal < paths.size() ? paths.get(ordinal) : null;
+                    if (path != null) {
+                        selected.add(path);
+                    }
+                });
+            } finally {
+                lock.readLock().unlock();
+            }
+            selected.forEach(consumer);
+        }
+
+        /**
+         * @return the amount of selected resources
+         */
+        public int size() {
+            return ordinals.getCardinality();
+        }
+    }
+}
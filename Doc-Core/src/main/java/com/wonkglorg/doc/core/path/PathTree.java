@@ -0,0 +1,218 @@
+package com.wonkglorg.doc.core.path;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * A directory tree of resource paths, the inverse of a {@link PatternTrie}. Paths are stored by their segments so an ant pattern only descends into the subtrees it can match, a query
+ * like {@code docs\api\**} visits the {@code docs\api} subtree and nothing else. Segments are matched the same way as in {@link PatternTrie}, literal segments are looked up by hash,
+ * wildcard segments ({@code *}, {@code ?}, {@code {name}}) match within a single segment and {@code **} matches zero or more segments.
+ * <p>
+ * Reads may run concurrently, writes are exclusive.
+ *
+ * @param <V> the value stored for each path
+ */
+public class PathTree<V> {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node<V> root = new Node<>();
+    private int size = 0;
+
+    /**
+     * Stores a value for a path, replacing any previous value
+     *
+     * @param path  the path
+     * @param value the value to store
+     */
+    public void put(ResourcePath path, V value) {
+        lock.writeLock().lock();
+        try {
+            Node<V> node = root;
+            for (String segment : path.segments()) {
+                node = node.children.computeIfAbsent(segment, s -> new Node<>());
+            }
+            if (node.value == null) {
+                size++;
+            }
+            node.value = value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the value of a path, directories left empty are removed as well
+     *
+     * @param path the path
+     * @return the removed value or null if the path had none
+     */
+    public V remove(ResourcePath path) {
+        lock.writeLock().lock();
+        try {
+            String[] segments = path.segments();
+            Node<V>[] visited = newNodes(segments.length + 1);
+            visited[0] = root;
+            for (int i = 0; i < segments.length; i++) {
+                visited[i + 1] = visited[i].children.get(segments[i]);
+                if (visited[i + 1] == null) {
+                    return null;
+                }
+            }
+            Node<V> node = visited[segments.length];
+            V removed = node.value;
+            if (removed == null) {
+                return null;
+            }
+            node.value = null;
+            size--;
+            for (int i = segments.length; i > 0 && visited[i].isEmpty(); i--) {
+                visited[i - 1].children.remove(segments[i - 1]);
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every value
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children.clear();
+            root.value = null;
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the value of an exact path
+     *
+     * @param path the path
+     * @return the value or null if the path has none
+     */
+    public V get(ResourcePath path) {
+        lock.readLock().lock();
+        try {
+            Node<V> node = root;
+            for (String segment : path.segments()) {
+                node = node.children.get(segment);
+                if (node == null) {
+                    return null;
+                }
+            }
+            return node.value;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects the values of every path matching an ant pattern or plain path, a value may be passed more than once if the pattern matches its path in multiple ways (only
+     * possible with more than one {@code **})
+     *
+     * @param pattern  the pattern
+     * @param consumer the consumer receiving each matching value
+     */
+    public void collect(String pattern, Consumer<V> consumer) {
+        String[] segments = ResourcePath.of(pattern).segments();
+        Pattern[] wildcards = new Pattern[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            if (!segments[i].equals("**") && PatternTrie.isWildcard(segments[i])) {
+                wildcards[i] = PatternTrie.compileSegment(segments[i]);
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            collect(root, segments, wildcards, 0, consumer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the amount of stored paths
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static <V> void collect(Node<V> node, String[] segments, Pattern[] wildcards, int index, Consumer<V> consumer) {
+        if (index == segments.length) {
+            if (node.value != null) {
+                consumer.accept(node.value);
+            }
+            return;
+        }
+
+        String segment = segments[index];
+        if (segment.equals("**")) {
+            //skip repeated ** as they match the same as a single one
+            int next = index + 1;
+            while (next < segments.length && segments[next].equals("**")) {
+                next++;
+            }
+            if (next == segments.length) {
+                collectAll(node, consumer);
+                return;
+            }
+            collect(node, segments, wildcards, next, consumer);
+            for (Node<V> child : node.children.values()) {
+                collect(child, segments, wildcards, index, consumer);
+            }
+            return;
+        }
+
+        Pattern wildcard = wildcards[index];
+        if (wildcard == null) {
+            Node<V> child = node.children.get(segment);
+            if (child != null) {
+                collect(child, segments, wildcards, index + 1, consumer);
+            }
+            return;
+        }
+        for (Map.Entry<String, Node<V>> child : node.children.entrySet()) {
+            if (wildcard.matcher(child.getKey()).matches()) {
+                collect(child.getValue(), segments, wildcards, index + 1, consumer);
+            }
+        }
+    }
+
+    /**
+     * Passes the value of the node and every node below it
+     */
+    private static <V> void collectAll(Node<V> node, Consumer<V> consumer) {
+        if (node.value != null) {
+            consumer.accept(node.value);
+        }
+        for (Node<V> child : node.children.values()) {
+            collectAll(child, consumer);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Node<V>[] newNodes(int length) {
+        return (Node<V>[]) new Node[length];
+    }
+
+    private static class Node<V> {
+        private final Map<String, Node<V>> children = new HashMap<>(2);
+        private V value;
+
+        private boolean isEmpty() {
+            return value == null && children.isEmpty();
+        }
+    }
+}
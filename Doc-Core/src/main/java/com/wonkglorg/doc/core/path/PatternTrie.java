@@ -0,0 +1,224 @@
+package com.wonkglorg.doc.core.path;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * A trie of ant patterns split into path segments, used to find every pattern matching a path without testing each pattern on its own. Literal segments are looked up by hash,
+ * wildcard segments ({@code *}, {@code ?}, {@code {name}}) are matched within a single segment and {@code **} matches zero or more segments.
+ *
+ * @param <V> the values stored for each pattern
+ */
+public class PatternTrie<V> {
+    private final Node<V> root = new Node<>();
+    private int size = 0;
+
+    /**
+     * Adds a value for a pattern, the pattern may also be a plain path without wildcards
+     *
+     * @param pattern the pattern
+     * @param value   the value to store
+     */
+    public void add(String pattern, V value) {
+        Node<V> node = root;
+        for (String segment : split(pattern)) {
+            node = node.child(segment);
+        }
+        node.values.add(value);
+        size++;
+    }
+
+    /**
+     * Removes a value from a pattern
+     *
+     * @param pattern the pattern
+     * @param value   the value to remove
+     * @return true if the value was removed
+     */
+    public boolean remove(String pattern, V value) {
+        Node<V> node = root;
+        for (String segment : split(pattern)) {
+            node = node.existingChild(segment);
+            if (node == null) {
+                return false;
+            }
+        }
+        boolean removed = node.values.remove(value);
+        if (removed) {
+            size--;
+        }
+        return removed;
+    }
+
+    /**
+     * Collects the values of every pattern matching the path, a value may be passed more than once if its pattern matches in multiple ways
+     *
+     * @param path     the path to match
+     * @param consumer the consumer receiving each matching value
+     */
+    public void collect(String path, Consumer<V> consumer) {
+        collect(split(path), consumer);
+    }
+
+    /**
+     * Collects the values of every pattern matching the already split path
+     *
+     * @param segments the segments of the path
+     * @param consumer the consumer receiving each matching value
+     */
+    public void collect(String[] segments, Consumer<V> consumer) {
+        if (size == 0) {
+            return;
+        }
+        collect(root, segments, 0, consumer);
+    }
+
+    /**
+     * Checks if any pattern matches the already split path
+     *
+     * @param segments the segments of the path
+     * @return true if at least one pattern matches
+     */
+    public boolean matches(String[] segments) {
+        boolean[] matched = new boolean[1];
+        collect(segments, value -> matched[0] = true);
+        return matched[0];
+    }
+
+    /**
+     * @return the amount of stored values
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static <V> void collect(Node<V> node, String[] segments, int index, Consumer<V> consumer) {
+        if (node.anySegments != null) {
+            //** may consume any amount of the remaining segments
+            for (int i = index; i <= segments.length; i++) {
+                collect(node.anySegments, segments, i, consumer);
+            }
+        }
+
+        if (index == segments.length) {
+            node.values.forEach(consumer);
+            return;
+        }
+
+        String segment = segments[index];
+        Node<V> literal = node.literals.get(segment);
+        if (literal != null) {
+            collect(literal, segments, index + 1, consumer);
+        }
+        for (WildcardNode<V> wildcard : node.wildcards) {
+            if (wildcard.pattern.matcher(segment).matches()) {
+                collect(wildcard.node, segments, index + 1, consumer);
+            }
+        }
+    }
+
+    /**
+     * Splits a path into its normalized segments
+     *
+     * @param path the path to split
+     * @return the segments
+     */
+    public static String[] split(String path) {
+        if (path == null || path.isEmpty()) {
+            return new String[0];
+        }
+        return ResourcePath.of(path).segments();
+    }
+
+    /**
+     * Checks if a single segment contains any wildcard
+     */
+    static boolean isWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0;
+    }
+
+    /**
+     * Compiles a single wildcard segment to a regex matching only within that segment
+     */
+    static Pattern compileSegment(String segment) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '*' || c == '?' || c == '{') {
+                if (!literal.isEmpty()) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                if (c == '?') {
+                    regex.append('.');
+                } else {
+                    regex.append(".*");
+                }
+                if (c == '{') {
+                    int end = segment.indexOf('}', i);
+                    i = end < 0 ? segment.length() : end;
+                }
+            } else {
+                literal.append(c);
+            }
+        }
+        if (!literal.isEmpty()) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static class Node<V> {
+        private final Map<String, Node<V>> literals = new HashMap<>(2);
+        private final List<WildcardNode<V>> wildcards = new ArrayList<>(0);
+        private final List<V> values = new ArrayList<>(1);
+        private Node<V> anySegments;
+
+        private Node<V> child(String segment) {
+            if (segment.equals("**")) {
+                if (anySegments == null) {
+                    anySegments = new Node<>();
+                }
+                return anySegments;
+            }
+            if (!isWildcard(segment)) {
+                return literals.computeIfAbsent(segment, s -> new Node<>());
+            }
+            for (WildcardNode<V> wildcard : wildcards) {
+                if (wildcard.segment.equals(segment)) {
+                    return wildcard.node;
+                }
+            }
+            WildcardNode<V> wildcard = new WildcardNode<>(segment, compileSegment(segment), new Node<>());
+            wildcards.add(wildcard);
+            return wildcard.node;
+        }
+
+        private Node<V> existingChild(String segment) {
+            if (segment.equals("**")) {
+                return anySegments;
+            }
+            if (!isWildcard(segment)) {
+                return literals.get(segment);
+            }
+            for (WildcardNode<V> wildcard : wildcards) {
+                if (wildcard.segment.equals(segment)) {
+                    return wildcard.node;
+                }
+            }
+            return null;
+        }
+    }
+
+    private record WildcardNode<V>(String segment, Pattern pattern, Node<V> node) {
+    }
+}
@@ -0,0 +1,165 @@
+package com.wonkglorg.doc.core.path;
+
+import java.nio.file.Path;
+
+/**
+ * The canonical form of a resource path, normalized once on creation so it can be used as a map key and compared without normalizing again. The segments and the {@link Path} form
+ * are only computed on first use and then kept.
+ */
+public final class ResourcePath implements Comparable<ResourcePath> {
+    /**
+     * The separator of the canonical form
+     */
+    public static final char SEPARATOR = '\\';
+    private static final String[] NO_SEGMENTS = new String[0];
+
+    private final String path;
+    private final int hash;
+    private String[] segments;
+    private Path asPath;
+
+    private ResourcePath(String path) {
+        this.path = path;
+        this.hash = path.hashCode();
+    }
+
+    /**
+     * Creates the canonical form of a path
+     *
+     * @param path the path to normalize
+     * @return the canonical path
+     */
+    public static ResourcePath of(String path) {
+        return new ResourcePath(normalize(path));
+    }
+
+    /**
+     * Creates the canonical form of a path
+     *
+     * @param path the path to normalize
+     * @return the canonical path
+     */
+    public static ResourcePath of(Path path) {
+        String pathString = path.toString();
+        ResourcePath resourcePath = of(pathString);
+        //the same string instance means the path was already canonical and can be reused
+        if (resourcePath.path == pathString) {
+            resourcePath.asPath = path;
+        }
+        return resourcePath;
+    }
+
+    /**
+     * Normalizes any os specific separators to {@link #SEPARATOR} and collapses repeated separators. Paths already in their canonical form are returned as is without allocating.
+     *
+     * @param path the path to normalize
+     * @return the normalized path
+     */
+    public static String normalize(String path) {
+        int length = path.length();
+        int i = 0;
+        char previous = 0;
+        for (; i < length; i++) {
+            char c = path.charAt(i);
+            if (c == '/' || (c == SEPARATOR && previous == SEPARATOR)) {
+                break;
+            }
+            previous = c;
+        }
+        if (i == length) {
+            return path;
+        }
+
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(path, 0, i);
+        for (; i < length; i++) {
+            char c = path.charAt(i);
+            if (c == '/') {
+                c = SEPARATOR;
+            }
+            if (c == SEPARATOR && previous == SEPARATOR) {
+                continue;
+            }
+            builder.append(c);
+            previous = c;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the segments of the path, the returned array must not be modified
+     */
+    public String[] segments() {
+        String[] result = segments;
+        if (result == null) {
+            result = split();
+            segments = result;
+        }
+        return result;
+    }
+
+    /**
+     * Splits the path the same way {@link String#split(String)} does, trailing empty segments are dropped
+     */
+    private String[] split() {
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == SEPARATOR) {
+            end--;
+        }
+        if (end == 0) {
+            return NO_SEGMENTS;
+        }
+        int count = 1;
+        for (int i = 0; i < end; i++) {
+            if (path.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+        String[] result = new String[count];
+        int start = 0;
+        int index = 0;
+        for (int i = 0; i < end; i++) {
+            if (path.charAt(i) == SEPARATOR) {
+                result[index++] = path.substring(start, i);
+                start = i + 1;
+            }
+        }
+        result[index] = path.substring(start, end);
+        return result;
+    }
+
+    /**
+     * @return the path as a {@link Path}
+     */
+    public Path toPath() {
+        Path result = asPath;
+        if (result == null) {
+            result = Path.of(path);
+            asPath = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof ResourcePath other && hash == other.hash && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(ResourcePath o) {
+        return path.compareTo(o.path);
+    }
+}
@@ -7,7 +7,7 @@ import java.util.Objects;
  * Represents a path to a target, can be either a normal path or an ant path (a path with wildcards)
  */
 public class TargetPath{
-	private final Path path;
+	private final ResourcePath path;
 	private final AntPath antPath;
 	
 	public TargetPath(String path) {
@@ -22,7 +22,7 @@ public class TargetPath{
 			this.path = null;
 		} else {
 			this.antPath = null;
-			this.path = normalizePath(Path.of(path));
+			this.path = ResourcePath.of(path);
 		}
 	}
 
@@ -55,7 +55,9 @@ public class TargetPath{
 	 * @return the normalized path
 	 */
 	public static Path normalizePath(Path path) {
-		return Path.of(normalizePath(path.toString()));
+		String normalized = normalizePath(path.toString());
+		//the same string instance means it was already normalized
+		return normalized == path.toString() ? path : Path.of(normalized);
 	}
 
 	/**
@@ -64,7 +66,7 @@ public class TargetPath{
 	 * @return the normalized path
 	 */
 	public static String normalizePath(String path) {
-		return path.replace("/", "\\").replace("\\\\", "\\").replace("//", "\\");
+		return ResourcePath.normalize(path);
 	}
 
 	/**
@@ -75,6 +77,13 @@ public class TargetPath{
 	}
 	
 	public Path getPath() {
+		return path == null ? null : path.toPath();
+	}
+	
+	/**
+	 * @return the canonical path or null if this is an ant path or empty
+	 */
+	public ResourcePath getResourcePath() {
 		return path;
 	}
 	
@@ -0,0 +1,150 @@
+package com.wonkglorg.doc.core.permissions;
+
+import com.wonkglorg.doc.core.objects.GroupId;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.UserId;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Caches the effective permissions of a user per repo, that is their own permissions merged with the ones of every group they are in, compiled into a {@link PermissionIndex}.
+ * Entries are built once on first use and dropped when a {@link PermissionEvents} event affects them, register the cache with {@link PermissionEvents#register(PermissionListener)}.
+ */
+public class EffectivePermissionCache implements PermissionListener {
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * Incremented on every invalidation before entries are removed, so an entry built concurrently to a change is not kept
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Gets the effective permissions of a user in a repo, building them with the loader if they are not cached
+     *
+     * @param repoId the repo
+     * @param userId the user
+     * @param loader builds the entry on a cache miss
+     * @return the permission index of the user
+     * @throws E if the loader fails
+     */
+    public <E extends Exception> PermissionIndex get(RepoId repoId, UserId userId, Loader<E> loader) throws E {
+        Key key = new Key(repoId, userId);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits.increment();
+            return entry.index();
+        }
+
+        misses.increment();
+        long current = generation.get();
+        entry = loader.load();
+        Entry cached = new Entry(Set.copyOf(entry.groupIds()), entry.index());
+        entries.put(key, cached);
+        //an invalidation running between the load and the put could not remove the entry yet, it is checked again once the entry is visible
+        if (current != generation.get()) {
+            entries.remove(key, cached);
+        }
+        return entry.index();
+    }
+
+    @Override
+    public void userPermissionsChanged(RepoId repoId, UserId userId) {
+        invalidate(key -> key.repoId().equals(repoId) && key.userId().equals(userId), null);
+    }
+
+    @Override
+    public void groupPermissionsChanged(RepoId repoId, GroupId groupId) {
+        invalidate(key -> key.repoId().equals(repoId), groupId);
+    }
+
+    @Override
+    public void groupMembershipChanged(GroupId groupId, UserId userId) {
+        invalidate(key -> key.userId().equals(userId), null);
+    }
+
+    @Override
+    public void userRemoved(UserId userId) {
+        invalidate(key -> key.userId().equals(userId), null);
+    }
+
+    @Override
+    public void repoUnloaded(RepoId repoId) {
+        invalidate(key -> key.repoId().equals(repoId), null);
+    }
+
+    /**
+     * @return the current generation, changes whenever any permission, group membership or user changes
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Drops every cached entry
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+        invalidations.increment();
+    }
+
+    /**
+     * @return the current hit, miss and invalidation counts of the cache
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), invalidations.sum(), entries.size());
+    }
+
+    private void invalidate(Predicate<Key> keyFilter, GroupId groupId) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        entries.entrySet().removeIf(e -> keyFilter.test(e.getKey()) && (groupId == null || e.getValue().groupIds().contains(groupId)));
+    }
+
+    private record Key(RepoId repoId, UserId userId) {
+    }
+
+    /**
+     * The effective permissions of a user together with the groups they were built from
+     *
+     * @param groupIds the groups of the user at the time the index was built
+     * @param index    the compiled permission index
+     */
+    public record Entry(Set<GroupId> groupIds, PermissionIndex index) {
+    }
+
+    /**
+     * Builds an {@link Entry} on a cache miss
+     *
+     * @param <E> the exception the loader may throw
+     */
+    @FunctionalInterface
+    public interface Loader<E extends Exception> {
+        Entry load() throws E;
+    }
+
+    /**
+     * A snapshot of the cache metrics
+     *
+     * @param hits          lookups answered from the cache
+     * @param misses        lookups that had to build the entry
+     * @param invalidations events that dropped entries
+     * @param size          the number of cached entries
+     */
+    public record Stats(long hits, long misses, long invalidations, int size) {
+        /**
+         * @return the ratio of hits to all lookups, 0 if there were no lookups yet
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
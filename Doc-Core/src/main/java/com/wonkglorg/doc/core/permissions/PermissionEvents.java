@@ -0,0 +1,68 @@
+package com.wonkglorg.doc.core.permissions;
+
+import com.wonkglorg.doc.core.objects.GroupId;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.UserId;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Dispatches permission related changes from {@link com.wonkglorg.doc.core.db.functions.PermissionFunctions} and {@link com.wonkglorg.doc.core.db.UserDatabase} to all registered
+ * {@link PermissionListener}s. Events are fired after the change was written to the database and its in memory cache.
+ */
+public final class PermissionEvents {
+    private static final List<PermissionListener> listeners = new CopyOnWriteArrayList<>();
+
+    private PermissionEvents() {
+        //utility class
+    }
+
+    /**
+     * Registers a listener
+     *
+     * @param listener the listener to register
+     */
+    public static void register(PermissionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener
+     *
+     * @param listener the listener to unregister
+     */
+    public static void unregister(PermissionListener listener) {
+        listeners.remove(listener);
+    }
+
+    public static void userPermissionsChanged(RepoId repoId, UserId userId) {
+        for (PermissionListener listener : listeners) {
+            listener.userPermissionsChanged(repoId, userId);
+        }
+    }
+
+    public static void groupPermissionsChanged(RepoId repoId, GroupId groupId) {
+        for (PermissionListener listener : listeners) {
+            listener.groupPermissionsChanged(repoId, groupId);
+        }
+    }
+
+    public static void groupMembershipChanged(GroupId groupId, UserId userId) {
+        for (PermissionListener listener : listeners) {
+            listener.groupMembershipChanged(groupId, userId);
+        }
+    }
+
+    public static void userRemoved(UserId userId) {
+        for (PermissionListener listener : listeners) {
+            listener.userRemoved(userId);
+        }
+    }
+
+    public static void repoUnloaded(RepoId repoId) {
+        for (PermissionListener listener : listeners) {
+            listener.repoUnloaded(repoId);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.wonkglorg.doc.core.permissions;
+
+import com.wonkglorg.doc.core.objects.GroupId;
+import com.wonkglorg.doc.core.objects.UserId;
+import com.wonkglorg.doc.core.path.AntPath;
+import com.wonkglorg.doc.core.path.PatternTrie;
+import com.wonkglorg.doc.core.path.ResourcePath;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, precompiled view of all permissions a user has in a repo, both their own and the ones of their groups. Resolving a path only walks the segments of the path instead of
+ * matching every pattern.
+ * <p>
+ * Resolution order is:
+ * <ol>
+ *     <li>exact user path</li>
+ *     <li>exact group path</li>
+ *     <li>user pattern, longer patterns first</li>
+ *     <li>group pattern, longer patterns first</li>
+ *     <li>{@link PermissionType#DENY} if nothing matched</li>
+ * </ol>
+ * If multiple groups define the same exact path the most permissive one is used.
+ */
+public final class PermissionIndex {
+    /**
+     * An index without any permissions, denies every path
+     */
+    public static final PermissionIndex EMPTY = new PermissionIndex(Map.of(), Map.of(), new PatternTrie<>());
+
+    private final Map<String, PermissionType> exactUser;
+    private final Map<String, PermissionType> exactGroup;
+    private final PatternTrie<Rule> patterns;
+
+    private PermissionIndex(Map<String, PermissionType> exactUser, Map<String, PermissionType> exactGroup, PatternTrie<Rule> patterns) {
+        this.exactUser = exactUser;
+        this.exactGroup = exactGroup;
+        this.patterns = patterns;
+    }
+
+    /**
+     * Compiles the permissions of a user and their groups into an index
+     *
+     * @param userPermissions  the permissions of the user (can be null)
+     * @param groupPermissions the permissions of the groups the user is in (can be null)
+     * @return the compiled index
+     */
+    public static PermissionIndex of(Collection<Permission<UserId>> userPermissions, Collection<Permission<GroupId>> groupPermissions) {
+        Map<String, PermissionType> exactUser = new HashMap<>();
+        Map<String, PermissionType> exactGroup = new HashMap<>();
+        PatternTrie<Rule> patterns = new PatternTrie<>();
+
+        if (userPermissions != null) {
+            for (Permission<UserId> permission : userPermissions) {
+                String path = permission.getPath().toString();
+                if (AntPath.isAntPath(path)) {
+                    patterns.add(path, new Rule(path, permission.getPermission(), true));
+                } else {
+                    exactUser.put(path, permission.getPermission());
+                }
+            }
+        }
+
+        if (groupPermissions != null) {
+            for (Permission<GroupId> permission : groupPermissions) {
+                String path = permission.getPath().toString();
+                if (AntPath.isAntPath(path)) {
+                    patterns.add(path, new Rule(path, permission.getPermission(), false));
+                } else {
+                    exactGroup.merge(path, permission.getPermission(), PermissionIndex::mostPermissive);
+                }
+            }
+        }
+
+        if (exactUser.isEmpty() && exactGroup.isEmpty() && patterns.isEmpty()) {
+            return EMPTY;
+        }
+        return new PermissionIndex(exactUser, exactGroup, patterns);
+    }
+
+    /**
+     * Resolves the permission for a single path
+     *
+     * @param path the path to resolve
+     * @return the permission type, {@link PermissionType#DENY} if no permission matched
+     */
+    public PermissionType permissionFor(String path) {
+        return permissionFor(ResourcePath.of(path));
+    }
+
+    /**
+     * Resolves the permission for a single already canonical path, neither the path nor its segments are normalized or split again
+     *
+     * @param path the path to resolve
+     * @return the permission type, {@link PermissionType#DENY} if no permission matched
+     */
+    public PermissionType permissionFor(ResourcePath path) {
+        String key = path.toString();
+        PermissionType type = exactUser.get(key);
+        if (type != null) {
+            return type;
+        }
+        type = exactGroup.get(key);
+        if (type != null) {
+            return type;
+        }
+        if (patterns.isEmpty()) {
+            return PermissionType.DENY;
+        }
+
+        Rule[] best = new Rule[1];
+        patterns.collect(path.segments(), rule -> {
+            if (best[0] == null || rule.isBetterThan(best[0])) {
+                best[0] = rule;
+            }
+        });
+        return best[0] == null ? PermissionType.DENY : best[0].type();
+    }
+
+    /**
+     * Resolves the permission for a single path
+     *
+     * @param path the path to resolve
+     * @return the permission type, {@link PermissionType#DENY} if no permission matched
+     */
+    public PermissionType permissionFor(Path path) {
+        return permissionFor(ResourcePath.of(path));
+    }
+
+    /**
+     * Resolves the permissions for a list of paths
+     *
+     * @param paths the paths to resolve
+     * @return a map of each path to its permission
+     */
+    public Map<Path, PermissionType> permissionsFor(List<Path> paths) {
+        Map<Path, PermissionType> result = new HashMap<>(paths.size() * 2);
+        for (Path path : paths) {
+            result.putIfAbsent(path, permissionFor(path));
+        }
+        return result;
+    }
+
+    /**
+     * @return true if this index has no permissions at all
+     */
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+
+    private static PermissionType mostPermissive(PermissionType a, PermissionType b) {
+        return a.ordinal() <= b.ordinal() ? a : b;
+    }
+
+    /**
+     * A single compiled pattern permission
+     *
+     * @param pattern the pattern
+     * @param type    the permission type
+     * @param user    true if this is a user permission, false for a group permission
+     */
+    private record Rule(String pattern, PermissionType type, boolean user) {
+        private boolean isBetterThan(Rule other) {
+            if (user != other.user) {
+                return user;
+            }
+            if (pattern.length() != other.pattern.length()) {
+                return pattern.length() > other.pattern.length();
+            }
+            if (!pattern.equals(other.pattern)) {
+                return pattern.compareTo(other.pattern) < 0;
+            }
+            return type.ordinal() < other.type.ordinal();
+        }
+    }
+}
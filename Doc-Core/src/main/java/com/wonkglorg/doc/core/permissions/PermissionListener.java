@@ -0,0 +1,54 @@
+package com.wonkglorg.doc.core.permissions;
+
+import com.wonkglorg.doc.core.objects.GroupId;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.UserId;
+
+/**
+ * Receives notifications whenever something changes that affects the effective permissions of a user, see {@link PermissionEvents}
+ */
+public interface PermissionListener {
+
+    /**
+     * Called after a permission of a user was added, updated or removed
+     *
+     * @param repoId the repo the permission belongs to
+     * @param userId the user the permission belongs to
+     */
+    default void userPermissionsChanged(RepoId repoId, UserId userId) {
+    }
+
+    /**
+     * Called after a permission of a group was added, updated or removed
+     *
+     * @param repoId  the repo the permission belongs to
+     * @param groupId the group the permission belongs to
+     */
+    default void groupPermissionsChanged(RepoId repoId, GroupId groupId) {
+    }
+
+    /**
+     * Called after a user joined or left a group, this affects the user in every repo
+     *
+     * @param groupId the group
+     * @param userId  the user
+     */
+    default void groupMembershipChanged(GroupId groupId, UserId userId) {
+    }
+
+    /**
+     * Called after a user was removed, this affects the user in every repo
+     *
+     * @param userId the removed user
+     */
+    default void userRemoved(UserId userId) {
+    }
+
+    /**
+     * Called after a repo was unloaded, anything cached for it can be released
+     *
+     * @param repoId the unloaded repo
+     */
+    default void repoUnloaded(RepoId repoId) {
+    }
+}
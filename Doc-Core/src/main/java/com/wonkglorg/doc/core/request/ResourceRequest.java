@@ -70,6 +70,15 @@ public class ResourceRequest{
 		userId = UserId.ALL_USERS;
 	}
 	
+	/**
+	 * Creates a copy of this request that can be modified without affecting the original, used when the same request is run against multiple repos
+	 *
+	 * @return the copy
+	 */
+	public ResourceRequest copy() {
+		return new ResourceRequest(searchTerm, path, repoId, userId, new HashSet<>(whitelistTags), new HashSet<>(blacklistTags), withData, returnLimit);
+	}
+	
 	public TargetPath targetPath() {
 		return path;
 	}
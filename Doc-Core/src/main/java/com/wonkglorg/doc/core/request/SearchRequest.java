@@ -0,0 +1,182 @@
+package com.wonkglorg.doc.core.request;
+
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.UserId;
+import com.wonkglorg.doc.core.path.TargetPath;
+
+import java.util.Objects;
+
+/**
+ * A request received by a controller and used for ranked full text searches, unlike {@link ResourceRequest} this never returns whole documents only excerpts around the matches
+ */
+public class SearchRequest{
+	/**
+	 * The term to search text by
+	 */
+	private String searchTerm = null;
+	/**
+	 * The path to limit the search to may be an ant path
+	 */
+	private TargetPath path = TargetPath.of((String) null);
+	/**
+	 * The repo to search in
+	 */
+	private RepoId repoId = RepoId.ALL_REPOS;
+	/**
+	 * The user to limit the search to
+	 */
+	private UserId userId = UserId.ALL_USERS;
+	/**
+	 * The amount of hits per page
+	 */
+	private int limit = 20;
+	/**
+	 * The amount of hits to skip, ignored if a cursor is given
+	 */
+	private int offset = 0;
+	/**
+	 * The cursor returned by the previous page to continue from
+	 */
+	private String cursor = null;
+	/**
+	 * The maximum amount of tokens an excerpt should contain
+	 */
+	private int excerptTokens = 16;
+	/**
+	 * The marker placed before a match in the excerpt
+	 */
+	private String highlightStart = "<mark>";
+	/**
+	 * The marker placed after a match in the excerpt
+	 */
+	private String highlightEnd = "</mark>";
+	
+	public SearchRequest(String searchTerm, TargetPath path, RepoId repoId, UserId userId, int limit, int offset, String cursor) {
+		this.searchTerm = searchTerm;
+		this.path = path == null ? TargetPath.of((String) null) : path;
+		this.repoId = repoId == null ? RepoId.ALL_REPOS : repoId;
+		this.userId = userId == null ? UserId.ALL_USERS : userId;
+		this.limit = limit;
+		this.offset = offset;
+		this.cursor = cursor;
+	}
+	
+	public SearchRequest() {
+	}
+	
+	public TargetPath targetPath() {
+		return path;
+	}
+	
+	public RepoId repoId() {
+		return repoId;
+	}
+	
+	public UserId userId() {
+		return userId;
+	}
+	
+	public void repoId(RepoId repoId) {
+		this.repoId = repoId == null ? RepoId.ALL_REPOS : repoId;
+	}
+	
+	public void userId(UserId userId) {
+		this.userId = userId == null ? UserId.ALL_USERS : userId;
+	}
+	
+	//-----mappings for rest objects
+	public String getSearchTerm() {
+		return searchTerm;
+	}
+	
+	public void setSearchTerm(String searchTerm) {
+		this.searchTerm = searchTerm;
+	}
+	
+	public String getPath() {
+		return path.toString();
+	}
+	
+	public void setPath(String path) {
+		this.path = TargetPath.of(path);
+	}
+	
+	public String getRepoId() {
+		return repoId.id();
+	}
+	
+	public void setRepoId(String repoId) {
+		this.repoId = RepoId.of(repoId);
+	}
+	
+	public String getUserId() {
+		return userId.id();
+	}
+	
+	public void setUserId(String userId) {
+		this.userId = UserId.of(userId);
+	}
+	
+	public int getLimit() {
+		return limit;
+	}
+	
+	public void setLimit(int limit) {
+		this.limit = limit;
+	}
+	
+	public int getOffset() {
+		return offset;
+	}
+	
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+	
+	public String getCursor() {
+		return cursor;
+	}
+	
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+	
+	public int getExcerptTokens() {
+		return excerptTokens;
+	}
+	
+	public void setExcerptTokens(int excerptTokens) {
+		this.excerptTokens = excerptTokens;
+	}
+	
+	public String getHighlightStart() {
+		return highlightStart;
+	}
+	
+	public void setHighlightStart(String highlightStart) {
+		this.highlightStart = highlightStart;
+	}
+	
+	public String getHighlightEnd() {
+		return highlightEnd;
+	}
+	
+	public void setHighlightEnd(String highlightEnd) {
+		this.highlightEnd = highlightEnd;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof SearchRequest that)){
+			return false;
+		}
+		return limit == that.limit && offset == that.offset && excerptTokens == that.excerptTokens && Objects.equals(searchTerm, that.searchTerm) &&
+			   Objects.equals(path, that.path) && Objects.equals(repoId, that.repoId) && Objects.equals(userId, that.userId) && Objects.equals(cursor,
+				that.cursor) && Objects.equals(highlightStart, that.highlightStart) && Objects.equals(highlightEnd, that.highlightEnd);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(searchTerm, path, repoId, userId, limit, offset, cursor, excerptTokens, highlightStart, highlightEnd);
+	}
+}
@@ -0,0 +1,26 @@
+package com.wonkglorg.doc.core.sync;
+
+import java.nio.file.Path;
+
+/**
+ * The fingerprint of a file as it was last indexed, used to detect changes without reading the file again
+ *
+ * @param resourcePath the path of the file relative to the repo
+ * @param size         the size of the file in bytes
+ * @param lastModified the last modified time of the file in epoch milliseconds
+ * @param contentHash  the sha-256 hash of the files content
+ * @param blobId       the git blob id of the files content
+ */
+public record FileFingerprint(Path resourcePath, long size, long lastModified, String contentHash, String blobId){
+	
+	/**
+	 * Checks if the file attributes still match this fingerprint, if they do the content is assumed to be unchanged
+	 *
+	 * @param size         the current size of the file
+	 * @param lastModified the current last modified time of the file
+	 * @return true if both match
+	 */
+	public boolean matchesAttributes(long size, long lastModified) {
+		return this.size == size && this.lastModified == lastModified;
+	}
+}
@@ -0,0 +1,157 @@
+package com.wonkglorg.doc.core.sync;
+
+import com.wonkglorg.doc.core.db.RepositoryDatabase;
+import com.wonkglorg.doc.core.exception.CoreSqlException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Incrementally syncs the files of a repo with its database. A manifest of the fingerprint of every indexed file is kept so only files whose size or modification time changed have to be read
+ * again, of those only files whose content hash changed are re-indexed.
+ */
+public class SyncEngine{
+	private static final Logger log = LoggerFactory.getLogger(SyncEngine.class);
+	private final RepositoryDatabase database;
+	/**
+	 * The root of the repo all file paths are relative to
+	 */
+	private final Path repoRoot;
+	
+	public SyncEngine(RepositoryDatabase database, Path repoRoot) {
+		this.database = database;
+		this.repoRoot = repoRoot;
+	}
+	
+	/**
+	 * Diffs the found files against the manifest and the indexed resources in a single pass
+	 *
+	 * @param foundFiles     the files currently on disk relative to the repo
+	 * @param knownResources the resources currently indexed
+	 * @param report         the report to record timings in
+	 * @return the plan of changes to apply
+	 * @throws CoreSqlException if the manifest could not be loaded
+	 */
+	public SyncPlan plan(Set<Path> foundFiles, Set<Path> knownResources, SyncReport report) throws CoreSqlException {
+		long start = System.nanoTime();
+		Map<Path, FileFingerprint> manifest = database.fileManifestFunctions().loadManifest();
+		start = report.record("manifest load", start);
+		
+		//only files whose attributes changed or that were never fingerprinted have to be read
+		List<Path> candidates = new ArrayList<>();
+		Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+		for(Path file : foundFiles){
+			report.scanned++;
+			BasicFileAttributes attribute;
+			try{
+				attribute = Files.readAttributes(repoRoot.resolve(file), BasicFileAttributes.class);
+			} catch(IOException e){
+				log.error("Error while reading file attributes of '{}'", file, e);
+				continue;
+			}
+			FileFingerprint fingerprint = manifest.get(file);
+			if(fingerprint != null && knownResources.contains(file) && fingerprint.matchesAttributes(attribute.size(),
+					attribute.lastModifiedTime().toMillis())){
+				report.unchanged++;
+				continue;
+			}
+			attributes.put(file, attribute);
+			candidates.add(file);
+		}
+		
+		List<Path> deleted = new ArrayList<>();
+		for(Path resource : knownResources){
+			if(!foundFiles.contains(resource)){
+				deleted.add(resource);
+			}
+		}
+		report.deleted = deleted.size();
+		
+		List<Path> removed = new ArrayList<>();
+		for(Path file : manifest.keySet()){
+			if(!foundFiles.contains(file)){
+				removed.add(file);
+			}
+		}
+		start = report.record("scan", start);
+		
+		List<Path> added = new ArrayList<>();
+		List<Path> changed = new ArrayList<>();
+		List<Path> unverified = new ArrayList<>();
+		Map<Path, String> contents = new HashMap<>();
+		List<FileFingerprint> fingerprints = new ArrayList<>();
+		MessageDigest digest = sha256();
+		for(Path file : candidates){
+			byte[] bytes;
+			try{
+				bytes = Files.readAllBytes(repoRoot.resolve(file));
+			} catch(IOException e){
+				log.error("Error while reading file data from '{}'", file, e);
+				continue;
+			}
+			report.hashed++;
+			BasicFileAttributes attribute = attributes.get(file);
+			FileFingerprint fingerprint = new FileFingerprint(file,
+					attribute.size(),
+					attribute.lastModifiedTime().toMillis(),
+					HexFormat.of().formatHex(digest.digest(bytes)),
+					new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, bytes).name());
+			fingerprints.add(fingerprint);
+			
+			FileFingerprint previous = manifest.get(file);
+			if(!knownResources.contains(file)){
+				added.add(file);
+			} else if(previous == null){
+				unverified.add(file);
+			} else if(!previous.contentHash().equals(fingerprint.contentHash())){
+				changed.add(file);
+			} else {
+				report.touched++;
+				continue;
+			}
+			contents.put(file, new String(bytes, StandardCharsets.UTF_8));
+		}
+		report.added = added.size();
+		report.changed = changed.size();
+		report.record("hash", start);
+		
+		return new SyncPlan(added, changed, unverified, deleted, contents, fingerprints, removed, report);
+	}
+	
+	/**
+	 * Persists the manifest changes of an applied plan, this should only be called once the plan was successfully applied to the database
+	 *
+	 * @param plan the applied plan
+	 * @throws CoreSqlException if the manifest could not be updated
+	 */
+	public void commit(SyncPlan plan) throws CoreSqlException {
+		long start = System.nanoTime();
+		List<Path> removed = new ArrayList<>(plan.removed());
+		removed.addAll(plan.deleted());
+		database.fileManifestFunctions().updateManifest(plan.fingerprints(), removed);
+		plan.report().record("manifest save", start);
+	}
+	
+	private static MessageDigest sha256() {
+		try{
+			return MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e){
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.wonkglorg.doc.core.sync;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of diffing the files on disk against the manifest and the indexed resources, describes what has to be applied to bring the index up to date
+ *
+ * @param added        files that are not yet indexed
+ * @param changed      indexed files whose content hash changed
+ * @param unverified   indexed files without a manifest entry, their content was read but it is unknown if it differs from the index
+ * @param deleted      indexed resources whose file no longer exists
+ * @param contents     the content of every added, changed and unverified file
+ * @param fingerprints the new fingerprints to store once the plan was applied
+ * @param removed      the manifest entries to remove once the plan was applied
+ * @param report       the report of this sync run
+ */
+public record SyncPlan(List<Path> added,
+					   List<Path> changed,
+					   List<Path> unverified,
+					   List<Path> deleted,
+					   Map<Path, String> contents,
+					   List<FileFingerprint> fingerprints,
+					   List<Path> removed,
+					   SyncReport report){}
@@ -0,0 +1,132 @@
+package com.wonkglorg.doc.core.sync;
+
+import com.wonkglorg.doc.core.objects.RepoId;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the counts and per phase timings of a single sync run
+ */
+public class SyncReport{
+	private final RepoId repoId;
+	/**
+	 * The time spent in each phase in the order they ran
+	 */
+	private final Map<String, Duration> phaseTimings = new LinkedHashMap<>();
+	/**
+	 * Files found on disk
+	 */
+	int scanned;
+	/**
+	 * Files skipped because their size and modification time matched the manifest
+	 */
+	int unchanged;
+	/**
+	 * Files that had to be read and hashed
+	 */
+	int hashed;
+	/**
+	 * Files that were touched but whose content hash did not change
+	 */
+	int touched;
+	/**
+	 * Files new to the repo
+	 */
+	int added;
+	/**
+	 * Files whose content changed
+	 */
+	int changed;
+	/**
+	 * Resources whose file no longer exists
+	 */
+	int deleted;
+	
+	public SyncReport(RepoId repoId) {
+		this.repoId = repoId;
+	}
+	
+	/**
+	 * Records the time spent in a phase
+	 *
+	 * @param phase      the name of the phase
+	 * @param startNanos the {@link System#nanoTime()} the phase started at
+	 * @return the current {@link System#nanoTime()} so it can be used as the start of the next phase
+	 */
+	public long record(String phase, long startNanos) {
+		long now = System.nanoTime();
+		phaseTimings.merge(phase, Duration.ofNanos(now - startNanos), Duration::plus);
+		return now;
+	}
+	
+	/**
+	 * Logs the report
+	 *
+	 * @param log the logger to log to
+	 */
+	public void log(Logger log) {
+		log.info("--------Sync report for repo '{}'--------", repoId);
+		log.info("Scanned: {}, Unchanged: {}, Hashed: {}, Touched: {}", scanned, unchanged, hashed, touched);
+		log.info("New resources: {}, Updated resources: {}, Deleted resources: {}", added, changed, deleted);
+		for(var entry : phaseTimings.entrySet()){
+			log.info("Phase '{}' took {}ms", entry.getKey(), entry.getValue().toMillis());
+		}
+		log.info("Total: {}ms", getTotal().toMillis());
+		log.info("--------End of report--------");
+	}
+	
+	/**
+	 * @return true if any resource was added, changed or deleted
+	 */
+	public boolean hasChanges() {
+		return added > 0 || changed > 0 || deleted > 0;
+	}
+	
+	public Duration getTotal() {
+		return phaseTimings.values().stream().reduce(Duration.ZERO, Duration::plus);
+	}
+	
+	public Map<String, Duration> getPhaseTimings() {
+		return Collections.unmodifiableMap(phaseTimings);
+	}
+	
+	public RepoId getRepoId() {
+		return repoId;
+	}
+	
+	public int getScanned() {
+		return scanned;
+	}
+	
+	public int getUnchanged() {
+		return unchanged;
+	}
+	
+	public int getHashed() {
+		return hashed;
+	}
+	
+	public int getTouched() {
+		return touched;
+	}
+	
+	public int getAdded() {
+		return added;
+	}
+	
+	public int getChanged() {
+		return changed;
+	}
+	
+	public int getDeleted() {
+		return deleted;
+	}
+	
+	public void setChanged(int changed) {
+		this.changed = changed;
+	}
+}
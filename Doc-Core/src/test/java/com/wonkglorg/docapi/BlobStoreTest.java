@@ -0,0 +1,147 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.FileRepository;
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.db.functions.ResourceFunctions;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.Resource;
+import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.request.ResourceRequest;
+import com.wonkglorg.doc.core.request.ResourceUpdateRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tests that the content of resources is stored compressed and once per distinct content
+ */
+class BlobStoreTest {
+
+    /**
+     * In memory repos share one database, everything is kept below its own directory to not see resources of other tests
+     */
+    @Test
+    void identicalContentIsStoredOnce() throws Exception {
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of("blobStoreRepo"));
+        property.setPath(Path.of(""));
+        FileRepository db = new FileRepository(property, true);
+        db.initialize();
+        ResourceFunctions functions = db.getDatabase().resourceFunctions();
+        RepoId repoId = property.getId();
+
+        String shared = "# Shared\n" + "every copy of this page points at the same blob\n".repeat(200);
+        List<Resource> resources = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            resources.add(new Resource(Path.of("blobstore\\copy" + i + ".md"), "me", repoId, null, Set.of(), shared));
+        }
+        resources.add(new Resource(Path.of("blobstore\\unique.md"), "me", repoId, null, Set.of(), "# Unique\nonly here"));
+        functions.batchInsert(resources);
+
+        try (Connection connection = db.getDatabase().getConnection()) {
+            Assertions.assertEquals(2, count(connection, "SELECT count(DISTINCT blob_id) FROM Documents WHERE resource_path LIKE 'blobstore%'"));
+            long stored = count(connection, """
+                    SELECT length(data) FROM Blobs WHERE blob_id = (SELECT blob_id FROM Documents WHERE resource_path = 'blobstore\\copy0.md')
+                    """);
+            Assertions.assertTrue(stored < shared.length() / 10);
+        }
+
+        //the content reads back unchanged and is still searchable
+        Map<String, String> read = functions.getResources(new ResourceRequest(null, TargetPath.of("blobstore/**"), repoId, null, null, null, true, 100))
+                .stream()
+                .collect(Collectors.toMap(r -> r.resourcePath().toString(), Resource::data));
+        Assertions.assertEquals(11, read.size());
+        Assertions.assertEquals(shared, read.get("blobstore\\copy3.md"));
+        Assertions.assertEquals(10, functions.getResources(new ResourceRequest("same blob", TargetPath.of("blobstore/**"), repoId, null, null, null, false, 100)).size());
+
+        //a blob is kept while any document uses it
+        List<Path> copies = resources.stream().map(Resource::resourcePath).filter(p -> p.toString().contains("copy")).toList();
+        String uniqueBlob;
+        try (Connection connection = db.getDatabase().getConnection()) {
+            uniqueBlob = blobId(connection, "blobstore\\unique.md");
+        }
+        functions.batchDelete(copies.subList(0, 9));
+        functions.updateResource(update("blobstore\\unique.md", "# Changed\nnew content"));
+        try (Connection connection = db.getDatabase().getConnection()) {
+            Assertions.assertEquals(1, count(connection, "SELECT count(*) FROM Blobs WHERE blob_id = (SELECT blob_id FROM Documents WHERE resource_path = 'blobstore\\copy9.md')"));
+            Assertions.assertEquals(0, count(connection, "SELECT count(*) FROM Blobs WHERE blob_id = '" + uniqueBlob + "'"));
+        }
+        Assertions.assertEquals(Set.of("blobstore\\unique.md"),
+                functions.getResources(new ResourceRequest("new content", TargetPath.of("blobstore/**"), repoId, null, null, null, false, 100))
+                        .stream()
+                        .map(r -> r.resourcePath().toString())
+                        .collect(Collectors.toSet()));
+
+        functions.batchDelete(List.of(copies.get(9)));
+        Assertions.assertTrue(functions.getResources(new ResourceRequest("same blob", TargetPath.of("blobstore/**"), repoId, null, null, null, false, 100)).isEmpty());
+    }
+
+    /**
+     * Swapping the content of two resources in one batch points each at the blob the other one just stopped using, the blobs have to survive the whole batch
+     */
+    @Test
+    void contentCanBeSwappedInOneBatch() throws Exception {
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of("blobSwapRepo"));
+        property.setPath(Path.of(""));
+        FileRepository db = new FileRepository(property, true);
+        db.initialize();
+        ResourceFunctions functions = db.getDatabase().resourceFunctions();
+        RepoId repoId = property.getId();
+
+        Path first = Path.of("blobswap\\first.md");
+        Path second = Path.of("blobswap\\second.md");
+        functions.batchInsert(List.of(new Resource(first, "me", repoId, null, Set.of(), "# First\nswapped content"),
+                new Resource(second, "me", repoId, null, Set.of(), "# Second\nswapped content")));
+
+        functions.batchUpdate(List.of(new Resource(first, "me", repoId, null, Set.of(), "# Second\nswapped content"),
+                new Resource(second, "me", repoId, null, Set.of(), "# First\nswapped content")));
+
+        Map<String, String> read = functions.getResources(new ResourceRequest(null, TargetPath.of("blobswap/**"), repoId, null, null, null, true, 10))
+                .stream()
+                .collect(Collectors.toMap(r -> r.resourcePath().toString(), Resource::data));
+        Assertions.assertEquals("# Second\nswapped content", read.get(first.toString()));
+        Assertions.assertEquals("# First\nswapped content", read.get(second.toString()));
+        try (Connection connection = db.getDatabase().getConnection()) {
+            Assertions.assertEquals(2, count(connection, "SELECT count(*) FROM Blobs WHERE blob_id IN (SELECT blob_id FROM Documents WHERE resource_path LIKE 'blobswap%')"));
+        }
+        Assertions.assertEquals(Set.of(first.toString(), second.toString()),
+                functions.getResources(new ResourceRequest("swapped", TargetPath.of("blobswap/**"), repoId, null, null, null, false, 10))
+                        .stream()
+                        .map(r -> r.resourcePath().toString())
+                        .collect(Collectors.toSet()));
+    }
+
+    private static ResourceUpdateRequest update(String path, String data) {
+        ResourceUpdateRequest request = new ResourceUpdateRequest();
+        request.setRepoId("blobStoreRepo");
+        request.setPath(path);
+        request.setUserId("me");
+        request.setData(data);
+        return request;
+    }
+
+    private static String blobId(Connection connection, String path) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT blob_id FROM Documents WHERE resource_path = ?")) {
+            statement.setString(1, path);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private static long count(Connection connection, String sql) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement(sql); ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
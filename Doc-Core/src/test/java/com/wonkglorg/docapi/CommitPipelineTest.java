@@ -0,0 +1,101 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.exception.client.ReadOnlyRepoException;
+import com.wonkglorg.doc.core.git.CommitPipeline;
+import com.wonkglorg.doc.core.git.GitRepo;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+class CommitPipelineTest {
+
+    @TempDir
+    Path repoRoot;
+
+    @Test
+    void coalescesEditsIntoOneCommit() throws Exception {
+        GitRepo gitRepo = createRepo();
+        CommitPipeline pipeline = new CommitPipeline(gitRepo, Duration.ofMillis(200), Duration.ofSeconds(1));
+
+        for (int i = 0; i < 10; i++) {
+            Path file = Path.of("file" + i + ".md");
+            Files.writeString(repoRoot.resolve(file), "content " + i);
+            pipeline.enqueue(file, "Added resource " + file);
+        }
+        Assertions.assertEquals(10, pipeline.stats().queueDepth());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.stats().commits() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        pipeline.close();
+
+        CommitPipeline.Stats stats = pipeline.stats();
+        Assertions.assertEquals(1, stats.commits());
+        Assertions.assertEquals(0, stats.queueDepth());
+        //without a remote there is nothing to push to
+        Assertions.assertEquals(0, stats.failedPushes());
+
+        List<RevCommit> commits = new ArrayList<>();
+        gitRepo.getGit().log().call().forEach(commits::add);
+        Assertions.assertTrue(commits.getFirst().getFullMessage().startsWith("Updated 10 resources"));
+        Assertions.assertEquals(2, gitRepo.getLastCommitsForPaths(List.of(Path.of("file0.md"), Path.of("file9.md"))).size());
+    }
+
+    @Test
+    void closeCommitsPendingEdits() throws Exception {
+        GitRepo gitRepo = createRepo();
+        CommitPipeline pipeline = new CommitPipeline(gitRepo, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        Path file = Path.of("pending.md");
+        Files.writeString(repoRoot.resolve(file), "pending");
+        pipeline.enqueue(file, "Added resource pending.md");
+        pipeline.close();
+
+        Assertions.assertEquals(1, pipeline.stats().commits());
+        Assertions.assertEquals("Added resource pending.md", gitRepo.getLastCommitsForPaths(List.of(file)).get(file).getFullMessage());
+    }
+
+    @Test
+    void failedCommitKeepsFilesQueued() throws Exception {
+        GitRepo gitRepo = createRepo();
+        CommitPipeline pipeline = new CommitPipeline(gitRepo, Duration.ofMillis(50), Duration.ofSeconds(1));
+
+        //a held index lock makes every commit fail until it is released
+        Path lock = repoRoot.resolve(".git").resolve("index.lock");
+        Files.createFile(lock);
+        Path file = Path.of("locked.md");
+        Files.writeString(repoRoot.resolve(file), "locked");
+        pipeline.enqueue(file, "Added resource locked.md");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.stats().failedCommits() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        CommitPipeline.Stats failed = pipeline.stats();
+        Assertions.assertTrue(failed.failedCommits() > 0);
+        Assertions.assertEquals(0, failed.commits());
+        Assertions.assertEquals(1, failed.queueDepth());
+
+        Files.delete(lock);
+        pipeline.close();
+        Assertions.assertEquals(1, pipeline.stats().commits());
+        Assertions.assertEquals(0, pipeline.stats().queueDepth());
+        Assertions.assertEquals("Added resource locked.md", gitRepo.getLastCommitsForPaths(List.of(file)).get(file).getFullMessage());
+    }
+
+    private GitRepo createRepo() throws GitAPIException, ReadOnlyRepoException {
+        RepoProperty property = new RepoProperty();
+        property.setPath(repoRoot);
+        return new GitRepo(property, false);
+    }
+}
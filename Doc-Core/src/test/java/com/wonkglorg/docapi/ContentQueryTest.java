@@ -0,0 +1,117 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.FileRepository;
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.db.RepositoryDatabase;
+import com.wonkglorg.doc.core.db.functions.DatabaseFunctions;
+import com.wonkglorg.doc.core.db.functions.ResourceFunctions;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.Resource;
+import com.wonkglorg.doc.core.objects.Tag;
+import com.wonkglorg.doc.core.objects.TagId;
+import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.request.ResourceRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tests that content queries apply path and tag filters before their limit
+ */
+class ContentQueryTest {
+    private static final TagId PUBLIC = TagId.of("public");
+    private static final TagId ARCHIVED = TagId.of("archived");
+
+    @TempDir
+    Path directory;
+
+    /**
+     * In memory repos share one database, everything is kept below its own directory to not see resources of other tests
+     */
+    @Test
+    void filtersApplyBeforeLimit() throws Exception {
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of("contentQueryRepo"));
+        property.setPath(Path.of(""));
+        FileRepository db = new FileRepository(property, true);
+        db.initialize();
+        ResourceFunctions functions = db.getDatabase().resourceFunctions();
+        RepoId repoId = property.getId();
+
+        //the tagged resources come last so a limit applied before the tag filter would only see untagged ones
+        List<Resource> resources = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Set<TagId> tags = i < 15 ? Set.of() : Set.of(PUBLIC);
+            resources.add(new Resource(Path.of("content\\docs\\file" + i + ".md"), "me", repoId, null, tags, "zebra crossing " + i));
+        }
+        resources.add(new Resource(Path.of("content\\docs\\sub\\nested.md"), "me", repoId, null, Set.of(), "zebra nested"));
+        functions.batchInsert(resources);
+
+        Assertions.assertEquals(3, query(functions, request(repoId, "content/**", Set.of(PUBLIC), null, 3)).size());
+        Assertions.assertEquals(5, query(functions, request(repoId, "content/**", Set.of(PUBLIC), null, 100)).size());
+        Assertions.assertEquals(15, query(functions, request(repoId, "content/docs/*", null, Set.of(PUBLIC), 100)).size());
+
+        //a single * stays within its directory
+        Assertions.assertFalse(query(functions, request(repoId, "content/docs/*", null, null, 100)).contains("content\\docs\\sub\\nested.md"));
+        Assertions.assertTrue(query(functions, request(repoId, "content/**", null, null, 100)).contains("content\\docs\\sub\\nested.md"));
+
+        //tags inherited from a tagged ant path are filtered the same way
+        functions.createTag(repoId, new Tag(ARCHIVED, "Archived"));
+        functions.addTag(repoId, TargetPath.of("content/docs/sub/**"), ARCHIVED);
+        Assertions.assertEquals(Set.of("content\\docs\\sub\\nested.md"), query(functions, request(repoId, "content/**", Set.of(ARCHIVED), null, 1)));
+        Assertions.assertEquals(20, query(functions, request(repoId, "content/**", null, Set.of(ARCHIVED), 100)).size());
+    }
+
+    /**
+     * Uses its own database file so the read connections the stream takes can be observed
+     */
+    @Test
+    void contentIsStreamedInPages() throws Exception {
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of("pagedContentRepo"));
+        property.setPath(directory);
+        RepositoryDatabase database = new RepositoryDatabase(property, directory.resolve("paged.db"), null, false);
+        DatabaseFunctions.initializeDatabase(database);
+        DatabaseFunctions.initializeTriggers(database);
+        ResourceFunctions functions = database.resourceFunctions();
+        functions.initialize();
+        RepoId repoId = property.getId();
+
+        List<Resource> resources = new ArrayList<>();
+        Map<String, String> content = new HashMap<>();
+        for (int i = 0; i < 250; i++) {
+            String path = "paged\\file%03d.md".formatted(i);
+            resources.add(new Resource(Path.of(path), "me", repoId, null, Set.of(), "zebra page " + i));
+            content.put(path, "zebra page " + i);
+        }
+        functions.batchInsert(resources);
+
+        //the consumer runs between pages, no read connection is held while it does
+        List<String> streamed = new ArrayList<>();
+        functions.streamResources(new ResourceRequest(null, TargetPath.of("paged/**"), repoId, null, null, null, true, 240), resource -> {
+            Assertions.assertEquals(0, database.getReadDataSource().getHikariPoolMXBean().getActiveConnections());
+            Assertions.assertEquals(content.get(resource.resourcePath().toString()), resource.data());
+            streamed.add(resource.resourcePath().toString());
+        });
+        Assertions.assertEquals(240, streamed.size());
+        Assertions.assertEquals(streamed.stream().sorted().distinct().toList(), streamed);
+        Assertions.assertEquals(250, query(functions, new ResourceRequest("zebra", TargetPath.of("paged/**"), repoId, null, null, null, true, 1000)).size());
+        database.close();
+    }
+
+    private static ResourceRequest request(RepoId repoId, String path, Set<TagId> whitelist, Set<TagId> blacklist, int limit) {
+        return new ResourceRequest("zebra", TargetPath.of(path), repoId, null, whitelist, blacklist, false, limit);
+    }
+
+    private static Set<String> query(ResourceFunctions functions, ResourceRequest request) throws Exception {
+        return functions.getResources(request).stream().map(r -> r.resourcePath().toString()).collect(Collectors.toSet());
+    }
+}
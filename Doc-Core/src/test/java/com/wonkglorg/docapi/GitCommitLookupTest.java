@@ -0,0 +1,54 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.exception.client.ReadOnlyRepoException;
+import com.wonkglorg.doc.core.git.GitRepo;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+class GitCommitLookupTest {
+
+    @TempDir
+    Path repoRoot;
+
+    @Test
+    void resolvesLastCommitsInOneWalk() throws GitAPIException, ReadOnlyRepoException, IOException {
+        RepoProperty property = new RepoProperty();
+        property.setPath(repoRoot);
+        GitRepo gitRepo = new GitRepo(property, false);
+
+        Path first = Path.of("first.md");
+        Path second = Path.of("docs", "second.md");
+        Path untracked = Path.of("untracked.md");
+
+        Files.createDirectories(repoRoot.resolve("docs"));
+        Files.writeString(repoRoot.resolve(first), "first");
+        Files.writeString(repoRoot.resolve(second), "second");
+        gitRepo.add(first);
+        gitRepo.add(second);
+        gitRepo.commit("add both");
+
+        Files.writeString(repoRoot.resolve(first), "first changed");
+        Files.writeString(repoRoot.resolve(untracked), "untracked");
+        gitRepo.add(first);
+        gitRepo.commit("change first");
+
+        Map<Path, RevCommit> commits = gitRepo.getLastCommitsForPaths(List.of(first, second, untracked));
+        Assertions.assertEquals("change first", commits.get(first).getFullMessage());
+        Assertions.assertEquals("add both", commits.get(second).getFullMessage());
+        Assertions.assertFalse(commits.containsKey(untracked));
+        Assertions.assertEquals(gitRepo.getLastCommitDetailsForFile(second.toString()), commits.get(second));
+
+        //unchanged head is served from the cache
+        Assertions.assertSame(commits.get(first), gitRepo.getLastCommitsForPaths(List.of(first)).get(first));
+    }
+}
@@ -0,0 +1,96 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.FileRepository;
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.db.functions.ResourceFunctions;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.Resource;
+import com.wonkglorg.doc.core.objects.Tag;
+import com.wonkglorg.doc.core.objects.TagId;
+import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.request.ResourceRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tests tags applied to ant paths and inherited by the resources below them
+ */
+class PathTagTest {
+    private static final TagId INTERNAL = TagId.of("internal");
+
+    /**
+     * In memory repos share one database, everything is kept below its own directory to not see resources of other tests
+     */
+    @Test
+    void resourcesInheritPathTags() throws Exception {
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of("pathTagRepo"));
+        property.setPath(Path.of(""));
+        FileRepository db = new FileRepository(property, true);
+        db.initialize();
+        ResourceFunctions functions = db.getDatabase().resourceFunctions();
+        RepoId repoId = property.getId();
+
+        functions.batchInsert(List.of(resource("tagged\\docs\\a.md"), resource("tagged\\docs\\api\\b.md"), resource("tagged\\other\\c.md")));
+        functions.createTag(repoId, new Tag(INTERNAL, "Internal"));
+
+        functions.addTag(repoId, TargetPath.of("tagged/docs/**"), INTERNAL);
+        Assertions.assertTrue(functions.tagPathExists(repoId, TargetPath.of("tagged/docs/**"), INTERNAL));
+        Assertions.assertFalse(functions.tagPathExists(repoId, TargetPath.of("tagged/other/**"), INTERNAL));
+        Assertions.assertEquals(Set.of("tagged\\docs\\a.md", "tagged\\docs\\api\\b.md"), tagged(functions, repoId));
+        Assertions.assertEquals(Set.of("tagged\\other\\c.md"), untagged(functions, repoId));
+
+        //a second pattern applying the same tag keeps it after the first one is removed
+        functions.addTag(repoId, TargetPath.of("tagged/docs/api/*"), INTERNAL);
+        functions.removeTag(repoId, TargetPath.of("tagged/docs/**"), INTERNAL);
+        Assertions.assertEquals(Set.of("tagged\\docs\\api\\b.md"), tagged(functions, repoId));
+
+        //resources added later inherit the tag as well
+        functions.batchInsert(List.of(resource("tagged\\docs\\api\\d.md")));
+        Assertions.assertEquals(Set.of("tagged\\docs\\api\\b.md", "tagged\\docs\\api\\d.md"), tagged(functions, repoId));
+        Resource inherited = functions.getResources(new ResourceRequest(null, TargetPath.of("tagged/docs/api/d.md"), repoId, null, null, null, false, 10)).getFirst();
+        Assertions.assertEquals(Set.of(INTERNAL), inherited.getInheritedTags());
+        Assertions.assertTrue(inherited.getResourceTags().isEmpty());
+
+        //removing the tag removes the own tags of resources along with the path tags
+        functions.addTag(repoId, TargetPath.of("tagged/other/c.md"), INTERNAL);
+        functions.removeTag(repoId, INTERNAL);
+        Assertions.assertEquals(Set.of(), tagged(functions, repoId));
+        Assertions.assertFalse(functions.tagPathExists(repoId, TargetPath.of("tagged/docs/api/*"), INTERNAL));
+        try (Connection connection = db.getDatabase().getConnection();
+             PreparedStatement statement = connection.prepareStatement("""
+                     SELECT (SELECT count(*) FROM Tags WHERE tag_id = ?1)
+                          + (SELECT count(*) FROM PathTags WHERE tag_id = ?1)
+                          + (SELECT count(*) FROM ResourceTags WHERE tag_id = ?1)""")) {
+            statement.setString(1, INTERNAL.id());
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                Assertions.assertEquals(0, rs.getInt(1));
+            }
+        }
+    }
+
+    private static Resource resource(String path) {
+        return new Resource(Path.of(path), "me", RepoId.of("pathTagRepo"), null, Set.of(), "content");
+    }
+
+    private static Set<String> tagged(ResourceFunctions functions, RepoId repoId) throws Exception {
+        return paths(functions.getResources(new ResourceRequest(null, TargetPath.of("tagged/**"), repoId, null, Set.of(INTERNAL), null, false, 100)));
+    }
+
+    private static Set<String> untagged(ResourceFunctions functions, RepoId repoId) throws Exception {
+        return paths(functions.getResources(new ResourceRequest(null, TargetPath.of("tagged/**"), repoId, null, null, Set.of(INTERNAL), false, 100)));
+    }
+
+    private static Set<String> paths(List<Resource> resources) {
+        return resources.stream().map(r -> r.resourcePath().toString()).collect(Collectors.toSet());
+    }
+}
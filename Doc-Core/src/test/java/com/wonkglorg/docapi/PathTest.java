@@ -1,9 +1,26 @@
 package com.wonkglorg.docapi;
 
+import com.sun.management.ThreadMXBean;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.UserId;
 import com.wonkglorg.doc.core.path.AntPath;
+import com.wonkglorg.doc.core.path.PathTree;
+import com.wonkglorg.doc.core.path.ResourcePath;
 import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.permissions.Permission;
+import com.wonkglorg.doc.core.permissions.PermissionIndex;
+import com.wonkglorg.doc.core.permissions.PermissionType;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.springframework.util.AntPathMatcher;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Tests related to the {@link AntPath} and {@link com.wonkglorg.doc.core.path.TargetPath}
@@ -47,4 +64,155 @@ class PathTest {
         Assertions.assertEquals("path\\file.md", TargetPath.of("path/file.md").toString());
         Assertions.assertEquals("path\\**", TargetPath.of("path/**").toString());
     }
+
+    @Test
+    void resourcePathNormalization() {
+        Assertions.assertEquals("path\\to\\file.md", ResourcePath.of("path/to//file.md").toString());
+        Assertions.assertEquals("path\\to\\file.md", ResourcePath.of("path\\\\to/file.md").toString());
+        Assertions.assertEquals(ResourcePath.of("path/to/file.md"), ResourcePath.of(Path.of("path\\to\\file.md")));
+        Assertions.assertEquals(ResourcePath.of("path/to/file.md").hashCode(), ResourcePath.of("path\\to\\file.md").hashCode());
+        Assertions.assertArrayEquals(new String[]{"path", "to", "file.md"}, ResourcePath.of("path/to/file.md").segments());
+        Assertions.assertArrayEquals(new String[]{"path"}, ResourcePath.of("path/").segments());
+        Assertions.assertEquals(0, ResourcePath.of("").segments().length);
+
+        //canonical input is returned as is
+        String canonical = "path\\to\\file.md";
+        Assertions.assertSame(canonical, ResourcePath.normalize(canonical));
+        Assertions.assertSame(canonical, TargetPath.normalizePath(canonical));
+    }
+
+    @Test
+    void resourcePathLookup() {
+        PermissionIndex index = PermissionIndex.of(Set.of(new Permission<>(UserId.of("user"), PermissionType.EDIT, TargetPath.of("docs/file.md"), RepoId.of("repo"))), null);
+        Assertions.assertEquals(PermissionType.EDIT, index.permissionFor(ResourcePath.of("docs/file.md")));
+        Assertions.assertEquals(PermissionType.EDIT, index.permissionFor(ResourcePath.of("docs\\file.md")));
+    }
+
+    /**
+     * Prints how much exact lookups of a canonical path allocate, they should not allocate at all
+     */
+    @Test
+    @Tag("benchmark")
+    void resourcePathLookupAllocation() {
+        ResourcePath path = ResourcePath.of("docs/file.md");
+        PermissionIndex index = PermissionIndex.of(Set.of(new Permission<>(UserId.of("user"), PermissionType.EDIT, TargetPath.of("docs/file.md"), RepoId.of("repo"))), null);
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        //warm up so the measured loop runs compiled code
+        for (int i = 0; i < 100_000; i++) {
+            index.permissionFor(path);
+        }
+        int lookups = 1_000_000;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < lookups; i++) {
+            index.permissionFor(path);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        System.out.printf("%d bytes allocated for %d exact permission lookups%n", allocated, lookups);
+    }
+
+    @Test
+    void pathTreeCollectsMatchingPaths() {
+        PathTree<String> tree = new PathTree<>();
+        for (String path : List.of("docs\\readme.md", "docs\\api\\intro.md", "docs\\api\\v1\\users.md", "docs\\guide.txt", "other\\readme.md")) {
+            tree.put(ResourcePath.of(path), path);
+        }
+
+        Assertions.assertEquals(Set.of("docs\\readme.md", "docs\\guide.txt"), collect(tree, "docs/*"));
+        Assertions.assertEquals(Set.of("docs\\readme.md", "docs\\api\\intro.md", "docs\\api\\v1\\users.md", "docs\\guide.txt"), collect(tree, "docs/**"));
+        Assertions.assertEquals(Set.of("docs\\readme.md", "docs\\api\\intro.md", "docs\\api\\v1\\users.md", "other\\readme.md"), collect(tree, "**/*.md"));
+        Assertions.assertEquals(Set.of("docs\\api\\v1\\users.md"), collect(tree, "docs/**/v?/users.md"));
+        Assertions.assertEquals(Set.of("other\\readme.md"), collect(tree, "other/readme.md"));
+        Assertions.assertEquals(Set.of(), collect(tree, "missing/**"));
+
+        Assertions.assertEquals("docs\\api\\intro.md", tree.remove(ResourcePath.of("docs/api/intro.md")));
+        Assertions.assertEquals("docs\\api\\v1\\users.md", tree.remove(ResourcePath.of("docs/api/v1/users.md")));
+        Assertions.assertEquals(Set.of("docs\\readme.md", "docs\\guide.txt"), collect(tree, "docs/**"));
+        Assertions.assertEquals(3, tree.size());
+    }
+
+    @Test
+    void pathTreeMatchesFullScan() {
+        AntPathMatcher matcher = new AntPathMatcher();
+        List<ResourcePath> all = repo(100);
+        PathTree<ResourcePath> tree = new PathTree<>();
+        all.forEach(path -> tree.put(path, path));
+
+        for (String pattern : List.of("target\\**", "dir1\\**", "**\\file3.md", "dir?\\sub\\*.md")) {
+            Set<ResourcePath> found = new HashSet<>();
+            tree.collect(pattern, found::add);
+            Set<ResourcePath> scanned = new HashSet<>();
+            for (ResourcePath path : all) {
+                if (matcher.match(pattern, path.toString())) {
+                    scanned.add(path);
+                }
+            }
+            Assertions.assertEquals(scanned, found, pattern);
+        }
+    }
+
+    /**
+     * Prints the cost of querying a fixed sized subtree in repos of growing size, the tree should stay flat while a full scan grows with the repo
+     */
+    @Test
+    @Tag("benchmark")
+    void pathTreeQueryScaling() {
+        //the matcher getResources used to test every cached resource with
+        AntPathMatcher matcher = new AntPathMatcher();
+        String pattern = "target\\**";
+        System.out.printf("%10s %14s %14s%n", "resources", "tree (us)", "scan (us)");
+        for (int directories : new int[]{10, 100, 1_000, 10_000}) {
+            List<ResourcePath> all = repo(directories);
+            PathTree<ResourcePath> tree = new PathTree<>();
+            all.forEach(path -> tree.put(path, path));
+
+            int[] found = new int[1];
+            int rounds = 200;
+            for (int i = 0; i < rounds; i++) {
+                tree.collect(pattern, path -> found[0]++);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                tree.collect(pattern, path -> found[0]++);
+            }
+            double treeMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+
+            int scanRounds = Math.max(1, rounds * 10 / directories);
+            start = System.nanoTime();
+            int scanned = 0;
+            for (int i = 0; i < scanRounds; i++) {
+                for (ResourcePath path : all) {
+                    if (matcher.match(pattern, path.toString())) {
+                        scanned++;
+                    }
+                }
+            }
+            double scanMicros = (System.nanoTime() - start) / 1000.0 / scanRounds;
+
+            System.out.printf("%10d %14.2f %14.2f%n", all.size(), treeMicros, scanMicros);
+        }
+    }
+
+    /**
+     * @return ten files in each of the given number of directories and ten files in a target directory
+     */
+    private static List<ResourcePath> repo(int directories) {
+        List<ResourcePath> all = new ArrayList<>();
+        for (int d = 0; d < directories; d++) {
+            for (int f = 0; f < 10; f++) {
+                all.add(ResourcePath.of("dir" + d + "\\sub\\file" + f + ".md"));
+            }
+        }
+        for (int f = 0; f < 10; f++) {
+            all.add(ResourcePath.of("target\\file" + f + ".md"));
+        }
+        return all;
+    }
+
+    private static Set<String> collect(PathTree<String> tree, String pattern) {
+        Set<String> result = new HashSet<>();
+        tree.collect(pattern, result::add);
+        return result;
+    }
 }
@@ -4,7 +4,9 @@ import com.wonkglorg.doc.core.objects.GroupId;
 import com.wonkglorg.doc.core.objects.RepoId;
 import com.wonkglorg.doc.core.objects.UserId;
 import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.permissions.EffectivePermissionCache;
 import com.wonkglorg.doc.core.permissions.Permission;
+import com.wonkglorg.doc.core.permissions.PermissionIndex;
 import static com.wonkglorg.doc.core.permissions.Permission.filterPathsWithPermissions;
 import com.wonkglorg.doc.core.permissions.PermissionType;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -109,6 +111,71 @@ class PermissionTest{
 		assertEquals(PermissionType.ADMIN, map.get(key));
 	}
 	
+	@Test
+	void indexResolvesMostSpecificPattern() {
+		PermissionIndex index = PermissionIndex.of(Set.of(createUserPerm("docs/**", PermissionType.VIEW),
+						createUserPerm("docs/private/**", PermissionType.DENY),
+						createUserPerm("docs/*/readme.md", PermissionType.EDIT)),
+				Set.of(createGroupPerm("**", PermissionType.ADMIN), createGroupPerm("docs/shared.md", PermissionType.EDIT)));
+		
+		//user patterns win over group patterns, the group would grant ADMIN through **
+		assertEquals(PermissionType.VIEW, index.permissionFor(Path.of("docs/file.md")));
+		assertEquals(PermissionType.DENY, index.permissionFor(Path.of("docs/private/file.md")));
+		assertEquals(PermissionType.EDIT, index.permissionFor(Path.of("docs/team/readme.md")));
+		//a single * does not match across directories
+		assertEquals(PermissionType.VIEW, index.permissionFor(Path.of("docs/team/sub/readme.md")));
+		//exact group paths win over user patterns
+		assertEquals(PermissionType.EDIT, index.permissionFor(Path.of("docs/shared.md")));
+		//paths without a matching user pattern fall back to the group patterns
+		assertEquals(PermissionType.ADMIN, index.permissionFor(Path.of("other/file.md")));
+		assertEquals(PermissionType.DENY, PermissionIndex.EMPTY.permissionFor(Path.of("other/file.md")));
+	}
+	
+	@Test
+	void cacheInvalidatesOnEvents() {
+		EffectivePermissionCache cache = new EffectivePermissionCache();
+		RepoId repo = RepoId.of("repo");
+		RepoId otherRepo = RepoId.of("other");
+		UserId user = UserId.of("user");
+		GroupId group = GroupId.of("group");
+		EffectivePermissionCache.Entry entry = new EffectivePermissionCache.Entry(Set.of(group), PermissionIndex.EMPTY);
+		
+		cache.get(repo, user, () -> entry);
+		cache.get(repo, user, () -> entry);
+		cache.get(otherRepo, user, () -> entry);
+		assertEquals(1, cache.stats().hits());
+		assertEquals(2, cache.stats().misses());
+		
+		//only the entries of the same repo containing the group are dropped
+		cache.groupPermissionsChanged(repo, group);
+		assertEquals(1, cache.stats().size());
+		cache.groupPermissionsChanged(repo, GroupId.of("unrelated"));
+		assertEquals(1, cache.stats().size());
+		
+		//membership changes affect the user in every repo
+		cache.get(repo, user, () -> entry);
+		cache.groupMembershipChanged(group, user);
+		assertEquals(0, cache.stats().size());
+		assertEquals(3, cache.stats().invalidations());
+	}
+	
+	@Test
+	void cacheDropsEntriesBuiltDuringARevocation() {
+		EffectivePermissionCache cache = new EffectivePermissionCache();
+		RepoId repo = RepoId.of("repo");
+		UserId user = UserId.of("user");
+		EffectivePermissionCache.Entry stale = new EffectivePermissionCache.Entry(Set.of(), PermissionIndex.EMPTY);
+		
+		cache.get(repo, user, () -> {
+			cache.userPermissionsChanged(repo, user);
+			return stale;
+		});
+		assertEquals(0, cache.stats().size());
+		
+		cache.get(repo, user, () -> stale);
+		assertEquals(1, cache.stats().size());
+	}
+	
 	private Permission<UserId> createUserPerm(String path, PermissionType type) {
 		return new Permission<>(UserId.of("test"), type, new TargetPath(path), RepoId.of("test"));
 	}
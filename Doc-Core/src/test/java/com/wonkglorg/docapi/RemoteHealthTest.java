@@ -0,0 +1,78 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.git.RemoteHealth;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class RemoteHealthTest {
+
+    @Test
+    void opensAfterConsecutiveFailuresAndRecovers() throws InterruptedException {
+        AtomicBoolean reachable = new AtomicBoolean(false);
+        try (RemoteHealth health = new RemoteHealth("test", () -> {
+            if (!reachable.get()) {
+                throw new IOException("unreachable");
+            }
+        }, Duration.ZERO, 2, Duration.ofMillis(200))) {
+            Assertions.assertTrue(health.allowRequest());
+
+            health.recordFailure(new IOException("first"));
+            Assertions.assertEquals(RemoteHealth.State.CLOSED, health.status().state());
+            health.recordFailure(new IOException("second"));
+            Assertions.assertEquals(RemoteHealth.State.OPEN, health.status().state());
+            Assertions.assertFalse(health.allowRequest());
+
+            //a single trial is let through once the circuit was open long enough
+            Thread.sleep(250);
+            Assertions.assertTrue(health.allowRequest());
+            Assertions.assertFalse(health.allowRequest());
+            health.recordFailure(new IOException("trial"));
+            Assertions.assertEquals(RemoteHealth.State.OPEN, health.status().state());
+            Assertions.assertEquals("trial", health.status().lastError());
+
+            //the background probe closes the circuit without waiting for the open duration
+            reachable.set(true);
+            health.probe();
+            Assertions.assertEquals(RemoteHealth.State.CLOSED, health.status().state());
+            Assertions.assertEquals(0, health.status().consecutiveFailures());
+            Assertions.assertNotNull(health.status().lastSuccess());
+            Assertions.assertTrue(health.allowRequest());
+        }
+    }
+
+    @Test
+    void unreportedTrialIsRetried() throws InterruptedException {
+        try (RemoteHealth health = new RemoteHealth("trial", () -> {
+        }, Duration.ZERO, 1, Duration.ofMillis(200))) {
+            health.recordFailure(new IOException("down"));
+            Thread.sleep(250);
+            Assertions.assertTrue(health.allowRequest());
+            Assertions.assertEquals(RemoteHealth.State.HALF_OPEN, health.status().state());
+            Assertions.assertFalse(health.allowRequest());
+
+            //the trial never reported its outcome
+            Thread.sleep(250);
+            Assertions.assertTrue(health.allowRequest());
+            health.recordSuccess();
+            Assertions.assertEquals(RemoteHealth.State.CLOSED, health.status().state());
+        }
+    }
+
+    @Test
+    void backgroundProbeUpdatesState() throws InterruptedException {
+        try (RemoteHealth health = new RemoteHealth("probe", () -> {
+            throw new IOException("unreachable");
+        }, Duration.ofMillis(10), 1, Duration.ofMinutes(1))) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (health.status().state() != RemoteHealth.State.OPEN && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(RemoteHealth.State.OPEN, health.status().state());
+            Assertions.assertFalse(health.allowRequest());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.wonkglorg.docapi;
+
+import com.sun.management.ThreadMXBean;
+import com.wonkglorg.doc.core.FileRepository;
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.db.functions.ResourceFunctions;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.Resource;
+import com.wonkglorg.doc.core.objects.TagId;
+import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.permissions.PermissionType;
+import com.wonkglorg.doc.core.request.ResourceRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Listing should only allocate a small view per result and never copy the shared resource data
+ */
+class ResourceAllocationTest {
+
+    @Test
+    void listingSharesMetadataBetweenRequests() throws Exception {
+        RepoId repoId = RepoId.of("resourceViewRepo");
+        ResourceFunctions functions = repo(repoId, "views", 1_000);
+
+        ResourceRequest request = new ResourceRequest(null, TargetPath.of("views*/**"), repoId, null, null, null, false, 1_000);
+        List<Resource> first = functions.getResources(request);
+        List<Resource> second = functions.getResources(request);
+        Assertions.assertEquals(1_000, first.size());
+        Assertions.assertEquals(1_000, second.size());
+
+        Resource view = first.getFirst();
+        Resource other = second.stream().filter(r -> r.resourceKey().equals(view.resourceKey())).findFirst().orElseThrow();
+        Assertions.assertNotSame(view, other);
+        Assertions.assertSame(view.metadata(), other.metadata());
+
+        //the permission type belongs to the view of one request
+        view.setPermissionType(PermissionType.VIEW);
+        Assertions.assertEquals(PermissionType.EDIT, other.getPermissionType());
+
+        ResourceRequest byTag = new ResourceRequest(null, TargetPath.of("views*/**"), repoId, null, Set.of(TagId.of("tag1")), null, false, 1_000);
+        Assertions.assertEquals(100, functions.getResources(byTag).size());
+    }
+
+    /**
+     * Prints the memory allocated per listed resource
+     */
+    @Test
+    @Tag("benchmark")
+    void listingAllocation() throws Exception {
+        RepoId repoId = RepoId.of("allocationRepo");
+        int resourceCount = 10_000;
+        ResourceFunctions functions = repo(repoId, "dir", resourceCount);
+
+        ResourceRequest all = new ResourceRequest(null, null, repoId, null, null, null, false, resourceCount);
+        ResourceRequest byPath = new ResourceRequest(null, TargetPath.of("dir1*/**"), repoId, null, null, null, false, resourceCount);
+        ResourceRequest byTag = new ResourceRequest(null, null, repoId, null, Set.of(TagId.of("tag1")), null, false, resourceCount);
+
+        long allBytes = bytesPerResult(functions, all, resourceCount);
+        long pathBytes = bytesPerResult(functions, byPath, 1100);
+        long tagBytes = bytesPerResult(functions, byTag, 1000);
+        System.out.printf("bytes allocated per listed resource: all %d, by path %d, by tag %d%n", allBytes, pathBytes, tagBytes);
+    }
+
+    /**
+     * Creates an in memory repo with resources spread over 100 directories starting with the given name, each resource has 3 tags
+     */
+    private static ResourceFunctions repo(RepoId repoId, String directory, int resourceCount) throws Exception {
+        RepoProperty property = new RepoProperty();
+        property.setId(repoId);
+        property.setPath(Path.of(""));
+        FileRepository db = new FileRepository(property, true);
+        db.initialize();
+        ResourceFunctions functions = db.getDatabase().resourceFunctions();
+
+        List<Resource> resources = new ArrayList<>();
+        for (int i = 0; i < resourceCount; i++) {
+            Set<TagId> tags = Set.of(TagId.of("tag" + i % 10), TagId.of("tag" + (i % 10 + 10)), TagId.of("tag" + (i % 10 + 20)));
+            resources.add(new Resource(Path.of(directory + i % 100, "file" + i + ".md"), "me", repoId, null, tags, null));
+        }
+        functions.batchInsert(resources);
+        return functions;
+    }
+
+    private static long bytesPerResult(ResourceFunctions functions, ResourceRequest request, int expected) throws Exception {
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        //warm up so the measured calls run compiled code
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals(expected, functions.getResources(request).size());
+        }
+        int rounds = 20;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < rounds; i++) {
+            functions.getResources(request);
+        }
+        return (threadBean.getThreadAllocatedBytes(threadId) - before) / rounds / expected;
+    }
+}
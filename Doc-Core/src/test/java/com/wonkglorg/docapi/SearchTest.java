@@ -0,0 +1,65 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.FileRepository;
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.exception.CoreException;
+import com.wonkglorg.doc.core.exception.client.InvalidUserException;
+import com.wonkglorg.doc.core.exception.client.ReadOnlyRepoException;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.Resource;
+import com.wonkglorg.doc.core.objects.SearchHit;
+import com.wonkglorg.doc.core.objects.SearchResult;
+import com.wonkglorg.doc.core.request.SearchRequest;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+class SearchTest {
+
+    @Test
+    void rankedSearchPagesByCursorAndOffset() throws ReadOnlyRepoException, CoreException, GitAPIException, IOException, InvalidUserException {
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of("searchRepo"));
+        property.setPath(Path.of(""));
+        FileRepository db = new FileRepository(property, true);
+        db.initialize();
+
+        List<Resource> resources = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            resources.add(new Resource(Path.of("search\\file" + i + ".md"),
+                    "me",
+                    property.getId(),
+                    null,
+                    Set.of(),
+                    "filler text ".repeat(50 - i) + "quokka ".repeat(i % 5 + 1)));
+        }
+        db.getDatabase().resourceFunctions().batchInsert(resources);
+
+        SearchRequest request = new SearchRequest("quokka", null, property.getId(), null, 10, 0, null);
+        request.setPath("search/**");
+        SearchResult first = db.getDatabase().resourceFunctions().searchResources(request);
+        Assertions.assertEquals(10, first.hits().size());
+        Assertions.assertEquals(50, first.totalEstimate());
+        Assertions.assertNotNull(first.nextCursor());
+        Assertions.assertTrue(first.hits().getFirst().excerpt().contains("<mark>quokka</mark>"));
+        for (int i = 1; i < first.hits().size(); i++) {
+            Assertions.assertTrue(first.hits().get(i - 1).score() <= first.hits().get(i).score());
+        }
+
+        request.setCursor(first.nextCursor());
+        List<Path> byCursor = db.getDatabase().resourceFunctions().searchResources(request).hits().stream().map(SearchHit::resourcePath).toList();
+
+        request.setCursor(null);
+        request.setOffset(10);
+        List<Path> byOffset = db.getDatabase().resourceFunctions().searchResources(request).hits().stream().map(SearchHit::resourcePath).toList();
+
+        Assertions.assertEquals(byOffset, byCursor);
+        Assertions.assertTrue(first.hits().stream().map(SearchHit::resourcePath).noneMatch(byCursor::contains));
+    }
+}
@@ -0,0 +1,137 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.FileRepository;
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.db.functions.ResourceFunctions;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.Resource;
+import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.request.ResourceRequest;
+import com.wonkglorg.doc.core.request.ResourceUpdateRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Checks short search terms are served by the word index and the word index follows changes to the resources
+ */
+class ShortTermSearchTest {
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "crab", "lab", "abacus", "zebra"};
+
+    /**
+     * In memory repos share one database, everything is kept below its own directory to not see resources of other tests
+     */
+    @Test
+    void shortTermsUseWordIndex() throws Exception {
+        RepoId repoId = RepoId.of("shortTermRepo");
+        FileRepository db = repo(repoId, "shortterm", 400);
+        ResourceFunctions functions = db.getDatabase().resourceFunctions();
+
+        try (Connection connection = db.getDatabase().getConnection()) {
+            Set<String> scanned = paths(connection, "SELECT resource_path FROM FileData WHERE data LIKE '%ab%' AND resource_path LIKE 'shortterm%'", null);
+            Set<String> indexed = paths(connection,
+                    "SELECT resource_path FROM FileData WHERE rowid IN (SELECT rowid FROM FileWords WHERE FileWords MATCH ?) AND +resource_path LIKE 'shortterm%'", "\"ab\"*");
+            //word prefixes are a subset of substrings, "crab" and "lab" contain "ab" without starting with it
+            Assertions.assertTrue(scanned.containsAll(indexed));
+            Assertions.assertFalse(indexed.isEmpty());
+            Assertions.assertTrue(indexed.size() < scanned.size());
+        }
+
+        //the request path goes through the word index as well
+        Set<String> found = query(functions, new ResourceRequest("ab", TargetPath.of("shortterm/**"), repoId, null, null, null, false, 400));
+        Assertions.assertTrue(found.contains("shortterm\\docs\\file6.md"));
+        Assertions.assertFalse(found.contains("shortterm\\docs\\file7.md"));
+
+        //updates and deletes are reflected in the word index
+        Path changed = Path.of("shortterm\\docs\\file6.md");
+        functions.updateResource(update(changed, "nothing here"));
+        Assertions.assertFalse(query(functions, new ResourceRequest("ab", TargetPath.of("shortterm/docs/file6.md"), repoId, null, null, null, false, 10)).contains(
+                changed.toString()));
+        functions.updateResource(update(changed, "xy marks the spot"));
+        Assertions.assertTrue(query(functions, new ResourceRequest("xy", TargetPath.of("shortterm/docs/file6.md"), repoId, null, null, null, false, 10)).contains(
+                changed.toString()));
+        functions.batchDelete(List.of(changed));
+        Assertions.assertTrue(query(functions, new ResourceRequest("xy", TargetPath.of("shortterm/**"), repoId, null, null, null, false, 10)).isEmpty());
+    }
+
+    /**
+     * Prints the time of a short term served by the word index against a plain LIKE scan
+     */
+    @Test
+    @Tag("benchmark")
+    void shortTermBenchmark() throws Exception {
+        int documents = 50_000;
+        FileRepository db = repo(RepoId.of("shortTermBenchmarkRepo"), "shorttermbenchmark", documents);
+        try (Connection connection = db.getDatabase().getConnection()) {
+            long start = System.nanoTime();
+            Set<String> scanned = paths(connection, "SELECT resource_path FROM FileData WHERE data LIKE '%ab%' AND resource_path LIKE 'shorttermbenchmark%'", null);
+            long scan = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Set<String> indexed = paths(connection,
+                    "SELECT resource_path FROM FileData WHERE rowid IN (SELECT rowid FROM FileWords WHERE FileWords MATCH ?) AND +resource_path LIKE 'shorttermbenchmark%'",
+                    "\"ab\"*");
+            long index = System.nanoTime() - start;
+
+            System.out.printf("Short term 'ab' over %d documents: LIKE %d hits in %d ms, word index %d hits in %d ms%n", documents, scanned.size(), scan / 1_000_000,
+                    indexed.size(), index / 1_000_000);
+        }
+    }
+
+    /**
+     * Creates an in memory repo with the given number of documents below the directory, each containing two of {@link #WORDS}
+     */
+    private static FileRepository repo(RepoId repoId, String directory, int documents) throws Exception {
+        RepoProperty property = new RepoProperty();
+        property.setId(repoId);
+        property.setPath(Path.of(""));
+        FileRepository db = new FileRepository(property, true);
+        db.initialize();
+
+        List<Resource> resources = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            String data = WORDS[i % WORDS.length] + " note " + i + " " + WORDS[(i * 7) % WORDS.length];
+            resources.add(new Resource(Path.of(directory + "\\docs\\file" + i + ".md"), "me", repoId, null, Set.of(), data));
+        }
+        db.getDatabase().resourceFunctions().batchInsert(resources);
+        return db;
+    }
+
+    private static ResourceUpdateRequest update(Path path, String data) {
+        ResourceUpdateRequest request = new ResourceUpdateRequest();
+        request.setRepoId("shortTermRepo");
+        request.setPath(path.toString());
+        request.setUserId("me");
+        request.setData(data);
+        return request;
+    }
+
+    private static Set<String> paths(Connection connection, String sql, String parameter) throws Exception {
+        Set<String> paths = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (parameter != null) {
+                statement.setString(1, parameter);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    paths.add(rs.getString(1));
+                }
+            }
+        }
+        return paths;
+    }
+
+    private static Set<String> query(ResourceFunctions functions, ResourceRequest request) throws Exception {
+        return functions.getResources(request).stream().map(r -> r.resourcePath().toString()).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,182 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.db.RepositoryDatabase;
+import com.wonkglorg.doc.core.db.dbs.StatementCache;
+import com.wonkglorg.doc.core.db.dbs.StorageProfile;
+import com.wonkglorg.doc.core.db.functions.DatabaseFunctions;
+import com.wonkglorg.doc.core.db.functions.ResourceFunctions;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.Resource;
+import com.wonkglorg.doc.core.path.TargetPath;
+import com.wonkglorg.doc.core.request.ResourceRequest;
+import com.wonkglorg.doc.core.request.ResourceUpdateRequest;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+
+class StatementCacheTest {
+    private static final int RESOURCES = 1_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void statementsAreReusedPerConnection() throws SQLException {
+        StatementCache cache = new StatementCache(2);
+        try (HikariDataSource dataSource = new StorageProfile().createWriter("jdbc:sqlite:" + directory.resolve("cache.db"), "cache")) {
+            try (Connection connection = cache.wrap(dataSource.getConnection()); Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE Data(id INTEGER PRIMARY KEY, value TEXT)");
+            }
+            for (int i = 0; i < 3; i++) {
+                try (Connection connection = cache.wrap(dataSource.getConnection());
+                     PreparedStatement statement = connection.prepareStatement("INSERT INTO Data(value) VALUES(?)")) {
+                    statement.setString(1, "value " + i);
+                    statement.executeUpdate();
+                }
+            }
+            Assertions.assertEquals(1, cache.misses());
+            Assertions.assertEquals(2, cache.hits());
+
+            //each view is only equal to itself, the same as the pooled connection it wraps
+            try (Connection pooled = dataSource.getConnection()) {
+                Connection connection = cache.wrap(pooled);
+                Connection other = cache.wrap(pooled);
+                Assertions.assertEquals(connection, connection);
+                Assertions.assertNotEquals(connection, other);
+                Assertions.assertEquals(connection.hashCode(), connection.hashCode());
+                Assertions.assertTrue(Set.of(connection, other).contains(connection));
+            }
+
+            //the same query nested in itself gets its own statement
+            try (Connection connection = cache.wrap(dataSource.getConnection());
+                 PreparedStatement outer = connection.prepareStatement("SELECT value FROM Data WHERE id >= ?");
+                 PreparedStatement inner = connection.prepareStatement("SELECT value FROM Data WHERE id >= ?")) {
+                outer.setInt(1, 1);
+                inner.setInt(1, 3);
+                try (ResultSet outerRs = outer.executeQuery()) {
+                    int rows = 0;
+                    while (outerRs.next()) {
+                        try (ResultSet innerRs = inner.executeQuery()) {
+                            Assertions.assertTrue(innerRs.next());
+                            Assertions.assertEquals("value 2", innerRs.getString(1));
+                        }
+                        rows++;
+                    }
+                    Assertions.assertEquals(3, rows);
+                }
+                outer.close();
+                Assertions.assertThrows(SQLException.class, () -> outer.setInt(1, 1));
+            }
+
+            //uncommitted work does not leak to the next user of the connection
+            try (Connection connection = cache.wrap(dataSource.getConnection())) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement statement = connection.prepareStatement("INSERT INTO Data(value) VALUES(?)")) {
+                    statement.setString(1, "uncommitted");
+                    statement.executeUpdate();
+                }
+            }
+            try (Connection connection = cache.wrap(dataSource.getConnection());
+                 PreparedStatement statement = connection.prepareStatement("SELECT count(*) FROM Data")) {
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    Assertions.assertEquals(3, rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the throughput of insertResource and updateResource with and without cached statements, the numbers are only printed as they depend on the machine. The
+     * write queue does not wait for further writes so the time is spent on the statements and not on the batch delay.
+     */
+    @Test
+    @Tag("benchmark")
+    void insertAndUpdateBenchmark() throws Exception {
+        RepositoryDatabase uncachedDb = repo("stmtUncached", 0);
+        RepositoryDatabase cachedDb = repo("stmtCached", StatementCache.DEFAULT_SIZE);
+        //the first round warms up the jit for both
+        run(uncachedDb, "warmup");
+        run(cachedDb, "warmup");
+        Result uncached = run(uncachedDb, "measured");
+        Result cached = run(cachedDb, "measured");
+
+        StatementCache uncachedStatements = uncachedDb.getStatementCache();
+        StatementCache cachedStatements = cachedDb.getStatementCache();
+        System.out.printf("uncached: %d inserts/s, %d updates/s%n", uncached.inserts(), uncached.updates());
+        System.out.printf("cached:   %d inserts/s, %d updates/s (%d statements reused, %d prepared)%n",
+                cached.inserts(), cached.updates(), cachedStatements.hits(), cachedStatements.misses());
+
+        Assertions.assertEquals(0, uncachedStatements.hits() + uncachedStatements.misses());
+        Assertions.assertTrue(cachedStatements.hits() > cachedStatements.misses());
+        uncachedDb.close();
+        cachedDb.close();
+    }
+
+    /**
+     * Each repo gets its own database file, the in memory database is shared by all tests and would measure their resources as well
+     */
+    private RepositoryDatabase repo(String name, int statementCacheSize) throws Exception {
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of(name));
+        property.setPath(directory);
+        property.getStorage().setStatementCacheSize(statementCacheSize);
+        property.getStorage().setWriteBatchDelay(0);
+        RepositoryDatabase database = new RepositoryDatabase(property, directory.resolve(name + ".db"), null, false);
+        DatabaseFunctions.initializeDatabase(database);
+        DatabaseFunctions.initializeTriggers(database);
+        database.resourceFunctions().initialize();
+        return database;
+    }
+
+    private static Result run(RepositoryDatabase database, String round) throws Exception {
+        ResourceFunctions functions = database.resourceFunctions();
+        RepoId repoId = database.getRepoId();
+        String name = repoId.id();
+        long start = System.nanoTime();
+        for (int i = 0; i < RESOURCES; i++) {
+            functions.insertResource(new Resource(path(name, round, i), "me", repoId, null, Set.of(), "# Resource " + i + "\ncreated"));
+        }
+        long inserts = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < RESOURCES; i++) {
+            ResourceUpdateRequest request = new ResourceUpdateRequest();
+            request.setRepoId(name);
+            request.setPath(path(name, round, i).toString());
+            request.setUserId("me");
+            request.setData("# Resource " + i + "\nupdated");
+            Assertions.assertNotNull(functions.updateResource(request));
+        }
+        long updates = System.nanoTime() - start;
+
+        int last = RESOURCES - 1;
+        List<Resource> resources = functions.getResources(new ResourceRequest(null, TargetPath.of(name + "/" + round + "/file" + last + ".md"), repoId, null, null, null,
+                true, 1));
+        Assertions.assertEquals("# Resource " + last + "\nupdated", resources.getFirst().data());
+        return new Result(perSecond(inserts), perSecond(updates));
+    }
+
+    private static Path path(String name, String round, int i) {
+        return Path.of(name + "\\" + round + "\\file" + i + ".md");
+    }
+
+    private static long perSecond(long nanos) {
+        return RESOURCES * 1_000_000_000L / Math.max(1, nanos);
+    }
+
+    private record Result(long inserts, long updates) {
+    }
+}
@@ -0,0 +1,158 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.db.dbs.StorageProfile;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+
+class StorageProfileTest {
+
+    private static final int READERS = 4;
+    private static final int WRITERS = 2;
+    private static final long DURATION_MILLIS = 1000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tunedProfileUsesWalAndReadOnlyReaders() throws SQLException {
+        String url = "jdbc:sqlite:" + directory.resolve("profile.db");
+        StorageProfile profile = new StorageProfile();
+        try (HikariDataSource writer = profile.createWriter(url, "profile");
+             HikariDataSource reader = profile.createReader(url, "profile")) {
+            Assertions.assertEquals(1, writer.getMaximumPoolSize());
+            try (Connection connection = writer.getConnection(); Statement statement = connection.createStatement()) {
+                Assertions.assertEquals("wal", queryPragma(statement, "journal_mode"));
+                //NORMAL
+                Assertions.assertEquals("1", queryPragma(statement, "synchronous"));
+                Assertions.assertEquals(String.valueOf(profile.getBusyTimeout()), queryPragma(statement, "busy_timeout"));
+                statement.execute("CREATE TABLE Data(id INTEGER PRIMARY KEY, value TEXT)");
+            }
+            try (Connection connection = reader.getConnection(); Statement statement = connection.createStatement()) {
+                Assertions.assertThrows(SQLException.class, () -> statement.execute("INSERT INTO Data(value) VALUES('x')"));
+            }
+        }
+    }
+
+    @Test
+    void tunedProfileServesConcurrentReadsAndWrites() throws Exception {
+        int operations = 200;
+        Result tuned = runMixedLoad(new StorageProfile(), "concurrent", n -> n < operations);
+
+        Assertions.assertEquals(0, tuned.errors(), "Readers and writers should never fail with the tuned profile");
+        Assertions.assertEquals(READERS * operations, tuned.reads());
+        Assertions.assertEquals(WRITERS * operations, tuned.writes());
+    }
+
+    /**
+     * Prints the throughput of the legacy single pool against the tuned storage profile under a mixed read / write load
+     */
+    @Test
+    @Tag("benchmark")
+    void mixedLoadBenchmark() throws Exception {
+        Result legacy = runMixedLoad(StorageProfile.legacy(), "legacy", forMillis(DURATION_MILLIS));
+        Result tuned = runMixedLoad(new StorageProfile(), "tuned", forMillis(DURATION_MILLIS));
+
+        long seconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(DURATION_MILLIS));
+        System.out.printf("legacy: %d reads/s, %d writes/s, %d errors%n", legacy.reads() / seconds, legacy.writes() / seconds, legacy.errors());
+        System.out.printf("tuned:  %d reads/s, %d writes/s, %d errors%n", tuned.reads() / seconds, tuned.writes() / seconds, tuned.errors());
+    }
+
+    /**
+     * @return keeps going for the given time, starting with the first operation so the setup is not measured
+     */
+    private static IntPredicate forMillis(long millis) {
+        AtomicLong end = new AtomicLong();
+        return n -> {
+            end.compareAndSet(0, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+            return System.nanoTime() < end.get();
+        };
+    }
+
+    /**
+     * Runs {@link #READERS} readers and {@link #WRITERS} writers at the same time
+     *
+     * @param keepGoing tested with the number of operations a thread finished before each further one
+     * @return the total number of reads, writes and errors
+     */
+    private Result runMixedLoad(StorageProfile profile, String name, IntPredicate keepGoing) throws Exception {
+        String url = "jdbc:sqlite:" + directory.resolve(name + ".db");
+        HikariDataSource writer = profile.createWriter(url, name);
+        HikariDataSource reader = profile.createReader(url, name);
+        HikariDataSource readSource = reader == null ? writer : reader;
+        try (Connection connection = writer.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE Data(id INTEGER PRIMARY KEY, value TEXT)");
+            for (int i = 0; i < 1000; i++) {
+                statement.execute("INSERT INTO Data(value) VALUES('value " + i + "')");
+            }
+        }
+
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int n = 0; keepGoing.test(n); n++) {
+                    try (Connection connection = readSource.getConnection();
+                         PreparedStatement statement = connection.prepareStatement("SELECT count(*) FROM Data WHERE value LIKE ?")) {
+                        statement.setString(1, "%1%");
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            resultSet.next();
+                        }
+                        reads.incrementAndGet();
+                    } catch (SQLException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < WRITERS; i++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int n = 0; keepGoing.test(n); n++) {
+                    try (Connection connection = writer.getConnection();
+                         PreparedStatement statement = connection.prepareStatement("INSERT INTO Data(value) VALUES(?)")) {
+                        statement.setString(1, "written");
+                        statement.executeUpdate();
+                        writes.incrementAndGet();
+                    } catch (SQLException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        writer.close();
+        if (reader != null) {
+            reader.close();
+        }
+        return new Result(reads.get(), writes.get(), errors.get());
+    }
+
+    private static String queryPragma(Statement statement, String pragma) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("PRAGMA " + pragma)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+
+    private record Result(long reads, long writes, long errors) {
+    }
+}
@@ -0,0 +1,121 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.FileRepository;
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.exception.CoreException;
+import com.wonkglorg.doc.core.exception.client.InvalidUserException;
+import com.wonkglorg.doc.core.exception.client.ReadOnlyRepoException;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.Resource;
+import com.wonkglorg.doc.core.sync.SyncEngine;
+import com.wonkglorg.doc.core.sync.SyncPlan;
+import com.wonkglorg.doc.core.sync.SyncReport;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+class SyncTest {
+
+    @TempDir
+    Path repoRoot;
+
+    @Test
+    void onlyChangedFilesAreReindexed() throws ReadOnlyRepoException, CoreException, GitAPIException, IOException, InvalidUserException {
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of("syncRepo"));
+        property.setPath(Path.of(""));
+        FileRepository db = new FileRepository(property, true);
+        db.initialize();
+        SyncEngine engine = new SyncEngine(db.getDatabase(), repoRoot);
+
+        Path unchanged = Path.of("sync-unchanged.md");
+        Path edited = Path.of("sync-edited.md");
+        Path touched = Path.of("sync-touched.md");
+        Path removed = Path.of("sync-removed.md");
+        for (Path file : List.of(unchanged, edited, touched, removed)) {
+            Files.writeString(repoRoot.resolve(file), "content of " + file);
+        }
+
+        Set<Path> found = new HashSet<>(List.of(unchanged, edited, touched, removed));
+        SyncPlan first = engine.plan(found, Set.of(), new SyncReport(property.getId()));
+        Assertions.assertEquals(4, first.added().size());
+        Assertions.assertEquals("content of " + edited, first.contents().get(edited));
+        engine.commit(first);
+
+        Files.writeString(repoRoot.resolve(edited), "new content");
+        Files.setLastModifiedTime(repoRoot.resolve(edited), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        Files.setLastModifiedTime(repoRoot.resolve(touched), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        Files.delete(repoRoot.resolve(removed));
+
+        SyncReport report = new SyncReport(property.getId());
+        SyncPlan second = engine.plan(Set.of(unchanged, edited, touched), found, report);
+        Assertions.assertEquals(List.of(), second.added());
+        Assertions.assertEquals(List.of(edited), second.changed());
+        Assertions.assertEquals(List.of(removed), second.deleted());
+        Assertions.assertEquals(1, report.getUnchanged());
+        Assertions.assertEquals(1, report.getTouched());
+        Assertions.assertEquals(2, report.getHashed());
+        Assertions.assertFalse(second.contents().containsKey(touched));
+        Assertions.assertTrue(report.getPhaseTimings().containsKey("hash"));
+    }
+
+    @Test
+    void uncommittedResourceIsCommittedOnNextStart() throws Exception {
+        openUserDatabaseInMemory();
+
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of("uncommittedRepo"));
+        property.setPath(repoRoot.resolve("uncommitted"));
+        property.setCommitWindow(Duration.ofMinutes(1));
+        FileRepository stopped = new FileRepository(property, false);
+        stopped.initialize();
+        Resource resource = new Resource(Path.of("written.md"), "me", property.getId(), null, Set.of(), "written before the shutdown");
+        stopped.getDatabase().resourceFunctions().insertResource(resource);
+        stopped.addResourceAndCommit(resource);
+
+        //the application stopped within the commit window, the next start finds the file indexed but neither fingerprinted nor committed
+        FileRepository restarted = new FileRepository(property, false);
+        restarted.initialize();
+        RevCommit commit = restarted.getGitRepo().getLastCommitsForPaths(List.of(resource.resourcePath())).get(resource.resourcePath());
+        Assertions.assertNotNull(commit);
+        Assertions.assertTrue(commit.getFullMessage().contains("Uncommitted: 1"));
+        restarted.close();
+        stopped.close();
+    }
+
+    @Test
+    void repoThatFailedToInitializeCanBeClosed() throws Exception {
+        openUserDatabaseInMemory();
+
+        //a directory in place of the database file fails the initialization before the database and commit pipeline exist
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of("brokenRepo"));
+        property.setPath(repoRoot.resolve("broken"));
+        FileRepository repository = new FileRepository(property, false);
+        Files.createDirectories(property.getPath().resolve(property.getDbName()));
+        Assertions.assertThrows(Exception.class, repository::initialize);
+        Assertions.assertNull(repository.getDatabase());
+        Assertions.assertDoesNotThrow(repository::close);
+    }
+
+    /**
+     * Opens the shared user database in memory, the first repo on disk would otherwise create it in the working directory
+     */
+    private static void openUserDatabaseInMemory() throws Exception {
+        RepoProperty memory = new RepoProperty();
+        memory.setId(RepoId.of("syncMemoryRepo"));
+        memory.setPath(Path.of(""));
+        new FileRepository(memory, true);
+    }
+}
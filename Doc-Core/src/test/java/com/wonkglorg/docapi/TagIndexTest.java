@@ -0,0 +1,149 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.Resource;
+import com.wonkglorg.doc.core.objects.TagId;
+import com.wonkglorg.doc.core.objects.TagIndex;
+import com.wonkglorg.doc.core.path.ResourcePath;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+class TagIndexTest {
+    private static final TagId DRAFT = TagId.of("draft");
+    private static final TagId PUBLIC = TagId.of("public");
+    private static final TagId ARCHIVED = TagId.of("archived");
+
+    @Test
+    void selectsByWhitelistAndBlacklist() {
+        TagIndex index = new TagIndex();
+        index.setTags(ResourcePath.of("a.md"), Set.of(DRAFT));
+        index.setTags(ResourcePath.of("b.md"), Set.of(PUBLIC));
+        index.setTags(ResourcePath.of("c.md"), Set.of(PUBLIC, ARCHIVED));
+        index.setTags(ResourcePath.of("d.md"), Set.of());
+
+        Assertions.assertEquals(paths("a.md", "b.md", "c.md", "d.md"), select(index, null, null));
+        Assertions.assertEquals(paths("a.md", "b.md", "c.md"), select(index, Set.of(DRAFT, PUBLIC), null));
+        Assertions.assertEquals(paths("a.md", "b.md"), select(index, Set.of(DRAFT, PUBLIC), Set.of(ARCHIVED)));
+        Assertions.assertEquals(paths("a.md", "d.md"), select(index, null, Set.of(PUBLIC)));
+
+        index.addTags(ResourcePath.of("d.md"), Set.of(DRAFT));
+        index.removeTags(ResourcePath.of("a.md"), Set.of(DRAFT));
+        Assertions.assertEquals(paths("d.md"), select(index, Set.of(DRAFT), null));
+
+        index.setTags(ResourcePath.of("c.md"), Set.of(DRAFT));
+        Assertions.assertEquals(paths("b.md"), select(index, Set.of(PUBLIC), null));
+
+        index.removeTag(DRAFT);
+        Assertions.assertEquals(Set.of(), select(index, Set.of(DRAFT), null));
+    }
+
+    @Test
+    void reusesOrdinalsOfRemovedResources() {
+        TagIndex index = new TagIndex();
+        index.setTags(ResourcePath.of("a.md"), Set.of(DRAFT));
+        index.setTags(ResourcePath.of("b.md"), Set.of(PUBLIC));
+        index.remove(ResourcePath.of("a.md"));
+        index.setTags(ResourcePath.of("c.md"), Set.of(PUBLIC));
+
+        Assertions.assertEquals(2, index.size());
+        Assertions.assertEquals(Set.of(), select(index, Set.of(DRAFT), null));
+        Assertions.assertEquals(paths("b.md", "c.md"), select(index, Set.of(PUBLIC), null));
+        Assertions.assertFalse(index.select(null, null).contains(ResourcePath.of("a.md")));
+    }
+
+    @Test
+    void selectionMatchesScan() {
+        List<TagId> tags = tags();
+        List<Resource> resources = resources(1_000, tags);
+        TagIndex index = index(resources);
+        Set<TagId> whitelist = Set.of(tags.get(0), tags.get(1));
+        Set<TagId> blacklist = Set.of(tags.get(7));
+
+        Set<ResourcePath> scanned = new HashSet<>();
+        resources.stream().filter(r -> r.hasAnyTagId(whitelist)).filter(r -> !r.hasAnyTagId(blacklist)).forEach(r -> scanned.add(r.resourceKey()));
+        Assertions.assertFalse(scanned.isEmpty());
+        Assertions.assertEquals(scanned, select(index, whitelist, blacklist));
+    }
+
+    /**
+     * Prints the time of resolving a whitelist and blacklist on the index against testing every resource with {@link Resource#hasAnyTagId(Set)}
+     */
+    @Test
+    @Tag("benchmark")
+    void selectionBenchmark() {
+        int resourceCount = 100_000;
+        List<TagId> tags = tags();
+        List<Resource> resources = resources(resourceCount, tags);
+        TagIndex index = index(resources);
+        Set<TagId> whitelist = Set.of(tags.get(0), tags.get(1));
+        Set<TagId> blacklist = Set.of(tags.get(7));
+
+        int rounds = 50;
+        int indexed = 0;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                indexed = index.select(whitelist, blacklist).size();
+            }
+            double indexMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                resources.stream().filter(r -> r.hasAnyTagId(whitelist)).filter(r -> !r.hasAnyTagId(blacklist)).count();
+            }
+            double scanMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+            if (warmup == 1) {
+                System.out.printf("%d resources, %d selected: index %.2fus, scan %.2fus%n", resourceCount, indexed, indexMicros, scanMicros);
+            }
+        }
+    }
+
+    private static List<TagId> tags() {
+        List<TagId> tags = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            tags.add(TagId.of("tag" + i));
+        }
+        return tags;
+    }
+
+    /**
+     * @return resources with two of the given tags each
+     */
+    private static List<Resource> resources(int count, List<TagId> tags) {
+        List<Resource> resources = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Set<TagId> resourceTags = new HashSet<>(List.of(tags.get(i % tags.size()), tags.get((i * 7) % tags.size())));
+            resources.add(new Resource(Path.of("dir" + (i % 100), "file" + i + ".md"), "me", RepoId.of("repo"), null, resourceTags, null));
+        }
+        return resources;
+    }
+
+    private static TagIndex index(List<Resource> resources) {
+        TagIndex index = new TagIndex();
+        for (Resource resource : resources) {
+            index.setTags(resource.resourceKey(), resource.getResourceTags());
+        }
+        return index;
+    }
+
+    private static Set<ResourcePath> select(TagIndex index, Set<TagId> whitelist, Set<TagId> blacklist) {
+        Set<ResourcePath> result = new HashSet<>();
+        index.select(whitelist, blacklist).forEach(result::add);
+        return result;
+    }
+
+    private static Set<ResourcePath> paths(String... paths) {
+        Set<ResourcePath> result = new HashSet<>();
+        for (String path : paths) {
+            result.add(ResourcePath.of(path));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.FileRepository;
+import com.wonkglorg.doc.core.RepoProperty;
+import com.wonkglorg.doc.core.db.functions.ResourceFunctions;
+import com.wonkglorg.doc.core.db.functions.ResourceFunctions.SearchMode;
+import com.wonkglorg.doc.core.objects.RepoId;
+import com.wonkglorg.doc.core.objects.Resource;
+import com.wonkglorg.doc.core.request.ResourceUpdateRequest;
+import com.wonkglorg.doc.core.request.SearchRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests the routing between the word and trigram index and the statistics kept about both
+ */
+class WordSearchTest {
+    private static final int DOCUMENTS = 5_000;
+
+    /**
+     * In memory repos share one database, everything is kept below its own directory to not see resources of other tests
+     */
+    @Test
+    void multiWordQueriesAreRankedByWordIndex() throws Exception {
+        RepoProperty property = new RepoProperty();
+        property.setId(RepoId.of("wordSearchRepo"));
+        property.setPath(Path.of(""));
+        property.setWordIndex(true);
+        FileRepository db = new FileRepository(property, true);
+        db.initialize();
+        ResourceFunctions functions = db.getDatabase().resourceFunctions();
+        RepoId repoId = property.getId();
+
+        List<Resource> resources = new ArrayList<>();
+        resources.add(resource(repoId, "title.md", "# Configuring repositories\nSome notes about the setup of the server."));
+        resources.add(resource(repoId, "heading.md", "# Setup\n## Repository configuration\nSome notes about the setup of the server."));
+        resources.add(resource(repoId, "body.md", "# Other\nYou can configure a repository in the settings of the server."));
+        resources.add(resource(repoId, "code.md", "# Lookup\nCall user_id.lookup() before saving."));
+        for (int i = 0; i < DOCUMENTS; i++) {
+            resources.add(resource(repoId, "filler" + i + ".md", "# Filler " + i + "\nThe quick brown fox jumps over the lazy dog number " + i + "."));
+        }
+        functions.batchInsert(resources);
+
+        Assertions.assertEquals(SearchMode.WORD, functions.searchMode("configure repositories"));
+        Assertions.assertEquals(SearchMode.TRIGRAM, functions.searchMode("user_id.lookup"));
+        Assertions.assertEquals(SearchMode.TRIGRAM, functions.searchMode("configure"));
+        Assertions.assertEquals(SearchMode.PREFIX, functions.searchMode("co"));
+        Assertions.assertEquals(SearchMode.SCAN, functions.searchMode("."));
+
+        //stemming finds every form of the words, a match in the title outranks one in the headings which outranks one in the body
+        Assertions.assertEquals(List.of("title.md", "heading.md", "body.md"), search(functions, repoId, "configure repositories"));
+        Assertions.assertEquals(List.of("code.md"), search(functions, repoId, "user_id.lookup"));
+
+        //a repo without the word index sharing the in memory database leaves it in place
+        RepoProperty other = new RepoProperty();
+        other.setId(RepoId.of("noWordIndexRepo"));
+        other.setPath(Path.of(""));
+        new FileRepository(other, true).initialize();
+        Assertions.assertEquals(List.of("title.md", "heading.md", "body.md"), search(functions, repoId, "configure repositories"));
+
+        //changes are reflected in the word index
+        functions.updateResource(update("wordsearch\\title.md", "# Nothing\nLeft to see here."));
+        functions.batchDelete(List.of(Path.of("wordsearch\\body.md")));
+        Assertions.assertEquals(List.of("heading.md"), search(functions, repoId, "configure repositories"));
+
+        for (int i = 0; i < 50; i++) {
+            search(functions, repoId, "quick fox");
+            search(functions, repoId, "brown fox");
+        }
+        ResourceFunctions.SearchStats stats = functions.searchStats();
+        Assertions.assertTrue(stats.indexBytes().get("FileText") > 0);
+        Assertions.assertTrue(stats.modes().get(SearchMode.WORD).queries() >= 100);
+        Assertions.assertTrue(stats.modes().get(SearchMode.TRIGRAM).queries() >= 1);
+    }
+
+    private static Resource resource(RepoId repoId, String name, String data) {
+        return new Resource(Path.of("wordsearch\\" + name), "me", repoId, null, Set.of(), data);
+    }
+
+    private static ResourceUpdateRequest update(String path, String data) {
+        ResourceUpdateRequest request = new ResourceUpdateRequest();
+        request.setRepoId("wordSearchRepo");
+        request.setPath(path);
+        request.setUserId("me");
+        request.setData(data);
+        return request;
+    }
+
+    private static List<String> search(ResourceFunctions functions, RepoId repoId, String term) throws Exception {
+        SearchRequest request = new SearchRequest(term, null, repoId, null, 10, 0, null);
+        request.setPath("wordsearch/**");
+        return functions.searchResources(request).hits().stream().map(hit -> hit.resourcePath().toString().substring("wordsearch\\".length())).toList();
+    }
+}
@@ -0,0 +1,160 @@
+package com.wonkglorg.docapi;
+
+import com.wonkglorg.doc.core.db.WriteQueue;
+import com.wonkglorg.doc.core.db.dbs.StorageProfile;
+import com.wonkglorg.doc.core.exception.CoreSqlException;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+class WriteQueueTest {
+
+    private static final int CALLERS = 16;
+    private static final int WRITES_PER_CALLER = 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void failingWriteOnlyRollsBackItself() throws Exception {
+        try (HikariDataSource dataSource = createDataSource("queue")) {
+            WriteQueue queue = new WriteQueue("test", connection(dataSource), 64, Duration.ofMillis(50));
+
+            CompletableFuture<Integer> first = queue.submit(connection -> insert(connection, "first"));
+            CompletableFuture<Integer> failing = queue.submit(connection -> {
+                insert(connection, "rolled back");
+                throw new CoreSqlException("expected");
+            });
+            CompletableFuture<Integer> second = queue.submit(connection -> insert(connection, "second"));
+
+            Assertions.assertEquals(1, first.get());
+            Assertions.assertEquals(1, second.get());
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class, failing::get);
+            Assertions.assertInstanceOf(CoreSqlException.class, exception.getCause());
+            Assertions.assertEquals(2, count(dataSource));
+
+            queue.close();
+            Assertions.assertTrue(queue.submit(connection -> 1).isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    void concurrentWritesAreAllCommitted() throws Exception {
+        try (HikariDataSource dataSource = createDataSource("concurrent")) {
+            WriteQueue queue = new WriteQueue("concurrent", connection(dataSource), 64, Duration.ofMillis(2));
+            runConcurrently(() -> {
+                try {
+                    queue.execute(connection -> insert(connection, "queued"));
+                } catch (CoreSqlException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            queue.close();
+            Assertions.assertEquals(CALLERS * WRITES_PER_CALLER, count(dataSource));
+        }
+    }
+
+    /**
+     * Prints the time of committing every write in its own transaction against group committing them through the write queue
+     */
+    @Test
+    @Tag("benchmark")
+    void groupCommitBenchmark() throws Exception {
+        long direct;
+        try (HikariDataSource dataSource = createDataSource("direct")) {
+            direct = runConcurrently(() -> {
+                try (Connection connection = dataSource.getConnection()) {
+                    insert(connection, "direct");
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+
+        long queued;
+        try (HikariDataSource dataSource = createDataSource("queued")) {
+            WriteQueue queue = new WriteQueue("benchmark", connection(dataSource), 64, Duration.ofMillis(2));
+            queued = runConcurrently(() -> {
+                try {
+                    queue.execute(connection -> insert(connection, "queued"));
+                } catch (CoreSqlException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            queue.close();
+        }
+
+        int writes = CALLERS * WRITES_PER_CALLER;
+        System.out.printf("direct: %d writes in %d ms (%d writes/s)%n", writes, direct, writes * 1000L / Math.max(1, direct));
+        System.out.printf("queued: %d writes in %d ms (%d writes/s)%n", writes, queued, writes * 1000L / Math.max(1, queued));
+    }
+
+    private long runConcurrently(Runnable write) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < WRITES_PER_CALLER; j++) {
+                    write.run();
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private HikariDataSource createDataSource(String name) throws SQLException {
+        //a rollback journal with full sync makes the cost of every commit visible
+        StorageProfile profile = StorageProfile.legacy();
+        profile.setSingleWriter(true);
+        profile.setBusyTimeout(30000);
+        HikariDataSource dataSource = profile.createWriter("jdbc:sqlite:" + directory.resolve(name + ".db"), name);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE Data(id INTEGER PRIMARY KEY, value TEXT)");
+        }
+        return dataSource;
+    }
+
+    private static Supplier<Connection> connection(HikariDataSource dataSource) {
+        return () -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    private static int insert(Connection connection, String value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO Data(value) VALUES(?)")) {
+            statement.setString(1, value);
+            return statement.executeUpdate();
+        }
+    }
+
+    private static int count(HikariDataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM Data")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}